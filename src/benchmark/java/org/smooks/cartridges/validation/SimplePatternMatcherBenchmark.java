@@ -0,0 +1,104 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link SimplePatternMatcher} with {@link Pattern} on the simple rule shapes found in typical rule bases.
+ * <p/>
+ * Run with "mvn -Pbenchmark test-compile exec:java", adding "-Dexec.args=-prof gc" to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimplePatternMatcherBenchmark {
+
+    /**
+     * Pattern and text, separated by "~".
+     */
+    @Param({"[0-9]{6}~989764", "[A-Z]-[0-9]{5}~A-12345", "[A-Z][a-z]*, [A-Z][a-z]*~Bloggs, Joe", "USD|EUR|GBP~GBP"})
+    public String patternAndText;
+
+    private Pattern pattern;
+    private SimplePatternMatcher simplePatternMatcher;
+    private String text;
+
+    @Setup
+    public void setup() {
+        final int separator = patternAndText.lastIndexOf('~');
+        final String regex = patternAndText.substring(0, separator);
+        text = patternAndText.substring(separator + 1);
+        pattern = Pattern.compile(regex);
+        simplePatternMatcher = SimplePatternMatcher.compile(regex);
+        if (simplePatternMatcher == null) {
+            throw new IllegalStateException("Pattern '" + regex + "' is not simple.");
+        }
+    }
+
+    @Benchmark
+    public boolean pattern() {
+        return pattern.matcher(text).matches();
+    }
+
+    @Benchmark
+    public boolean simplePatternMatcher() {
+        return simplePatternMatcher.matches(text);
+    }
+}
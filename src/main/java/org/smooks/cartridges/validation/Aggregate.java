@@ -0,0 +1,302 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.TypedKey;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Running aggregate of the values selected by an {@link AggregateAccumulator} within a single scope element.
+ * <p/>
+ * Only the count, sum, min and max are kept, so memory is constant however many values are in the scope.
+ * Integral values are accumulated as primitive longs.  Accumulation switches to {@link BigDecimal} on the
+ * first decimal value, or on long overflow.
+ */
+final class Aggregate {
+
+    private static final TypedKey<Map<String, Aggregate>> AGGREGATES_TYPED_KEY = TypedKey.of();
+
+    /**
+     * Longs of up to this many digits cannot overflow while being parsed.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * The enclosing aggregate of the same name, restored when this aggregate's scope closes.
+     */
+    private final Aggregate parent;
+
+    private long count;
+    private long numericCount;
+    private long invalidCount;
+    private boolean decimal;
+    private long longSum;
+    private long longMin;
+    private long longMax;
+    private BigDecimal decimalSum;
+    private BigDecimal decimalMin;
+    private BigDecimal decimalMax;
+
+    private Aggregate(Aggregate parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Open a new aggregate scope.
+     *
+     * @param name             The aggregate rule name.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The new aggregate.
+     */
+    static Aggregate open(String name, ExecutionContext executionContext) {
+        Map<String, Aggregate> aggregates = executionContext.get(AGGREGATES_TYPED_KEY);
+        if (aggregates == null) {
+            aggregates = new HashMap<>();
+            executionContext.put(AGGREGATES_TYPED_KEY, aggregates);
+        }
+
+        Aggregate aggregate = new Aggregate(aggregates.get(name));
+        aggregates.put(name, aggregate);
+
+        return aggregate;
+    }
+
+    /**
+     * Get the aggregate for the innermost open scope.
+     *
+     * @param name             The aggregate rule name.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The aggregate, or null if no scope is open.
+     */
+    static Aggregate get(String name, ExecutionContext executionContext) {
+        Map<String, Aggregate> aggregates = executionContext.get(AGGREGATES_TYPED_KEY);
+        if (aggregates == null) {
+            return null;
+        }
+
+        return aggregates.get(name);
+    }
+
+    /**
+     * Close the innermost open scope.
+     *
+     * @param name             The aggregate rule name.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The closed aggregate, or null if no scope is open.
+     */
+    static Aggregate close(String name, ExecutionContext executionContext) {
+        Map<String, Aggregate> aggregates = executionContext.get(AGGREGATES_TYPED_KEY);
+        if (aggregates == null) {
+            return null;
+        }
+
+        Aggregate aggregate = aggregates.remove(name);
+        if (aggregate != null && aggregate.parent != null) {
+            aggregates.put(name, aggregate.parent);
+        }
+
+        return aggregate;
+    }
+
+    /**
+     * Count a value, without parsing it.
+     */
+    void count() {
+        count++;
+    }
+
+    /**
+     * Count and accumulate a value.
+     * <p/>
+     * Empty values are counted but not accumulated.  Values that are not numbers are counted as invalid.
+     *
+     * @param text The value.
+     */
+    void add(String text) {
+        count++;
+
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+
+        if (!decimal && addLong(text, start, end)) {
+            return;
+        }
+
+        try {
+            addDecimal(new BigDecimal(text.substring(start, end)));
+        } catch (NumberFormatException e) {
+            invalidCount++;
+        }
+    }
+
+    private boolean addLong(String text, int start, int end) {
+        int index = start;
+        boolean negative = false;
+        char first = text.charAt(index);
+        if (first == '-' || first == '+') {
+            negative = (first == '-');
+            index++;
+        }
+        if (index == end || end - index > MAX_LONG_DIGITS) {
+            return false;
+        }
+
+        long value = 0;
+        for (; index < end; index++) {
+            char c = text.charAt(index);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (negative) {
+            value = -value;
+        }
+
+        long sum = longSum + value;
+        if (((longSum ^ sum) & (value ^ sum)) < 0) {
+            // Overflow...
+            addDecimal(BigDecimal.valueOf(value));
+            return true;
+        }
+
+        if (numericCount == 0) {
+            longMin = value;
+            longMax = value;
+        } else {
+            longMin = Math.min(longMin, value);
+            longMax = Math.max(longMax, value);
+        }
+        longSum = sum;
+        numericCount++;
+
+        return true;
+    }
+
+    private void addDecimal(BigDecimal value) {
+        if (!decimal) {
+            decimal = true;
+            decimalSum = BigDecimal.valueOf(longSum);
+            if (numericCount > 0) {
+                decimalMin = BigDecimal.valueOf(longMin);
+                decimalMax = BigDecimal.valueOf(longMax);
+            }
+        }
+
+        if (numericCount == 0) {
+            decimalMin = value;
+            decimalMax = value;
+        } else {
+            decimalMin = decimalMin.min(value);
+            decimalMax = decimalMax.max(value);
+        }
+        decimalSum = decimalSum.add(value);
+        numericCount++;
+    }
+
+    /**
+     * Get the number of values in the scope, including empty and invalid values.
+     *
+     * @return The value count.
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of values in the scope that are not numbers.
+     *
+     * @return The invalid value count.
+     */
+    long getInvalidCount() {
+        return invalidCount;
+    }
+
+    /**
+     * Get the sum of the numeric values in the scope.
+     *
+     * @return The sum.  Zero if there are no numeric values.
+     */
+    BigDecimal getSum() {
+        return (decimal ? decimalSum : BigDecimal.valueOf(longSum));
+    }
+
+    /**
+     * Get the smallest numeric value in the scope.
+     *
+     * @return The smallest value, or null if there are no numeric values.
+     */
+    BigDecimal getMin() {
+        if (numericCount == 0) {
+            return null;
+        }
+
+        return (decimal ? decimalMin : BigDecimal.valueOf(longMin));
+    }
+
+    /**
+     * Get the largest numeric value in the scope.
+     *
+     * @return The largest value, or null if there are no numeric values.
+     */
+    BigDecimal getMax() {
+        if (numericCount == 0) {
+            return null;
+        }
+
+        return (decimal ? decimalMax : BigDecimal.valueOf(longMax));
+    }
+}
@@ -0,0 +1,153 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jakarta.annotation.PostConstruct;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksException;
+import org.smooks.api.resource.config.ResourceConfig;
+import org.smooks.api.resource.visitor.VisitAfterReport;
+import org.smooks.api.resource.visitor.VisitBeforeReport;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.ChildrenVisitor;
+import org.smooks.engine.delivery.fragment.NodeFragment;
+import org.smooks.engine.memento.TextAccumulatorMemento;
+import org.smooks.engine.memento.TextAccumulatorVisitorMemento;
+import org.smooks.engine.resource.config.xpath.IndexedSelectorPath;
+import org.smooks.engine.resource.config.xpath.step.AttributeSelectorStep;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Element;
+
+import javax.inject.Inject;
+import java.util.Optional;
+
+/**
+ * Accumulates the values selected by an aggregate validation rule into the {@link Aggregate} of the
+ * enclosing scope element.
+ * <p/>
+ * Configured, together with an {@link AggregateRule} on the scope element, by the
+ * {@code <validation:aggregate>} element.  Values outside of an open scope are ignored.
+ */
+@VisitBeforeReport(condition = "false")
+@VisitAfterReport(summary = "Accumulated value for aggregate rule '${resource.parameters.name}'.")
+public final class AggregateAccumulator implements ChildrenVisitor, AfterVisitor {
+
+    /**
+     * The aggregate rule name.
+     */
+    private String name;
+    /**
+     * Is the value counted only i.e. not parsed.
+     */
+    private boolean countOnly;
+    /**
+     * Attribute name if the value is an attribute, otherwise null.
+     */
+    private String targetAttribute;
+    /**
+     * Config.
+     */
+    @Inject
+    private ResourceConfig resourceConfig;
+
+    /**
+     * Initialize the visitor instance.
+     */
+    @PostConstruct
+    public void postConstruct() {
+        if (resourceConfig.getSelectorPath() instanceof IndexedSelectorPath &&
+                ((IndexedSelectorPath) resourceConfig.getSelectorPath()).getTargetSelectorStep() instanceof AttributeSelectorStep) {
+            targetAttribute = ((AttributeSelectorStep) ((IndexedSelectorPath) resourceConfig.getSelectorPath()).
+                    getTargetSelectorStep()).getQName().getLocalPart();
+        } else {
+            targetAttribute = null;
+        }
+    }
+
+    @Override
+    public void visitAfter(final Element element, final ExecutionContext executionContext) throws SmooksException {
+        final Aggregate aggregate = Aggregate.get(name, executionContext);
+        if (aggregate == null) {
+            return;
+        }
+
+        if (countOnly) {
+            aggregate.count();
+        } else if (targetAttribute != null) {
+            aggregate.add(element.getAttribute(targetAttribute));
+        } else {
+            TextAccumulatorMemento textAccumulatorMemento = new TextAccumulatorVisitorMemento(new NodeFragment(element), this);
+            executionContext.getMementoCaretaker().restore(textAccumulatorMemento);
+            aggregate.add(textAccumulatorMemento.getText());
+        }
+    }
+
+    @Override
+    public void visitChildText(final CharacterData characterData, final ExecutionContext executionContext) {
+        if (targetAttribute == null && !countOnly) {
+            TextAccumulatorMemento textAccumulatorMemento = new TextAccumulatorVisitorMemento(new NodeFragment(characterData.getParentNode()), this);
+            executionContext.getMementoCaretaker().restore(textAccumulatorMemento);
+            textAccumulatorMemento.accumulateText(characterData.getTextContent());
+            executionContext.getMementoCaretaker().capture(textAccumulatorMemento);
+        }
+    }
+
+    @Override
+    public void visitChildElement(final Element childElement, final ExecutionContext executionContext) {
+
+    }
+
+    @Inject
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Inject
+    public void setFunction(final Optional<String> function) {
+        this.countOnly = (AggregateRule.Function.parse(function.orElse(null)) == AggregateRule.Function.COUNT);
+    }
+}
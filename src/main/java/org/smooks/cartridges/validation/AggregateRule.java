@@ -0,0 +1,400 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.resource.visitor.VisitAfterReport;
+import org.smooks.api.resource.visitor.VisitBeforeReport;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.BeforeVisitor;
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.support.DomUtils;
+import org.w3c.dom.Element;
+
+import javax.inject.Inject;
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.Optional;
+import java.util.ResourceBundle;
+
+/**
+ * Aggregate validation rule.
+ * <p/>
+ * Validates an aggregate (count, sum, min or max) of the values selected within a scope element, without
+ * collecting the values.  The values are accumulated by an {@link AggregateAccumulator} as they are visited,
+ * and the aggregate is checked against the configured bounds when the scope element closes.
+ * <p>
+ * Example configuration:
+ * <pre>{@code
+ * <validation:aggregate name="quantityTotal" scope="order" executeOn="order-item/quantity"
+ *                       function="sum" equals="header.totalQuantity" onFail="ERROR" />
+ * <validation:aggregate name="itemCount" scope="order" executeOn="order-item"
+ *                       function="count" min="1" max="500" onFail="ERROR" />
+ * }</pre>
+ * Bounds are either numbers, or bean paths resolved against the bean context when the scope closes.  A bound
+ * whose bean path resolves to null is not checked.  Aggregate rule names must be unique.
+ * <p/>
+ * Failure messages are {@link MessageFormat} patterns, resolved per {@link Locale} from the optional
+ * "messageBundle" and then from the built-in {@link #DEFAULT_MESSAGE_BUNDLE} bundle.  The key is
+ * "&lt;name&gt;.&lt;check&gt;", or "&lt;check&gt;", where the check is one of "equals", "min", "max" or
+ * "nonNumeric".  The arguments are the rule name {0}, failure path {1}, function {2}, aggregate value (the
+ * number of non-numeric values for "nonNumeric") {3} and bound {4}.
+ */
+@VisitBeforeReport(summary = "Opened scope for aggregate rule '${resource.parameters.name}'.")
+@VisitAfterReport(summary = "Applied aggregate rule '${resource.parameters.name}'.")
+public final class AggregateRule implements BeforeVisitor, AfterVisitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AggregateRule.class);
+
+    /**
+     * Rule provider name on the {@link RuleEvalResult} of aggregate rule failures.
+     */
+    public static final String RULE_PROVIDER_NAME = "aggregate";
+
+    /**
+     * Built-in failure message bundle base name.
+     */
+    public static final String DEFAULT_MESSAGE_BUNDLE = "/org/smooks/cartridges/validation/i18n/aggregate";
+
+    /**
+     * Aggregate function.
+     */
+    enum Function {
+        COUNT,
+        SUM,
+        MIN,
+        MAX;
+
+        static Function parse(String function) {
+            if (function == null) {
+                return SUM;
+            }
+            try {
+                return valueOf(function.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new SmooksConfigException("Invalid aggregate function '" + function + "'.  Must be one of 'count', 'sum', 'min' or 'max'.");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    /**
+     * Checks against the aggregate, with their message keys.
+     */
+    enum Check {
+        EQUALS("equals"),
+        MIN("min"),
+        MAX("max"),
+        NON_NUMERIC("nonNumeric");
+
+        private final String key;
+
+        Check(String key) {
+            this.key = key;
+        }
+
+        private boolean failed(int comparison) {
+            switch (this) {
+                case EQUALS:
+                    return comparison != 0;
+                case MIN:
+                    return comparison < 0;
+                case MAX:
+                    return comparison > 0;
+                default:
+                    throw new IllegalStateException("Not a bound check: " + this + ".");
+            }
+        }
+    }
+
+    @Inject
+    private ApplicationContext appContext;
+
+    /**
+     * The aggregate rule name.
+     */
+    private String name;
+    /**
+     * The aggregate function.
+     */
+    private Function function = Function.SUM;
+    /**
+     * The validation failure level. Default is OnFail.ERROR.
+     */
+    private OnFail onFail = OnFail.ERROR;
+    private Bound min;
+    private Bound max;
+    private Bound equals;
+    private String messageBundle;
+    private volatile ClassLoader resourceBundleClassLoader;
+
+    @Override
+    public void visitBefore(final Element element, final ExecutionContext executionContext) throws SmooksException {
+        Aggregate.open(name, executionContext);
+    }
+
+    @Override
+    public void visitAfter(final Element element, final ExecutionContext executionContext) throws SmooksException {
+        final Aggregate aggregate = Aggregate.close(name, executionContext);
+        if (aggregate == null) {
+            return;
+        }
+
+        final Failure failure = check(aggregate, executionContext);
+        if (failure != null) {
+            final String path = DomUtils.getXPath(element);
+            final BigDecimal value = getValue(aggregate);
+            final ConstraintFailure result = new ConstraintFailure(path, new ConstraintFailure.Result(name, RULE_PROVIDER_NAME, (value != null ? value.toPlainString() : null)),
+                    locale -> getMessage(failure, path, locale));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(result.toString());
+            }
+            Validator.reportFailure(result, onFail, Validator.getMaxFails(executionContext), executionContext);
+        }
+    }
+
+    /**
+     * Check the aggregate against the configured bounds.
+     *
+     * @param aggregate        The aggregate.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The failed check, or null if all checks passed.
+     */
+    private Failure check(final Aggregate aggregate, final ExecutionContext executionContext) {
+        if (function != Function.COUNT && aggregate.getInvalidCount() > 0) {
+            return new Failure(Check.NON_NUMERIC, String.valueOf(aggregate.getInvalidCount()), null);
+        }
+
+        final BigDecimal value = getValue(aggregate);
+        if (value == null) {
+            // min or max of no values...
+            return null;
+        }
+
+        Failure failure = check(value, equals, Check.EQUALS, executionContext);
+        if (failure == null) {
+            failure = check(value, min, Check.MIN, executionContext);
+        }
+        if (failure == null) {
+            failure = check(value, max, Check.MAX, executionContext);
+        }
+
+        return failure;
+    }
+
+    private Failure check(final BigDecimal value, final Bound bound, final Check check, final ExecutionContext executionContext) {
+        if (bound == null) {
+            return null;
+        }
+
+        final BigDecimal expected = bound.get(executionContext);
+        if (expected == null) {
+            LOGGER.debug("Bound '{}' of aggregate rule '{}' resolved to null.  Not checked.", bound, name);
+            return null;
+        }
+
+        return (check.failed(value.compareTo(expected)) ? new Failure(check, value.toPlainString(), expected.toPlainString()) : null);
+    }
+
+    private String getMessage(final Failure failure, final String path, final Locale locale) {
+        final String pattern = getMessagePattern(failure.check, locale);
+        return new MessageFormat(pattern, locale).format(new Object[]{name, path, function.toString(), failure.value, failure.bound});
+    }
+
+    private String getMessagePattern(final Check check, final Locale locale) {
+        if (resourceBundleClassLoader == null) {
+            resourceBundleClassLoader = Validator.createResourceBundleClassLoader(appContext.getClassLoader());
+        }
+
+        if (messageBundle != null) {
+            try {
+                final ResourceBundle bundle = Validator.getMessageBundle(messageBundle, locale, resourceBundleClassLoader);
+                if (bundle.containsKey(name + "." + check.key)) {
+                    return bundle.getString(name + "." + check.key);
+                } else if (bundle.containsKey(check.key)) {
+                    return bundle.getString(check.key);
+                }
+            } catch (MissingResourceException e) {
+                LOGGER.warn("Failed to load aggregate rule message bundle '" + messageBundle + "'.  This resource must be on the classpath!", e);
+            }
+        }
+
+        return Validator.getMessageBundle(DEFAULT_MESSAGE_BUNDLE, locale, resourceBundleClassLoader).getString(check.key);
+    }
+
+    private BigDecimal getValue(final Aggregate aggregate) {
+        switch (function) {
+            case COUNT:
+                return BigDecimal.valueOf(aggregate.getCount());
+            case MIN:
+                return aggregate.getMin();
+            case MAX:
+                return aggregate.getMax();
+            default:
+                return aggregate.getSum();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [name=%s, function=%s, onFail=%s]", getClass().getSimpleName(), name, function, onFail);
+    }
+
+    @Inject
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Inject
+    public void setFunction(final Optional<String> function) {
+        this.function = Function.parse(function.orElse(null));
+    }
+
+    public String getFunction() {
+        return function.toString();
+    }
+
+    @Inject
+    public void setOnFail(final Optional<OnFail> onFail) {
+        this.onFail = onFail.orElse(OnFail.ERROR);
+    }
+
+    public OnFail getOnFail() {
+        return onFail;
+    }
+
+    @Inject
+    public void setMin(final Optional<String> min) {
+        this.min = min.map(Bound::new).orElse(null);
+    }
+
+    @Inject
+    public void setMax(final Optional<String> max) {
+        this.max = max.map(Bound::new).orElse(null);
+    }
+
+    @Inject
+    public void setEquals(final Optional<String> equals) {
+        this.equals = equals.map(Bound::new).orElse(null);
+    }
+
+    @Inject
+    public void setMessageBundle(final Optional<String> messageBundle) {
+        this.messageBundle = messageBundle.map(String::trim).orElse(null);
+    }
+
+    /**
+     * A failed check, with the aggregate value and the bound it was checked against.
+     */
+    private static final class Failure {
+        private final Check check;
+        private final String value;
+        private final String bound;
+
+        private Failure(Check check, String value, String bound) {
+            this.check = check;
+            this.value = value;
+            this.bound = bound;
+        }
+    }
+
+    /**
+     * Aggregate bound.  Either a number, or a bean path.
+     */
+    private static final class Bound {
+        private final String bound;
+        private final BigDecimal value;
+        private final BeanPath beanPath;
+
+        private Bound(String bound) {
+            this.bound = bound.trim();
+            BigDecimal number;
+            try {
+                number = new BigDecimal(this.bound);
+            } catch (NumberFormatException e) {
+                number = null;
+            }
+            this.value = number;
+            this.beanPath = (number == null ? new BeanPath(this.bound) : null);
+        }
+
+        private BigDecimal get(ExecutionContext executionContext) {
+            if (value != null) {
+                return value;
+            }
+
+            final Object resolved = beanPath.resolve(executionContext.getBeanContext().getBean(beanPath.getBeanId()));
+            if (resolved == null) {
+                return null;
+            } else if (resolved instanceof BigDecimal) {
+                return (BigDecimal) resolved;
+            }
+
+            try {
+                return new BigDecimal(resolved.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new SmooksException("Aggregate bound '" + bound + "' resolved to non-numeric value '" + resolved + "'.");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return bound;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Aggregated {@link OnFailResult}.
+ * <p/>
+ * Stands in for a number of failures of the same rule, on the same normalised (index-free) path
+ * and, depending on the {@link ValidationResult.Aggregation}, with the same value.  The rule result
+ * and message are those of the first failure.
+ *
+ * @see ValidationResult#ValidationResult(ValidationResult.Aggregation)
+ */
+public final class AggregatedOnFailResult implements OnFailResult {
+
+    /**
+     * Maximum number of exact failure paths sampled per aggregated failure.
+     */
+    public static final int MAX_SAMPLE_PATHS = 5;
+
+    private final OnFailResult first;
+    private final String normalisedPath;
+    private final List<String> samplePaths = new ArrayList<>(1);
+    private String lastPath;
+    private int count;
+
+    AggregatedOnFailResult(OnFailResult first, String normalisedPath) {
+        this.first = first;
+        this.normalisedPath = normalisedPath;
+    }
+
+    AggregatedOnFailResult(OnFailResult first, String normalisedPath, List<String> samplePaths, String lastPath, int count) {
+        this(first, normalisedPath);
+        for (String samplePath : samplePaths) {
+            samplePath(samplePath);
+        }
+        this.lastPath = lastPath;
+        this.count = count;
+    }
+
+    void add(OnFailResult onFailResult) {
+        if (onFailResult instanceof AggregatedOnFailResult) {
+            AggregatedOnFailResult aggregated = (AggregatedOnFailResult) onFailResult;
+            for (String samplePath : aggregated.samplePaths) {
+                samplePath(samplePath);
+            }
+            lastPath = aggregated.lastPath;
+            count += aggregated.count;
+        } else {
+            samplePath(onFailResult.getFailFragmentPath());
+            lastPath = onFailResult.getFailFragmentPath();
+            count++;
+        }
+    }
+
+    private void samplePath(String path) {
+        if (samplePaths.size() < MAX_SAMPLE_PATHS) {
+            samplePaths.add(path);
+        }
+    }
+
+    /**
+     * Get the number of aggregated failures.
+     *
+     * @return The number of aggregated failures.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the normalised (index-free) path shared by the aggregated failures.
+     *
+     * @return The normalised path.
+     */
+    public String getNormalisedPath() {
+        return normalisedPath;
+    }
+
+    /**
+     * Get the path of the first aggregated failure.
+     *
+     * @return The path of the first aggregated failure.
+     */
+    public String getFirstPath() {
+        return first.getFailFragmentPath();
+    }
+
+    /**
+     * Get the path of the last aggregated failure.
+     *
+     * @return The path of the last aggregated failure.
+     */
+    public String getLastPath() {
+        return lastPath;
+    }
+
+    /**
+     * Get the exact paths of the first {@link #MAX_SAMPLE_PATHS} aggregated failures.
+     *
+     * @return The sampled paths.
+     */
+    public List<String> getSamplePaths() {
+        return Collections.unmodifiableList(samplePaths);
+    }
+
+    /**
+     * Get the first aggregated failure.
+     *
+     * @return The first aggregated failure.
+     */
+    public OnFailResult getFirst() {
+        return first;
+    }
+
+    @Override
+    public String getFailFragmentPath() {
+        return first.getFailFragmentPath();
+    }
+
+    @Override
+    public RuleEvalResult getFailRuleResult() {
+        return first.getFailRuleResult();
+    }
+
+    @Override
+    public String getMessage() {
+        return first.getMessage();
+    }
+
+    @Override
+    public String getMessage(Locale locale) {
+        return first.getMessage(locale);
+    }
+
+    @Override
+    public void appendMessage(Locale locale, Appendable appendable) throws IOException {
+        first.appendMessage(locale, appendable);
+    }
+
+    @Override
+    public String toString() {
+        return first + " (x" + count + ")";
+    }
+}
@@ -0,0 +1,327 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jakarta.annotation.PreDestroy;
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.TypedKey;
+import org.smooks.api.bean.context.BeanContext;
+import org.smooks.api.bean.lifecycle.BeanContextLifecycleEvent;
+import org.smooks.api.bean.lifecycle.BeanContextLifecycleObserver;
+import org.smooks.api.bean.lifecycle.BeanLifecycle;
+import org.smooks.api.lifecycle.FilterLifecycle;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous rule evaluation executor.
+ * <p/>
+ * Rules configured with async="true" are not evaluated on the filtering thread.  Instead, the fragment text is
+ * submitted to a bounded thread pool, and filtering continues.  Pending
+ * evaluations are joined, and their failures added to the {@link ValidationResult} in submission order, at the end of
+ * the filter operation.  If an asynchronous {@link OnFail#FATAL} rule fails, the pending evaluations are joined (and the
+ * {@link ValidationException} thrown) on the next asynchronous rule submission, rather than waiting for the end of the
+ * filter operation.
+ * <p/>
+ * The thread pool is shared by all asynchronous rules on an {@link ApplicationContext}, and is configured through the
+ * {@link #THREADS validation.async.threads} and {@link #QUEUE_SIZE validation.async.queueSize} global parameters.
+ * When the queue is full, the rule is evaluated on the filtering thread.
+ * <p/>
+ * Only rules whose result depends on the evaluated text alone (regex, code list and primitive rules, and rules
+ * declared pure) are evaluated asynchronously.  Other rules read the bean context, which the filtering thread keeps
+ * changing, so as they are evaluated on the filtering thread.  The asynchronous evaluations of a filter operation
+ * share one {@link DetachedExecutionContext}, which shares no mutable state with the filter operation.
+ * <p/>
+ * Failure messages are rendered from a shallow copy of the bean context, as for synchronous rules.  As the outcome
+ * of an evaluation is not known when it is submitted, the copy is shared by all the submissions made while the
+ * beans in the bean context stay the same, and is only taken again after a bean is added, changed or removed.
+ */
+public final class AsyncRuleExecutor implements FilterLifecycle {
+
+    /**
+     * Number of evaluation threads global param key.  Default is the number of available processors.
+     */
+    public static final String THREADS = "validation.async.threads";
+    /**
+     * Evaluation queue size global param key.  Default is 1000.
+     */
+    public static final String QUEUE_SIZE = "validation.async.queueSize";
+
+    private static final TypedKey<Pending> PENDING_TYPED_KEY = TypedKey.of();
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final ThreadPoolExecutor threadPoolExecutor;
+
+    AsyncRuleExecutor(int threads, int queueSize) {
+        final int pool = POOL_COUNT.incrementAndGet();
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        threadPoolExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "smooks-validation-async-" + pool + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Get the executor for an {@link ApplicationContext}, creating it if it does not exist.
+     *
+     * @param applicationContext The {@link ApplicationContext}.
+     * @param executionContext   The {@link ExecutionContext}, for access to the global parameters.
+     * @return The executor.
+     */
+    static AsyncRuleExecutor getOrCreate(ApplicationContext applicationContext, ExecutionContext executionContext) {
+        synchronized (AsyncRuleExecutor.class) {
+            AsyncRuleExecutor asyncRuleExecutor = applicationContext.getRegistry().lookup(AsyncRuleExecutor.class);
+            if (asyncRuleExecutor == null) {
+                int threads = getIntParameter(executionContext, THREADS, Runtime.getRuntime().availableProcessors());
+                int queueSize = getIntParameter(executionContext, QUEUE_SIZE, 1000);
+                asyncRuleExecutor = new AsyncRuleExecutor(threads, queueSize);
+                applicationContext.getRegistry().registerObject(AsyncRuleExecutor.class, asyncRuleExecutor);
+            }
+
+            return asyncRuleExecutor;
+        }
+    }
+
+    private static int getIntParameter(ExecutionContext executionContext, String name, int defaultValue) {
+        String value = executionContext.getConfigParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            int intValue = Integer.parseInt(value.trim());
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through...
+        }
+        throw new SmooksConfigException("Invalid config value '" + value.trim() + "' for global parameter '" + name + "'.  Must be a positive Integer value.");
+    }
+
+    /**
+     * Submit a rule evaluation.
+     *
+     * @param validator        The validator.
+     * @param text             The text to be validated.
+     * @param failFragmentPath The path of the text.
+     * @param executionContext The {@link ExecutionContext}.
+     * @throws ValidationException A previously submitted {@link OnFail#FATAL} rule failed, or the maximum number
+     *                             of allowed failures has been exceeded.
+     */
+    void submit(final Validator validator, final String text, final String failFragmentPath, final ExecutionContext executionContext) throws ValidationException {
+        Pending pending = executionContext.get(PENDING_TYPED_KEY);
+        if (pending != null && pending.fatal) {
+            join(executionContext);
+            pending = null;
+        }
+        if (pending == null) {
+            pending = new Pending(executionContext);
+            executionContext.put(PENDING_TYPED_KEY, pending);
+        } else {
+            reportCompleted(pending, executionContext);
+        }
+
+        final Map<String, Object> beanSnapshot = pending.getBeanSnapshot();
+        final ExecutionContext detachedExecutionContext = pending.detachedExecutionContext;
+        final Pending finalPending = pending;
+        final Future<RuleEvalResult> future = threadPoolExecutor.submit(() -> {
+            RuleEvalResult ruleEvalResult = validator.evaluate(text, detachedExecutionContext);
+            if (!ruleEvalResult.matched() && validator.getOnFail() == OnFail.FATAL) {
+                finalPending.fatal = true;
+            }
+            return ruleEvalResult;
+        });
+        pending.evaluations.add(new Evaluation(validator, failFragmentPath, beanSnapshot, future));
+    }
+
+    /**
+     * Join the pending evaluations of a filter operation, reporting their failures.
+     *
+     * @param executionContext The {@link ExecutionContext}.
+     * @throws ValidationException An {@link OnFail#FATAL} rule failed, or the maximum number of allowed failures
+     *                             has been exceeded.
+     */
+    void join(final ExecutionContext executionContext) throws ValidationException {
+        final Pending pending = executionContext.get(PENDING_TYPED_KEY);
+        if (pending == null) {
+            return;
+        }
+        executionContext.remove(PENDING_TYPED_KEY);
+        pending.close();
+
+        while (!pending.evaluations.isEmpty()) {
+            report(pending, executionContext);
+        }
+    }
+
+    /**
+     * Report the completed evaluations at the head of the pending queue, so as the queue does not grow with
+     * the size of the document.
+     */
+    private void reportCompleted(final Pending pending, final ExecutionContext executionContext) {
+        while (!pending.evaluations.isEmpty() && pending.evaluations.peek().future.isDone()) {
+            report(pending, executionContext);
+        }
+    }
+
+    private void report(final Pending pending, final ExecutionContext executionContext) {
+        final Evaluation evaluation = pending.evaluations.poll();
+        final RuleEvalResult ruleEvalResult;
+        try {
+            ruleEvalResult = evaluation.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(pending);
+            throw new SmooksException("Interrupted while waiting for asynchronous validation rule evaluations.", e);
+        } catch (ExecutionException e) {
+            cancel(pending);
+            throw new SmooksException("Asynchronous evaluation of rule '" + evaluation.validator.getCompositRuleName() + "' failed.", e.getCause());
+        }
+
+        try {
+            evaluation.validator.report(ruleEvalResult, evaluation.failFragmentPath, evaluation.beanSnapshot, executionContext);
+        } catch (ValidationException e) {
+            cancel(pending);
+            throw e;
+        }
+    }
+
+    private void cancel(final Pending pending) {
+        pending.close();
+        for (Evaluation evaluation : pending.evaluations) {
+            evaluation.future.cancel(false);
+        }
+        pending.evaluations.clear();
+    }
+
+    @Override
+    public void onPreFilter(ExecutionContext executionContext) {
+    }
+
+    @Override
+    public void onPostFilter(ExecutionContext executionContext) {
+        if (executionContext.getTerminationError() != null) {
+            // Filtering failed.  Nothing to report the results to...
+            Pending pending = executionContext.get(PENDING_TYPED_KEY);
+            if (pending != null) {
+                executionContext.remove(PENDING_TYPED_KEY);
+                cancel(pending);
+            }
+        } else {
+            join(executionContext);
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        threadPoolExecutor.shutdownNow();
+    }
+
+    /**
+     * The pending evaluations of a filter operation.  Watches the bean context, so as the bean snapshot is only
+     * taken again after it changes.
+     */
+    private static final class Pending implements BeanContextLifecycleObserver {
+        private final Queue<Evaluation> evaluations = new ArrayDeque<>();
+        private final BeanContext beanContext;
+        private final ExecutionContext detachedExecutionContext;
+        private Map<String, Object> beanSnapshot;
+        private volatile boolean fatal;
+
+        private Pending(final ExecutionContext executionContext) {
+            beanContext = executionContext.getBeanContext();
+            detachedExecutionContext = new DetachedExecutionContext(executionContext);
+            beanContext.addObserver(this);
+        }
+
+        private Map<String, Object> getBeanSnapshot() {
+            if (beanSnapshot == null) {
+                // Never modified, as failures copy it again (see Validator.report)...
+                beanSnapshot = new HashMap<>(beanContext.getBeanMap());
+            }
+            return beanSnapshot;
+        }
+
+        @Override
+        public void onBeanLifecycleEvent(final BeanContextLifecycleEvent event) {
+            final BeanLifecycle lifecycle = event.getLifecycle();
+            if (lifecycle == BeanLifecycle.ADD || lifecycle == BeanLifecycle.CHANGE || lifecycle == BeanLifecycle.REMOVE) {
+                beanSnapshot = null;
+            }
+        }
+
+        private void close() {
+            beanContext.removeObserver(this);
+        }
+    }
+
+    private static final class Evaluation {
+        private final Validator validator;
+        private final String failFragmentPath;
+        private final Map<String, Object> beanSnapshot;
+        private final Future<RuleEvalResult> future;
+
+        private Evaluation(Validator validator, String failFragmentPath, Map<String, Object> beanSnapshot, Future<RuleEvalResult> future) {
+            this.validator = validator;
+            this.failFragmentPath = failFragmentPath;
+            this.beanSnapshot = beanSnapshot;
+            this.future = future;
+        }
+    }
+}
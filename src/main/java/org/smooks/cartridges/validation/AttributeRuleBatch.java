@@ -0,0 +1,123 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ExecutionContext;
+import org.w3c.dom.Element;
+
+import java.util.List;
+
+/**
+ * Batch of the {@link Validator Validators} on the attributes of an element, evaluated in one pass at the start of
+ * the element.
+ * <p/>
+ * Smooks only visits an attribute rule if the element has the attribute, so as there is no fixed batch leader.
+ * Instead, the first validator (in configuration order) whose attribute is present on the element evaluates the
+ * whole batch, and the other validators do nothing.  Co-located validators on the same attribute are still evaluated
+ * through their {@link ValidatorGroup}.
+ */
+final class AttributeRuleBatch {
+
+    private final Validator[] validators;
+    private final String[] attributes;
+
+    AttributeRuleBatch(List<Validator> validators) {
+        this.validators = validators.toArray(new Validator[0]);
+        this.attributes = new String[this.validators.length];
+        for (int i = 0; i < this.validators.length; i++) {
+            attributes[i] = this.validators[i].getTargetAttribute();
+        }
+    }
+
+    /**
+     * Get the element selector of an attribute selector e.g. "order-item" for "order-item/@price".
+     *
+     * @param attributeSelector The attribute selector.
+     * @return The element selector.
+     */
+    static String getElementSelector(String attributeSelector) {
+        final int attributeIndex = attributeSelector.lastIndexOf("/@");
+        return (attributeIndex != -1 ? attributeSelector.substring(0, attributeIndex) : attributeSelector);
+    }
+
+    /**
+     * Validate the attributes of an element, if the visiting validator is the first in the batch whose attribute is
+     * present on the element.
+     *
+     * @param visitor          The visiting validator.
+     * @param element          The element.
+     * @param executionContext The {@link ExecutionContext}.
+     */
+    void validate(final Validator visitor, final Element element, final ExecutionContext executionContext) {
+        int first = 0;
+        while (first < validators.length && !element.hasAttribute(attributes[first])) {
+            first++;
+        }
+        if (first == validators.length || validators[first] != visitor) {
+            return;
+        }
+
+        for (int i = first; i < validators.length; i++) {
+            if (i > first && !element.hasAttribute(attributes[i])) {
+                continue;
+            }
+
+            final Validator validator = validators[i];
+            final ValidatorGroup validatorGroup = validator.getGroup();
+            if (validatorGroup == null) {
+                validator.validate(element, executionContext);
+            } else if (validatorGroup.isLeader(validator)) {
+                validatorGroup.validate(element, executionContext);
+            }
+        }
+    }
+
+    /**
+     * Get the validators in the batch.
+     *
+     * @return The validators, in configuration order.
+     */
+    Validator[] getValidators() {
+        return validators.clone();
+    }
+}
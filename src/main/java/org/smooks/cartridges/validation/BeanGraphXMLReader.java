@@ -0,0 +1,332 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.resource.reader.JavaXMLReader;
+import org.smooks.io.payload.FilterSource;
+import org.smooks.io.payload.JavaSource;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams a Java object graph to Smooks as SAX events, so as validation rules can be applied directly to a bean
+ * graph or {@link Map} tree without serializing it to XML.
+ * <p/>
+ * The graph is mapped to elements as follows:
+ * <ul>
+ *     <li>The root object is an element named by its {@link JavaSource} bean name.</li>
+ *     <li>A bean property or {@link Map} entry is a child element named by the property name or entry key.</li>
+ *     <li>Each item of a {@link java.util.Collection} or array property is a repeated child element named by the
+ *     property name.</li>
+ *     <li>A {@link Map} entry whose key starts with '@', and whose value is a simple value, is an attribute.</li>
+ *     <li>Strings, numbers, enums and other JDK value types (e.g. dates) are text.</li>
+ *     <li>Null values, and references back to an object on the current path, are skipped.</li>
+ * </ul>
+ * So an {@code Order} bean with a {@code header.customer} property and an {@code items} list of beans with a
+ * {@code quantity} property is validated by the selectors {@code order/header/customer} and
+ * {@code order/items/quantity}, and failures are reported with those paths.
+ * <pre>
+ * smooks.setReaderConfig(new GenericReaderConfigurator(BeanGraphXMLReader.class));
+ * smooks.filterSource(new JavaSource("order", order), validationResult);
+ * </pre>
+ */
+public class BeanGraphXMLReader implements JavaXMLReader {
+
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+    private static final ClassValue<Property[]> PROPERTIES = new ClassValue<Property[]>() {
+        @Override
+        protected Property[] computeValue(final Class<?> type) {
+            try {
+                final List<Property> properties = new ArrayList<>();
+                for (PropertyDescriptor descriptor : Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors()) {
+                    if (descriptor.getReadMethod() != null) {
+                        properties.add(new Property(descriptor.getName(), descriptor.getReadMethod()));
+                    }
+                }
+                return properties.toArray(new Property[0]);
+            } catch (IntrospectionException e) {
+                throw new SmooksConfigException("Failed to introspect bean class '" + type.getName() + "'.", e);
+            }
+        }
+    };
+
+    private ContentHandler contentHandler;
+    private ErrorHandler errorHandler;
+    private EntityResolver entityResolver;
+    private DTDHandler dtdHandler;
+    private ExecutionContext executionContext;
+    private List<Object> sourceObjects;
+    private final Set<Object> path = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    @Override
+    public void setSourceObjects(final List<Object> sourceObjects) throws SmooksConfigException {
+        this.sourceObjects = sourceObjects;
+    }
+
+    @Override
+    public void setExecutionContext(final ExecutionContext executionContext) {
+        this.executionContext = executionContext;
+    }
+
+    @Override
+    public void parse(final InputSource input) throws SAXException {
+        if (sourceObjects == null) {
+            throw new SmooksException("BeanGraphXMLReader requires a JavaSource.");
+        }
+
+        contentHandler.startDocument();
+        try {
+            if (sourceObjects.size() == 1) {
+                writeElement(getRootName(sourceObjects.get(0)), sourceObjects.get(0));
+            } else {
+                contentHandler.startElement("", "beans", "beans", NO_ATTRIBUTES);
+                for (Object sourceObject : sourceObjects) {
+                    writeElement(getRootName(sourceObject), sourceObject);
+                }
+                contentHandler.endElement("", "beans", "beans");
+            }
+        } finally {
+            path.clear();
+        }
+        contentHandler.endDocument();
+    }
+
+    @Override
+    public void parse(final String systemId) throws SAXException {
+        parse(new InputSource(systemId));
+    }
+
+    private String getRootName(final Object sourceObject) {
+        final javax.xml.transform.Source source = (executionContext != null ? FilterSource.getSource(executionContext) : null);
+        if (source instanceof JavaSource) {
+            for (Map.Entry<String, Object> bean : ((JavaSource) source).getBeans().entrySet()) {
+                if (bean.getValue() == sourceObject) {
+                    return bean.getKey();
+                }
+            }
+        }
+        return Introspector.decapitalize(sourceObject.getClass().getSimpleName());
+    }
+
+    private void write(final String name, final Object value) throws SAXException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Iterable && !(value instanceof Map)) {
+            for (Object item : (Iterable<?>) value) {
+                write(name, item);
+            }
+        } else if (value.getClass().isArray()) {
+            final int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                write(name, Array.get(value, i));
+            }
+        } else {
+            writeElement(name, value);
+        }
+    }
+
+    private void writeElement(final String name, final Object value) throws SAXException {
+        if (isSimple(value)) {
+            contentHandler.startElement("", name, name, NO_ATTRIBUTES);
+            final char[] text = value.toString().toCharArray();
+            contentHandler.characters(text, 0, text.length);
+            contentHandler.endElement("", name, name);
+            return;
+        }
+        if (!path.add(value)) {
+            // A reference back to an object on the current path...
+            return;
+        }
+
+        if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            contentHandler.startElement("", name, name, getAttributes(map));
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                final String key = String.valueOf(entry.getKey());
+                if (!isAttribute(key, entry.getValue())) {
+                    write(key, entry.getValue());
+                }
+            }
+        } else {
+            contentHandler.startElement("", name, name, NO_ATTRIBUTES);
+            for (Property property : PROPERTIES.get(value.getClass())) {
+                write(property.name, property.get(value));
+            }
+        }
+        contentHandler.endElement("", name, name);
+        path.remove(value);
+    }
+
+    private static Attributes getAttributes(final Map<?, ?> map) {
+        AttributesImpl attributes = null;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            final String key = String.valueOf(entry.getKey());
+            if (isAttribute(key, entry.getValue())) {
+                if (attributes == null) {
+                    attributes = new AttributesImpl();
+                }
+                final String attributeName = key.substring(1);
+                attributes.addAttribute("", attributeName, attributeName, "CDATA", entry.getValue().toString());
+            }
+        }
+        return (attributes != null ? attributes : NO_ATTRIBUTES);
+    }
+
+    private static boolean isAttribute(final String key, final Object value) {
+        return key.length() > 1 && key.charAt(0) == '@' && value != null && isSimple(value);
+    }
+
+    private static boolean isSimple(final Object value) {
+        if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+            return true;
+        }
+        if (value instanceof Map || value instanceof Iterable || value.getClass().isArray()) {
+            return false;
+        }
+        final String className = value.getClass().getName();
+        return className.startsWith("java.") || className.startsWith("javax.");
+    }
+
+    @Override
+    public boolean getFeature(final String name) {
+        return false;
+    }
+
+    @Override
+    public void setFeature(final String name, final boolean value) {
+    }
+
+    @Override
+    public Object getProperty(final String name) {
+        return null;
+    }
+
+    @Override
+    public void setProperty(final String name, final Object value) {
+    }
+
+    @Override
+    public void setEntityResolver(final EntityResolver entityResolver) {
+        this.entityResolver = entityResolver;
+    }
+
+    @Override
+    public EntityResolver getEntityResolver() {
+        return entityResolver;
+    }
+
+    @Override
+    public void setDTDHandler(final DTDHandler dtdHandler) {
+        this.dtdHandler = dtdHandler;
+    }
+
+    @Override
+    public DTDHandler getDTDHandler() {
+        return dtdHandler;
+    }
+
+    @Override
+    public void setContentHandler(final ContentHandler contentHandler) {
+        this.contentHandler = contentHandler;
+    }
+
+    @Override
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
+
+    @Override
+    public void setErrorHandler(final ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    private static final class Property {
+        private final String name;
+        private final Method readMethod;
+
+        private Property(final String name, final Method readMethod) {
+            this.name = name;
+            this.readMethod = readMethod;
+            if (!Modifier.isPublic(readMethod.getDeclaringClass().getModifiers())) {
+                readMethod.setAccessible(true);
+            }
+        }
+
+        private Object get(final Object bean) {
+            try {
+                return readMethod.invoke(bean);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new SmooksException("Failed to read property '" + name + "' of bean class '" + bean.getClass().getName() + "'.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.SmooksException;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Dotted bean path e.g. "order.header.customerNumber".
+ * <p/>
+ * The first path element is the bean ID.  The remaining elements are properties, resolved as {@link Map}
+ * entries or as bean getter properties.
+ */
+final class BeanPath {
+
+    private final String path;
+    private final String beanId;
+    private final PropertyAccessor[] properties;
+
+    BeanPath(String path) {
+        String[] elements = path.split("\\.");
+        this.path = path;
+        this.beanId = elements[0];
+        this.properties = new PropertyAccessor[elements.length - 1];
+        for (int i = 1; i < elements.length; i++) {
+            properties[i - 1] = new PropertyAccessor(elements[i]);
+        }
+    }
+
+    /**
+     * Get the bean ID i.e. the first path element.
+     *
+     * @return The bean ID.
+     */
+    String getBeanId() {
+        return beanId;
+    }
+
+    /**
+     * Resolve the path properties on a bean.
+     *
+     * @param bean The bean identified by the {@link #getBeanId() bean ID}.  May be null.
+     * @return The property value, or null if the bean, or any property along the path, is null.
+     */
+    Object resolve(Object bean) {
+        Object value = bean;
+        for (int i = 0; value != null && i < properties.length; i++) {
+            value = properties[i].get(value);
+        }
+
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    /**
+     * Resolves a named property on a {@link Map} or bean.  Caches the getter for the last bean type seen.
+     */
+    private static final class PropertyAccessor {
+        private final String name;
+        private volatile CachedGetter cachedGetter;
+
+        private PropertyAccessor(String name) {
+            this.name = name;
+        }
+
+        private Object get(Object bean) {
+            if (bean instanceof Map) {
+                return ((Map<?, ?>) bean).get(name);
+            }
+
+            CachedGetter getter = cachedGetter;
+            if (getter == null || getter.beanClass != bean.getClass()) {
+                getter = new CachedGetter(bean.getClass(), findGetter(bean.getClass()));
+                cachedGetter = getter;
+            }
+            if (getter.method == null) {
+                return null;
+            }
+
+            try {
+                return getter.method.invoke(bean);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new SmooksException("Failed to get property '" + name + "' from bean of type '" + bean.getClass().getName() + "'.", e);
+            }
+        }
+
+        private Method findGetter(Class<?> beanClass) {
+            try {
+                for (PropertyDescriptor propertyDescriptor : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+                    if (propertyDescriptor.getName().equals(name)) {
+                        return propertyDescriptor.getReadMethod();
+                    }
+                }
+            } catch (IntrospectionException e) {
+                throw new SmooksException("Failed to introspect bean of type '" + beanClass.getName() + "'.", e);
+            }
+
+            return null;
+        }
+    }
+
+    private static final class CachedGetter {
+        private final Class<?> beanClass;
+        private final Method method;
+
+        private CachedGetter(Class<?> beanClass, Method method) {
+            this.beanClass = beanClass;
+            this.method = method;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.SmooksException;
+import org.smooks.resource.URIResourceLocator;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Read-only, memory mapped code list index.
+ * <p/>
+ * The index is a sorted array of distinct UTF-8 encoded values, searched with a binary search.  It is built once
+ * from a code list source and stored in the index directory under a name derived from a hash of the source content,
+ * so as it is reused by later runs for as long as the source content doesn't change.  Opened indexes are shared
+ * by all {@link CodeListProvider CodeListProviders} in the JVM through {@link SharedRuleBases}, and are closed
+ * (left to be unmapped) once no provider references them.
+ * <p/>
+ * Index layout: magic (int), value count (int), value end offsets (int per value, relative to the start of the
+ * value data), value data.  An existing index is only used if its layout is consistent with its size.  Otherwise
+ * it is rebuilt.
+ */
+final class CodeList {
+
+    private static final int MAGIC = 0x53434C31;
+    private static final int HEADER_SIZE = 8;
+    private static final Set<PosixFilePermission> GROUP_OR_OTHERS_WRITE = EnumSet.of(PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE);
+
+    private final Path indexFile;
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int dataOffset;
+
+    private CodeList(Path indexFile, ByteBuffer buffer) throws IOException {
+        this.indexFile = indexFile;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Invalid code list index '" + indexFile + "'.  Bad magic number.");
+        }
+        this.count = buffer.getInt(4);
+        if (count < 0 || HEADER_SIZE + count * 4L > buffer.capacity()) {
+            throw new IOException("Invalid code list index '" + indexFile + "'.  Value count '" + count + "' exceeds the index size.");
+        }
+        this.dataOffset = HEADER_SIZE + count * 4;
+        // The binary search trusts the offsets, so as they must all be in bounds...
+        int previousEnd = 0;
+        for (int i = 0; i < count; i++) {
+            final int end = buffer.getInt(HEADER_SIZE + i * 4);
+            if (end < previousEnd) {
+                throw new IOException("Invalid code list index '" + indexFile + "'.  Value offsets are not ascending.");
+            }
+            previousEnd = end;
+        }
+        if (dataOffset + (long) previousEnd != buffer.capacity()) {
+            throw new IOException("Invalid code list index '" + indexFile + "'.  Value data size does not match the index size.");
+        }
+    }
+
+    /**
+     * Get the index for a code list source, building the index if it does not already exist.
+     *
+     * @param owner    The owner of the reference to the shared index (see {@link SharedRuleBases}).
+     * @param src      The code list source.
+     * @param column   The CSV column holding the values, or -1 if each line is a value.
+     * @param indexDir The index directory.
+     * @return The code list index.
+     */
+    static CodeList get(Object owner, String src, int column, Path indexDir) {
+        final Hasher hasher = new Hasher().update(Integer.toString(column));
+        try (InputStream inputStream = new URIResourceLocator().getResource(src)) {
+            final byte[] bytes = new byte[8192];
+            for (int read = inputStream.read(bytes); read != -1; read = inputStream.read(bytes)) {
+                for (int i = 0; i < read; i++) {
+                    hasher.update((char) (bytes[i] & 0xFF));
+                }
+            }
+        } catch (IOException e) {
+            throw new SmooksException("Failed to read code list '" + src + "'.", e);
+        }
+
+        final Path indexFile = indexDir.resolve(String.format("%016x%016x.idx", hasher.getHigh(), hasher.getLow()));
+
+        return SharedRuleBases.acquire(owner, "codeListIndex", indexFile.toString(), hasher.getHigh(), hasher.getLow(), () -> {
+            try {
+                if (Files.exists(indexFile)) {
+                    try {
+                        return open(indexFile);
+                    } catch (IOException e) {
+                        // Rebuilt below...
+                    }
+                }
+                build(src, column, indexFile);
+                return open(indexFile);
+            } catch (IOException e) {
+                throw new SmooksException("Failed to build code list index '" + indexFile + "' for code list '" + src + "'.", e);
+            }
+        });
+    }
+
+    /**
+     * Get the default index directory, "${java.io.tmpdir}/smooks-code-lists-${user.name}".
+     * <p/>
+     * The temp directory is usually shared by all users, so as the directory is created readable and writable by
+     * its owner only, and an existing directory is only used if owned by the current user and not writable by
+     * others.
+     *
+     * @return The index directory.
+     */
+    static Path getDefaultIndexDir() {
+        final Path indexDir = Paths.get(System.getProperty("java.io.tmpdir"), "smooks-code-lists-" + System.getProperty("user.name"));
+        try {
+            if (Files.getFileAttributeView(indexDir.getParent(), PosixFileAttributeView.class) == null) {
+                return Files.createDirectories(indexDir);
+            }
+            if (!Files.isDirectory(indexDir, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectory(indexDir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            }
+
+            final UserPrincipal user = indexDir.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+            if (!Files.getOwner(indexDir, LinkOption.NOFOLLOW_LINKS).equals(user)) {
+                throw new SmooksException("Code list index directory '" + indexDir + "' is not owned by the current user.  Set the '" + CodeListProvider.INDEX_DIR + "' system property to a private directory.");
+            }
+            final Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(indexDir, LinkOption.NOFOLLOW_LINKS);
+            if (permissions.removeAll(GROUP_OR_OTHERS_WRITE)) {
+                throw new SmooksException("Code list index directory '" + indexDir + "' is writable by other users.  Set the '" + CodeListProvider.INDEX_DIR + "' system property to a private directory.");
+            }
+            return indexDir;
+        } catch (IOException e) {
+            throw new SmooksException("Failed to create code list index directory '" + indexDir + "'.", e);
+        }
+    }
+
+    private static CodeList open(Path indexFile) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (fileChannel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Code list index '" + indexFile + "' exceeds 2GB.");
+            }
+            return new CodeList(indexFile, fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()));
+        }
+    }
+
+    private static void build(String src, int column, Path indexFile) throws IOException {
+        final List<byte[]> values = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new URIResourceLocator().getResource(src), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final String value = (column < 0 ? line.trim() : getColumn(line, column));
+                if (value != null && !value.isEmpty()) {
+                    values.add(value.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        values.sort(CodeList::compare);
+        // Drop duplicates...
+        int distinct = 0;
+        for (int i = 0; i < values.size(); i++) {
+            if (distinct == 0 || compare(values.get(distinct - 1), values.get(i)) != 0) {
+                values.set(distinct++, values.get(i));
+            }
+        }
+        values.subList(distinct, values.size()).clear();
+
+        long dataSize = 0;
+        for (byte[] value : values) {
+            dataSize += value.length;
+        }
+        if (HEADER_SIZE + values.size() * 4L + dataSize > Integer.MAX_VALUE) {
+            throw new IOException("Code list '" + src + "' is too large.  Index would exceed 2GB.");
+        }
+
+        Files.createDirectories(indexFile.getParent());
+        // Write to a temp file and move, so as concurrent builders never see a partial index...
+        final Path tempFile = Files.createTempFile(indexFile.getParent(), "code-list-", ".tmp");
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 64 * 1024))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(values.size());
+                int end = 0;
+                for (byte[] value : values) {
+                    end += value.length;
+                    outputStream.writeInt(end);
+                }
+                for (byte[] value : values) {
+                    outputStream.write(value);
+                }
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static String getColumn(String line, int column) {
+        int start = 0;
+        for (int i = 0; i < column; i++) {
+            start = line.indexOf(',', start) + 1;
+            if (start == 0) {
+                return null;
+            }
+        }
+
+        int end = line.indexOf(',', start);
+        String value = line.substring(start, (end != -1 ? end : line.length())).trim();
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            value = value.substring(1, value.length() - 1);
+        }
+
+        return value;
+    }
+
+    private static int compare(byte[] value1, byte[] value2) {
+        final int length = Math.min(value1.length, value2.length);
+        for (int i = 0; i < length; i++) {
+            final int comparison = (value1[i] & 0xFF) - (value2[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+
+        return value1.length - value2.length;
+    }
+
+    /**
+     * Is the value in the code list.
+     *
+     * @param value The value.
+     * @return True if the value is in the code list, otherwise false.
+     */
+    boolean contains(String value) {
+        final byte[] key = value.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int comparison = compare(mid, key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int compare(int index, byte[] key) {
+        // Absolute gets only, so as the buffer can be shared by threads...
+        final int start = dataOffset + (index == 0 ? 0 : buffer.getInt(HEADER_SIZE + (index - 1) * 4));
+        final int end = dataOffset + buffer.getInt(HEADER_SIZE + index * 4);
+        final int length = Math.min(end - start, key.length);
+        for (int i = 0; i < length; i++) {
+            final int comparison = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+
+        return (end - start) - key.length;
+    }
+
+    /**
+     * Get the number of distinct values in the code list.
+     *
+     * @return The value count.
+     */
+    int size() {
+        return count;
+    }
+
+    Path getIndexFile() {
+        return indexFile;
+    }
+}
@@ -0,0 +1,198 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+import org.smooks.cartridges.rules.BasicRuleEvalResult;
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.cartridges.rules.RuleProvider;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Code list lookup {@link RuleProvider}.
+ * <p/>
+ * Rules pass if the selected value is in a code list e.g. a list of valid product IDs.  The rule source is a
+ * properties file mapping rule names to code list sources:
+ * <pre>
+ * productId=codes/products.txt
+ * customerId=codes/customers.csv#2
+ * </pre>
+ * A code list source is a UTF-8 text file with one value per line, or, with a "#column" suffix, a CSV file with the
+ * values in the (zero based) column.  Values are trimmed.  Empty lines and lines starting with "#" are ignored.
+ * Relative sources are resolved against the rule source's folder.
+ * <p/>
+ * Each code list is compiled once to a sorted index file in the directory named by the
+ * {@link #INDEX_DIR "smooks.validation.codeListIndexDir"} system property (default
+ * "${java.io.tmpdir}/smooks-code-lists-${user.name}", which is only used if private to the current user), and is
+ * memory mapped and shared read-only by all providers in the JVM, so the code list values are not held on the
+ * heap.  An index is released once no provider uses it.
+ * <p/>
+ * Example configuration:
+ * <pre>{@code
+ * <rules:ruleBases>
+ *    <rules:ruleBase name="codes" src="codes/code-lists.properties" provider="org.smooks.cartridges.validation.CodeListProvider" />
+ * </rules:ruleBases>
+ *
+ * <validation:rule executeOn="order-item/product" name="codes.productId" onFail="ERROR" />
+ * }</pre>
+ */
+public class CodeListProvider implements RuleProvider {
+
+    /**
+     * Index directory system property key.
+     */
+    public static final String INDEX_DIR = "smooks.validation.codeListIndexDir";
+
+    private String name;
+    private String src;
+    private final Map<String, CodeList> codeLists = new LinkedHashMap<>();
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getSrc() {
+        return src;
+    }
+
+    @Override
+    public void setSrc(String src) {
+        AssertArgument.isNotNullAndNotEmpty(src, "src");
+
+        final String indexDirProperty = System.getProperty(INDEX_DIR);
+        final Path indexDir = (indexDirProperty != null ? Paths.get(indexDirProperty) : CodeList.getDefaultIndexDir());
+        final int folderEnd = src.lastIndexOf('/');
+        final String folder = (folderEnd != -1 ? src.substring(0, folderEnd + 1) : "");
+
+        codeLists.clear();
+        final Map<String, String> rules = SharedRuleBases.acquire(this, "codeList", src, content -> Collections.unmodifiableMap(CompiledRegexProvider.loadRules(content)));
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            String codeListSrc = rule.getValue().trim();
+            int column = -1;
+            final int columnIndex = codeListSrc.lastIndexOf('#');
+            if (columnIndex != -1) {
+                try {
+                    column = Integer.parseInt(codeListSrc.substring(columnIndex + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new SmooksConfigException("Invalid column in code list source '" + codeListSrc + "' for rule '" + rule.getKey() + "'.  Must be an Integer.");
+                }
+                codeListSrc = codeListSrc.substring(0, columnIndex).trim();
+            }
+            if (!codeListSrc.startsWith("/") && codeListSrc.indexOf(':') == -1) {
+                codeListSrc = folder + codeListSrc;
+            }
+
+            codeLists.put(rule.getKey(), CodeList.get(this, codeListSrc, column, indexDir));
+        }
+
+        this.src = src;
+    }
+
+    @Override
+    public RuleEvalResult evaluate(String ruleName, CharSequence selectedData, ExecutionContext context) throws SmooksException {
+        AssertArgument.isNotNullAndNotEmpty(ruleName, "ruleName");
+        AssertArgument.isNotNull(selectedData, "selectedData");
+
+        final CodeList codeList = codeLists.get(ruleName);
+        if (codeList == null) {
+            throw new SmooksException("Unknown rule name '" + ruleName + "' on Code List RuleProvider '" + name + "'.");
+        }
+
+        final String text = selectedData.toString();
+        return new CodeListRuleEvalResult(codeList.contains(text.trim()), ruleName, name, text);
+    }
+
+    /**
+     * Get the code list index for a rule.
+     *
+     * @param ruleName The rule name.
+     * @return The code list, or null if the rule is not defined.
+     */
+    CodeList getCodeList(String ruleName) {
+        return codeLists.get(ruleName);
+    }
+
+    /**
+     * Code list lookup {@link RuleEvalResult}.
+     */
+    public static class CodeListRuleEvalResult extends BasicRuleEvalResult {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+
+        public CodeListRuleEvalResult(boolean matched, String ruleName, String ruleProviderName, String text) {
+            super(matched, ruleName, ruleProviderName);
+            this.text = text;
+        }
+
+        /**
+         * Get the looked up text.
+         *
+         * @return The text.
+         */
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "Code list rule '" + getRuleProviderName() + "." + getRuleName() + "' " + (matched() ? "matched" : "did not match") + " text '" + text + "'.";
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.cartridges.rules.RuleProvider;
+import org.smooks.cartridges.rules.regex.RegexProvider;
+import org.smooks.cartridges.rules.regex.RegexRuleEvalResult;
+import org.smooks.resource.URIResourceLocator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Regex {@link RuleProvider} built from already loaded rule patterns.
+ * <p/>
+ * Evaluates exactly as the {@link RegexProvider}, but without loading the rule source file.
+ */
+final class CompiledRegexProvider implements RuleProvider {
+
+    private String name;
+    private String src;
+    private final Map<String, Pattern> rules;
+
+    /**
+     * Public constructor.
+     *
+     * @param name  The provider name.
+     * @param src   The rule source from which the patterns were originally loaded.
+     * @param rules The rule patterns, keyed by rule name.
+     */
+    CompiledRegexProvider(String name, String src, Map<String, String> rules) {
+        this.name = name;
+        this.src = src;
+        this.rules = new LinkedHashMap<>();
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            this.rules.put(rule.getKey(), Pattern.compile(rule.getValue()));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getSrc() {
+        return src;
+    }
+
+    @Override
+    public void setSrc(String src) {
+        this.src = src;
+    }
+
+    @Override
+    public RuleEvalResult evaluate(String ruleName, CharSequence selectedData, ExecutionContext context) throws SmooksException {
+        AssertArgument.isNotNullAndNotEmpty(ruleName, "ruleName");
+        AssertArgument.isNotNull(selectedData, "selectedData");
+
+        Pattern pattern = rules.get(ruleName);
+        if (pattern == null) {
+            throw new SmooksException("Unknown rule name '" + ruleName + "' on Regex RuleProvider '" + name + "'.");
+        }
+
+        return new RegexRuleEvalResult(pattern.matcher(selectedData).matches(), ruleName, name, pattern, selectedData.toString());
+    }
+
+    /**
+     * Get the rule patterns.
+     *
+     * @return The rule patterns, keyed by rule name.
+     */
+    Map<String, Pattern> getRules() {
+        return Collections.unmodifiableMap(rules);
+    }
+
+    /**
+     * Load the rule patterns from a {@link RegexProvider} rule source.
+     *
+     * @param src The rule source.
+     * @return The rule patterns, keyed by rule name.
+     */
+    static Map<String, String> loadRules(String src) {
+        Properties properties = new Properties();
+
+        try (InputStream ruleStream = new URIResourceLocator().getResource(src)) {
+            properties.load(ruleStream);
+        } catch (IOException e) {
+            throw new SmooksException("Failed to read rule file '" + src + "'.", e);
+        }
+
+        return toRules(properties);
+    }
+
+    /**
+     * Load the rule patterns from already read {@link RegexProvider} rule source content.
+     *
+     * @param content The rule source content.
+     * @return The rule patterns, keyed by rule name.
+     */
+    static Map<String, String> loadRules(byte[] content) {
+        Properties properties = new Properties();
+
+        try {
+            properties.load(new ByteArrayInputStream(content));
+        } catch (IOException e) {
+            throw new SmooksException("Failed to read rule content.", e);
+        }
+
+        return toRules(properties);
+    }
+
+    private static Map<String, String> toRules(Properties properties) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (String ruleName : properties.stringPropertyNames()) {
+            rules.put(ruleName, properties.getProperty(ruleName));
+        }
+
+        return rules;
+    }
+}
@@ -0,0 +1,122 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.cartridges.rules.BasicRuleEvalResult;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * {@link OnFailResult} for constraints that are not evaluated by a rule provider, such as
+ * {@link AggregateRule aggregate} and {@link UniqueRule uniqueness} rules.
+ * <p/>
+ * The message is rendered for a {@link Locale} when it is requested, by the constraint that failed.
+ */
+final class ConstraintFailure implements OnFailResult {
+
+    private final String failFragmentPath;
+    private final Result ruleResult;
+    private final Function<Locale, String> message;
+
+    ConstraintFailure(String failFragmentPath, Result ruleResult, Function<Locale, String> message) {
+        this.failFragmentPath = failFragmentPath;
+        this.ruleResult = ruleResult;
+        this.message = message;
+    }
+
+    @Override
+    public String getFailFragmentPath() {
+        return failFragmentPath;
+    }
+
+    @Override
+    public RuleEvalResult getFailRuleResult() {
+        return ruleResult;
+    }
+
+    @Override
+    public String getMessage() {
+        return getMessage(Locale.getDefault());
+    }
+
+    @Override
+    public String getMessage(Locale locale) {
+        return message.apply(locale);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + failFragmentPath + "] " + ruleResult.toString();
+    }
+
+    /**
+     * Constraint {@link RuleEvalResult}.
+     */
+    static final class Result extends BasicRuleEvalResult {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+
+        Result(String ruleName, String ruleProviderName, String text) {
+            super(false, ruleName, ruleProviderName);
+            this.text = text;
+        }
+
+        /**
+         * Get the text on which the constraint failed e.g. the aggregate value, or the duplicate key.
+         *
+         * @return The text.
+         */
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "Constraint '" + getRuleProviderName() + "." + getRuleName() + "' failed on text '" + text + "'.";
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.cartridges.rules.BasicRuleEvalResult;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * {@link OnFailResult} read back by the {@link ValidationResultCodec}.
+ * <p/>
+ * Decoded results are detached from the bean context in which the failure occurred, so
+ * the message is the one pre-rendered when the result was encoded (if any).
+ */
+final class DecodedOnFailResult implements OnFailResult, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String failFragmentPath;
+    private final DecodedRuleEvalResult ruleResult;
+    private final String message;
+
+    DecodedOnFailResult(String failFragmentPath, DecodedRuleEvalResult ruleResult, String message) {
+        this.failFragmentPath = failFragmentPath;
+        this.ruleResult = ruleResult;
+        this.message = message;
+    }
+
+    @Override
+    public String getFailFragmentPath() {
+        return failFragmentPath;
+    }
+
+    @Override
+    public RuleEvalResult getFailRuleResult() {
+        return ruleResult;
+    }
+
+    @Override
+    public String getMessage() {
+        return getMessage(Locale.getDefault());
+    }
+
+    /**
+     * Get the pre-rendered message.
+     * <p/>
+     * The locale is ignored.  The message was rendered for the locale supplied to the
+     * {@link ValidationResultCodec} when the result was encoded.
+     */
+    @Override
+    public String getMessage(Locale locale) {
+        if (message == null) {
+            return toString();
+        }
+
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + failFragmentPath + "] " + ruleResult.toString();
+    }
+
+    /**
+     * {@link RuleEvalResult} read back by the {@link ValidationResultCodec}.
+     */
+    static final class DecodedRuleEvalResult extends BasicRuleEvalResult {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+
+        DecodedRuleEvalResult(String ruleName, String ruleProviderName, String text) {
+            super(false, ruleName, ruleProviderName);
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "DecodedRuleEvalResult, matched=false, providerName=" + getRuleProviderName() + ", ruleName=" + getRuleName() + ", text=" + text;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.TypedKey;
+import org.smooks.api.bean.context.BeanContext;
+import org.smooks.api.bean.lifecycle.BeanContextLifecycleEvent;
+import org.smooks.api.bean.lifecycle.BeanContextLifecycleObserver;
+import org.smooks.api.bean.repository.BeanId;
+import org.smooks.api.delivery.ContentDeliveryConfig;
+import org.smooks.api.delivery.ContentDeliveryRuntime;
+import org.smooks.api.delivery.ReaderPool;
+import org.smooks.api.delivery.event.ExecutionEventListener;
+import org.smooks.api.delivery.fragment.Fragment;
+import org.smooks.api.memento.Memento;
+import org.smooks.api.memento.MementoCaretaker;
+import org.smooks.api.profile.ProfileSet;
+import org.smooks.engine.memento.DefaultMementoCaretaker;
+import org.smooks.engine.resource.config.ParameterAccessor;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * {@link ExecutionContext} detached from a filter operation, for rule evaluations off the filtering thread.
+ * <p/>
+ * Only the thread-safe, configuration-time state of the filter operation is shared: the {@link ApplicationContext},
+ * target profiles and {@link ContentDeliveryConfig} (hence the global parameters).  The document source and content
+ * encoding are copied when the context is created.  Everything else (typed attributes, bean context, mementos,
+ * execution event listeners and termination error) is local to the detached context, and starts out empty.  One
+ * detached context is shared by all the asynchronous evaluations of a filter operation, which may run
+ * concurrently, so as its local state is thread-safe.
+ *
+ * @see AsyncRuleExecutor
+ */
+final class DetachedExecutionContext implements ExecutionContext {
+
+    private final ApplicationContext applicationContext;
+    private final ProfileSet targetProfiles;
+    private final DetachedContentDeliveryRuntime contentDeliveryRuntime;
+    private final Map<TypedKey<Object>, Object> attributes = Collections.synchronizedMap(new HashMap<>());
+    private final MementoCaretaker mementoCaretaker = new SynchronizedMementoCaretaker(new DefaultMementoCaretaker(this));
+    private volatile URI documentSource;
+    private volatile String contentEncoding;
+    private volatile Throwable terminationError;
+    private volatile BeanContext beanContext;
+
+    /**
+     * Create a detached context.  Must be called on the thread filtering with the supplied {@link ExecutionContext}.
+     *
+     * @param executionContext The filter operation's {@link ExecutionContext}.
+     */
+    DetachedExecutionContext(ExecutionContext executionContext) {
+        applicationContext = executionContext.getApplicationContext();
+        targetProfiles = executionContext.getTargetProfiles();
+        contentDeliveryRuntime = new DetachedContentDeliveryRuntime(executionContext.getContentDeliveryRuntime());
+        documentSource = executionContext.getDocumentSource();
+        contentEncoding = executionContext.getContentEncoding();
+        beanContext = new DetachedBeanContext(applicationContext);
+    }
+
+    @Override
+    public void setDocumentSource(URI uri) {
+        documentSource = uri;
+    }
+
+    @Override
+    public URI getDocumentSource() {
+        return documentSource;
+    }
+
+    @Override
+    public ApplicationContext getApplicationContext() {
+        return applicationContext;
+    }
+
+    @Override
+    public ProfileSet getTargetProfiles() {
+        return targetProfiles;
+    }
+
+    @Override
+    public ContentDeliveryRuntime getContentDeliveryRuntime() {
+        return contentDeliveryRuntime;
+    }
+
+    @Override
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    @Override
+    public void setTerminationError(Throwable terminationError) {
+        this.terminationError = terminationError;
+    }
+
+    @Override
+    public Throwable getTerminationError() {
+        return terminationError;
+    }
+
+    @Override
+    public String getConfigParameter(String name) {
+        return getConfigParameter(name, null);
+    }
+
+    @Override
+    public String getConfigParameter(String name, String defaultValue) {
+        return ParameterAccessor.getParameterValue(name, String.class, defaultValue, contentDeliveryRuntime.getContentDeliveryConfig());
+    }
+
+    @Override
+    public BeanContext getBeanContext() {
+        return beanContext;
+    }
+
+    @Override
+    public void setBeanContext(BeanContext beanContext) {
+        this.beanContext = beanContext;
+    }
+
+    @Override
+    public MementoCaretaker getMementoCaretaker() {
+        return mementoCaretaker;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> void put(TypedKey<T> key, T value) {
+        attributes.put((TypedKey<Object>) key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(TypedKey<T> key) {
+        return (T) attributes.get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getOrDefault(TypedKey<T> key, T defaultValue) {
+        return (T) attributes.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public Map<TypedKey<Object>, Object> getAll() {
+        synchronized (attributes) {
+            return Collections.unmodifiableMap(new HashMap<>(attributes));
+        }
+    }
+
+    @Override
+    public <T> void remove(TypedKey<T> key) {
+        attributes.remove(key);
+    }
+
+    /**
+     * Shares the immutable {@link ContentDeliveryConfig} and the thread-safe {@link ReaderPool}.  Execution event
+     * listeners are local.
+     */
+    private static final class DetachedContentDeliveryRuntime implements ContentDeliveryRuntime {
+        private final ContentDeliveryConfig contentDeliveryConfig;
+        private final ReaderPool readerPool;
+        private final List<ExecutionEventListener> executionEventListeners = new CopyOnWriteArrayList<>();
+
+        private DetachedContentDeliveryRuntime(ContentDeliveryRuntime contentDeliveryRuntime) {
+            contentDeliveryConfig = contentDeliveryRuntime.getContentDeliveryConfig();
+            readerPool = contentDeliveryRuntime.getReaderPool();
+        }
+
+        @Override
+        public ReaderPool getReaderPool() {
+            return readerPool;
+        }
+
+        @Override
+        public ContentDeliveryConfig getContentDeliveryConfig() {
+            return contentDeliveryConfig;
+        }
+
+        @Override
+        public void addExecutionEventListener(ExecutionEventListener executionEventListener) {
+            executionEventListeners.add(executionEventListener);
+        }
+
+        @Override
+        public void removeExecutionEventListener(ExecutionEventListener executionEventListener) {
+            executionEventListeners.remove(executionEventListener);
+        }
+
+        @Override
+        public List<ExecutionEventListener> getExecutionEventListeners() {
+            return executionEventListeners;
+        }
+    }
+
+    /**
+     * Bean context local to the detached context.  Bean ids are resolved through the {@link ApplicationContext}.
+     */
+    private static final class DetachedBeanContext implements BeanContext {
+        private final ApplicationContext applicationContext;
+        private final Map<String, Object> beans = Collections.synchronizedMap(new LinkedHashMap<>());
+        private final List<BeanContextLifecycleObserver> observers = new CopyOnWriteArrayList<>();
+
+        private DetachedBeanContext(ApplicationContext applicationContext) {
+            this.applicationContext = applicationContext;
+        }
+
+        @Override
+        public void addBean(BeanId beanId, Object bean) {
+            beans.put(beanId.getName(), bean);
+        }
+
+        @Override
+        public void addBean(BeanId beanId, Object bean, Fragment<?> source) {
+            addBean(beanId, bean);
+        }
+
+        @Override
+        public void addBean(String beanId, Object bean) {
+            beans.put(beanId, bean);
+        }
+
+        @Override
+        public void addBean(String beanId, Object bean, Fragment<?> source) {
+            addBean(beanId, bean);
+        }
+
+        @Override
+        public BeanId getBeanId(String beanId) {
+            return applicationContext.getBeanIdStore().getBeanId(beanId);
+        }
+
+        @Override
+        public boolean containsBean(BeanId beanId) {
+            return beans.containsKey(beanId.getName());
+        }
+
+        @Override
+        public Object getBean(BeanId beanId) {
+            return beans.get(beanId.getName());
+        }
+
+        @Override
+        public Object getBean(String beanId) {
+            return beans.get(beanId);
+        }
+
+        @Override
+        public <T> T getBean(Class<T> beanType) {
+            synchronized (beans) {
+                for (Object bean : beans.values()) {
+                    if (beanType.isInstance(bean)) {
+                        return beanType.cast(bean);
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void changeBean(BeanId beanId, Object bean, Fragment<?> source) {
+            addBean(beanId, bean);
+        }
+
+        @Override
+        public Object removeBean(BeanId beanId, Fragment<?> source) {
+            return beans.remove(beanId.getName());
+        }
+
+        @Override
+        public Object removeBean(String beanId, Fragment<?> source) {
+            return beans.remove(beanId);
+        }
+
+        @Override
+        public void clear() {
+            beans.clear();
+        }
+
+        @Override
+        public void addObserver(BeanContextLifecycleObserver observer) {
+            observers.add(observer);
+        }
+
+        @Override
+        public void notifyObservers(BeanContextLifecycleEvent event) {
+            for (BeanContextLifecycleObserver observer : observers) {
+                observer.onBeanLifecycleEvent(event);
+            }
+        }
+
+        @Override
+        public void removeObserver(BeanContextLifecycleObserver observer) {
+            observers.remove(observer);
+        }
+
+        @Override
+        public Map<String, Object> getBeanMap() {
+            return beans;
+        }
+
+        @Override
+        public void setBeanInContext(BeanId beanId, boolean inContext) {
+            // Beans are always in context...
+        }
+
+        @Override
+        public BeanContext newSubContext(ExecutionContext executionContext) {
+            return new DetachedBeanContext(applicationContext);
+        }
+    }
+
+    /**
+     * Serializes access to the memento caretaker, which is not thread-safe.
+     */
+    private static final class SynchronizedMementoCaretaker implements MementoCaretaker {
+        private final MementoCaretaker mementoCaretaker;
+
+        private SynchronizedMementoCaretaker(MementoCaretaker mementoCaretaker) {
+            this.mementoCaretaker = mementoCaretaker;
+        }
+
+        @Override
+        public synchronized void capture(Memento memento) {
+            mementoCaretaker.capture(memento);
+        }
+
+        @Override
+        public synchronized void restore(Memento memento) {
+            mementoCaretaker.restore(memento);
+        }
+
+        @Override
+        public synchronized boolean exists(Memento memento) {
+            return mementoCaretaker.exists(memento);
+        }
+
+        @Override
+        public synchronized void forget(Memento memento) {
+            mementoCaretaker.forget(memento);
+        }
+
+        @Override
+        public synchronized void forget(Fragment<?> fragment) {
+            mementoCaretaker.forget(fragment);
+        }
+
+        @Override
+        public synchronized <T extends Memento> T stash(T memento, Function<T, T> function) {
+            return mementoCaretaker.stash(memento, function);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.TypedKey;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Structured, rate-limited validation failure log.
+ * <p/>
+ * When enabled ({@link #ENABLED validation.failureLog.enabled}), every reported failure is offered to the
+ * {@link #LOGGER_NAME org.smooks.cartridges.validation.failures} logger, so failures can be logged in production
+ * without enabling debug logging.  {@link OnFail#OK} failures are logged at INFO, {@link OnFail#WARN} failures at
+ * WARN, and {@link OnFail#ERROR} and {@link OnFail#FATAL} failures at ERROR level.  A failure is logged as one line
+ * of key=value pairs, or as a JSON object (the value is only logged if {@link #VALUES validation.failureLog.values}
+ * is "true"):
+ * <pre>
+ * rule=product.productId onFail=ERROR path=/order/order-items/order-item/product value=222
+ * {"rule":"product.productId","onFail":"ERROR","path":"/order/order-items/order-item/product","value":"222"}
+ * </pre>
+ * The log is configured through global parameters:
+ * <ul>
+ *     <li><b>{@link #ENABLED validation.failureLog.enabled}</b>: "true" to log failures.  Default "false".</li>
+ *     <li><b>{@link #VALUES validation.failureLog.values}</b>: "true" to log the failing values.  Default "false",
+ *     since values may hold personal data.</li>
+ *     <li><b>{@link #FORMAT validation.failureLog.format}</b>: "keyValue" (default) or "json".</li>
+ *     <li><b>{@link #SAMPLE_RATE validation.failureLog.sampleRate}</b>: Log one in every N failures of each rule.
+ *     Default 1.</li>
+ *     <li><b>{@link #MAX_PER_SECOND validation.failureLog.maxPerSecond}</b>: Log at most N failures of each rule
+ *     per second.  Default 10.  The number of failures dropped by the limit is added to the next logged failure of
+ *     the rule as "suppressed".</li>
+ * </ul>
+ * Nothing is formatted unless the failure is logged.
+ */
+public final class FailureLog {
+
+    /**
+     * The failure logger name.
+     */
+    public static final String LOGGER_NAME = "org.smooks.cartridges.validation.failures";
+    /**
+     * Enabled global param key.  Default is "false".
+     */
+    public static final String ENABLED = "validation.failureLog.enabled";
+    /**
+     * Log values global param key.  If "true", the failing values are logged.  Default is "false".
+     */
+    public static final String VALUES = "validation.failureLog.values";
+    /**
+     * Log format global param key.  "keyValue" or "json".  Default is "keyValue".
+     */
+    public static final String FORMAT = "validation.failureLog.format";
+    /**
+     * Sample rate global param key.  Default is 1.
+     */
+    public static final String SAMPLE_RATE = "validation.failureLog.sampleRate";
+    /**
+     * Per-rule rate limit global param key.  Default is 10.
+     */
+    public static final String MAX_PER_SECOND = "validation.failureLog.maxPerSecond";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LOGGER_NAME);
+    private static final TypedKey<FailureLog> FAILURE_LOG_TYPED_KEY = TypedKey.of();
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final boolean json;
+    private final boolean values;
+    private final int sampleRate;
+    private final int maxPerSecond;
+    private final ConcurrentMap<String, RuleLimiter> limiters = new ConcurrentHashMap<>();
+
+    FailureLog(boolean enabled, boolean json, boolean values, int sampleRate, int maxPerSecond) {
+        this.enabled = enabled;
+        this.json = json;
+        this.values = values;
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    /**
+     * Log a failure.
+     *
+     * @param result           The failure.
+     * @param onFail           The failure level.
+     * @param executionContext The {@link ExecutionContext}, for access to the global parameters.
+     */
+    static void log(OnFailResult result, OnFail onFail, ExecutionContext executionContext) {
+        if (!isLevelEnabled(onFail)) {
+            return;
+        }
+
+        FailureLog failureLog = executionContext.get(FAILURE_LOG_TYPED_KEY);
+        if (failureLog == null) {
+            failureLog = getOrCreate(executionContext.getApplicationContext(), executionContext);
+            executionContext.put(FAILURE_LOG_TYPED_KEY, failureLog);
+        }
+        if (failureLog.enabled) {
+            failureLog.log(result, onFail);
+        }
+    }
+
+    /**
+     * Get the failure log for an {@link ApplicationContext}, creating it if it does not exist.
+     */
+    static FailureLog getOrCreate(ApplicationContext applicationContext, ExecutionContext executionContext) {
+        synchronized (FailureLog.class) {
+            FailureLog failureLog = applicationContext.getRegistry().lookup(FailureLog.class);
+            if (failureLog == null) {
+                String format = executionContext.getConfigParameter(FORMAT, "keyValue").trim();
+                if (!format.equals("keyValue") && !format.equals("json")) {
+                    throw new SmooksConfigException("Invalid config value '" + format + "' for global parameter '" + FORMAT + "'.  Must be 'keyValue' or 'json'.");
+                }
+                failureLog = new FailureLog(Boolean.parseBoolean(executionContext.getConfigParameter(ENABLED, "false").trim()), format.equals("json"),
+                        Boolean.parseBoolean(executionContext.getConfigParameter(VALUES, "false").trim()), getIntParameter(executionContext, SAMPLE_RATE, 1), getIntParameter(executionContext, MAX_PER_SECOND, 10));
+                applicationContext.getRegistry().registerObject(FailureLog.class, failureLog);
+            }
+
+            return failureLog;
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void log(OnFailResult result, OnFail onFail) {
+        final long suppressed = acquire(getRule(result), System.nanoTime());
+        if (suppressed < 0) {
+            return;
+        }
+
+        // Formatted by the logger, and only if the event is written...
+        final Entry entry = new Entry(result, onFail, suppressed);
+        switch (onFail) {
+            case OK:
+                LOGGER.info("{}", entry);
+                break;
+            case WARN:
+                LOGGER.warn("{}", entry);
+                break;
+            default:
+                LOGGER.error("{}", entry);
+                break;
+        }
+    }
+
+    /**
+     * Acquire a log permit for a failure of the named rule.
+     *
+     * @return The number of failures suppressed by the rate limit since the rule's last logged failure, or -1 if
+     * this failure is not to be logged.
+     */
+    long acquire(String rule, long nanoTime) {
+        return limiters.computeIfAbsent(rule, name -> new RuleLimiter()).acquire(sampleRate, maxPerSecond, nanoTime);
+    }
+
+    /**
+     * Format a failure log entry.
+     */
+    String format(OnFailResult result, OnFail onFail, long suppressed) {
+        final StringBuilder entry = new StringBuilder(128);
+        final String value = (values && result.getFailRuleResult() != null ? RuleEvalResults.getText(result.getFailRuleResult()) : null);
+        if (json) {
+            entry.append('{');
+            appendJson(entry, "rule", getRule(result), false);
+            appendJson(entry, "onFail", onFail.name(), true);
+            appendJson(entry, "path", result.getFailFragmentPath(), true);
+            appendJson(entry, "value", value, true);
+            if (suppressed > 0) {
+                entry.append(",\"suppressed\":").append(suppressed);
+            }
+            entry.append('}');
+        } else {
+            appendKeyValue(entry, "rule", getRule(result), false);
+            appendKeyValue(entry, "onFail", onFail.name(), true);
+            appendKeyValue(entry, "path", result.getFailFragmentPath(), true);
+            appendKeyValue(entry, "value", value, true);
+            if (suppressed > 0) {
+                entry.append(" suppressed=").append(suppressed);
+            }
+        }
+
+        return entry.toString();
+    }
+
+    private static String getRule(OnFailResult result) {
+        final RuleEvalResult ruleResult = result.getFailRuleResult();
+        return (ruleResult != null ? ruleResult.getRuleProviderName() + "." + ruleResult.getRuleName() : "");
+    }
+
+    private static boolean isLevelEnabled(OnFail onFail) {
+        switch (onFail) {
+            case OK:
+                return LOGGER.isInfoEnabled();
+            case WARN:
+                return LOGGER.isWarnEnabled();
+            default:
+                return LOGGER.isErrorEnabled();
+        }
+    }
+
+    private static int getIntParameter(ExecutionContext executionContext, String name, int defaultValue) {
+        String value = executionContext.getConfigParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            int intValue = Integer.parseInt(value.trim());
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through...
+        }
+        throw new SmooksConfigException("Invalid config value '" + value.trim() + "' for global parameter '" + name + "'.  Must be a positive Integer value.");
+    }
+
+    /**
+     * Per-rule sampling and rate limiting state.
+     */
+    private static final class RuleLimiter {
+        private long failures;
+        private long windowStart;
+        private int windowCount;
+        private long suppressed;
+
+        /**
+         * Acquire a log permit.
+         *
+         * @return The number of failures suppressed since the last logged failure, or -1 if this failure is not
+         * to be logged.
+         */
+        private synchronized long acquire(int sampleRate, int maxPerSecond, long now) {
+            if (failures++ % sampleRate != 0) {
+                return -1;
+            }
+            if (windowCount == 0 || now - windowStart >= SECOND) {
+                windowStart = now;
+                windowCount = 0;
+            }
+            if (windowCount >= maxPerSecond) {
+                suppressed++;
+                return -1;
+            }
+
+            windowCount++;
+            final long permitSuppressed = suppressed;
+            suppressed = 0;
+            return permitSuppressed;
+        }
+    }
+
+    private static void appendJson(StringBuilder entry, String key, String value, boolean separator) {
+        if (value == null) {
+            return;
+        }
+        if (separator) {
+            entry.append(',');
+        }
+        entry.append('"').append(key).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    entry.append("\\\"");
+                    break;
+                case '\\':
+                    entry.append("\\\\");
+                    break;
+                case '\n':
+                    entry.append("\\n");
+                    break;
+                case '\r':
+                    entry.append("\\r");
+                    break;
+                case '\t':
+                    entry.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        entry.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        entry.append(c);
+                    }
+                    break;
+            }
+        }
+        entry.append('"');
+    }
+
+    private static void appendKeyValue(StringBuilder entry, String key, String value, boolean separator) {
+        if (value == null) {
+            return;
+        }
+        if (separator) {
+            entry.append(' ');
+        }
+        entry.append(key).append('=');
+
+        boolean quote = value.isEmpty();
+        for (int i = 0; i < value.length() && !quote; i++) {
+            final char c = value.charAt(i);
+            quote = (Character.isWhitespace(c) || c == '"' || c == '=' || c == '\\');
+        }
+        if (!quote) {
+            entry.append(value);
+            return;
+        }
+
+        entry.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                entry.append('\\').append(c);
+            } else if (c == '\n') {
+                entry.append("\\n");
+            } else if (c == '\r') {
+                entry.append("\\r");
+            } else {
+                entry.append(c);
+            }
+        }
+        entry.append('"');
+    }
+
+    /**
+     * Deferred log entry.
+     */
+    private final class Entry {
+        private final OnFailResult result;
+        private final OnFail onFail;
+        private final long suppressed;
+
+        private Entry(OnFailResult result, OnFail onFail, long suppressed) {
+            this.result = result;
+            this.onFail = onFail;
+            this.suppressed = suppressed;
+        }
+
+        @Override
+        public String toString() {
+            return format(result, onFail, suppressed);
+        }
+    }
+}
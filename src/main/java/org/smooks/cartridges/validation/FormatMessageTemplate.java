@@ -0,0 +1,168 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.SmooksConfigException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lightweight "fmt:" message template.
+ * <p/>
+ * A cheaper alternative to FreeMarker for simple parameterised messages.  The message is compiled
+ * once into a sequence of literal and placeholder segments.  Supported placeholders:
+ * <ul>
+ *     <li><b>{path}</b>: The failure fragment path.</li>
+ *     <li><b>{ruleName}</b>: The rule name.</li>
+ *     <li><b>{ruleProviderName}</b>: The rule provider name.</li>
+ *     <li><b>{text}</b>: The text on which the rule was evaluated.</li>
+ *     <li><b>{beanId}</b>, <b>{beanId.property.property}</b>: A bean from the bean context, or a property
+ *     of that bean.  Properties are resolved as {@link Map} entries or as bean getter properties.</li>
+ * </ul>
+ * A literal '{' is written as "{{".  Values are rendered using {@link String#valueOf(Object)}, so
+ * unlike FreeMarker, numbers are not formatted for the {@link java.util.Locale}.
+ * <p/>
+ * Example:
+ * <pre>
+ * customerId=fmt:Invalid customer number '{text}' at '{path}' on order {order.orderId}.
+ * </pre>
+ */
+final class FormatMessageTemplate implements MessageTemplate {
+
+    private final Segment[] segments;
+
+    FormatMessageTemplate(String message) {
+        segments = compile(message);
+    }
+
+    @Override
+    public void apply(OnFailResult onFailResult, Map<String, Object> beanContext, Appendable appendable) throws IOException {
+        for (Segment segment : segments) {
+            segment.append(onFailResult, beanContext, appendable);
+        }
+    }
+
+    private static Segment[] compile(String message) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int index = 0;
+
+        while (index < message.length()) {
+            char c = message.charAt(index);
+            if (c != '{') {
+                literal.append(c);
+                index++;
+            } else if (index + 1 < message.length() && message.charAt(index + 1) == '{') {
+                literal.append('{');
+                index += 2;
+            } else {
+                int end = message.indexOf('}', index);
+                if (end == -1) {
+                    throw new SmooksConfigException("Unterminated placeholder at index " + index + " in validation message '" + message + "'.");
+                }
+                if (literal.length() > 0) {
+                    segments.add(new LiteralSegment(literal.toString()));
+                    literal.setLength(0);
+                }
+                segments.add(compilePlaceholder(message.substring(index + 1, end).trim(), message));
+                index = end + 1;
+            }
+        }
+        if (literal.length() > 0) {
+            segments.add(new LiteralSegment(literal.toString()));
+        }
+
+        return segments.toArray(new Segment[0]);
+    }
+
+    private static Segment compilePlaceholder(String placeholder, String message) {
+        switch (placeholder) {
+            case "path":
+                return (onFailResult, beanContext, appendable) -> appendable.append(onFailResult.getFailFragmentPath());
+            case "ruleName":
+                return (onFailResult, beanContext, appendable) -> appendable.append(onFailResult.getFailRuleResult().getRuleName());
+            case "ruleProviderName":
+                return (onFailResult, beanContext, appendable) -> appendable.append(onFailResult.getFailRuleResult().getRuleProviderName());
+            case "text":
+                return (onFailResult, beanContext, appendable) -> appendable.append(RuleEvalResults.getText(onFailResult.getFailRuleResult()));
+            default:
+                if (placeholder.isEmpty()) {
+                    throw new SmooksConfigException("Empty placeholder in validation message '" + message + "'.");
+                }
+                return new BeanSegment(placeholder);
+        }
+    }
+
+    private interface Segment {
+        void append(OnFailResult onFailResult, Map<String, Object> beanContext, Appendable appendable) throws IOException;
+    }
+
+    private static final class LiteralSegment implements Segment {
+        private final String literal;
+
+        private LiteralSegment(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public void append(OnFailResult onFailResult, Map<String, Object> beanContext, Appendable appendable) throws IOException {
+            appendable.append(literal);
+        }
+    }
+
+    private static final class BeanSegment implements Segment {
+        private final BeanPath beanPath;
+
+        private BeanSegment(String path) {
+            beanPath = new BeanPath(path);
+        }
+
+        @Override
+        public void append(OnFailResult onFailResult, Map<String, Object> beanContext, Appendable appendable) throws IOException {
+            appendable.append(String.valueOf(beanPath.resolve(beanContext.get(beanPath.getBeanId()))));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+/**
+ * Incremental 128-bit, non-cryptographic String hash.
+ * <p/>
+ * Two 64-bit lanes (FNV-1a and a multiply-rotate lane), finalised with the MurmurHash3 mixer.
+ */
+final class Hasher {
+    private long high = 0xcbf29ce484222325L;
+    private long low = 0x27d4eb2f165667c5L;
+    private long length;
+
+    /**
+     * Add a field to the hash.
+     *
+     * @param string The field value.  May be null.
+     * @return This hasher.
+     */
+    Hasher update(String string) {
+        if (string == null) {
+            update('\uffff');
+            return this;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            update(string.charAt(i));
+        }
+        // Separate fields so as "ab" + "c" and "a" + "bc" hash differently...
+        update('\u0000');
+        update((char) string.length());
+
+        return this;
+    }
+
+    /**
+     * Add a character to the hash.
+     *
+     * @param c The character.
+     * @return This hasher.
+     */
+    Hasher update(char c) {
+        high = (high ^ c) * 0x100000001b3L;
+        low = Long.rotateLeft(low ^ (c * 0xc2b2ae3d27d4eb4fL), 31) * 0x9e3779b97f4a7c15L;
+        length++;
+
+        return this;
+    }
+
+    /**
+     * Get the high 64 bits of the hash.
+     *
+     * @return The high 64 bits.
+     */
+    long getHigh() {
+        return mix(high ^ length);
+    }
+
+    /**
+     * Get the low 64 bits of the hash.
+     *
+     * @return The low 64 bits.
+     */
+    long getLow() {
+        return mix(low + length);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,150 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.support.FreeMarkerTemplate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Map;
+
+/**
+ * Compiled validation failure message.
+ * <p/>
+ * Message bundle entries are compiled once (per {@link Validator} and {@link java.util.Locale}) and
+ * then applied to each {@link OnFailResult} reported against the rule.
+ * <p/>
+ * <a href="OnFailResult.html#localized-messages">See Localized Messages</a>.
+ */
+interface MessageTemplate {
+
+    /**
+     * FreeMarker message prefix.
+     */
+    String FTL_PREFIX = "ftl:";
+
+    /**
+     * Lightweight format message prefix.  See {@link FormatMessageTemplate}.
+     */
+    String FMT_PREFIX = "fmt:";
+
+    /**
+     * Template used when no message bundle is available.  Renders the {@link OnFailResult#toString()}.
+     */
+    MessageTemplate NONE = (onFailResult, beanContext, appendable) -> appendable.append(onFailResult.toString());
+
+    /**
+     * Apply the message template.
+     *
+     * @param onFailResult The failure.
+     * @param beanContext  The bean context snapshot taken when the failure occurred.
+     * @param appendable   The message output.
+     * @throws IOException Error appending to the output.
+     */
+    void apply(OnFailResult onFailResult, Map<String, Object> beanContext, Appendable appendable) throws IOException;
+
+    /**
+     * Compile a message bundle entry.
+     *
+     * @param message The message bundle entry.
+     * @return The compiled template.
+     */
+    static MessageTemplate compile(String message) {
+        if (message.startsWith(FTL_PREFIX)) {
+            return new FreeMarkerMessageTemplate(message.substring(FTL_PREFIX.length()));
+        } else if (message.startsWith(FMT_PREFIX)) {
+            return new FormatMessageTemplate(message.substring(FMT_PREFIX.length()));
+        }
+
+        return (onFailResult, beanContext, appendable) -> appendable.append(message);
+    }
+
+    /**
+     * FreeMarker message template.
+     * <p/>
+     * The bean context beans are referenced directly, while the {@link org.smooks.cartridges.rules.RuleEvalResult}
+     * and failure path are referenced through the "ruleResult" and "path" beans.
+     */
+    final class FreeMarkerMessageTemplate implements MessageTemplate {
+
+        private final FreeMarkerTemplate template;
+
+        FreeMarkerMessageTemplate(String templateText) {
+            template = new FreeMarkerTemplate(templateText);
+        }
+
+        @Override
+        public void apply(OnFailResult onFailResult, Map<String, Object> beanContext, Appendable appendable) {
+            beanContext.put("ruleResult", onFailResult.getFailRuleResult());
+            beanContext.put("path", onFailResult.getFailFragmentPath());
+            template.apply(beanContext, asWriter(appendable));
+        }
+
+        private static Writer asWriter(Appendable appendable) {
+            if (appendable instanceof Writer) {
+                return (Writer) appendable;
+            }
+
+            return new Writer() {
+                @Override
+                public void write(char[] chars, int off, int len) throws IOException {
+                    appendable.append(CharBuffer.wrap(chars, off, len));
+                }
+
+                @Override
+                public void write(String string, int off, int len) throws IOException {
+                    appendable.append(string, off, off + len);
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
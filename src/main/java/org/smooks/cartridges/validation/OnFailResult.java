@@ -46,6 +46,7 @@ import org.smooks.cartridges.rules.RuleEvalResult;
 import org.smooks.cartridges.rules.regex.RegexRuleEvalResult;
 import org.smooks.cartridges.rules.regex.RegexProvider;
 
+import java.io.IOException;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -76,6 +77,12 @@ import java.util.ResourceBundle;
  * <pre>
  * customerId=ftl:Invalid customer number '${{@link RegexRuleEvalResult#getText() ruleResult.text}}' at '${path}'.  Customer number must match pattern '${{@link RegexRuleEvalResult#getPattern() ruleResult.pattern}}'.
  * </pre>
+ * <p/>
+ * Simple parameterised messages can avoid FreeMarker by using the lightweight "fmt:" prefix, with
+ * "{path}", "{ruleName}", "{ruleProviderName}", "{text}" and "{beanId.property}" placeholders:<br/>
+ * <pre>
+ * customerId=fmt:Invalid customer number '{text}' at '{path}'.
+ * </pre>
  *
  * @author <a href="mailto:tom.fennelly@jboss.com">tom.fennelly@jboss.com</a>
  */
@@ -121,4 +128,20 @@ public interface OnFailResult {
      * @return A localized message for the validation failure.
      */
     String getMessage(Locale locale);
+
+    /**
+     * Append a localized message for the validation failure.
+     * <p/>
+     * Allows the message to be written directly to a report output, without creating an
+     * intermediate String.
+     * <p/>
+     * <a href="#localized-messages">See Localized Messages</a>.
+     *
+     * @param locale     The message {@link Locale}.
+     * @param appendable The message output.
+     * @throws IOException Error appending to the output.
+     */
+    default void appendMessage(Locale locale, Appendable appendable) throws IOException {
+        appendable.append(getMessage(locale));
+    }
 }
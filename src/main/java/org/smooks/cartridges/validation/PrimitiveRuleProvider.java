@@ -0,0 +1,524 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+import org.smooks.cartridges.rules.BasicRuleEvalResult;
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.cartridges.rules.RuleProvider;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Built-in integer, decimal and length {@link RuleProvider}.
+ * <p/>
+ * Rules are checked directly on the selected characters, without creating Strings, Matchers or boxed numbers.
+ * Passing evaluations return a shared result instance, so they allocate nothing.  The rule source is a properties
+ * file of rule definitions:
+ * <pre>
+ * quantity=integer[1,999]
+ * price=decimal(2)[0,100000]
+ * discount=decimal(2)
+ * amount=decimal(9,2)
+ * rate=valueDecimal(5,2)
+ * name=length[1,35]
+ * code=collapsedLength[2,8]
+ * </pre>
+ * <ul>
+ *     <li><b>integer[min,max]</b>: An optionally signed integer.  The bounds are inclusive and optional
+ *     e.g. "integer", "integer[1,]".</li>
+ *     <li><b>decimal(scale)[min,max]</b>: An optionally signed decimal with at most "scale" fraction digits.
+ *     The scale and bounds are optional e.g. "decimal", "decimal(2)", "decimal[0,1.5]".</li>
+ *     <li><b>decimal(precision,scale)[min,max]</b>: As above, with at most "precision" significant digits
+ *     (leading zeros and trailing fraction zeros are not counted).  The scale may be omitted e.g. "decimal(5,)".</li>
+ *     <li><b>valueDecimal(precision,scale)[min,max]</b>: As "decimal", with the scale checked on the value rather
+ *     than on its lexical form, as for the XML Schema "fractionDigits" facet.  Trailing fraction zeros are not
+ *     counted, so "1.50" passes "valueDecimal(1)".</li>
+ *     <li><b>length[min,max]</b>: The number of characters is within the inclusive bounds.  Either bound may be
+ *     omitted.</li>
+ *     <li><b>collapsedLength[min,max]</b>: As above, counting the characters of the whitespace collapsed value, as
+ *     for XML Schema "token" types.  Leading and trailing whitespace is not counted, and other whitespace runs
+ *     count as one character.</li>
+ * </ul>
+ * Integer and decimal values may be surrounded by whitespace.  Length rules count all characters.
+ */
+public class PrimitiveRuleProvider implements RuleProvider {
+
+    private String name;
+    private String src;
+    /**
+     * The compiled rules, shared with other providers on the same rule source (see {@link SharedRuleBases}).
+     */
+    private Map<String, PrimitiveRule> compiledRules = Collections.emptyMap();
+    private final Map<String, BoundRule> rules = new LinkedHashMap<>();
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        this.name = name;
+        bindRules();
+    }
+
+    @Override
+    public String getSrc() {
+        return src;
+    }
+
+    @Override
+    public void setSrc(String src) {
+        AssertArgument.isNotNullAndNotEmpty(src, "src");
+
+        compiledRules = SharedRuleBases.acquire(this, "primitive", src, content -> {
+            final Map<String, PrimitiveRule> primitiveRules = new LinkedHashMap<>();
+            for (Map.Entry<String, String> rule : CompiledRegexProvider.loadRules(content).entrySet()) {
+                primitiveRules.put(rule.getKey(), parse(rule.getKey(), rule.getValue()));
+            }
+            return Collections.unmodifiableMap(primitiveRules);
+        });
+        bindRules();
+        this.src = src;
+    }
+
+    Map<String, ?> getCompiledRules() {
+        return compiledRules;
+    }
+
+    private void bindRules() {
+        // The shared pass results carry the provider name...
+        rules.clear();
+        for (Map.Entry<String, PrimitiveRule> rule : compiledRules.entrySet()) {
+            rules.put(rule.getKey(), new BoundRule(rule.getValue(), new PrimitiveRuleEvalResult(true, rule.getKey(), name, rule.getValue().definition, null)));
+        }
+    }
+
+    @Override
+    public RuleEvalResult evaluate(String ruleName, CharSequence selectedData, ExecutionContext context) throws SmooksException {
+        AssertArgument.isNotNullAndNotEmpty(ruleName, "ruleName");
+        AssertArgument.isNotNull(selectedData, "selectedData");
+
+        final BoundRule rule = rules.get(ruleName);
+        if (rule == null) {
+            throw new SmooksException("Unknown rule name '" + ruleName + "' on Primitive RuleProvider '" + name + "'.");
+        }
+
+        if (rule.rule.test(selectedData)) {
+            return rule.passResult;
+        }
+
+        return new PrimitiveRuleEvalResult(false, ruleName, name, rule.rule.definition, selectedData.toString());
+    }
+
+    private static PrimitiveRule parse(String ruleName, String definition) {
+        final String rule = definition.trim();
+        try {
+            final PrimitiveRule primitiveRule;
+            if (rule.startsWith("integer")) {
+                final String[] bounds = parseBounds(rule, "integer".length());
+                primitiveRule = new IntegerRule(bounds[0] != null ? Long.parseLong(bounds[0]) : Long.MIN_VALUE, bounds[1] != null ? Long.parseLong(bounds[1]) : Long.MAX_VALUE);
+            } else if (rule.startsWith("decimal") || rule.startsWith("valueDecimal")) {
+                final boolean ignoreTrailingZeros = rule.startsWith("valueDecimal");
+                int index = (ignoreTrailingZeros ? "valueDecimal" : "decimal").length();
+                int precision = -1;
+                int scale = -1;
+                if (index < rule.length() && rule.charAt(index) == '(') {
+                    final int scaleEnd = rule.indexOf(')', index);
+                    final String digits = rule.substring(index + 1, scaleEnd);
+                    final int comma = digits.indexOf(',');
+                    if (comma != -1) {
+                        precision = Integer.parseInt(digits.substring(0, comma).trim());
+                        final String scaleDigits = digits.substring(comma + 1).trim();
+                        scale = (scaleDigits.isEmpty() ? -1 : Integer.parseInt(scaleDigits));
+                    } else {
+                        scale = Integer.parseInt(digits.trim());
+                    }
+                    index = scaleEnd + 1;
+                }
+                final String[] bounds = parseBounds(rule, index);
+                primitiveRule = new DecimalRule(precision, scale, ignoreTrailingZeros, bounds[0] != null ? new BigDecimal(bounds[0]) : null, bounds[1] != null ? new BigDecimal(bounds[1]) : null);
+            } else if (rule.startsWith("length")) {
+                final String[] bounds = parseBounds(rule, "length".length());
+                primitiveRule = new LengthRule(bounds[0] != null ? Integer.parseInt(bounds[0]) : 0, bounds[1] != null ? Integer.parseInt(bounds[1]) : Integer.MAX_VALUE, false);
+            } else if (rule.startsWith("collapsedLength")) {
+                final String[] bounds = parseBounds(rule, "collapsedLength".length());
+                primitiveRule = new LengthRule(bounds[0] != null ? Integer.parseInt(bounds[0]) : 0, bounds[1] != null ? Integer.parseInt(bounds[1]) : Integer.MAX_VALUE, true);
+            } else {
+                throw new SmooksConfigException("Unknown primitive rule type in rule '" + ruleName + "' definition '" + definition + "'.  Must be one of 'integer', 'decimal', 'valueDecimal', 'length' or 'collapsedLength'.");
+            }
+
+            primitiveRule.definition = rule;
+            return primitiveRule;
+        } catch (RuntimeException e) {
+            if (e instanceof SmooksConfigException) {
+                throw e;
+            }
+            throw new SmooksConfigException("Invalid primitive rule '" + ruleName + "' definition '" + definition + "'.", e);
+        }
+    }
+
+    /**
+     * Parse the optional "[min,max]" bounds.
+     *
+     * @return The min and max bounds.  Null if not specified.
+     */
+    private static String[] parseBounds(String rule, int index) {
+        final String[] bounds = new String[2];
+        final String remainder = rule.substring(index).trim();
+        if (remainder.isEmpty()) {
+            return bounds;
+        }
+        if (remainder.charAt(0) != '[' || remainder.charAt(remainder.length() - 1) != ']' || remainder.indexOf(',') == -1) {
+            throw new IllegalArgumentException("Expected '[min,max]' bounds.");
+        }
+
+        final int comma = remainder.indexOf(',');
+        final String min = remainder.substring(1, comma).trim();
+        final String max = remainder.substring(comma + 1, remainder.length() - 1).trim();
+        bounds[0] = (min.isEmpty() ? null : min);
+        bounds[1] = (max.isEmpty() ? null : max);
+
+        return bounds;
+    }
+
+    private static int trimStart(CharSequence text) {
+        int start = 0;
+        while (start < text.length() && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence text, int start) {
+        int end = text.length();
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private abstract static class PrimitiveRule {
+        private String definition;
+
+        abstract boolean test(CharSequence text);
+    }
+
+    /**
+     * A shared compiled rule, bound to this provider's pass result.
+     */
+    private static final class BoundRule {
+        private final PrimitiveRule rule;
+        private final RuleEvalResult passResult;
+
+        private BoundRule(PrimitiveRule rule, RuleEvalResult passResult) {
+            this.rule = rule;
+            this.passResult = passResult;
+        }
+    }
+
+    private static final class IntegerRule extends PrimitiveRule {
+        private final long min;
+        private final long max;
+
+        private IntegerRule(long min, long max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        boolean test(CharSequence text) {
+            final int start = trimStart(text);
+            final int end = trimEnd(text, start);
+            int index = start;
+            boolean negative = false;
+            if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+                negative = (text.charAt(index) == '-');
+                index++;
+            }
+            if (index == end) {
+                return false;
+            }
+
+            // Accumulate negatively, so as Long.MIN_VALUE can be parsed...
+            long value = 0;
+            boolean overflow = false;
+            for (; index < end; index++) {
+                final char c = text.charAt(index);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+                if (!overflow) {
+                    if (value < (Long.MIN_VALUE + (c - '0')) / 10) {
+                        overflow = true;
+                    } else {
+                        value = value * 10 - (c - '0');
+                    }
+                }
+            }
+
+            if (overflow) {
+                // Out of the long range, so only valid if unbounded on that side...
+                return (negative ? min == Long.MIN_VALUE : max == Long.MAX_VALUE);
+            }
+            if (!negative) {
+                if (value == Long.MIN_VALUE) {
+                    return max == Long.MAX_VALUE;
+                }
+                value = -value;
+            }
+
+            return value >= min && value <= max;
+        }
+    }
+
+    private static final class DecimalRule extends PrimitiveRule {
+        /**
+         * Max digits that can be accumulated in a long without overflow.
+         */
+        private static final int MAX_LONG_DIGITS = 18;
+        /**
+         * Minimum comparison scale for decimals without a declared scale.
+         */
+        private static final int DEFAULT_COMPARE_SCALE = 6;
+
+        private final int precision;
+        private final int scale;
+        /**
+         * Don't count trailing fraction zeros towards the scale.
+         */
+        private final boolean ignoreTrailingZeros;
+        private final BigDecimal min;
+        private final BigDecimal max;
+        /**
+         * Scale at which values are compared to the bounds as unscaled longs.  -1 if the bounds don't fit a long.
+         */
+        private final int compareScale;
+        private final long unscaledMin;
+        private final long unscaledMax;
+
+        private DecimalRule(int precision, int scale, boolean ignoreTrailingZeros, BigDecimal min, BigDecimal max) {
+            this.precision = precision;
+            this.scale = scale;
+            this.ignoreTrailingZeros = ignoreTrailingZeros;
+            this.min = min;
+            this.max = max;
+
+            // Compare at the rule scale, or at a typical scale if the rule scale is not constrained...
+            int boundScale = (scale >= 0 ? scale : DEFAULT_COMPARE_SCALE);
+            if (min != null) {
+                boundScale = Math.max(boundScale, min.scale());
+            }
+            if (max != null) {
+                boundScale = Math.max(boundScale, max.scale());
+            }
+
+            int fastCompareScale = boundScale;
+            long fastMin = Long.MIN_VALUE;
+            long fastMax = Long.MAX_VALUE;
+            try {
+                if (min != null) {
+                    fastMin = min.setScale(boundScale).unscaledValue().longValueExact();
+                }
+                if (max != null) {
+                    fastMax = max.setScale(boundScale).unscaledValue().longValueExact();
+                }
+            } catch (ArithmeticException e) {
+                // Bounds too large for the fast path...
+                fastCompareScale = -1;
+            }
+            this.compareScale = fastCompareScale;
+            this.unscaledMin = fastMin;
+            this.unscaledMax = fastMax;
+        }
+
+        @Override
+        boolean test(CharSequence text) {
+            final int start = trimStart(text);
+            final int end = trimEnd(text, start);
+            int index = start;
+            boolean negative = false;
+            if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+                negative = (text.charAt(index) == '-');
+                index++;
+            }
+
+            long unscaled = 0;
+            boolean anyDigits = false;
+            int significantDigits = 0;
+            int trailingZeros = 0;
+            int fractionDigits = -1;
+            for (; index < end; index++) {
+                final char c = text.charAt(index);
+                if (c == '.' && fractionDigits == -1) {
+                    fractionDigits = 0;
+                } else if (c >= '0' && c <= '9') {
+                    anyDigits = true;
+                    if (significantDigits > 0 || c != '0') {
+                        significantDigits++;
+                    }
+                    if (significantDigits <= MAX_LONG_DIGITS) {
+                        unscaled = unscaled * 10 + (c - '0');
+                    }
+                    if (fractionDigits != -1) {
+                        fractionDigits++;
+                        trailingZeros = (c == '0' ? trailingZeros + 1 : 0);
+                    }
+                } else {
+                    return false;
+                }
+            }
+
+            if (!anyDigits) {
+                return false;
+            }
+            final int valueScale = Math.max(0, fractionDigits);
+            if (scale >= 0 && (ignoreTrailingZeros ? valueScale - trailingZeros : valueScale) > scale) {
+                return false;
+            }
+            if (precision >= 0 && significantDigits - Math.min(trailingZeros, significantDigits) > precision) {
+                return false;
+            }
+            if (min == null && max == null) {
+                return true;
+            }
+
+            if (compareScale < 0 || valueScale > compareScale || significantDigits - valueScale + compareScale > MAX_LONG_DIGITS) {
+                // Not comparable as unscaled longs...
+                final BigDecimal value = new BigDecimal(text.subSequence(start, end).toString());
+                return (min == null || value.compareTo(min) >= 0) && (max == null || value.compareTo(max) <= 0);
+            }
+
+            for (int i = valueScale; i < compareScale; i++) {
+                unscaled *= 10;
+            }
+            if (negative) {
+                unscaled = -unscaled;
+            }
+
+            return unscaled >= unscaledMin && unscaled <= unscaledMax;
+        }
+    }
+
+    private static final class LengthRule extends PrimitiveRule {
+        private final int min;
+        private final int max;
+        private final boolean collapse;
+
+        private LengthRule(int min, int max, boolean collapse) {
+            this.min = min;
+            this.max = max;
+            this.collapse = collapse;
+        }
+
+        @Override
+        boolean test(CharSequence text) {
+            final int length = (collapse ? collapsedLength(text) : text.length());
+            return length >= min && length <= max;
+        }
+
+        private static int collapsedLength(CharSequence text) {
+            final int start = trimStart(text);
+            final int end = trimEnd(text, start);
+            int length = 0;
+            boolean whitespace = false;
+            for (int i = start; i < end; i++) {
+                if (!Character.isWhitespace(text.charAt(i))) {
+                    length++;
+                    whitespace = false;
+                } else if (!whitespace) {
+                    length++;
+                    whitespace = true;
+                }
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Primitive rule {@link RuleEvalResult}.
+     */
+    public static class PrimitiveRuleEvalResult extends BasicRuleEvalResult {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String definition;
+        private final String text;
+
+        public PrimitiveRuleEvalResult(boolean matched, String ruleName, String ruleProviderName, String definition, String text) {
+            super(matched, ruleName, ruleProviderName);
+            this.definition = definition;
+            this.text = text;
+        }
+
+        /**
+         * Get the rule definition e.g. "integer[1,999]".
+         *
+         * @return The rule definition.
+         */
+        public String getDefinition() {
+            return definition;
+        }
+
+        /**
+         * Get the evaluated text.
+         *
+         * @return The text.  Null on shared results of passed evaluations.
+         */
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "Primitive rule '" + getRuleProviderName() + "." + getRuleName() + "' (" + definition + ") " + (matched() ? "matched" : "did not match") + " text '" + text + "'.";
+        }
+    }
+}
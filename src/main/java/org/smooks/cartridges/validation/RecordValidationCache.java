@@ -0,0 +1,412 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.TypedKey;
+import org.smooks.api.resource.visitor.VisitAfterReport;
+import org.smooks.api.resource.visitor.VisitBeforeReport;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.BeforeVisitor;
+import org.smooks.cartridges.rules.RuleProvider;
+import org.smooks.cartridges.rules.RuleProviderAccessor;
+import org.smooks.resource.URIResourceLocator;
+import org.w3c.dom.Element;
+
+import javax.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Record validation cache.
+ * <p/>
+ * Skips the validation of records that have already validated clean.  While a record (the element selected
+ * by "executeOn") is being filtered, the evaluation of pure validation rules (see {@link Validator#isPure()})
+ * on the record content is deferred.  When the record ends, a 128-bit hash is calculated over the deferred rule
+ * names and their evaluated text.  If the hash is found in the cache, the deferred evaluations are skipped.
+ * Otherwise they are run and, if all of them pass, the hash is added to the cache.
+ * <p/>
+ * The cache is bounded, evicting the least recently used hashes, and can be backed by a local file so as
+ * to survive restarts.  The file is read on startup and written when the {@link org.smooks.Smooks} instance
+ * is closed.  Hashes are only valid for the rule-set version under which they were recorded.  Unless configured,
+ * the version is derived from the names, types and sources of the rule providers, so that changing a rule base
+ * invalidates the cache.
+ * <p/>
+ * Example configuration:
+ * <pre>{@code
+ * <validation:recordCache executeOn="order-item" maxSize="100000" file="/var/cache/order-items.cache"/>
+ * }</pre>
+ * Nested records are validated as part of the enclosing record.  Rules that are not pure are always evaluated.
+ * Failures on a record that is not skipped are reported when the record ends.
+ */
+@VisitBeforeReport(condition = "false")
+@VisitAfterReport(condition = "false")
+public final class RecordValidationCache implements BeforeVisitor, AfterVisitor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordValidationCache.class);
+
+    /**
+     * Default maximum number of cached record hashes.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    static final TypedKey<Record> RECORD_TYPED_KEY = TypedKey.of();
+
+    private static final int FILE_MAGIC = 0x53565243;
+
+    @Inject
+    private ApplicationContext appContext;
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private File file;
+    private String version;
+    private Map<RecordHash, Boolean> recordHashes;
+    private volatile boolean loaded;
+    private final LongAdder skipCount = new LongAdder();
+    private final LongAdder validateCount = new LongAdder();
+
+    @PostConstruct
+    public void postConstruct() {
+        if (maxSize <= 0) {
+            throw new SmooksConfigException("Invalid maxSize '" + maxSize + "'.  Must be greater than zero.");
+        }
+        recordHashes = new LinkedHashMap<RecordHash, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RecordHash, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+        if (file != null) {
+            // Make sure the cache file gets written on close...
+            appContext.getRegistry().registerObject(this, this);
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (file != null) {
+            try {
+                save();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write record validation cache file '" + file + "'.", e);
+            }
+        }
+    }
+
+    @Override
+    public void visitBefore(final Element element, final ExecutionContext executionContext) {
+        if (executionContext.get(RECORD_TYPED_KEY) == null) {
+            executionContext.put(RECORD_TYPED_KEY, new Record(element));
+        }
+    }
+
+    @Override
+    public void visitAfter(final Element element, final ExecutionContext executionContext) {
+        final Record record = executionContext.get(RECORD_TYPED_KEY);
+        if (record == null || record.element != element) {
+            return;
+        }
+        executionContext.remove(RECORD_TYPED_KEY);
+
+        if (record.deferred.isEmpty()) {
+            return;
+        }
+        if (!loaded) {
+            load();
+        }
+
+        final RecordHash recordHash = record.hash();
+        synchronized (recordHashes) {
+            if (recordHashes.get(recordHash) != null) {
+                skipCount.increment();
+                return;
+            }
+        }
+
+        validateCount.increment();
+        boolean clean = true;
+        for (Deferred deferred : record.deferred) {
+            clean &= deferred.validator.validateDeferred(deferred.text, deferred.path, executionContext);
+        }
+        if (clean) {
+            synchronized (recordHashes) {
+                recordHashes.put(recordHash, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Get the number of records whose validation was skipped.
+     *
+     * @return The number of skipped records.
+     */
+    public long getSkipCount() {
+        return skipCount.sum();
+    }
+
+    /**
+     * Get the number of records that were validated.
+     *
+     * @return The number of validated records.
+     */
+    public long getValidateCount() {
+        return validateCount.sum();
+    }
+
+    /**
+     * Get the number of cached record hashes.
+     *
+     * @return The number of cached record hashes.
+     */
+    public int size() {
+        synchronized (recordHashes) {
+            return recordHashes.size();
+        }
+    }
+
+    /**
+     * Get the rule-set version under which record hashes are cached.
+     *
+     * @return The rule-set version.
+     */
+    public String getVersion() {
+        if (version == null) {
+            version = computeVersion();
+        }
+        return version;
+    }
+
+    /**
+     * Write the cached record hashes to the cache file.
+     *
+     * @throws IOException Error writing the file.
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            throw new IllegalStateException("No cache file configured.");
+        }
+        if (!loaded) {
+            return;
+        }
+
+        final List<RecordHash> snapshot;
+        synchronized (recordHashes) {
+            snapshot = new ArrayList<>(recordHashes.keySet());
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory '" + parent + "'.");
+        }
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            outputStream.writeInt(FILE_MAGIC);
+            outputStream.writeUTF(getVersion());
+            outputStream.writeInt(snapshot.size());
+            // Least recently used first, so as the access order survives a reload...
+            for (RecordHash recordHash : snapshot) {
+                outputStream.writeLong(recordHash.high);
+                outputStream.writeLong(recordHash.low);
+            }
+        }
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        if (file != null && file.exists()) {
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (inputStream.readInt() != FILE_MAGIC) {
+                    LOGGER.warn("Ignoring record validation cache file '" + file + "'.  Not a record validation cache file.");
+                } else if (!inputStream.readUTF().equals(getVersion())) {
+                    LOGGER.info("Ignoring record validation cache file '" + file + "'.  The rule-set version has changed.");
+                } else {
+                    int count = inputStream.readInt();
+                    synchronized (recordHashes) {
+                        for (int i = 0; i < count; i++) {
+                            recordHashes.put(new RecordHash(inputStream.readLong(), inputStream.readLong()), Boolean.TRUE);
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                LOGGER.warn("Ignoring truncated record validation cache file '" + file + "'.", e);
+            } catch (IOException e) {
+                throw new SmooksException("Failed to read record validation cache file '" + file + "'.", e);
+            }
+        }
+        loaded = true;
+    }
+
+    private String computeVersion() {
+        final Map<String, RuleProvider> ruleProviders = RuleProviderAccessor.getRuleProviders(appContext);
+        final Hasher hasher = new Hasher();
+        if (ruleProviders != null) {
+            for (RuleProvider ruleProvider : new TreeMap<>(ruleProviders).values()) {
+                hasher.update(ruleProvider.getName());
+                hasher.update(ruleProvider.getClass().getName());
+                hasher.update(ruleProvider.getSrc());
+                if (ruleProvider.getSrc() != null) {
+                    try (InputStream inputStream = new URIResourceLocator().getResource(ruleProvider.getSrc())) {
+                        for (int b = inputStream.read(); b != -1; b = inputStream.read()) {
+                            hasher.update((char) b);
+                        }
+                    } catch (IOException e) {
+                        LOGGER.debug("Failed to read rule source '" + ruleProvider.getSrc() + "'.  Version is based on the source name only.", e);
+                    }
+                }
+            }
+        }
+
+        return new RecordHash(hasher.getHigh(), hasher.getLow()).toString();
+    }
+
+    @Inject
+    public void setMaxSize(final Optional<Integer> maxSize) {
+        this.maxSize = maxSize.orElse(DEFAULT_MAX_SIZE);
+    }
+
+    @Inject
+    public void setFile(final Optional<String> file) {
+        this.file = file.map(File::new).orElse(null);
+    }
+
+    @Inject
+    public void setVersion(final Optional<String> version) {
+        this.version = version.orElse(null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [size=%d, maxSize=%d, skipped=%d, validated=%d]", getClass().getSimpleName(), size(), maxSize, getSkipCount(), getValidateCount());
+    }
+
+    /**
+     * Record being filtered.
+     */
+    static final class Record {
+        private final Element element;
+        private final List<Deferred> deferred = new ArrayList<>();
+        private final Hasher hasher = new Hasher();
+
+        private Record(Element element) {
+            this.element = element;
+        }
+
+        void defer(Validator validator, String text, String path) {
+            deferred.add(new Deferred(validator, text, path));
+            hasher.update(validator.getCompositRuleName());
+            hasher.update(text);
+        }
+
+        private RecordHash hash() {
+            return new RecordHash(hasher.getHigh(), hasher.getLow());
+        }
+    }
+
+    private static final class Deferred {
+        private final Validator validator;
+        private final String text;
+        private final String path;
+
+        private Deferred(Validator validator, String text, String path) {
+            this.validator = validator;
+            this.text = text;
+            this.path = path;
+        }
+    }
+
+    /**
+     * 128-bit record hash.
+     */
+    private static final class RecordHash {
+        private final long high;
+        private final long low;
+
+        private RecordHash(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof RecordHash)) {
+                return false;
+            }
+            RecordHash recordHash = (RecordHash) object;
+            return high == recordHash.high && low == recordHash.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+}
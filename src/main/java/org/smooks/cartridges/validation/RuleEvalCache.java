@@ -0,0 +1,309 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of rule evaluation results.
+ * <p/>
+ * Field values such as customer numbers, product IDs and currency codes tend to repeat heavily.  For
+ * rules whose result depends on nothing but the evaluated text ("pure" rules), the result of a previous
+ * evaluation of the same rule on the same text can be reused.  Regex and code list rules are pure.  Other rules
+ * can be declared pure through the "pure" attribute on the validation rule configuration.
+ * <p/>
+ * The cache is opt-in.  It is enabled by setting the {@link #MAX_SIZE validation.evalCache.maxSize}
+ * global parameter.  One cache is shared by all validation rules on an {@link ApplicationContext}, with
+ * results keyed by composite rule name and text.  The cache is split into a number of independently
+ * locked segments, each evicting its least recently used entries.
+ * <pre>
+ * &lt;params&gt;
+ *     &lt;param name="validation.evalCache.maxSize"&gt;10000&lt;/param&gt;
+ * &lt;/params&gt;
+ * </pre>
+ */
+public final class RuleEvalCache {
+
+    /**
+     * Maximum cache size global param key.
+     */
+    public static final String MAX_SIZE = "validation.evalCache.maxSize";
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+    private final int maxSize;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Public constructor.
+     *
+     * @param maxSize The maximum number of cached results.
+     */
+    public RuleEvalCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid maxSize '" + maxSize + "'.  Must be greater than zero.");
+        }
+
+        int segmentCount = Math.min(SEGMENT_COUNT, maxSize);
+        this.maxSize = maxSize;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Get the cache for an {@link ApplicationContext}.
+     *
+     * @param applicationContext The {@link ApplicationContext}.
+     * @return The cache, or null if the cache is not enabled on the {@link ApplicationContext}.
+     */
+    public static RuleEvalCache get(ApplicationContext applicationContext) {
+        return applicationContext.getRegistry().lookup(RuleEvalCache.class);
+    }
+
+    /**
+     * Get the cache for an {@link ApplicationContext}, creating it if enabled through the
+     * {@link #MAX_SIZE} global parameter.
+     *
+     * @param applicationContext The {@link ApplicationContext}.
+     * @param executionContext   The {@link ExecutionContext}, for access to the global parameters.
+     * @return The cache, or null if the cache is not enabled.
+     */
+    static RuleEvalCache getOrCreate(ApplicationContext applicationContext, ExecutionContext executionContext) {
+        String maxSizeConfig = executionContext.getConfigParameter(MAX_SIZE);
+        if (maxSizeConfig == null) {
+            return null;
+        }
+
+        synchronized (RuleEvalCache.class) {
+            RuleEvalCache ruleEvalCache = get(applicationContext);
+            if (ruleEvalCache == null) {
+                int maxSize;
+                try {
+                    maxSize = Integer.parseInt(maxSizeConfig.trim());
+                } catch (NumberFormatException e) {
+                    throw new SmooksConfigException("Invalid config value '" + maxSizeConfig.trim() + "' for global parameter '" + MAX_SIZE + "'.  Must be a valid Integer value.");
+                }
+                if (maxSize <= 0) {
+                    return null;
+                }
+                ruleEvalCache = new RuleEvalCache(maxSize);
+                applicationContext.getRegistry().registerObject(RuleEvalCache.class, ruleEvalCache);
+            }
+
+            return ruleEvalCache;
+        }
+    }
+
+    /**
+     * Get a cached rule evaluation result.
+     *
+     * @param compositeRuleName The composite rule name.
+     * @param text              The evaluated text.
+     * @return The cached result, or null if not cached.
+     */
+    public RuleEvalResult get(String compositeRuleName, CharSequence text) {
+        Key key = new Key(compositeRuleName, text.toString());
+        RuleEvalResult ruleEvalResult = segmentFor(key).get(key);
+
+        if (ruleEvalResult != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+
+        return ruleEvalResult;
+    }
+
+    /**
+     * Cache a rule evaluation result.
+     *
+     * @param compositeRuleName The composite rule name.
+     * @param text              The evaluated text.
+     * @param ruleEvalResult    The rule evaluation result.
+     */
+    public void put(String compositeRuleName, CharSequence text, RuleEvalResult ruleEvalResult) {
+        Key key = new Key(compositeRuleName, text.toString());
+        segmentFor(key).put(key, ruleEvalResult);
+    }
+
+    /**
+     * Get the number of cache hits.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Get the number of cache misses.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Get the ratio of cache hits to cache lookups.
+     *
+     * @return The hit ratio, or 0 if there have been no lookups.
+     */
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long lookups = hits + getMissCount();
+
+        return (lookups == 0 ? 0 : (double) hits / lookups);
+    }
+
+    /**
+     * Get the number of cached results.
+     *
+     * @return The number of cached results.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Get the maximum number of cached results.
+     *
+     * @return The maximum number of cached results.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Remove all cached results and reset the hit and miss counts.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        hitCount.reset();
+        missCount.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [size=%d, maxSize=%d, hits=%d, misses=%d]", getClass().getSimpleName(), size(), maxSize, getHitCount(), getMissCount());
+    }
+
+    private Segment segmentFor(Key key) {
+        return segments[(key.hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private static final class Key {
+        private final String compositeRuleName;
+        private final String text;
+        private final int hash;
+
+        private Key(String compositeRuleName, String text) {
+            this.compositeRuleName = compositeRuleName;
+            this.text = text;
+            this.hash = 31 * compositeRuleName.hashCode() + text.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) object;
+            return hash == key.hash && text.equals(key.text) && compositeRuleName.equals(key.compositeRuleName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Segment {
+        private final Map<Key, RuleEvalResult> entries;
+
+        private Segment(int capacity) {
+            entries = new LinkedHashMap<Key, RuleEvalResult>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, RuleEvalResult> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        private synchronized RuleEvalResult get(Key key) {
+            return entries.get(key);
+        }
+
+        private synchronized void put(Key key, RuleEvalResult ruleEvalResult) {
+            entries.put(key, ruleEvalResult);
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
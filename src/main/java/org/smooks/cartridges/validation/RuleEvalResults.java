@@ -0,0 +1,83 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.cartridges.rules.mvel.MVELRuleEvalResult;
+import org.smooks.cartridges.rules.regex.RegexRuleEvalResult;
+
+/**
+ * {@link RuleEvalResult} utility methods.
+ */
+final class RuleEvalResults {
+
+    private RuleEvalResults() {
+    }
+
+    /**
+     * Get the text on which the rule was evaluated.
+     * <p/>
+     * The {@link RuleEvalResult} interface does not expose the evaluated text, so this
+     * works off the known provider result types.
+     *
+     * @param ruleResult The rule evaluation result.
+     * @return The evaluated text, or null if not available for the result type.
+     */
+    static String getText(RuleEvalResult ruleResult) {
+        if (ruleResult instanceof RegexRuleEvalResult) {
+            return ((RegexRuleEvalResult) ruleResult).getText();
+        } else if (ruleResult instanceof MVELRuleEvalResult) {
+            return ((MVELRuleEvalResult) ruleResult).getText();
+        } else if (ruleResult instanceof DecodedOnFailResult.DecodedRuleEvalResult) {
+            return ((DecodedOnFailResult.DecodedRuleEvalResult) ruleResult).getText();
+        } else if (ruleResult instanceof CodeListProvider.CodeListRuleEvalResult) {
+            return ((CodeListProvider.CodeListRuleEvalResult) ruleResult).getText();
+        } else if (ruleResult instanceof PrimitiveRuleProvider.PrimitiveRuleEvalResult) {
+            return ((PrimitiveRuleProvider.PrimitiveRuleEvalResult) ruleResult).getText();
+        } else if (ruleResult instanceof ConstraintFailure.Result) {
+            return ((ConstraintFailure.Result) ruleResult).getText();
+        }
+
+        return null;
+    }
+}
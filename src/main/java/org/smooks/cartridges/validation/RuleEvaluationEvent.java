@@ -0,0 +1,95 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.smooks.api.ExecutionContext;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+/**
+ * Rule evaluation Flight Recorder event.
+ *
+ * @see ValidationEvents
+ */
+@Name("org.smooks.validation.RuleEvaluation")
+@Label("Rule Evaluation")
+@Category({"Smooks", "Validation"})
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+final class RuleEvaluationEvent extends Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("Rule Provider")
+    String ruleProvider;
+
+    @Label("Text Length")
+    int textLength;
+
+    @Label("Matched")
+    boolean matched;
+
+    static RuleEvalResult evaluate(Validator validator, String text, ExecutionContext executionContext) {
+        final RuleEvaluationEvent event = new RuleEvaluationEvent();
+        event.begin();
+        final RuleEvalResult result = validator.evaluateRule(text, executionContext);
+        event.end();
+        if (event.shouldCommit()) {
+            event.rule = validator.getCompositRuleName();
+            event.ruleProvider = validator.getRuleProviderType();
+            event.textLength = text.length();
+            event.matched = result.matched();
+            event.commit();
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.w3c.dom.Element;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled validation rule guard (the "when" attribute on a validation rule).
+ * <p/>
+ * The guard is tested before the rule is evaluated.  If it does not hold, the rule is not evaluated.
+ * Supported guards:
+ * <ul>
+ *     <li><b>@attr=value</b>, <b>@attr!=value</b>: An attribute on the selected element equals (or does not
+ *     equal) a value.  A missing attribute equals "".</li>
+ *     <li><b>@attr</b>: An attribute on the selected element is present and not empty.</li>
+ *     <li><b>@attr?</b>: An attribute on the selected element is present, even if empty.</li>
+ *     <li><b>beanId.property=value</b>, <b>beanId.property!=value</b>: A bean, or bean property, in the bean
+ *     context equals (or does not equal) a value, compared as Strings.  A null value equals "".</li>
+ *     <li><b>beanId.property</b>: A bean, or bean property, in the bean context is not null and not false.</li>
+ *     <li><b>regex:pattern</b>: The text to be validated contains a match for the pattern.</li>
+ * </ul>
+ * Example, only checking the quantity of product 222 items, where the "orderItem" bean binds the
+ * {@code <product>} and {@code <quantity>} elements of each {@code <order-item>}:
+ * <pre>{@code
+ * <validation:rule executeOn="order-item" name="order.valid_product_222_Qauntity" when="orderItem.product=222" onFail="ERROR"/>
+ * }</pre>
+ */
+interface RuleGuard {
+
+    /**
+     * Regex guard prefix.
+     */
+    String REGEX_PREFIX = "regex:";
+
+    /**
+     * Test the guard.
+     *
+     * @param element          The selected element.
+     * @param text             The text to be validated.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return True if the rule is to be evaluated, otherwise false.
+     */
+    boolean test(Element element, String text, ExecutionContext executionContext);
+
+    /**
+     * Does a guard test the bean context, as opposed to the selected element or text.
+     *
+     * @param when The guard.
+     * @return True if the guard tests the bean context, otherwise false.
+     */
+    static boolean isBeanGuard(String when) {
+        final String guard = when.trim();
+        return !guard.startsWith(REGEX_PREFIX) && !guard.startsWith("@");
+    }
+
+    /**
+     * Compile a guard.
+     *
+     * @param when The guard.
+     * @return The compiled guard.
+     */
+    static RuleGuard compile(String when) {
+        final String guard = when.trim();
+
+        if (guard.startsWith(REGEX_PREFIX)) {
+            try {
+                final Pattern pattern = Pattern.compile(guard.substring(REGEX_PREFIX.length()));
+                return (element, text, executionContext) -> pattern.matcher(text).find();
+            } catch (PatternSyntaxException e) {
+                throw new SmooksConfigException("Invalid regex in validation rule guard '" + when + "'.", e);
+            }
+        }
+
+        final boolean negate;
+        final String operand;
+        final String value;
+        int operatorIndex = guard.indexOf("!=");
+        if (operatorIndex != -1) {
+            negate = true;
+            operand = guard.substring(0, operatorIndex).trim();
+            value = guard.substring(operatorIndex + 2).trim();
+        } else if ((operatorIndex = guard.indexOf('=')) != -1) {
+            negate = false;
+            operand = guard.substring(0, operatorIndex).trim();
+            value = guard.substring(operatorIndex + 1).trim();
+        } else {
+            negate = false;
+            operand = guard;
+            value = null;
+        }
+
+        if (operand.isEmpty() || operand.equals("@")) {
+            throw new SmooksConfigException("Invalid validation rule guard '" + when + "'.  Expected '@attr', '@attr?', '@attr=value', 'beanId.property', 'beanId.property=value' or 'regex:pattern'.");
+        }
+
+        if (operand.charAt(0) == '@') {
+            if (value == null && operand.endsWith("?")) {
+                final String attributeName = operand.substring(1, operand.length() - 1).trim();
+                if (attributeName.isEmpty()) {
+                    throw new SmooksConfigException("Invalid validation rule guard '" + when + "'.  Expected an attribute name.");
+                }
+                return (element, text, executionContext) -> element.hasAttribute(attributeName);
+            }
+            final String attributeName = operand.substring(1);
+            if (value == null) {
+                return (element, text, executionContext) -> !element.getAttribute(attributeName).isEmpty();
+            }
+            return (element, text, executionContext) -> element.getAttribute(attributeName).equals(value) != negate;
+        } else {
+            final BeanPath beanPath = new BeanPath(operand);
+            if (value == null) {
+                return (element, text, executionContext) -> {
+                    Object bean = beanPath.resolve(executionContext.getBeanContext().getBean(beanPath.getBeanId()));
+                    return bean != null && !Boolean.FALSE.equals(bean);
+                };
+            }
+            return (element, text, executionContext) -> {
+                Object bean = beanPath.resolve(executionContext.getBeanContext().getBean(beanPath.getBeanId()));
+                return (bean != null ? bean.toString() : "").equals(value) != negate;
+            };
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.SmooksException;
+import org.smooks.resource.URIResourceLocator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * JVM-wide registry of compiled rule bases and message bundles.
+ * <p/>
+ * A JVM hosting many Smooks configurations typically loads the same rule bases and message bundles many times over.
+ * Compiled rule bases and bundles are shared across all {@link org.smooks.api.ApplicationContext ApplicationContexts}
+ * instead, keyed by kind (e.g. "primitive"), source and content hash.  A source whose content changes is compiled
+ * afresh, so as a configuration never sees another configuration's stale copy.
+ * <p/>
+ * Entries are reference counted by owner (e.g. the {@link org.smooks.cartridges.rules.RuleProvider} holding the
+ * compiled rule base).  Rule providers have no lifecycle of their own, so as an owner's reference is released when
+ * the owner is garbage collected, or explicitly through {@link #release(Object)}.  An entry is removed once it has
+ * no owners.
+ * <p/>
+ * Values are compiled outside the registry lock, so as a slow compilation (e.g. a large code list index) only
+ * delays the owners of the same source.  Concurrent acquirers of a value being compiled wait for it.
+ */
+final class SharedRuleBases {
+
+    private static final Map<Key, Entry> ENTRIES = new HashMap<>();
+    private static final ReferenceQueue<Object> COLLECTED_OWNERS = new ReferenceQueue<>();
+
+    private SharedRuleBases() {
+    }
+
+    /**
+     * Acquire a compiled rule base or message bundle.
+     *
+     * @param owner    The owner of the reference.
+     * @param kind     The kind of compiled value e.g. "primitive".  Values of the same kind must be of the same type.
+     * @param src      The source.
+     * @param compiler Compiles the source content, if not already compiled.
+     * @param <T>      The compiled value type.
+     * @return The shared compiled value.
+     */
+    static <T> T acquire(Object owner, String kind, String src, Function<byte[], T> compiler) {
+        return acquire(owner, kind, src, read(src), compiler);
+    }
+
+    /**
+     * Acquire a compiled rule base or message bundle from already read content.
+     *
+     * @param owner    The owner of the reference.
+     * @param kind     The kind of compiled value e.g. "primitive".  Values of the same kind must be of the same type.
+     * @param src      The source.
+     * @param content  The source content.
+     * @param compiler Compiles the source content, if not already compiled.
+     * @param <T>      The compiled value type.
+     * @return The shared compiled value.
+     */
+    static <T> T acquire(Object owner, String kind, String src, byte[] content, Function<byte[], T> compiler) {
+        final Hasher hasher = new Hasher();
+        for (byte b : content) {
+            hasher.update((char) (b & 0xFF));
+        }
+        return acquire(owner, kind, src, hasher.getHigh(), hasher.getLow(), () -> compiler.apply(content));
+    }
+
+    /**
+     * Acquire a compiled value whose content hash is already known e.g. for sources too large to read into memory.
+     *
+     * @param owner    The owner of the reference.
+     * @param kind     The kind of compiled value e.g. "codeListIndex".  Values of the same kind must be of the same
+     *                 type.
+     * @param src      The source.
+     * @param high     The high 64 bits of the source content hash.
+     * @param low      The low 64 bits of the source content hash.
+     * @param compiler Compiles the source, if not already compiled.
+     * @param <T>      The compiled value type.
+     * @return The shared compiled value.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T acquire(Object owner, String kind, String src, long high, long low, Supplier<T> compiler) {
+        Objects.requireNonNull(owner, "owner");
+        final Key key = new Key(kind, src, high, low);
+
+        final Entry entry;
+        final boolean compile;
+        synchronized (SharedRuleBases.class) {
+            expungeCollectedOwners();
+            Entry existingEntry = ENTRIES.get(key);
+            compile = (existingEntry == null);
+            if (compile) {
+                existingEntry = new Entry(key);
+                ENTRIES.put(key, existingEntry);
+            }
+            existingEntry.owners.add(new OwnerReference(owner, existingEntry));
+            entry = existingEntry;
+        }
+
+        if (compile) {
+            try {
+                entry.value.complete(compiler.get());
+            } catch (RuntimeException | Error e) {
+                // Not shared, so as the next acquirer compiles afresh...
+                synchronized (SharedRuleBases.class) {
+                    ENTRIES.remove(key, entry);
+                }
+                entry.value.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return (T) entry.value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new SmooksException("Failed to compile '" + src + "'.", e.getCause());
+        }
+    }
+
+    /**
+     * Release all the references held by an owner.
+     *
+     * @param owner The owner.
+     */
+    static void release(Object owner) {
+        synchronized (SharedRuleBases.class) {
+            expungeCollectedOwners();
+            final Iterator<Entry> entries = ENTRIES.values().iterator();
+            while (entries.hasNext()) {
+                final Entry entry = entries.next();
+                entry.owners.removeIf(reference -> {
+                    if (reference.owner(owner)) {
+                        reference.clear();
+                        return true;
+                    }
+                    return false;
+                });
+                if (entry.owners.isEmpty()) {
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of owner references on the shared values of a source, across all content versions.
+     *
+     * @param kind The kind of compiled value.
+     * @param src  The source.
+     * @return The number of references.
+     */
+    static int getReferenceCount(String kind, String src) {
+        synchronized (SharedRuleBases.class) {
+            expungeCollectedOwners();
+            int referenceCount = 0;
+            for (Entry entry : ENTRIES.values()) {
+                if (entry.key.kind.equals(kind) && entry.key.src.equals(src)) {
+                    referenceCount += entry.owners.size();
+                }
+            }
+            return referenceCount;
+        }
+    }
+
+    /**
+     * Get the number of shared values.
+     *
+     * @return The number of shared values.
+     */
+    static int size() {
+        synchronized (SharedRuleBases.class) {
+            expungeCollectedOwners();
+            return ENTRIES.size();
+        }
+    }
+
+    private static void expungeCollectedOwners() {
+        for (Reference<?> reference = COLLECTED_OWNERS.poll(); reference != null; reference = COLLECTED_OWNERS.poll()) {
+            final Entry entry = ((OwnerReference) reference).entry;
+            if (entry.owners.remove(reference) && entry.owners.isEmpty()) {
+                ENTRIES.remove(entry.key, entry);
+            }
+        }
+    }
+
+    private static byte[] read(String src) {
+        try (InputStream inputStream = new URIResourceLocator().getResource(src)) {
+            if (inputStream == null) {
+                throw new SmooksException("Failed to read '" + src + "'.  Resource not found.");
+            }
+            return read(inputStream);
+        } catch (IOException e) {
+            throw new SmooksException("Failed to read '" + src + "'.", e);
+        }
+    }
+
+    /**
+     * Read the content of a stream.  The stream is not closed.
+     *
+     * @param inputStream The stream.
+     * @return The content.
+     * @throws IOException Failed to read the stream.
+     */
+    static byte[] read(InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        for (int read = inputStream.read(buffer); read != -1; read = inputStream.read(buffer)) {
+            content.write(buffer, 0, read);
+        }
+        return content.toByteArray();
+    }
+
+    private static final class Key {
+        private final String kind;
+        private final String src;
+        private final long high;
+        private final long low;
+
+        private Key(String kind, String src, long high, long low) {
+            this.kind = kind;
+            this.src = src;
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) object;
+            return high == key.high && low == key.low && kind.equals(key.kind) && src.equals(key.src);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(low);
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        /**
+         * The compiled value.  Completed outside the registry lock.
+         */
+        private final CompletableFuture<Object> value = new CompletableFuture<>();
+        private final Set<OwnerReference> owners = new HashSet<>();
+
+        private Entry(Key key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Weak owner reference, enqueued once the owner has been garbage collected.
+     */
+    private static final class OwnerReference extends WeakReference<Object> {
+        private final Entry entry;
+
+        private OwnerReference(Object owner, Entry entry) {
+            super(owner, COLLECTED_OWNERS);
+            this.entry = entry;
+        }
+
+        private boolean owner(Object owner) {
+            return get() == owner;
+        }
+    }
+}
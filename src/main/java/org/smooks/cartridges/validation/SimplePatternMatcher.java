@@ -0,0 +1,433 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Allocation-free matcher for simple regular expressions.
+ * <p/>
+ * Most validation patterns are simple shapes such as "[0-9]{6}" or "[A-Z]-[0-9]{5}".  Such patterns are compiled
+ * to a table of ASCII character classes with repetition bounds, matched in a single loop without backtracking.
+ * Patterns that are a plain alternation of literals (e.g. "USD|EUR|GBP") are compiled to a set lookup, as are
+ * alternations surrounded by optional whitespace (e.g. "\s*(?:USD|EUR|GBP)\s*"), which trim the text first.
+ * <p/>
+ * Only patterns for which the single loop is exactly equivalent to {@link java.util.regex.Matcher#matches()} are
+ * compiled.  That is, patterns made of literal ASCII characters, non-negated ASCII character classes, "\d",
+ * "\w" and "\s", with "?", "*", "+" and "{n,m}" quantifiers, where a variably repeated class can never
+ * overlap the characters that may follow it.  {@link #compile(String)} returns null for all other patterns,
+ * which must be matched with {@link Pattern}.
+ */
+abstract class SimplePatternMatcher {
+
+    private static final String TRIM_PREFIX = "\\s*(?:";
+    private static final String TRIM_SUFFIX = ")\\s*";
+
+    /**
+     * Does the whole text match the pattern.
+     *
+     * @param text The text.
+     * @return True if the text matches, otherwise false.
+     */
+    abstract boolean matches(CharSequence text);
+
+    /**
+     * Compile a simple pattern.
+     *
+     * @param regex The pattern.
+     * @return The matcher, or null if the pattern is not simple.
+     */
+    static SimplePatternMatcher compile(String regex) {
+        String pattern = regex;
+        if (pattern.startsWith("^")) {
+            pattern = pattern.substring(1);
+        }
+        if (pattern.endsWith("$") && !pattern.endsWith("\\$")) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+
+        if (pattern.startsWith(TRIM_PREFIX) && pattern.endsWith(TRIM_SUFFIX) && pattern.length() >= TRIM_PREFIX.length() + TRIM_SUFFIX.length()) {
+            return LiteralSetMatcher.compileLiterals(pattern.substring(TRIM_PREFIX.length(), pattern.length() - TRIM_SUFFIX.length()), true);
+        }
+
+        final LiteralSetMatcher literalSetMatcher = LiteralSetMatcher.compileLiterals(pattern, false);
+        if (literalSetMatcher != null) {
+            return literalSetMatcher;
+        }
+
+        return ClassSequenceMatcher.compileClasses(pattern);
+    }
+
+    /**
+     * Alternation of literals.
+     */
+    private static final class LiteralSetMatcher extends SimplePatternMatcher {
+        private final Set<String> literals;
+        private final boolean trim;
+
+        private LiteralSetMatcher(Set<String> literals, boolean trim) {
+            this.literals = literals;
+            this.trim = trim;
+        }
+
+        private static LiteralSetMatcher compileLiterals(String pattern, boolean trim) {
+            if (!trim && pattern.indexOf('|') == -1) {
+                return null;
+            }
+
+            final Set<String> literals = new HashSet<>();
+            for (String literal : pattern.split("\\|", -1)) {
+                for (int i = 0; i < literal.length(); i++) {
+                    final char c = literal.charAt(i);
+                    if (!Character.isLetterOrDigit(c) && c != ' ' && c != '_' && c != '-') {
+                        return null;
+                    }
+                }
+                // Surrounding whitespace would be matched by the "\s*"...
+                if (trim && (literal.startsWith(" ") || literal.endsWith(" "))) {
+                    return null;
+                }
+                literals.add(literal);
+            }
+
+            return new LiteralSetMatcher(literals, trim);
+        }
+
+        @Override
+        boolean matches(CharSequence text) {
+            if (!trim) {
+                return literals.contains(text.toString());
+            }
+
+            int start = 0;
+            int end = text.length();
+            while (start < end && isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            return literals.contains(text.subSequence(start, end).toString());
+        }
+
+        /**
+         * Java regex "\s" whitespace.
+         */
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+    }
+
+    /**
+     * Sequence of repeated ASCII character classes.
+     */
+    private static final class ClassSequenceMatcher extends SimplePatternMatcher {
+        /**
+         * Character class bitmaps.  Bits 0-63 in the low word, 64-127 in the high word.
+         */
+        private final long[] lowBits;
+        private final long[] highBits;
+        private final int[] minCounts;
+        private final int[] maxCounts;
+
+        private ClassSequenceMatcher(List<long[]> classes, List<int[]> counts) {
+            final int size = classes.size();
+            lowBits = new long[size];
+            highBits = new long[size];
+            minCounts = new int[size];
+            maxCounts = new int[size];
+            for (int i = 0; i < size; i++) {
+                lowBits[i] = classes.get(i)[0];
+                highBits[i] = classes.get(i)[1];
+                minCounts[i] = counts.get(i)[0];
+                maxCounts[i] = counts.get(i)[1];
+            }
+        }
+
+        private static ClassSequenceMatcher compileClasses(String pattern) {
+            final List<long[]> classes = new ArrayList<>();
+            final List<int[]> counts = new ArrayList<>();
+
+            int index = 0;
+            while (index < pattern.length()) {
+                final long[] characterClass = new long[2];
+                final char c = pattern.charAt(index);
+                if (c == '[') {
+                    final int end = parseClass(pattern, index + 1, characterClass);
+                    if (end == -1) {
+                        return null;
+                    }
+                    index = end;
+                } else if (c == '\\') {
+                    if (index + 1 == pattern.length() || !parseEscape(pattern.charAt(index + 1), characterClass)) {
+                        return null;
+                    }
+                    index += 2;
+                } else if (c < 128 && (Character.isLetterOrDigit(c) || " ,-_:/@#%&=~'\"<>;!".indexOf(c) != -1)) {
+                    add(characterClass, c);
+                    index++;
+                } else {
+                    // Groups, alternation, ".", anchors, or non-ASCII...
+                    return null;
+                }
+
+                final int[] count = {1, 1};
+                index = parseQuantifier(pattern, index, count);
+                if (index == -1) {
+                    return null;
+                }
+
+                classes.add(characterClass);
+                counts.add(count);
+            }
+
+            // A variably repeated class must not overlap the classes that may match the next character,
+            // otherwise the greedy loop is not equivalent to a backtracking match...
+            for (int i = 0; i < classes.size(); i++) {
+                if (counts.get(i)[0] == counts.get(i)[1]) {
+                    continue;
+                }
+                for (int j = i + 1; j < classes.size(); j++) {
+                    if ((classes.get(i)[0] & classes.get(j)[0]) != 0 || (classes.get(i)[1] & classes.get(j)[1]) != 0) {
+                        return null;
+                    }
+                    if (counts.get(j)[0] > 0) {
+                        break;
+                    }
+                }
+            }
+
+            if (classes.isEmpty()) {
+                return null;
+            }
+
+            return new ClassSequenceMatcher(classes, counts);
+        }
+
+        /**
+         * Parse a character class body.
+         *
+         * @return The index after the closing "]", or -1 if the class is not supported.
+         */
+        private static int parseClass(String pattern, int index, long[] characterClass) {
+            if (index < pattern.length() && pattern.charAt(index) == '^') {
+                // Negated classes include non-ASCII characters...
+                return -1;
+            }
+
+            boolean first = true;
+            while (index < pattern.length()) {
+                char c = pattern.charAt(index);
+                if (c == ']') {
+                    return (first ? -1 : index + 1);
+                }
+                first = false;
+
+                if (c == '\\') {
+                    if (index + 1 == pattern.length()) {
+                        return -1;
+                    }
+                    final char escaped = pattern.charAt(index + 1);
+                    if (Character.isLetter(escaped)) {
+                        if (!parseEscape(escaped, characterClass)) {
+                            return -1;
+                        }
+                        index += 2;
+                        continue;
+                    }
+                    c = escaped;
+                    index++;
+                } else if (c == '[' || c == '&') {
+                    // Unions and intersections...
+                    return -1;
+                }
+                if (c >= 128) {
+                    return -1;
+                }
+
+                if (index + 2 < pattern.length() && pattern.charAt(index + 1) == '-' && pattern.charAt(index + 2) != ']') {
+                    final char to = pattern.charAt(index + 2);
+                    if (to == '\\' || to >= 128 || to < c) {
+                        return -1;
+                    }
+                    for (char rangeChar = c; rangeChar <= to; rangeChar++) {
+                        add(characterClass, rangeChar);
+                    }
+                    index += 3;
+                } else {
+                    add(characterClass, c);
+                    index++;
+                }
+            }
+
+            return -1;
+        }
+
+        private static boolean parseEscape(char escaped, long[] characterClass) {
+            switch (escaped) {
+                case 'd':
+                    addRange(characterClass, '0', '9');
+                    return true;
+                case 'w':
+                    addRange(characterClass, 'a', 'z');
+                    addRange(characterClass, 'A', 'Z');
+                    addRange(characterClass, '0', '9');
+                    add(characterClass, '_');
+                    return true;
+                case 's':
+                    for (char c : new char[]{' ', '\t', '\n', '\u000B', '\f', '\r'}) {
+                        add(characterClass, c);
+                    }
+                    return true;
+                default:
+                    if (escaped < 128 && !Character.isLetterOrDigit(escaped)) {
+                        // Escaped punctuation...
+                        add(characterClass, escaped);
+                        return true;
+                    }
+                    return false;
+            }
+        }
+
+        /**
+         * Parse an optional quantifier.
+         *
+         * @return The index after the quantifier, or -1 if the quantifier is not supported.
+         */
+        private static int parseQuantifier(String pattern, int index, int[] count) {
+            if (index == pattern.length()) {
+                return index;
+            }
+
+            final char c = pattern.charAt(index);
+            int next = index + 1;
+            if (c == '?') {
+                count[0] = 0;
+                count[1] = 1;
+            } else if (c == '*') {
+                count[0] = 0;
+                count[1] = Integer.MAX_VALUE;
+            } else if (c == '+') {
+                count[0] = 1;
+                count[1] = Integer.MAX_VALUE;
+            } else if (c == '{') {
+                final int end = pattern.indexOf('}', index);
+                if (end == -1) {
+                    return -1;
+                }
+                final String[] bounds = pattern.substring(index + 1, end).split(",", -1);
+                try {
+                    if (bounds.length == 1) {
+                        count[0] = Integer.parseInt(bounds[0]);
+                        count[1] = count[0];
+                    } else if (bounds.length == 2) {
+                        count[0] = Integer.parseInt(bounds[0]);
+                        count[1] = (bounds[1].isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(bounds[1]));
+                    } else {
+                        return -1;
+                    }
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+                if (count[0] > count[1]) {
+                    return -1;
+                }
+                next = end + 1;
+            } else {
+                return index;
+            }
+
+            if (next < pattern.length() && (pattern.charAt(next) == '?' || pattern.charAt(next) == '+' || pattern.charAt(next) == '*' || pattern.charAt(next) == '{')) {
+                // Lazy, possessive or stacked quantifiers...
+                return -1;
+            }
+
+            return next;
+        }
+
+        private static void add(long[] characterClass, char c) {
+            characterClass[c >>> 6] |= 1L << c;
+        }
+
+        private static void addRange(long[] characterClass, char from, char to) {
+            for (char c = from; c <= to; c++) {
+                add(characterClass, c);
+            }
+        }
+
+        @Override
+        boolean matches(CharSequence text) {
+            final int length = text.length();
+            int position = 0;
+            for (int i = 0; i < lowBits.length; i++) {
+                final long low = lowBits[i];
+                final long high = highBits[i];
+                final int max = maxCounts[i];
+                int count = 0;
+                while (count < max && position < length) {
+                    final char c = text.charAt(position);
+                    if (c >= 128 || ((c < 64 ? low : high) & (1L << c)) == 0) {
+                        break;
+                    }
+                    position++;
+                    count++;
+                }
+                if (count < minCounts[i]) {
+                    return false;
+                }
+            }
+
+            return position == length;
+        }
+
+        @Override
+        public String toString() {
+            return "ClassSequenceMatcher " + Arrays.toString(minCounts) + " " + Arrays.toString(maxCounts);
+        }
+    }
+}
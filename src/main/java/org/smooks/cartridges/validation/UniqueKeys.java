@@ -0,0 +1,560 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksException;
+import org.smooks.api.TypedKey;
+import org.smooks.api.lifecycle.FilterLifecycle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Set of the keys seen by a {@link UniqueRule} within a single scope element.
+ * <p/>
+ * Keys are stored as 128-bit hashes in a primitive open addressing table.  Two keys with the same hash are
+ * treated as duplicates (the collision probability is negligible even at billions of keys).  Once the table
+ * holds the configured maximum number of keys, it is spilled to a temporary file and cleared.  From then on,
+ * keys that are not in the table are tested against a Bloom filter of the spilled keys.  The Bloom filter is
+ * scalable: once a filter holds its capacity, a filter of twice the capacity and half the false positive rate
+ * is added, so as the overall false positive rate stays below 1% however many keys are spilled.
+ * <p/>
+ * Keys that may have been spilled are written to temporary candidate files, and are checked against the spilled
+ * keys, one chunk of at most the maximum number of keys at a time, when the scope closes.  Heap use is therefore
+ * bounded by the maximum number of keys plus the Bloom filters (about 14 bits per spilled key).
+ * <p/>
+ * The temporary files of scopes that don't close (e.g. on a FATAL failure) are deleted when the filter
+ * operation ends (see {@link #register(ApplicationContext)}).
+ */
+final class UniqueKeys {
+
+    private static final TypedKey<Map<String, UniqueKeys>> UNIQUE_KEYS_TYPED_KEY = TypedKey.of();
+
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * False positive rate of the first Bloom filter.  Each following filter halves the rate, so as the
+     * overall rate is at most twice this.
+     */
+    private static final double BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.005;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The enclosing key set of the same name, restored when this key set's scope closes.
+     */
+    private final UniqueKeys parent;
+    private final int maxKeys;
+    private final long expectedKeys;
+
+    /**
+     * Hash table.  Each slot is a high/low pair.  The 0/0 pair marks an empty slot.
+     */
+    private long[] table = new long[INITIAL_CAPACITY * 2];
+    private int size;
+    private final List<File> spillFiles = new ArrayList<>();
+    private final List<BloomFilter> bloomFilters = new ArrayList<>();
+
+    /**
+     * Candidate hashes (high, low, spill count) and, in the same order, candidate keys and paths.
+     */
+    private File candidateHashFile;
+    private File candidateDetailFile;
+    private DataOutputStream candidateHashes;
+    private DataOutputStream candidateDetails;
+    private long candidateCount;
+
+    private UniqueKeys(UniqueKeys parent, int maxKeys, long expectedKeys) {
+        this.parent = parent;
+        this.maxKeys = maxKeys;
+        this.expectedKeys = expectedKeys;
+    }
+
+    /**
+     * Register the deletion of the temporary files of unclosed scopes on an {@link ApplicationContext}, if not
+     * already registered.
+     *
+     * @param applicationContext The {@link ApplicationContext}.
+     */
+    static void register(ApplicationContext applicationContext) {
+        synchronized (UniqueKeys.class) {
+            if (applicationContext.getRegistry().lookup(SpillFileCleanup.class) == null) {
+                applicationContext.getRegistry().registerObject(SpillFileCleanup.class, new SpillFileCleanup());
+            }
+        }
+    }
+
+    /**
+     * Open a new key set scope.
+     *
+     * @param name             The uniqueness rule name.
+     * @param maxKeys          The maximum number of keys held in memory before spilling to disk.
+     * @param expectedKeys     The expected number of keys, used to size the first Bloom filter.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The new key set.
+     */
+    static UniqueKeys open(String name, int maxKeys, long expectedKeys, ExecutionContext executionContext) {
+        Map<String, UniqueKeys> keySets = executionContext.get(UNIQUE_KEYS_TYPED_KEY);
+        if (keySets == null) {
+            keySets = new HashMap<>();
+            executionContext.put(UNIQUE_KEYS_TYPED_KEY, keySets);
+        }
+
+        UniqueKeys uniqueKeys = new UniqueKeys(keySets.get(name), maxKeys, expectedKeys);
+        keySets.put(name, uniqueKeys);
+
+        return uniqueKeys;
+    }
+
+    /**
+     * Get the key set for the innermost open scope.
+     *
+     * @param name             The uniqueness rule name.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The key set, or null if no scope is open.
+     */
+    static UniqueKeys get(String name, ExecutionContext executionContext) {
+        Map<String, UniqueKeys> keySets = executionContext.get(UNIQUE_KEYS_TYPED_KEY);
+        if (keySets == null) {
+            return null;
+        }
+
+        return keySets.get(name);
+    }
+
+    /**
+     * Close the innermost open scope.
+     * <p/>
+     * The caller must {@link #checkSpilled(BiConsumer) check} the returned key set for duplicates of spilled keys.
+     *
+     * @param name             The uniqueness rule name.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The closed key set, or null if no scope is open.
+     */
+    static UniqueKeys close(String name, ExecutionContext executionContext) {
+        Map<String, UniqueKeys> keySets = executionContext.get(UNIQUE_KEYS_TYPED_KEY);
+        if (keySets == null) {
+            return null;
+        }
+
+        UniqueKeys uniqueKeys = keySets.remove(name);
+        if (uniqueKeys != null && uniqueKeys.parent != null) {
+            keySets.put(name, uniqueKeys.parent);
+        }
+
+        return uniqueKeys;
+    }
+
+    /**
+     * Delete the temporary files of all the scopes still open on an {@link ExecutionContext}.
+     *
+     * @param executionContext The {@link ExecutionContext}.
+     */
+    static void deleteAll(ExecutionContext executionContext) {
+        Map<String, UniqueKeys> keySets = executionContext.get(UNIQUE_KEYS_TYPED_KEY);
+        if (keySets == null) {
+            return;
+        }
+
+        for (UniqueKeys uniqueKeys : keySets.values()) {
+            for (; uniqueKeys != null; uniqueKeys = uniqueKeys.parent) {
+                uniqueKeys.delete();
+            }
+        }
+        keySets.clear();
+    }
+
+    /**
+     * Add a key.
+     *
+     * @param key  The key.
+     * @param path Supplies the key fragment path.  Only called if the key may duplicate a spilled key.
+     * @return False if the key is a duplicate of a key held in memory, otherwise true.  Duplicates of spilled
+     * keys are only detected when the scope closes (see {@link #checkSpilled(BiConsumer)}).
+     */
+    boolean add(String key, Supplier<String> path) {
+        final Hasher hasher = new Hasher().update(key);
+        final long high = hasher.getHigh();
+        // 0/0 marks an empty slot...
+        final long low = (high == 0 && hasher.getLow() == 0 ? 1 : hasher.getLow());
+
+        if (!insert(high, low)) {
+            return false;
+        }
+
+        if (!bloomFilters.isEmpty() && mightBeSpilled(high, low)) {
+            addCandidate(high, low, key, path.get());
+        }
+        if (size >= maxKeys) {
+            spill();
+        }
+
+        return true;
+    }
+
+    private boolean insert(long high, long low) {
+        if ((size + 1) * 4L > (table.length / 2) * 3L) {
+            resize();
+        }
+
+        final int mask = (table.length / 2) - 1;
+        int slot = (int) (low ^ (low >>> 32)) & mask;
+        while (true) {
+            final int index = slot * 2;
+            if (table[index] == 0 && table[index + 1] == 0) {
+                table[index] = high;
+                table[index + 1] = low;
+                size++;
+                return true;
+            } else if (table[index] == high && table[index + 1] == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        final long[] oldTable = table;
+        table = new long[oldTable.length * 2];
+        size = 0;
+        for (int i = 0; i < oldTable.length; i += 2) {
+            if (oldTable[i] != 0 || oldTable[i + 1] != 0) {
+                insert(oldTable[i], oldTable[i + 1]);
+            }
+        }
+    }
+
+    private void spill() {
+        final File spillFile = createTempFile(".keys");
+        spillFiles.add(spillFile);
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile), IO_BUFFER_SIZE))) {
+            for (int i = 0; i < table.length; i += 2) {
+                if (table[i] != 0 || table[i + 1] != 0) {
+                    outputStream.writeLong(table[i]);
+                    outputStream.writeLong(table[i + 1]);
+                    addToBloomFilter(table[i], table[i + 1]);
+                }
+            }
+        } catch (IOException e) {
+            throw new SmooksException("Failed to spill unique keys to temporary file '" + spillFile + "'.", e);
+        }
+
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    private void addToBloomFilter(long high, long low) {
+        BloomFilter bloomFilter = (bloomFilters.isEmpty() ? null : bloomFilters.get(bloomFilters.size() - 1));
+        if (bloomFilter == null) {
+            bloomFilter = new BloomFilter(Math.max(expectedKeys, maxKeys), BLOOM_FILTER_FALSE_POSITIVE_RATE);
+            bloomFilters.add(bloomFilter);
+        } else if (bloomFilter.count >= bloomFilter.capacity) {
+            bloomFilter = new BloomFilter(bloomFilter.capacity * 2, bloomFilter.falsePositiveRate / 2);
+            bloomFilters.add(bloomFilter);
+        }
+        bloomFilter.add(high, low);
+    }
+
+    private boolean mightBeSpilled(long high, long low) {
+        for (BloomFilter bloomFilter : bloomFilters) {
+            if (bloomFilter.mightContain(high, low)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void addCandidate(long high, long low, String key, String path) {
+        try {
+            if (candidateHashes == null) {
+                candidateHashFile = createTempFile(".candidates");
+                candidateHashes = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(candidateHashFile), IO_BUFFER_SIZE));
+                candidateDetailFile = createTempFile(".paths");
+                candidateDetails = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(candidateDetailFile), IO_BUFFER_SIZE));
+            }
+            candidateHashes.writeLong(high);
+            candidateHashes.writeLong(low);
+            candidateHashes.writeInt(spillFiles.size());
+            writeString(key, candidateDetails);
+            writeString(path, candidateDetails);
+            candidateCount++;
+        } catch (IOException e) {
+            throw new SmooksException("Failed to write unique key candidate to a temporary file.", e);
+        }
+    }
+
+    /**
+     * Check the candidates against the spilled keys and delete the temporary files.
+     *
+     * @param duplicateHandler Called with the key and path of each candidate that duplicates a spilled key, in the
+     *                         order the candidates were added.
+     */
+    void checkSpilled(BiConsumer<String, String> duplicateHandler) {
+        try {
+            if (candidateCount == 0) {
+                return;
+            }
+            try {
+                candidateHashes.close();
+                candidateDetails.close();
+            } catch (IOException e) {
+                throw new SmooksException("Failed to write unique key candidates to temporary file '" + candidateHashFile + "'.", e);
+            }
+
+            try (DataInputStream hashes = new DataInputStream(new BufferedInputStream(new FileInputStream(candidateHashFile), IO_BUFFER_SIZE));
+                 DataInputStream details = new DataInputStream(new BufferedInputStream(new FileInputStream(candidateDetailFile), IO_BUFFER_SIZE))) {
+                for (long checked = 0; checked < candidateCount; ) {
+                    final CandidateChunk chunk = new CandidateChunk((int) Math.min(candidateCount - checked, Math.max(maxKeys, 1)), hashes);
+                    for (int run = 0; run < spillFiles.size(); run++) {
+                        chunk.match(run, spillFiles.get(run));
+                    }
+                    for (int i = 0; i < chunk.size; i++) {
+                        final String key = readString(details);
+                        final String path = readString(details);
+                        if (chunk.duplicates.get(i)) {
+                            duplicateHandler.accept(key, path);
+                        }
+                    }
+                    checked += chunk.size;
+                }
+            } catch (IOException e) {
+                throw new SmooksException("Failed to read unique key candidates from temporary file '" + candidateHashFile + "'.", e);
+            }
+        } finally {
+            delete();
+        }
+    }
+
+    /**
+     * Get the number of temporary files the keys were spilled to.
+     *
+     * @return The spill file count.
+     */
+    int getSpillCount() {
+        return spillFiles.size();
+    }
+
+    /**
+     * Get the number of keys that may duplicate a spilled key.
+     *
+     * @return The candidate count.
+     */
+    long getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * Delete the temporary files.
+     */
+    void delete() {
+        try {
+            if (candidateHashes != null) {
+                candidateHashes.close();
+                candidateDetails.close();
+            }
+        } catch (IOException e) {
+            // Deleted anyway...
+        }
+        if (candidateHashFile != null) {
+            candidateHashFile.delete();
+            candidateDetailFile.delete();
+        }
+        for (File spillFile : spillFiles) {
+            spillFile.delete();
+        }
+        spillFiles.clear();
+        candidateHashes = null;
+        candidateDetails = null;
+        candidateHashFile = null;
+        candidateDetailFile = null;
+        candidateCount = 0;
+    }
+
+    private static File createTempFile(String suffix) {
+        try {
+            return File.createTempFile("smooks-unique-", suffix);
+        } catch (IOException e) {
+            throw new SmooksException("Failed to create temporary file for unique keys.", e);
+        }
+    }
+
+    private static void writeString(String string, DataOutputStream outputStream) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        final byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Bloom filter of a fixed capacity and false positive rate.
+     */
+    private static final class BloomFilter {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long[] bits;
+        private final long numBits;
+        private final int numHashes;
+        private long count;
+
+        private BloomFilter(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            final double log2 = Math.log(2);
+            final long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (log2 * log2));
+            bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) / 64))];
+            numBits = bits.length * 64L;
+            numHashes = Math.max(1, (int) Math.round(-Math.log(falsePositiveRate) / log2));
+        }
+
+        private void add(long high, long low) {
+            for (int i = 0; i < numHashes; i++) {
+                final long bit = Math.floorMod(high + i * low, numBits);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            count++;
+        }
+
+        private boolean mightContain(long high, long low) {
+            for (int i = 0; i < numHashes; i++) {
+                final long bit = Math.floorMod(high + i * low, numBits);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * A chunk of candidates, indexed by hash in primitive arrays.
+     */
+    private static final class CandidateChunk {
+        private final int size;
+        private final long[] highs;
+        private final long[] lows;
+        private final int[] spillCounts;
+        /**
+         * Open addressing index of candidate positions + 1, with 0 marking an empty slot.
+         */
+        private final int[] index;
+        private final BitSet duplicates;
+
+        private CandidateChunk(int size, DataInputStream hashes) throws IOException {
+            this.size = size;
+            highs = new long[size];
+            lows = new long[size];
+            spillCounts = new int[size];
+            index = new int[Integer.highestOneBit(Math.max(size, 1) * 2 - 1) * 2];
+            duplicates = new BitSet(size);
+
+            final int mask = index.length - 1;
+            for (int i = 0; i < size; i++) {
+                highs[i] = hashes.readLong();
+                lows[i] = hashes.readLong();
+                spillCounts[i] = hashes.readInt();
+                int slot = (int) (lows[i] ^ (lows[i] >>> 32)) & mask;
+                while (index[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                index[slot] = i + 1;
+            }
+        }
+
+        private void match(int run, File spillFile) throws IOException {
+            final int mask = index.length - 1;
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile), IO_BUFFER_SIZE))) {
+                while (true) {
+                    final long high = inputStream.readLong();
+                    final long low = inputStream.readLong();
+                    for (int slot = (int) (low ^ (low >>> 32)) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+                        final int candidate = index[slot] - 1;
+                        // Only keys spilled before the candidate was added...
+                        if (highs[candidate] == high && lows[candidate] == low && run < spillCounts[candidate]) {
+                            duplicates.set(candidate);
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                // End of run...
+            }
+        }
+    }
+
+    /**
+     * Deletes the temporary files of the scopes that did not close, once the filter operation has ended.
+     */
+    private static final class SpillFileCleanup implements FilterLifecycle {
+
+        @Override
+        public void onPreFilter(ExecutionContext executionContext) {
+        }
+
+        @Override
+        public void onPostFilter(ExecutionContext executionContext) {
+            deleteAll(executionContext);
+        }
+    }
+}
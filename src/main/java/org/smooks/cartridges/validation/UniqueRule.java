@@ -0,0 +1,207 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksException;
+import org.smooks.api.resource.config.ResourceConfig;
+import org.smooks.api.resource.visitor.VisitAfterReport;
+import org.smooks.api.resource.visitor.VisitBeforeReport;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.ChildrenVisitor;
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.engine.delivery.fragment.NodeFragment;
+import org.smooks.engine.memento.TextAccumulatorMemento;
+import org.smooks.engine.memento.TextAccumulatorVisitorMemento;
+import org.smooks.engine.resource.config.xpath.IndexedSelectorPath;
+import org.smooks.engine.resource.config.xpath.step.AttributeSelectorStep;
+import org.smooks.support.DomUtils;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Element;
+
+import javax.inject.Inject;
+import java.util.Optional;
+
+/**
+ * Uniqueness validation rule.
+ * <p/>
+ * Fails on key values that were already seen within the enclosing scope element (the whole document by default).
+ * Configured, together with a {@link UniqueScope} on the scope element, by the {@code <validation:unique>} element.
+ * <p>
+ * Example configuration:
+ * <pre>{@code
+ * <validation:unique name="itemId" executeOn="order-item/@id" scope="order" onFail="ERROR" />
+ * }</pre>
+ * Empty keys are not checked.  Duplicates are normally reported as they are found.  Duplicates of keys that were
+ * spilled to disk (see {@link UniqueKeys}) are reported when the scope closes.  Uniqueness rule names must be unique.
+ */
+@VisitBeforeReport(condition = "false")
+@VisitAfterReport(summary = "Applied uniqueness rule '${resource.parameters.name}'.")
+public final class UniqueRule implements ChildrenVisitor, AfterVisitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UniqueRule.class);
+
+    /**
+     * Rule provider name on the {@link RuleEvalResult} of uniqueness rule failures.
+     */
+    public static final String RULE_PROVIDER_NAME = "unique";
+
+    /**
+     * The uniqueness rule name.
+     */
+    private String name;
+    /**
+     * The validation failure level. Default is OnFail.ERROR.
+     */
+    private OnFail onFail = OnFail.ERROR;
+    /**
+     * Attribute name if the key is an attribute, otherwise null.
+     */
+    private String targetAttribute;
+    /**
+     * Config.
+     */
+    @Inject
+    private ResourceConfig resourceConfig;
+
+    /**
+     * Initialize the visitor instance.
+     */
+    @PostConstruct
+    public void postConstruct() {
+        if (resourceConfig.getSelectorPath() instanceof IndexedSelectorPath &&
+                ((IndexedSelectorPath) resourceConfig.getSelectorPath()).getTargetSelectorStep() instanceof AttributeSelectorStep) {
+            targetAttribute = ((AttributeSelectorStep) ((IndexedSelectorPath) resourceConfig.getSelectorPath()).
+                    getTargetSelectorStep()).getQName().getLocalPart();
+        } else {
+            targetAttribute = null;
+        }
+    }
+
+    @Override
+    public void visitAfter(final Element element, final ExecutionContext executionContext) throws SmooksException {
+        final UniqueKeys uniqueKeys = UniqueKeys.get(name, executionContext);
+        if (uniqueKeys == null) {
+            return;
+        }
+
+        final String key;
+        if (targetAttribute != null) {
+            key = element.getAttribute(targetAttribute).trim();
+        } else {
+            TextAccumulatorMemento textAccumulatorMemento = new TextAccumulatorVisitorMemento(new NodeFragment(element), this);
+            executionContext.getMementoCaretaker().restore(textAccumulatorMemento);
+            key = textAccumulatorMemento.getText().trim();
+        }
+
+        // The path is only built for reported keys...
+        if (!key.isEmpty() && !uniqueKeys.add(key, () -> getPath(element))) {
+            reportDuplicate(name, key, getPath(element), onFail, executionContext);
+        }
+    }
+
+    private String getPath(final Element element) {
+        return (targetAttribute != null ? DomUtils.getXPath(element) + "/@" + targetAttribute : DomUtils.getXPath(element));
+    }
+
+    /**
+     * Report a duplicate key.
+     *
+     * @param name             The uniqueness rule name.
+     * @param key              The duplicate key.
+     * @param path             The duplicate key fragment path.
+     * @param onFail           The failure level.
+     * @param executionContext The {@link ExecutionContext}.
+     * @throws ValidationException A FATAL Validation failure has occured, or the maximum number of
+     *                             allowed failures has been exceeded.
+     */
+    static void reportDuplicate(final String name, final String key, final String path, final OnFail onFail, final ExecutionContext executionContext) throws ValidationException {
+        final String message = "Uniqueness rule '" + name + "' failed on '" + path + "': duplicate key '" + key + "'.";
+        final ConstraintFailure result = new ConstraintFailure(path, new ConstraintFailure.Result(name, RULE_PROVIDER_NAME, key), locale -> message);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(result.toString());
+        }
+        Validator.reportFailure(result, onFail, Validator.getMaxFails(executionContext), executionContext);
+    }
+
+    @Override
+    public void visitChildText(final CharacterData characterData, final ExecutionContext executionContext) {
+        if (targetAttribute == null) {
+            TextAccumulatorMemento textAccumulatorMemento = new TextAccumulatorVisitorMemento(new NodeFragment(characterData.getParentNode()), this);
+            executionContext.getMementoCaretaker().restore(textAccumulatorMemento);
+            textAccumulatorMemento.accumulateText(characterData.getTextContent());
+            executionContext.getMementoCaretaker().capture(textAccumulatorMemento);
+        }
+    }
+
+    @Override
+    public void visitChildElement(final Element childElement, final ExecutionContext executionContext) {
+
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [name=%s, onFail=%s]", getClass().getSimpleName(), name, onFail);
+    }
+
+    @Inject
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Inject
+    public void setOnFail(final Optional<OnFail> onFail) {
+        this.onFail = onFail.orElse(OnFail.ERROR);
+    }
+
+    public OnFail getOnFail() {
+        return onFail;
+    }
+}
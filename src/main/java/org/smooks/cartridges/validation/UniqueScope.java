@@ -0,0 +1,152 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jakarta.annotation.PostConstruct;
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.resource.visitor.VisitAfterReport;
+import org.smooks.api.resource.visitor.VisitBeforeReport;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.BeforeVisitor;
+import org.w3c.dom.Element;
+
+import javax.inject.Inject;
+import java.util.Optional;
+
+/**
+ * Opens and closes the {@link UniqueKeys key set} of a {@link UniqueRule} on the rule's scope element.
+ * <p/>
+ * Duplicates of keys that were spilled to disk are reported when the scope closes.
+ */
+@VisitBeforeReport(summary = "Opened scope for uniqueness rule '${resource.parameters.name}'.")
+@VisitAfterReport(summary = "Closed scope for uniqueness rule '${resource.parameters.name}'.")
+public final class UniqueScope implements BeforeVisitor, AfterVisitor {
+
+    /**
+     * Default maximum number of keys held in memory, per scope.
+     */
+    public static final int DEFAULT_MAX_KEYS = 1000000;
+    /**
+     * Default expected number of keys, per scope.
+     */
+    public static final long DEFAULT_EXPECTED_KEYS = 10000000;
+
+    /**
+     * The uniqueness rule name.
+     */
+    private String name;
+    /**
+     * The validation failure level. Default is OnFail.ERROR.
+     */
+    private OnFail onFail = OnFail.ERROR;
+    private int maxKeys = DEFAULT_MAX_KEYS;
+    private long expectedKeys = DEFAULT_EXPECTED_KEYS;
+    @Inject
+    private ApplicationContext applicationContext;
+
+    /**
+     * Initialize the visitor instance.
+     */
+    @PostConstruct
+    public void postConstruct() {
+        if (maxKeys < 1) {
+            throw new SmooksConfigException("Invalid config value '" + maxKeys + "' for parameter 'maxKeys' of uniqueness rule '" + name + "'.  Must be a positive Integer value.");
+        }
+        UniqueKeys.register(applicationContext);
+    }
+
+    @Override
+    public void visitBefore(final Element element, final ExecutionContext executionContext) throws SmooksException {
+        UniqueKeys.open(name, maxKeys, expectedKeys, executionContext);
+    }
+
+    @Override
+    public void visitAfter(final Element element, final ExecutionContext executionContext) throws SmooksException {
+        final UniqueKeys uniqueKeys = UniqueKeys.close(name, executionContext);
+        if (uniqueKeys == null) {
+            return;
+        }
+
+        uniqueKeys.checkSpilled((key, path) -> UniqueRule.reportDuplicate(name, key, path, onFail, executionContext));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [name=%s, maxKeys=%d]", getClass().getSimpleName(), name, maxKeys);
+    }
+
+    @Inject
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Inject
+    public void setOnFail(final Optional<OnFail> onFail) {
+        this.onFail = onFail.orElse(OnFail.ERROR);
+    }
+
+    @Inject
+    public void setMaxKeys(final Optional<Integer> maxKeys) {
+        this.maxKeys = maxKeys.orElse(DEFAULT_MAX_KEYS);
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    @Inject
+    public void setExpectedKeys(final Optional<Long> expectedKeys) {
+        this.expectedKeys = expectedKeys.orElse(DEFAULT_EXPECTED_KEYS);
+    }
+
+    public long getExpectedKeys() {
+        return expectedKeys;
+    }
+}
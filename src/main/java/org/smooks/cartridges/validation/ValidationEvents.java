@@ -0,0 +1,137 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.lifecycle.FilterLifecycle;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+/**
+ * Java Flight Recorder events for validation.
+ * <p/>
+ * Three events are emitted when enabled in a recording:
+ * <ul>
+ *     <li><b>org.smooks.validation.RuleEvaluation</b>: A rule evaluation that took longer than the event threshold
+ *     (default 1 ms), with the rule name, rule provider, text length and whether the rule matched.</li>
+ *     <li><b>org.smooks.validation.Failure</b>: A validation failure, with the rule name, onFail level and
+ *     fragment path.</li>
+ *     <li><b>org.smooks.validation.Summary</b>: The filter operation of a document, with its
+ *     {@link ValidationResult} failure counts.</li>
+ * </ul>
+ * The events are disabled by default, and must be enabled in the recording settings e.g.
+ * <pre>
+ * &lt;event name="org.smooks.validation.RuleEvaluation"&gt;
+ *     &lt;setting name="enabled"&gt;true&lt;/setting&gt;
+ *     &lt;setting name="threshold"&gt;100 us&lt;/setting&gt;
+ * &lt;/event&gt;
+ * </pre>
+ * Disabled events cost a flag check.  On JVMs without Flight Recorder, no events are emitted.
+ */
+final class ValidationEvents {
+
+    /**
+     * Is Flight Recorder available on this JVM.
+     */
+    static final boolean AVAILABLE = isAvailable();
+
+    private ValidationEvents() {
+    }
+
+    /**
+     * Register the document summary event on an {@link ApplicationContext}, if not already registered.
+     *
+     * @param applicationContext The {@link ApplicationContext}.
+     */
+    static void register(ApplicationContext applicationContext) {
+        synchronized (ValidationEvents.class) {
+            if (applicationContext.getRegistry().lookup(SummaryLifecycle.class) == null) {
+                applicationContext.getRegistry().registerObject(SummaryLifecycle.class, new SummaryLifecycle());
+            }
+        }
+    }
+
+    /**
+     * Evaluate a validator's rule, recording a rule evaluation event.
+     *
+     * @param validator        The validator.
+     * @param text             The text to be validated.
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The rule evaluation result.
+     */
+    static RuleEvalResult evaluate(Validator validator, String text, ExecutionContext executionContext) {
+        return RuleEvaluationEvent.evaluate(validator, text, executionContext);
+    }
+
+    /**
+     * Record a failure event.
+     *
+     * @param result The failure.
+     * @param onFail The failure level.
+     */
+    static void failure(OnFailResult result, OnFail onFail) {
+        ValidationFailureEvent.emit(result, onFail);
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static final class SummaryLifecycle implements FilterLifecycle {
+
+        @Override
+        public void onPreFilter(ExecutionContext executionContext) {
+            ValidationSummaryEvent.begin(executionContext);
+        }
+
+        @Override
+        public void onPostFilter(ExecutionContext executionContext) {
+            ValidationSummaryEvent.commit(executionContext);
+        }
+    }
+}
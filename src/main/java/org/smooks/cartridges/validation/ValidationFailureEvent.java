@@ -0,0 +1,86 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+/**
+ * Validation failure Flight Recorder event.
+ *
+ * @see ValidationEvents
+ */
+@Name("org.smooks.validation.Failure")
+@Label("Validation Failure")
+@Category({"Smooks", "Validation"})
+@Enabled(false)
+@StackTrace(false)
+final class ValidationFailureEvent extends Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("On Fail")
+    String onFail;
+
+    @Label("Path")
+    String path;
+
+    static void emit(OnFailResult result, OnFail onFail) {
+        final ValidationFailureEvent event = new ValidationFailureEvent();
+        if (event.shouldCommit()) {
+            final RuleEvalResult ruleResult = result.getFailRuleResult();
+            if (ruleResult != null) {
+                event.rule = ruleResult.getRuleProviderName() + "." + ruleResult.getRuleName();
+            }
+            event.onFail = onFail.name();
+            event.path = result.getFailFragmentPath();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+/**
+ * Reactive stream interfaces for validation streams.
+ * <p/>
+ * The interfaces have the same methods and contracts as those of {@code java.util.concurrent.Flow}, which is not
+ * available on Java 8.  On Java 9 and later, adapting them to {@code Flow} is a matter of delegation.
+ *
+ * @see ValidationProcessor
+ */
+public final class ValidationFlow {
+
+    private ValidationFlow() {
+    }
+
+    /**
+     * A producer of items received by {@link Subscriber}s.
+     *
+     * @param <T> The published item type.
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Add a subscriber.  The subscriber's {@link Subscriber#onSubscribe(Subscription)} is called before any
+         * other signal.
+         *
+         * @param subscriber The subscriber.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items.  Signals to a subscriber are never concurrent.
+     *
+     * @param <T> The subscribed item type.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called before any other signal, with the subscription used to request items.
+         *
+         * @param subscription The subscription.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item.  Never called more often than requested.
+         *
+         * @param item The item.
+         */
+        void onNext(T item);
+
+        /**
+         * Called when the stream terminates with an error.  No further signals follow.
+         *
+         * @param throwable The error.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when the stream completes.  No further signals follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a {@link Publisher} and a {@link Subscriber}.
+     */
+    public interface Subscription {
+
+        /**
+         * Request up to n more items.
+         *
+         * @param n The number of items.  Must be positive.
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving items.
+         */
+        void cancel();
+    }
+
+    /**
+     * A stage that is both a {@link Subscriber} and a {@link Publisher}.
+     *
+     * @param <T> The subscribed item type.
+     * @param <R> The published item type.
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
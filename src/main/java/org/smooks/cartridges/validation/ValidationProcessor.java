@@ -0,0 +1,409 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.Smooks;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Validates a stream of {@link Source}s, publishing a {@link ValidationResult} for each.
+ * <p/>
+ * Sources are filtered one at a time, in order, on a caller-supplied {@link Executor}, so no thread is held by a
+ * document waiting to be filtered.  Sources are requested from upstream only when the downstream subscriber has
+ * requested a result, so a slow subscriber holds back the publisher of sources rather than queueing documents.
+ * The executor may run the filtering on the calling thread (e.g. {@code Runnable::run}), also with a synchronous
+ * publisher of sources.
+ * <pre>
+ * ValidationProcessor processor = new ValidationProcessor(smooks, executor);
+ * sourcePublisher.subscribe(processor);
+ * processor.subscribe(resultSubscriber);
+ * </pre>
+ * A document that fails validation with a {@link OnFail#FATAL FATAL} failure, or that exceeds the maximum number of
+ * failures, is published like any other, with the failure on its {@link ValidationResult}.  Any other filter error
+ * terminates the stream with {@link ValidationFlow.Subscriber#onError(Throwable)}.
+ * <p/>
+ * Cancelling the subscription cancels the upstream subscription and aborts the document being filtered.  A
+ * {@link StreamSource} with a {@link Reader} or {@link InputStream} is aborted at its next read.  Other sources
+ * are filtered to the end, but their results are discarded.
+ * <p/>
+ * A processor supports a single subscriber.
+ */
+public class ValidationProcessor implements ValidationFlow.Processor<Source, ValidationResult> {
+
+    private final Smooks smooks;
+    private final Executor executor;
+    private final Supplier<ValidationResult> resultFactory;
+
+    private ValidationFlow.Subscription upstream;
+    private ValidationFlow.Subscriber<? super ValidationResult> downstream;
+    private long demand;
+    private boolean requested;
+    private boolean filtering;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private boolean terminated;
+    private volatile boolean cancelled;
+    /**
+     * Number of {@link #requestSource()} calls not yet drained.  Non-zero while a thread is draining.
+     */
+    private int requestsPending;
+
+    /**
+     * Public constructor.
+     *
+     * @param smooks   The {@link Smooks} instance used to filter the sources.
+     * @param executor The executor on which the sources are filtered.
+     */
+    public ValidationProcessor(final Smooks smooks, final Executor executor) {
+        this(smooks, executor, ValidationResult::new);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param smooks        The {@link Smooks} instance used to filter the sources.
+     * @param executor      The executor on which the sources are filtered.
+     * @param resultFactory Creates the {@link ValidationResult} for each source e.g. to aggregate repeated failures.
+     */
+    public ValidationProcessor(final Smooks smooks, final Executor executor, final Supplier<ValidationResult> resultFactory) {
+        this.smooks = Objects.requireNonNull(smooks, "smooks");
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.resultFactory = Objects.requireNonNull(resultFactory, "resultFactory");
+    }
+
+    @Override
+    public void subscribe(final ValidationFlow.Subscriber<? super ValidationResult> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        synchronized (this) {
+            if (downstream != null) {
+                subscriber.onSubscribe(new NoSubscription());
+                subscriber.onError(new IllegalStateException("ValidationProcessor supports a single subscriber."));
+                return;
+            }
+            downstream = subscriber;
+        }
+        subscriber.onSubscribe(new ResultSubscription());
+        completeIfDone();
+    }
+
+    @Override
+    public void onSubscribe(final ValidationFlow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        synchronized (this) {
+            if (upstream != null || cancelled) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        requestSource();
+    }
+
+    @Override
+    public void onNext(final Source source) {
+        Objects.requireNonNull(source, "source");
+        synchronized (this) {
+            if (cancelled || terminated) {
+                return;
+            }
+            requested = false;
+            filtering = true;
+        }
+
+        try {
+            executor.execute(() -> filter(source));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                filtering = false;
+            }
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        Objects.requireNonNull(throwable, "throwable");
+        synchronized (this) {
+            upstreamDone = true;
+            upstreamError = throwable;
+        }
+        completeIfDone();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+        }
+        completeIfDone();
+    }
+
+    private void filter(final Source source) {
+        final ValidationResult validationResult = resultFactory.get();
+        try {
+            smooks.filterSource(smooks.createExecutionContext(), cancellable(source), validationResult);
+        } catch (RuntimeException e) {
+            if (!isValidationFailure(e)) {
+                synchronized (this) {
+                    filtering = false;
+                }
+                fail(e);
+                return;
+            }
+        }
+
+        final ValidationFlow.Subscriber<? super ValidationResult> subscriber;
+        synchronized (this) {
+            if (cancelled || terminated) {
+                filtering = false;
+                return;
+            }
+            demand--;
+            subscriber = downstream;
+        }
+        subscriber.onNext(validationResult);
+        synchronized (this) {
+            filtering = false;
+        }
+        completeIfDone();
+        requestSource();
+    }
+
+    /**
+     * Request the next source, if there is demand and no source is being filtered.
+     * <p/>
+     * A synchronous upstream and executor filter the next source, and call back into this method, from within
+     * {@link ValidationFlow.Subscription#request(long)}.  Nested calls only count themselves pending, and are
+     * drained in a loop by the outermost call, so as the stack does not grow with every document.
+     */
+    private void requestSource() {
+        synchronized (this) {
+            if (requestsPending++ > 0) {
+                return;
+            }
+        }
+
+        while (true) {
+            ValidationFlow.Subscription subscription = null;
+            synchronized (this) {
+                if (!(upstream == null || downstream == null || demand <= 0 || requested || filtering || upstreamDone || cancelled || terminated)) {
+                    requested = true;
+                    subscription = upstream;
+                }
+            }
+            final boolean again;
+            try {
+                if (subscription != null) {
+                    subscription.request(1);
+                }
+            } finally {
+                synchronized (this) {
+                    // Drain again if called while requesting...
+                    again = requestsPending > 1;
+                    requestsPending = (again ? 1 : 0);
+                }
+            }
+            if (!again) {
+                return;
+            }
+        }
+    }
+
+    private void completeIfDone() {
+        final ValidationFlow.Subscriber<? super ValidationResult> subscriber;
+        final Throwable error;
+        synchronized (this) {
+            if (!upstreamDone || filtering || downstream == null || cancelled || terminated) {
+                return;
+            }
+            terminated = true;
+            subscriber = downstream;
+            error = upstreamError;
+        }
+        if (error != null) {
+            subscriber.onError(error);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private void fail(final Throwable throwable) {
+        final ValidationFlow.Subscriber<? super ValidationResult> subscriber;
+        final ValidationFlow.Subscription subscription;
+        synchronized (this) {
+            if (cancelled || terminated) {
+                return;
+            }
+            terminated = true;
+            subscriber = downstream;
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        subscriber.onError(throwable);
+    }
+
+    private void cancel() {
+        final ValidationFlow.Subscription subscription;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private static boolean isValidationFailure(Throwable throwable) {
+        while (throwable != null) {
+            if (throwable instanceof ValidationException) {
+                return true;
+            }
+            throwable = throwable.getCause();
+        }
+        return false;
+    }
+
+    private Source cancellable(final Source source) {
+        if (source instanceof StreamSource) {
+            final StreamSource streamSource = (StreamSource) source;
+            if (streamSource.getReader() != null) {
+                return new StreamSource(new CancellableReader(streamSource.getReader()), streamSource.getSystemId());
+            } else if (streamSource.getInputStream() != null) {
+                return new StreamSource(new CancellableInputStream(streamSource.getInputStream()), streamSource.getSystemId());
+            }
+        }
+        return source;
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Validation stream cancelled.");
+        }
+    }
+
+    private final class ResultSubscription implements ValidationFlow.Subscription {
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Non-positive request of " + n + " results."));
+                cancel();
+                return;
+            }
+            synchronized (ValidationProcessor.this) {
+                demand = (demand + n < 0 ? Long.MAX_VALUE : demand + n);
+            }
+            requestSource();
+        }
+
+        @Override
+        public void cancel() {
+            ValidationProcessor.this.cancel();
+        }
+    }
+
+    private static final class NoSubscription implements ValidationFlow.Subscription {
+
+        @Override
+        public void request(final long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    private final class CancellableReader extends FilterReader {
+
+        private CancellableReader(final Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) throws IOException {
+            checkCancelled();
+            return super.read(buffer, offset, length);
+        }
+    }
+
+    private final class CancellableInputStream extends FilterInputStream {
+
+        private CancellableInputStream(final InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            checkCancelled();
+            return super.read(buffer, offset, length);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ExecutionContext;
+import org.smooks.io.payload.FilterResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-document validation timing profile.
+ * <p/>
+ * Records cumulative {@link System#nanoTime()} times and counts per validation {@link Phase}, and per rule,
+ * for the filter operations of the {@link ValidationResult} it is set on:
+ * <pre>
+ * ValidationResult result = new ValidationResult();
+ * result.setProfile(new ValidationProfile());
+ * smooks.filterSource(source, result);
+ * System.out.println(result.getProfile());
+ * </pre>
+ * To lower the overhead on large documents, only one in every "sample interval" executions of a phase is timed,
+ * and the reported times are estimated from the timed executions.  Rule evaluations are sampled per rule (the
+ * first, and then every "sample interval"th, evaluation of each rule), so as every rule is timed however the rules
+ * interleave, and the rule evaluation time is the sum of the rule times.  Other phases are sampled at random, so
+ * as a fixed cycle of executions can't hide the expensive ones.  Counts are always exact.
+ * <p/>
+ * Message rendering is recorded when the failure messages are rendered, which is normally after the filter
+ * operation.  Asynchronous rule evaluations are not timed.  Validation does not look for a profile until a
+ * profile has been created in the JVM, so profiling costs nothing when it is not used.
+ */
+public final class ValidationProfile {
+
+    /**
+     * Validation phase.
+     */
+    public enum Phase {
+        /**
+         * Accumulating the selected element text, or reading the selected attribute.
+         */
+        TEXT_ACCUMULATION,
+        /**
+         * Evaluating the rules.
+         */
+        RULE_EVALUATION,
+        /**
+         * Copying the bean context of failures, for message rendering.
+         */
+        BEAN_SNAPSHOT,
+        /**
+         * Rendering failure messages.
+         */
+        MESSAGE_RENDERING
+    }
+
+    /**
+     * Has a profile been created in this JVM.
+     */
+    private static volatile boolean used;
+
+    private final int sampleInterval;
+    private final Timing[] phases = new Timing[Phase.values().length];
+    private final Map<String, Timing> rules = new HashMap<>();
+
+    /**
+     * Public constructor.  Every phase execution is timed.
+     */
+    public ValidationProfile() {
+        this(1);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param sampleInterval Time one in every "sampleInterval" executions of each phase.
+     */
+    public ValidationProfile(int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Invalid sampleInterval '" + sampleInterval + "'.  Must be greater than 0.");
+        }
+        this.sampleInterval = sampleInterval;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Timing();
+        }
+        used = true;
+    }
+
+    /**
+     * Get the profile of the {@link ValidationResult} associated with an {@link ExecutionContext}.
+     *
+     * @param executionContext The {@link ExecutionContext}.
+     * @return The profile, or null if the filter operation is not profiled.
+     */
+    static ValidationProfile get(ExecutionContext executionContext) {
+        if (!used) {
+            return null;
+        }
+
+        final ValidationResult validationResult = (ValidationResult) FilterResult.getResult(executionContext, ValidationResult.class);
+        return (validationResult != null ? validationResult.getProfile() : null);
+    }
+
+    /**
+     * Start a phase execution.  Use {@link #startRule(String)} for {@link Phase#RULE_EVALUATION}.
+     *
+     * @param phase The phase.
+     * @return The start time, or -1 if this execution is not sampled.
+     */
+    synchronized long start(Phase phase) {
+        phases[phase.ordinal()].count++;
+        return (sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0 ? System.nanoTime() : -1);
+    }
+
+    /**
+     * Start a rule evaluation.
+     *
+     * @param rule The composite rule name.
+     * @return The start time, or -1 if this evaluation is not sampled.
+     */
+    synchronized long startRule(String rule) {
+        phases[Phase.RULE_EVALUATION.ordinal()].count++;
+        final Timing ruleTiming = rules.computeIfAbsent(rule, name -> new Timing());
+        return (ruleTiming.count++ % sampleInterval == 0 ? System.nanoTime() : -1);
+    }
+
+    /**
+     * End a phase execution.
+     *
+     * @param phase The phase.
+     * @param start The start time returned by {@link #start(Phase)}.
+     */
+    void end(Phase phase, long start) {
+        if (start != -1) {
+            final long time = System.nanoTime() - start;
+            synchronized (this) {
+                phases[phase.ordinal()].sample(time);
+            }
+        }
+    }
+
+    /**
+     * End a rule evaluation.
+     *
+     * @param rule  The composite rule name.
+     * @param start The start time returned by {@link #startRule(String)}.
+     */
+    void endRule(String rule, long start) {
+        if (start != -1) {
+            final long time = System.nanoTime() - start;
+            synchronized (this) {
+                rules.get(rule).sample(time);
+            }
+        }
+    }
+
+    /**
+     * Get the sample interval.
+     *
+     * @return The sample interval.
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Get the cumulative time of a phase.
+     *
+     * @param phase The phase.
+     * @return The time in nanoseconds, estimated from the sampled executions.
+     */
+    public synchronized long getTime(Phase phase) {
+        if (phase == Phase.RULE_EVALUATION) {
+            long time = 0;
+            for (Timing ruleTiming : rules.values()) {
+                time += ruleTiming.getTime();
+            }
+            return time;
+        }
+        return phases[phase.ordinal()].getTime();
+    }
+
+    /**
+     * Get the number of executions of a phase.
+     *
+     * @param phase The phase.
+     * @return The number of executions.
+     */
+    public synchronized long getCount(Phase phase) {
+        return phases[phase.ordinal()].count;
+    }
+
+    /**
+     * Get the names of the evaluated rules.
+     *
+     * @return The composite rule names.
+     */
+    public synchronized Set<String> getRules() {
+        return Collections.unmodifiableSet(new TreeSet<>(rules.keySet()));
+    }
+
+    /**
+     * Get the cumulative evaluation time of a rule.
+     *
+     * @param rule The composite rule name.
+     * @return The time in nanoseconds, estimated from the sampled evaluations.  0 if the rule was not evaluated.
+     */
+    public synchronized long getRuleTime(String rule) {
+        final Timing timing = rules.get(rule);
+        return (timing != null ? timing.getTime() : 0);
+    }
+
+    /**
+     * Get the number of evaluations of a rule.
+     *
+     * @param rule The composite rule name.
+     * @return The number of evaluations.
+     */
+    public synchronized long getRuleCount(String rule) {
+        final Timing timing = rules.get(rule);
+        return (timing != null ? timing.count : 0);
+    }
+
+    /**
+     * Clear the recorded times and counts.
+     */
+    public synchronized void reset() {
+        for (Timing phase : phases) {
+            phase.reset();
+        }
+        rules.clear();
+    }
+
+    /**
+     * Print the profile.  Phases are listed in phase order, and rules in descending time order.
+     *
+     * @return The profile.
+     */
+    @Override
+    public synchronized String toString() {
+        final StringBuilder profile = new StringBuilder("Validation profile");
+        if (sampleInterval > 1) {
+            profile.append(" (1 in ").append(sampleInterval).append(" sampled)");
+        }
+        profile.append(":\n");
+        for (Phase phase : Phase.values()) {
+            appendTiming(profile, phase.name().toLowerCase().replace('_', ' '), getCount(phase), getTime(phase));
+        }
+
+        final List<Map.Entry<String, Timing>> ruleTimings = new ArrayList<>(rules.entrySet());
+        ruleTimings.sort((a, b) -> Long.compare(b.getValue().getTime(), a.getValue().getTime()));
+        for (Map.Entry<String, Timing> ruleTiming : ruleTimings) {
+            appendTiming(profile, "  " + ruleTiming.getKey(), ruleTiming.getValue().count, ruleTiming.getValue().getTime());
+        }
+
+        return profile.toString();
+    }
+
+    private static void appendTiming(StringBuilder profile, String name, long count, long time) {
+        profile.append(String.format("  %-40s %10d x %12.3f ms%n", name, count, time / 1000000.0));
+    }
+
+    private static final class Timing {
+        private long count;
+        private long sampled;
+        private long sampledTime;
+
+        private void sample(long time) {
+            sampled++;
+            sampledTime += time;
+        }
+
+        private long getTime() {
+            if (sampled == 0) {
+                return 0;
+            }
+            return (sampled == count ? sampledTime : (long) ((double) sampledTime * count / sampled));
+        }
+
+        private void reset() {
+            count = 0;
+            sampled = 0;
+            sampledTime = 0;
+        }
+    }
+}
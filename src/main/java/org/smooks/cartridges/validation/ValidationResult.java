@@ -45,6 +45,7 @@ package org.smooks.cartridges.validation;
 import org.smooks.assertion.AssertArgument;
 import org.smooks.io.payload.FilterResult;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -54,6 +55,27 @@ import java.util.*;
  * @author <a href="mailto:danielbevenius@gmail.com">Daniel Bevenius</a>
  */
 public class ValidationResult extends FilterResult {
+
+    /**
+     * Failure aggregation mode.
+     */
+    public enum Aggregation {
+        /**
+         * Every failure is kept.
+         */
+        NONE,
+        /**
+         * Failures of the same rule on the same normalised (index-free) path are collapsed into
+         * an {@link AggregatedOnFailResult}.
+         */
+        RULE_AND_PATH,
+        /**
+         * Failures of the same rule on the same normalised (index-free) path and with the same value
+         * are collapsed into an {@link AggregatedOnFailResult}.
+         */
+        RULE_PATH_AND_VALUE
+    }
+
     /**
      * The validation result Map, keyed by OnFail Type.
      */
@@ -64,15 +86,79 @@ public class ValidationResult extends FilterResult {
      */
     private OnFailResult fatal;
 
+    /**
+     * Failure aggregation mode.
+     */
+    private final Aggregation aggregation;
+
+    /**
+     * Aggregated failures, keyed by aggregation key.  Null if failures are not aggregated.
+     */
+    private final Map<AggregationKey, AggregatedOnFailResult> aggregated;
+
+    /**
+     * The number of failures collapsed into {@link AggregatedOnFailResult}s, beyond the first of each.
+     */
+    private int numCollapsed;
+
+    /**
+     * Timing profile.  Null if the validation is not profiled.
+     */
+    private volatile ValidationProfile profile;
+
     /**
      * Public default constructor.
      */
     public ValidationResult() {
+        this(Aggregation.NONE);
+    }
+
+    /**
+     * Public constructor.
+     * <p/>
+     * When aggregating, repeated failures are collapsed into counted {@link AggregatedOnFailResult}
+     * entries, so as memory use and report size depend on the number of distinct problems rather
+     * than on the input size.
+     *
+     * @param aggregation The failure aggregation mode.
+     */
+    public ValidationResult(final Aggregation aggregation) {
+        AssertArgument.isNotNull(aggregation, "aggregation");
+        this.aggregation = aggregation;
+        this.aggregated = (aggregation != Aggregation.NONE ? new HashMap<>() : null);
         results.put(OnFail.OK, new ArrayList<>());
         results.put(OnFail.WARN, new ArrayList<>());
         results.put(OnFail.ERROR, new ArrayList<>());
     }
 
+    /**
+     * Get the failure aggregation mode.
+     *
+     * @return The failure aggregation mode.
+     */
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * Set the timing profile, in which the filter operations reporting to this {@link ValidationResult} record
+     * their validation times.
+     *
+     * @param profile The profile.  Null to stop profiling.
+     */
+    public void setProfile(final ValidationProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Get the timing profile.
+     *
+     * @return The profile, or null if the validation is not profiled.
+     */
+    public ValidationProfile getProfile() {
+        return profile;
+    }
+
     /**
      * Gets all the {@link OnFailResult}s that were reported at the {@link OnFail#OK}
      * level.
@@ -116,6 +202,8 @@ public class ValidationResult extends FilterResult {
 
     /**
      * Get the total number of failures on this {@link ValidationResult} instance.
+     * <p/>
+     * Aggregated failures are counted individually.
      *
      * @return The total number of failures on this {@link ValidationResult} instance.
      */
@@ -131,7 +219,7 @@ public class ValidationResult extends FilterResult {
             numFailures++;
         }
 
-        return numFailures;
+        return numFailures + numCollapsed;
     }
 
     /**
@@ -146,38 +234,194 @@ public class ValidationResult extends FilterResult {
 
         if (onFail == OnFail.FATAL) {
             fatal = result;
+        } else if (aggregated != null) {
+            aggregate(result, onFail);
         } else {
             // Add the OnFailResult to the specific list.
             results.get(onFail).add(result);
+            if (result instanceof AggregatedOnFailResult) {
+                numCollapsed += ((AggregatedOnFailResult) result).getCount() - 1;
+            }
         }
     }
 
-    public String toString() {
+    private void aggregate(final OnFailResult result, final OnFail onFail) {
+        final String normalisedPath = normalisePath(result.getFailFragmentPath());
+        final String value = (aggregation == Aggregation.RULE_PATH_AND_VALUE ? RuleEvalResults.getText(result.getFailRuleResult()) : null);
+        final AggregationKey key = new AggregationKey(onFail, result.getFailRuleResult().getRuleProviderName(), result.getFailRuleResult().getRuleName(), normalisedPath, value);
+
+        AggregatedOnFailResult aggregatedResult = aggregated.get(key);
+        if (aggregatedResult == null) {
+            OnFailResult first = (result instanceof AggregatedOnFailResult ? ((AggregatedOnFailResult) result).getFirst() : result);
+            aggregatedResult = new AggregatedOnFailResult(first, normalisedPath);
+            aggregated.put(key, aggregatedResult);
+            results.get(onFail).add(aggregatedResult);
+            numCollapsed--;
+        }
+        numCollapsed += (result instanceof AggregatedOnFailResult ? ((AggregatedOnFailResult) result).getCount() : 1);
+        aggregatedResult.add(result);
+    }
+
+    /**
+     * Remove the position predicates from a fragment path e.g. "/a/b[3]/c" becomes "/a/b/c".
+     *
+     * @param path The fragment path.
+     * @return The normalised path.
+     */
+    static String normalisePath(final String path) {
+        if (path == null || path.indexOf('[') == -1) {
+            return path;
+        }
+
+        final StringBuilder normalisedPath = new StringBuilder(path.length());
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '[') {
+                depth++;
+            } else if (c == ']' && depth > 0) {
+                depth--;
+            } else if (depth == 0) {
+                normalisedPath.append(c);
+            }
+        }
+
+        return normalisedPath.toString();
+    }
+
+    /**
+     * Merge the failures of another {@link ValidationResult} into this {@link ValidationResult}.
+     * <p/>
+     * The {@link OnFail#OK}, {@link OnFail#WARN} and {@link OnFail#ERROR} failures are appended to
+     * the failures already on this instance, or aggregated if this instance aggregates failures.  Since there can only be one {@link OnFail#FATAL}, the
+     * {@link OnFail#FATAL} failure of the other {@link ValidationResult} is only taken if this
+     * instance does not already have one.
+     *
+     * @param validationResult The {@link ValidationResult} to merge into this instance. Cannot be null.
+     * @return This {@link ValidationResult} instance.
+     */
+    public ValidationResult merge(final ValidationResult validationResult) {
+        AssertArgument.isNotNull(validationResult, "validationResult");
+
+        for (Map.Entry<OnFail, List<OnFailResult>> entry : validationResult.results.entrySet()) {
+            if (aggregated != null) {
+                for (OnFailResult result : entry.getValue()) {
+                    aggregate(result, entry.getKey());
+                }
+            } else {
+                results.get(entry.getKey()).addAll(entry.getValue());
+            }
+        }
+        if (aggregated == null) {
+            numCollapsed += validationResult.numCollapsed;
+        }
+        if (fatal == null) {
+            fatal = validationResult.fatal;
+        }
+
+        return this;
+    }
+
+    /**
+     * Render the localized messages of all failures on this {@link ValidationResult} instance.
+     *
+     * @param locale The message {@link Locale}.
+     * @return The failure messages report.
+     * @see #renderMessages(Locale, Appendable)
+     */
+    public String renderMessages(final Locale locale) {
         StringBuilder stringBuilder = new StringBuilder();
 
-        stringBuilder.append("OK Failures:\n");
-        addResultMessages(getOKs(), stringBuilder);
-        stringBuilder.append("WARN Failures:\n");
-        addResultMessages(getWarnings(), stringBuilder);
-        stringBuilder.append("ERROR Failures:\n");
-        addResultMessages(getErrors(), stringBuilder);
-        stringBuilder.append("FATAL Failure:\n");
+        try {
+            renderMessages(locale, stringBuilder);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected IOException appending to a StringBuilder.", e);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Render the localized messages of all failures on this {@link ValidationResult} instance.
+     * <p/>
+     * Messages are appended directly to the supplied output, grouped by {@link OnFail} level.  The
+     * message bundle lookup and template compilation for a rule happen once per {@link Locale}, with
+     * the compiled template shared by all failures reported against that rule.
+     *
+     * @param locale     The message {@link Locale}.
+     * @param appendable The report output.
+     * @throws IOException Error appending to the output.
+     */
+    public void renderMessages(final Locale locale, final Appendable appendable) throws IOException {
+        AssertArgument.isNotNull(locale, "locale");
+        AssertArgument.isNotNull(appendable, "appendable");
+
+        appendable.append("OK Failures:\n");
+        renderMessages(results.get(OnFail.OK), locale, appendable);
+        appendable.append("WARN Failures:\n");
+        renderMessages(results.get(OnFail.WARN), locale, appendable);
+        appendable.append("ERROR Failures:\n");
+        renderMessages(results.get(OnFail.ERROR), locale, appendable);
+        appendable.append("FATAL Failure:\n");
         if (fatal != null) {
-            stringBuilder.append("\t" + fatal.getMessage() + "\n");
+            appendable.append('\t');
+            fatal.appendMessage(locale, appendable);
+            appendable.append('\n');
         } else {
-            stringBuilder.append("\t(none)\n");
+            appendable.append("\t(none)\n");
         }
+    }
 
-        return stringBuilder.toString();
+    public String toString() {
+        return renderMessages(Locale.getDefault());
     }
 
-    private void addResultMessages(List<OnFailResult> results, StringBuilder stringBuilder) {
+    private void renderMessages(List<OnFailResult> results, Locale locale, Appendable appendable) throws IOException {
         if (results.isEmpty()) {
-            stringBuilder.append("\t(none)\n");
+            appendable.append("\t(none)\n");
         } else {
             for (OnFailResult result : results) {
-                stringBuilder.append("\t- " + result.getMessage() + "\n");
+                appendable.append("\t- ");
+                result.appendMessage(locale, appendable);
+                if (result instanceof AggregatedOnFailResult && ((AggregatedOnFailResult) result).getCount() > 1) {
+                    appendable.append(" (").append(Integer.toString(((AggregatedOnFailResult) result).getCount())).append(" occurrences)");
+                }
+                appendable.append('\n');
             }
         }
     }
+
+    private static final class AggregationKey {
+        private final OnFail onFail;
+        private final String providerName;
+        private final String ruleName;
+        private final String path;
+        private final String value;
+
+        private AggregationKey(OnFail onFail, String providerName, String ruleName, String path, String value) {
+            this.onFail = onFail;
+            this.providerName = providerName;
+            this.ruleName = ruleName;
+            this.path = path;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof AggregationKey)) {
+                return false;
+            }
+            AggregationKey key = (AggregationKey) object;
+            return onFail == key.onFail && Objects.equals(ruleName, key.ruleName) && Objects.equals(providerName, key.providerName) &&
+                    Objects.equals(path, key.path) && Objects.equals(value, key.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(onFail, providerName, ruleName, path, value);
+        }
+    }
 }
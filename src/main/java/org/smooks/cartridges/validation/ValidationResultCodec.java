@@ -0,0 +1,369 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.assertion.AssertArgument;
+import org.smooks.cartridges.rules.RuleEvalResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a {@link ValidationResult}.
+ * <p/>
+ * Allows validation results produced on different nodes to be shipped to, and merged on, a
+ * central node.  The {@link OnFailResult OnFailResults} on the decoded {@link ValidationResult}
+ * are detached from the bean context in which the failures occurred, so their messages are either
+ * pre-rendered at encode time (for a given {@link Locale}), or left out altogether, in which case the
+ * fragment path, rule provider name, rule name and evaluated text are still available for rendering
+ * on the receiving side.
+ *
+ * <h3>Format (version 1)</h3>
+ * <pre>
+ * magic          'S' 'V'
+ * version        byte
+ * string table   varint count, then (varint UTF-8 length, UTF-8 bytes) per string
+ * flags          varint (bit 0: has FATAL result)
+ * OK/WARN/ERROR  varint count, then one entry per result
+ * FATAL          one entry, if flagged
+ * entry          varint string refs for path, rule provider name, rule name, text, message,
+ *                then varint aggregated count (0 if not an {@link AggregatedOnFailResult})
+ * aggregate      if count &gt; 0, varint string refs for normalised path and last path, then
+ *                varint sample path count and a string ref per sample path
+ * </pre>
+ * String refs are string table index + 1, with 0 denoting null.  Fragment paths and rule names
+ * repeat heavily across failures, so they are only written once.
+ */
+public final class ValidationResultCodec {
+
+    /**
+     * Current encoding format version.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC_0 = 'S';
+    private static final int MAGIC_1 = 'V';
+    private static final int FLAG_FATAL = 0x01;
+    private static final OnFail[] LEVELS = {OnFail.OK, OnFail.WARN, OnFail.ERROR};
+
+    private ValidationResultCodec() {
+    }
+
+    /**
+     * Encode a {@link ValidationResult} without messages.
+     *
+     * @param validationResult The {@link ValidationResult} to encode.
+     * @param outputStream     The stream to write to.
+     * @throws IOException Error writing to the stream.
+     */
+    public static void encode(ValidationResult validationResult, OutputStream outputStream) throws IOException {
+        encode(validationResult, outputStream, null);
+    }
+
+    /**
+     * Encode a {@link ValidationResult}.
+     *
+     * @param validationResult The {@link ValidationResult} to encode.
+     * @param outputStream     The stream to write to.
+     * @param locale           The {@link Locale} for which failure messages are to be pre-rendered,
+     *                         or null if messages are not to be encoded.
+     * @throws IOException Error writing to the stream.
+     */
+    public static void encode(ValidationResult validationResult, OutputStream outputStream, Locale locale) throws IOException {
+        AssertArgument.isNotNull(validationResult, "validationResult");
+        AssertArgument.isNotNull(outputStream, "outputStream");
+
+        StringTable stringTable = new StringTable();
+        List<int[]> okEntries = toEntries(validationResult.getOKs(), stringTable, locale);
+        List<int[]> warnEntries = toEntries(validationResult.getWarnings(), stringTable, locale);
+        List<int[]> errorEntries = toEntries(validationResult.getErrors(), stringTable, locale);
+        OnFailResult fatal = validationResult.getFatal();
+        int[] fatalEntry = (fatal != null ? toEntry(fatal, stringTable, locale) : null);
+
+        outputStream.write(MAGIC_0);
+        outputStream.write(MAGIC_1);
+        outputStream.write(FORMAT_VERSION);
+
+        writeVarInt(stringTable.strings.size(), outputStream);
+        for (String string : stringTable.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length, outputStream);
+            outputStream.write(bytes);
+        }
+
+        writeVarInt(fatalEntry != null ? FLAG_FATAL : 0, outputStream);
+        writeEntries(okEntries, outputStream);
+        writeEntries(warnEntries, outputStream);
+        writeEntries(errorEntries, outputStream);
+        if (fatalEntry != null) {
+            writeEntry(fatalEntry, outputStream);
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Decode a {@link ValidationResult}.
+     *
+     * @param inputStream The stream to read from.
+     * @return The decoded {@link ValidationResult}.
+     * @throws IOException Error reading the stream, or the stream is not a supported encoding.
+     */
+    public static ValidationResult decode(InputStream inputStream) throws IOException {
+        return decode(inputStream, new ValidationResult());
+    }
+
+    /**
+     * Decode a {@link ValidationResult}, merging the decoded failures into an existing {@link ValidationResult}.
+     * <p/>
+     * Decoding a number of partition results into the same target avoids creating intermediate
+     * {@link ValidationResult} instances.  See {@link ValidationResult#merge(ValidationResult)} for
+     * the merge semantics.
+     *
+     * @param inputStream      The stream to read from.
+     * @param validationResult The {@link ValidationResult} into which the decoded failures are merged.
+     * @return The target {@link ValidationResult}.
+     * @throws IOException Error reading the stream, or the stream is not a supported encoding.
+     */
+    public static ValidationResult decode(InputStream inputStream, ValidationResult validationResult) throws IOException {
+        AssertArgument.isNotNull(inputStream, "inputStream");
+        AssertArgument.isNotNull(validationResult, "validationResult");
+
+        DataInputStream dataInputStream = new DataInputStream(inputStream);
+        if (dataInputStream.readUnsignedByte() != MAGIC_0 || dataInputStream.readUnsignedByte() != MAGIC_1) {
+            throw new IOException("Invalid ValidationResult encoding.  Bad magic number.");
+        }
+        int version = dataInputStream.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported ValidationResult encoding version '" + version + "'.  Supported version is '" + FORMAT_VERSION + "'.");
+        }
+
+        // Lengths are untrusted, so as nothing is allocated ahead of the data actually read...
+        int numStrings = readLength(dataInputStream, "string table size");
+        List<String> stringTable = new ArrayList<>(Math.min(numStrings, 1024));
+        for (int i = 0; i < numStrings; i++) {
+            stringTable.add(readUTF8(dataInputStream, readLength(dataInputStream, "string length")));
+        }
+        String[] strings = stringTable.toArray(new String[0]);
+
+        int flags = readVarInt(dataInputStream);
+        for (OnFail level : LEVELS) {
+            int count = readLength(dataInputStream, "failure count");
+            for (int i = 0; i < count; i++) {
+                validationResult.addResult(readEntry(dataInputStream, strings), level);
+            }
+        }
+        if ((flags & FLAG_FATAL) != 0) {
+            // Always read the FATAL entry, so as the stream is left at the end of the encoding...
+            OnFailResult fatal = readEntry(dataInputStream, strings);
+            if (validationResult.getFatal() == null) {
+                validationResult.addResult(fatal, OnFail.FATAL);
+            }
+        }
+
+        return validationResult;
+    }
+
+    private static List<int[]> toEntries(List<OnFailResult> onFailResults, StringTable stringTable, Locale locale) {
+        List<int[]> entries = new ArrayList<>(onFailResults.size());
+        for (OnFailResult onFailResult : onFailResults) {
+            entries.add(toEntry(onFailResult, stringTable, locale));
+        }
+        return entries;
+    }
+
+    private static int[] toEntry(OnFailResult onFailResult, StringTable stringTable, Locale locale) {
+        RuleEvalResult ruleResult = onFailResult.getFailRuleResult();
+        int[] entry = {
+                stringTable.ref(onFailResult.getFailFragmentPath()),
+                stringTable.ref(ruleResult != null ? ruleResult.getRuleProviderName() : null),
+                stringTable.ref(ruleResult != null ? ruleResult.getRuleName() : null),
+                stringTable.ref(ruleResult != null ? RuleEvalResults.getText(ruleResult) : null),
+                stringTable.ref(locale != null ? onFailResult.getMessage(locale) : null),
+                0
+        };
+        if (!(onFailResult instanceof AggregatedOnFailResult)) {
+            return entry;
+        }
+
+        AggregatedOnFailResult aggregated = (AggregatedOnFailResult) onFailResult;
+        List<String> samplePaths = aggregated.getSamplePaths();
+        int[] aggregatedEntry = Arrays.copyOf(entry, entry.length + 3 + samplePaths.size());
+        aggregatedEntry[entry.length - 1] = aggregated.getCount();
+        aggregatedEntry[entry.length] = stringTable.ref(aggregated.getNormalisedPath());
+        aggregatedEntry[entry.length + 1] = stringTable.ref(aggregated.getLastPath());
+        aggregatedEntry[entry.length + 2] = samplePaths.size();
+        for (int i = 0; i < samplePaths.size(); i++) {
+            aggregatedEntry[entry.length + 3 + i] = stringTable.ref(samplePaths.get(i));
+        }
+        return aggregatedEntry;
+    }
+
+    private static OnFailResult readEntry(DataInputStream inputStream, String[] strings) throws IOException {
+        String failFragmentPath = readString(inputStream, strings);
+        String ruleProviderName = readString(inputStream, strings);
+        String ruleName = readString(inputStream, strings);
+        String text = readString(inputStream, strings);
+        String message = readString(inputStream, strings);
+        OnFailResult onFailResult = new DecodedOnFailResult(failFragmentPath, new DecodedOnFailResult.DecodedRuleEvalResult(ruleName, ruleProviderName, text), message);
+
+        int count = readVarInt(inputStream);
+        if (count == 0) {
+            return onFailResult;
+        }
+        if (count < 0) {
+            throw new IOException("Invalid ValidationResult encoding.  Negative aggregated failure count '" + count + "'.");
+        }
+
+        String normalisedPath = readString(inputStream, strings);
+        String lastPath = readString(inputStream, strings);
+        int numSamplePaths = readLength(inputStream, "sample path count");
+        if (numSamplePaths > AggregatedOnFailResult.MAX_SAMPLE_PATHS) {
+            throw new IOException("Invalid ValidationResult encoding.  Sample path count '" + numSamplePaths + "' is out of range.");
+        }
+        List<String> samplePaths = new ArrayList<>(numSamplePaths);
+        for (int i = 0; i < numSamplePaths; i++) {
+            samplePaths.add(readString(inputStream, strings));
+        }
+
+        return new AggregatedOnFailResult(onFailResult, normalisedPath, samplePaths, lastPath, count);
+    }
+
+    private static String readString(DataInputStream inputStream, String[] strings) throws IOException {
+        int ref = readVarInt(inputStream);
+        if (ref == 0) {
+            return null;
+        }
+        if (ref < 0 || ref > strings.length) {
+            throw new IOException("Invalid ValidationResult encoding.  String reference '" + ref + "' is outside the string table.");
+        }
+        return strings[ref - 1];
+    }
+
+    private static void writeEntries(List<int[]> entries, OutputStream outputStream) throws IOException {
+        writeVarInt(entries.size(), outputStream);
+        for (int[] entry : entries) {
+            writeEntry(entry, outputStream);
+        }
+    }
+
+    private static void writeEntry(int[] entry, OutputStream outputStream) throws IOException {
+        for (int ref : entry) {
+            writeVarInt(ref, outputStream);
+        }
+    }
+
+    static void writeVarInt(int value, OutputStream outputStream) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            outputStream.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.write(value);
+    }
+
+    private static int readLength(InputStream inputStream, String name) throws IOException {
+        int length = readVarInt(inputStream);
+        if (length < 0) {
+            throw new IOException("Invalid ValidationResult encoding.  Negative " + name + " '" + length + "'.");
+        }
+        return length;
+    }
+
+    private static String readUTF8(InputStream inputStream, int length) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.min(length, 8192));
+        byte[] buffer = new byte[Math.min(length, 8192)];
+        for (int remaining = length; remaining > 0; ) {
+            int read = inputStream.read(buffer, 0, Math.min(remaining, buffer.length));
+            if (read == -1) {
+                throw new EOFException("Unexpected end of ValidationResult encoding.");
+            }
+            bytes.write(buffer, 0, read);
+            remaining -= read;
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int readVarInt(InputStream inputStream) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = inputStream.read();
+            if (b == -1) {
+                throw new EOFException("Unexpected end of ValidationResult encoding.");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid ValidationResult encoding.  Malformed varint.");
+    }
+
+    private static class StringTable {
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> refs = new HashMap<>();
+
+        private int ref(String string) {
+            if (string == null) {
+                return 0;
+            }
+
+            Integer ref = refs.get(string);
+            if (ref == null) {
+                strings.add(string);
+                ref = strings.size();
+                refs.put(string, ref);
+            }
+            return ref;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.Smooks;
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.assertion.AssertArgument;
+import org.smooks.cartridges.rules.RuleProvider;
+import org.smooks.cartridges.rules.RuleProviderAccessor;
+import org.smooks.cartridges.rules.regex.RegexProvider;
+import org.xml.sax.SAXException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+/**
+ * Precompiled validation rule base snapshot.
+ * <p/>
+ * Parsing rule base sources and loading message bundles can be a large part of the runtime of short
+ * lived processes.  A snapshot captures the rule bases referenced by the validation rules on a
+ * {@link Smooks} instance, together with their resolved message bundles, in a binary file that can be
+ * produced at build time and memory mapped at startup.
+ * <p/>
+ * {@link RegexProvider} rule bases are captured as parsed rule patterns, so the rule source does not need
+ * to be read at startup.  Rule bases of other provider types are captured by provider type and source, and are
+ * loaded by the provider as normal when the snapshot is installed.  Message bundles are captured for the
+ * {@link Locale Locales} supplied when the snapshot is created.  Message lookups for other {@link Locale Locales}
+ * fall back to the {@link ResourceBundle ResourceBundles} on the classpath.
+ * <p/>
+ * A Smooks configuration that uses a snapshot defines the validation rules, but not the rule bases:
+ * <pre>
+ * Smooks smooks = new Smooks("smooks-config.xml");
+ * ValidationSnapshot.read(Paths.get("validation.snapshot")).install(smooks.getApplicationContext());
+ * </pre>
+ * A snapshot can be produced at build time by running this class's {@link #main(String[]) main} method,
+ * e.g. through the exec-maven-plugin.
+ */
+public final class ValidationSnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValidationSnapshot.class);
+
+    /**
+     * Current snapshot format version.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC_0 = 'S';
+    private static final int MAGIC_1 = 'V';
+    private static final int MAGIC_2 = 'S';
+
+    private final List<RuleBase> ruleBases;
+    private final Map<String, Map<String, String>> messageBundles;
+
+    private ValidationSnapshot(List<RuleBase> ruleBases, Map<String, Map<String, String>> messageBundles) {
+        this.ruleBases = ruleBases;
+        this.messageBundles = messageBundles;
+    }
+
+    /**
+     * Create a snapshot of the rule bases and message bundles used by the validation rules on a {@link Smooks} instance.
+     *
+     * @param smooks  The {@link Smooks} instance.  Rule bases must be configured on the instance.
+     * @param locales The message bundle {@link Locale Locales} to capture.
+     * @return The snapshot.
+     */
+    public static ValidationSnapshot create(Smooks smooks, Locale... locales) {
+        AssertArgument.isNotNull(smooks, "smooks");
+
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        ApplicationContext applicationContext = smooks.getApplicationContext();
+        Map<String, RuleBase> ruleBases = new LinkedHashMap<>();
+        Map<String, Map<String, String>> messageBundles = new LinkedHashMap<>();
+
+        for (Validator validator : ValidationWarmUp.getValidators(executionContext.getContentDeliveryRuntime().getContentDeliveryConfig())) {
+            validator.warmUp(executionContext, Collections.emptyList(), 0);
+
+            String ruleProviderName = validator.getRuleProviderName();
+            if (!ruleBases.containsKey(ruleProviderName)) {
+                RuleProvider ruleProvider = RuleProviderAccessor.get(applicationContext, ruleProviderName);
+                Map<String, String> rules = (ruleProvider instanceof RegexProvider ? CompiledRegexProvider.loadRules(ruleProvider.getSrc()) : null);
+                ruleBases.put(ruleProviderName, new RuleBase(ruleProviderName, ruleProvider.getClass().getName(), ruleProvider.getSrc(), rules));
+            }
+
+            for (Locale locale : locales) {
+                String bundleKey = bundleKey(validator.getMessageBundleBaseName(), locale);
+                if (!messageBundles.containsKey(bundleKey)) {
+                    ResourceBundle bundle = validator.getMessageBundle(locale);
+                    if (bundle != null) {
+                        Map<String, String> messages = new LinkedHashMap<>();
+                        Enumeration<String> keys = bundle.getKeys();
+                        while (keys.hasMoreElements()) {
+                            String key = keys.nextElement();
+                            messages.put(key, bundle.getString(key));
+                        }
+                        messageBundles.put(bundleKey, messages);
+                    }
+                }
+            }
+        }
+
+        return new ValidationSnapshot(new ArrayList<>(ruleBases.values()), messageBundles);
+    }
+
+    /**
+     * Read a snapshot file.
+     * <p/>
+     * The file is memory mapped.
+     *
+     * @param snapshotFile The snapshot file.
+     * @return The snapshot.
+     * @throws IOException Error reading the file, or the file is not a supported snapshot.
+     */
+    public static ValidationSnapshot read(Path snapshotFile) throws IOException {
+        AssertArgument.isNotNull(snapshotFile, "snapshotFile");
+
+        try (FileChannel fileChannel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param buffer The snapshot bytes.
+     * @return The snapshot.
+     * @throws IOException The buffer does not contain a supported snapshot.
+     */
+    public static ValidationSnapshot read(ByteBuffer buffer) throws IOException {
+        AssertArgument.isNotNull(buffer, "buffer");
+
+        try {
+            if ((buffer.get() & 0xFF) != MAGIC_0 || (buffer.get() & 0xFF) != MAGIC_1 || (buffer.get() & 0xFF) != MAGIC_2) {
+                throw new IOException("Invalid validation snapshot.  Bad magic number.");
+            }
+            int version = buffer.get() & 0xFF;
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported validation snapshot version '" + version + "'.  Supported version is '" + FORMAT_VERSION + "'.");
+            }
+
+            int ruleBaseCount = readVarInt(buffer);
+            List<RuleBase> ruleBases = new ArrayList<>(ruleBaseCount);
+            for (int i = 0; i < ruleBaseCount; i++) {
+                String name = readString(buffer);
+                String provider = readString(buffer);
+                String src = readString(buffer);
+                Map<String, String> rules = null;
+                if (buffer.get() != 0) {
+                    rules = readMap(buffer);
+                }
+                ruleBases.add(new RuleBase(name, provider, src, rules));
+            }
+
+            int bundleCount = readVarInt(buffer);
+            Map<String, Map<String, String>> messageBundles = new LinkedHashMap<>();
+            for (int i = 0; i < bundleCount; i++) {
+                messageBundles.put(readString(buffer), readMap(buffer));
+            }
+
+            return new ValidationSnapshot(ruleBases, messageBundles);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Invalid validation snapshot.  Unexpected end of snapshot.", e);
+        }
+    }
+
+    /**
+     * Write the snapshot.
+     *
+     * @param outputStream The stream to write to.
+     * @throws IOException Error writing to the stream.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        AssertArgument.isNotNull(outputStream, "outputStream");
+
+        outputStream.write(MAGIC_0);
+        outputStream.write(MAGIC_1);
+        outputStream.write(MAGIC_2);
+        outputStream.write(FORMAT_VERSION);
+
+        ValidationResultCodec.writeVarInt(ruleBases.size(), outputStream);
+        for (RuleBase ruleBase : ruleBases) {
+            writeString(ruleBase.name, outputStream);
+            writeString(ruleBase.provider, outputStream);
+            writeString(ruleBase.src, outputStream);
+            if (ruleBase.rules != null) {
+                outputStream.write(1);
+                writeMap(ruleBase.rules, outputStream);
+            } else {
+                outputStream.write(0);
+            }
+        }
+
+        ValidationResultCodec.writeVarInt(messageBundles.size(), outputStream);
+        for (Map.Entry<String, Map<String, String>> messageBundle : messageBundles.entrySet()) {
+            writeString(messageBundle.getKey(), outputStream);
+            writeMap(messageBundle.getValue(), outputStream);
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Write the snapshot to a file.
+     *
+     * @param snapshotFile The snapshot file.
+     * @throws IOException Error writing the file.
+     */
+    public void write(Path snapshotFile) throws IOException {
+        AssertArgument.isNotNull(snapshotFile, "snapshotFile");
+
+        if (snapshotFile.getParent() != null) {
+            Files.createDirectories(snapshotFile.getParent());
+        }
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(snapshotFile))) {
+            write(outputStream);
+        }
+    }
+
+    /**
+     * Install the snapshot on an {@link ApplicationContext}.
+     * <p/>
+     * Adds the snapshot rule bases as rule providers, and makes the snapshot message bundles available
+     * to the validation rules.  Rule bases already defined on the {@link ApplicationContext} are left in place.
+     *
+     * @param applicationContext The {@link ApplicationContext}.
+     */
+    public void install(ApplicationContext applicationContext) {
+        AssertArgument.isNotNull(applicationContext, "applicationContext");
+
+        for (RuleBase ruleBase : ruleBases) {
+            Map<String, RuleProvider> ruleProviders = RuleProviderAccessor.getRuleProviders(applicationContext);
+            if (ruleProviders != null && ruleProviders.containsKey(ruleBase.name)) {
+                LOGGER.debug("Rule base '{}' is already defined.  Not installing snapshot rule base.", ruleBase.name);
+            } else {
+                RuleProviderAccessor.add(applicationContext, ruleBase.createProvider(applicationContext));
+            }
+        }
+        applicationContext.getRegistry().registerObject(ValidationSnapshot.class, this);
+    }
+
+    /**
+     * Get a snapshot message.
+     *
+     * @param bundleBaseName The message bundle base name.
+     * @param locale         The message {@link Locale}.
+     * @param name           The message name.
+     * @return The message, or null if the message bundle was not captured for the {@link Locale}.
+     */
+    String getMessage(String bundleBaseName, Locale locale, String name) {
+        Map<String, String> messages = messageBundles.get(bundleKey(bundleBaseName, locale));
+        if (messages == null) {
+            return null;
+        }
+
+        return messages.get(name);
+    }
+
+    /**
+     * Create a snapshot file from a Smooks configuration.
+     * <p/>
+     * Arguments: &lt;smooks-config&gt; &lt;snapshot-file&gt; [locale...]
+     *
+     * @param args The arguments.
+     * @throws IOException  Error reading the configuration or writing the snapshot.
+     * @throws SAXException Error parsing the configuration.
+     */
+    public static void main(String[] args) throws IOException, SAXException {
+        if (args.length < 2) {
+            throw new SmooksConfigException("Usage: " + ValidationSnapshot.class.getName() + " <smooks-config> <snapshot-file> [locale...]");
+        }
+
+        Locale[] locales = new Locale[args.length - 2];
+        for (int i = 2; i < args.length; i++) {
+            locales[i - 2] = Locale.forLanguageTag(args[i]);
+        }
+
+        try (Smooks smooks = new Smooks(args[0])) {
+            create(smooks, locales).write(Paths.get(args[1]));
+        }
+    }
+
+    private static String bundleKey(String bundleBaseName, Locale locale) {
+        return bundleBaseName + '|' + locale.toLanguageTag();
+    }
+
+    private static void writeString(String string, OutputStream outputStream) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        ValidationResultCodec.writeVarInt(bytes.length, outputStream);
+        outputStream.write(bytes);
+    }
+
+    private static void writeMap(Map<String, String> map, OutputStream outputStream) throws IOException {
+        ValidationResultCodec.writeVarInt(map.size(), outputStream);
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(entry.getKey(), outputStream);
+            writeString(entry.getValue(), outputStream);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = readVarInt(buffer);
+        if (length > buffer.remaining()) {
+            throw new IOException("Invalid validation snapshot.  String length '" + length + "' exceeds the snapshot size.");
+        }
+
+        ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    private static Map<String, String> readMap(ByteBuffer buffer) throws IOException {
+        int size = readVarInt(buffer);
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(buffer), readString(buffer));
+        }
+        return map;
+    }
+
+    private static int readVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid validation snapshot.  Malformed varint.");
+    }
+
+    private static final class RuleBase {
+        private final String name;
+        private final String provider;
+        private final String src;
+        private final Map<String, String> rules;
+
+        private RuleBase(String name, String provider, String src, Map<String, String> rules) {
+            this.name = name;
+            this.provider = provider;
+            this.src = src;
+            this.rules = rules;
+        }
+
+        private RuleProvider createProvider(ApplicationContext applicationContext) {
+            if (rules != null) {
+                return new CompiledRegexProvider(name, src, rules);
+            }
+
+            RuleProvider ruleProvider;
+            try {
+                ruleProvider = (RuleProvider) applicationContext.getClassLoader().loadClass(provider).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw new SmooksConfigException("Failed to create rule provider '" + provider + "' for snapshot rule base '" + name + "'.", e);
+            }
+            ruleProvider.setName(name);
+            ruleProvider.setSrc(src);
+
+            return ruleProvider;
+        }
+    }
+}
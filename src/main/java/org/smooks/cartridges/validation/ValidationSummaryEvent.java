@@ -0,0 +1,112 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.TypedKey;
+import org.smooks.io.payload.FilterResult;
+
+/**
+ * Document validation summary Flight Recorder event.  Spans the filter operation.
+ *
+ * @see ValidationEvents
+ */
+@Name("org.smooks.validation.Summary")
+@Label("Validation Summary")
+@Category({"Smooks", "Validation"})
+@Enabled(false)
+@StackTrace(false)
+final class ValidationSummaryEvent extends Event {
+
+    private static final TypedKey<ValidationSummaryEvent> EVENT_TYPED_KEY = TypedKey.of();
+
+    @Label("OKs")
+    int oks;
+
+    @Label("Warnings")
+    int warnings;
+
+    @Label("Errors")
+    int errors;
+
+    @Label("Fatal")
+    boolean fatal;
+
+    @Label("Terminated")
+    boolean terminated;
+
+    static void begin(ExecutionContext executionContext) {
+        final ValidationSummaryEvent event = new ValidationSummaryEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            executionContext.put(EVENT_TYPED_KEY, event);
+        }
+    }
+
+    static void commit(ExecutionContext executionContext) {
+        final ValidationSummaryEvent event = executionContext.get(EVENT_TYPED_KEY);
+        if (event == null) {
+            return;
+        }
+
+        executionContext.remove(EVENT_TYPED_KEY);
+        event.end();
+        if (event.shouldCommit()) {
+            final ValidationResult result = (ValidationResult) FilterResult.getResult(executionContext, ValidationResult.class);
+            if (result != null) {
+                event.oks = result.getOKs().size();
+                event.warnings = result.getWarnings().size();
+                event.errors = result.getErrors().size();
+                event.fatal = (result.getFatal() != null);
+            }
+            event.terminated = (executionContext.getTerminationError() != null);
+            event.commit();
+        }
+    }
+}
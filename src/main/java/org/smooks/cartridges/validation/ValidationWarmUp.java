@@ -0,0 +1,151 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.delivery.ContentDeliveryConfig;
+import org.smooks.api.delivery.ContentHandlerBinding;
+import org.smooks.api.resource.visitor.Visitor;
+import org.smooks.api.resource.visitor.interceptor.InterceptorVisitor;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.assertion.AssertArgument;
+import org.smooks.engine.delivery.sax.ng.SaxNgContentDeliveryConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Validation warm-up.
+ * <p/>
+ * The first validation failure after deployment pays for rule provider lookup, message bundle
+ * loading and message template compilation.  Warming up a {@link Smooks} instance performs that
+ * work up front for every {@link Validator} configured on the instance, so as the first message does
+ * not take the hit.
+ * <p/>
+ * Note that warming up a {@link Smooks} instance creates an {@link ExecutionContext} on it, after
+ * which it can no longer be configured.
+ * <p/>
+ * Example:
+ * <pre>
+ * Smooks smooks = new Smooks("smooks-config.xml");
+ * ValidationWarmUp.warmUp(smooks, 1000, Locale.ENGLISH, Locale.GERMAN);
+ * </pre>
+ */
+public final class ValidationWarmUp {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValidationWarmUp.class);
+
+    private ValidationWarmUp() {
+    }
+
+    /**
+     * Warm up the {@link Validator Validators} on a {@link Smooks} instance.
+     * <p/>
+     * Resolves every {@link Validator Validator's} rule provider, and loads and compiles the failure
+     * messages for the supplied {@link Locale Locales}.
+     *
+     * @param smooks  The {@link Smooks} instance.
+     * @param locales The message {@link Locale Locales} to load.  The default {@link Locale} if none are supplied.
+     * @return The number of {@link Validator Validators} warmed up.
+     */
+    public static int warmUp(Smooks smooks, Locale... locales) {
+        return warmUp(smooks, 0, locales);
+    }
+
+    /**
+     * Warm up the {@link Validator Validators} on a {@link Smooks} instance.
+     * <p/>
+     * Resolves every {@link Validator Validator's} rule provider, loads and compiles the failure
+     * messages for the supplied {@link Locale Locales}, and then runs a number of synthetic rule
+     * evaluations on each {@link Validator} (so as the rule evaluation code paths get compiled by the JIT).
+     * The results of the synthetic evaluations are discarded.
+     *
+     * @param smooks               The {@link Smooks} instance.
+     * @param syntheticEvaluations The number of synthetic rule evaluations to run per {@link Validator}.
+     * @param locales              The message {@link Locale Locales} to load.  The default {@link Locale} if none are supplied.
+     * @return The number of {@link Validator Validators} warmed up.
+     */
+    public static int warmUp(Smooks smooks, int syntheticEvaluations, Locale... locales) {
+        AssertArgument.isNotNull(smooks, "smooks");
+
+        List<Locale> warmUpLocales = (locales == null || locales.length == 0 ? Collections.singletonList(Locale.getDefault()) : Arrays.asList(locales));
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        List<Validator> validators = getValidators(executionContext.getContentDeliveryRuntime().getContentDeliveryConfig());
+
+        for (Validator validator : validators) {
+            validator.warmUp(executionContext, warmUpLocales, syntheticEvaluations);
+        }
+        LOGGER.debug("Warmed up {} validators.", validators.size());
+
+        return validators.size();
+    }
+
+    static List<Validator> getValidators(ContentDeliveryConfig contentDeliveryConfig) {
+        Set<Validator> validators = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        if (contentDeliveryConfig instanceof SaxNgContentDeliveryConfig) {
+            for (List<ContentHandlerBinding<AfterVisitor>> bindings : ((SaxNgContentDeliveryConfig) contentDeliveryConfig).getAfterVisitorIndex().values()) {
+                for (ContentHandlerBinding<AfterVisitor> binding : bindings) {
+                    Visitor visitor = binding.getContentHandler();
+                    // Unwrap the interceptor chain...
+                    while (visitor instanceof InterceptorVisitor) {
+                        visitor = ((InterceptorVisitor) visitor).getVisitorBinding().getContentHandler();
+                    }
+                    if (visitor instanceof Validator) {
+                        validators.add((Validator) visitor);
+                    }
+                }
+            }
+        }
+
+        return new ArrayList<>(validators);
+    }
+}
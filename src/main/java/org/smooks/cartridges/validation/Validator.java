@@ -53,10 +53,13 @@ import org.smooks.api.resource.config.ResourceConfig;
 import org.smooks.api.resource.visitor.VisitAfterReport;
 import org.smooks.api.resource.visitor.VisitBeforeReport;
 import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.BeforeVisitor;
 import org.smooks.api.resource.visitor.sax.ng.ChildrenVisitor;
 import org.smooks.cartridges.rules.RuleEvalResult;
 import org.smooks.cartridges.rules.RuleProvider;
 import org.smooks.cartridges.rules.RuleProviderAccessor;
+import org.smooks.cartridges.rules.regex.RegexProvider;
+import org.smooks.cartridges.rules.regex.RegexRuleEvalResult;
 import org.smooks.engine.delivery.fragment.NodeFragment;
 import org.smooks.engine.memento.TextAccumulatorMemento;
 import org.smooks.engine.memento.TextAccumulatorVisitorMemento;
@@ -65,23 +68,32 @@ import org.smooks.engine.resource.config.xpath.step.AttributeSelectorStep;
 import org.smooks.io.payload.FilterResult;
 import org.smooks.resource.URIResourceLocator;
 import org.smooks.support.DomUtils;
-import org.smooks.support.FreeMarkerTemplate;
 import org.w3c.dom.CharacterData;
 import org.w3c.dom.Element;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Optional;
+import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 /**
  * </p>
@@ -121,9 +133,39 @@ import java.util.ResourceBundle;
  */
 @VisitBeforeReport(condition = "false")
 @VisitAfterReport(summary = "Applied validation rule '${resource.parameters.name}'.")
-public final class Validator implements ChildrenVisitor, AfterVisitor {
+public final class Validator implements BeforeVisitor, ChildrenVisitor, AfterVisitor {
     private static final Logger LOGGER = LoggerFactory.getLogger(Validator.class);
 
+    /**
+     * Rule order global param key.  Either {@link #RULE_ORDER_ADAPTIVE} (default) or {@link #RULE_ORDER_DECLARED}.
+     * Only applies when {@link #SHORT_CIRCUIT short-circuiting}.  Otherwise, rules are evaluated in configuration
+     * order.
+     */
+    public static final String RULE_ORDER = "validation.ruleOrder";
+    /**
+     * Co-located rules are reordered based on their runtime cost and failure rate, when short-circuiting.
+     */
+    public static final String RULE_ORDER_ADAPTIVE = "adaptive";
+    /**
+     * Co-located rules are always evaluated in configuration order.
+     */
+    public static final String RULE_ORDER_DECLARED = "declared";
+    /**
+     * Short-circuit global param key.  If "true", the remaining rules on a fragment are skipped after the first
+     * failure on that fragment.  Default is "false".
+     */
+    public static final String SHORT_CIRCUIT = "validation.shortCircuit";
+    /**
+     * Attribute rules at element start global param key.  If "true" (default), regex, code list, primitive and pure
+     * rules on an element attribute are evaluated at the start of the element, before its content is parsed, unless
+     * asynchronous or guarded by a bean.  Other rules (e.g. MVEL rules) may read beans populated from the element
+     * content, so as they are always evaluated at the end of the element.  If "false", all rules are evaluated at
+     * the end of the element.
+     */
+    public static final String ATTRIBUTE_RULES_AT_START = "validation.attributeRulesAtStart";
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
     /**
      * The name of the rule that will be used by this validator.
      */
@@ -139,7 +181,7 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
     /**
      * Rule provider for this validator.
      */
-    private RuleProvider ruleProvider;
+    private volatile RuleProvider ruleProvider;
     /**
      * The validation failure level. Default is OnFail.ERROR.
      */
@@ -167,6 +209,70 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
      * The maximum number of failures permitted per {@link ValidationResult} instance..
      */
     private int maxFails;
+    /**
+     * Is the rule declared pure i.e. is the rule result dependent only on the evaluated text.
+     */
+    private boolean pure;
+    /**
+     * Rule guard configuration.  Null if the rule is not guarded.
+     */
+    private String when;
+    /**
+     * Compiled rule guard, tested before the rule is evaluated.  Null if the rule is not guarded.
+     */
+    private RuleGuard guard;
+    /**
+     * Is the rule result dependent only on the evaluated text i.e. is the rule pure or a regex rule.
+     */
+    private boolean deterministic;
+    /**
+     * Initialization sequence number.  Validators are initialized in configuration order.
+     */
+    private long sequence;
+    /**
+     * Is the rule evaluated asynchronously.
+     */
+    private boolean async;
+    /**
+     * Asynchronous rule evaluation executor.  Null if the rule is not evaluated asynchronously.
+     */
+    private AsyncRuleExecutor asyncRuleExecutor;
+    /**
+     * Group of co-located validators.  Null if this validator is not coordinated with other validators.
+     */
+    private volatile ValidatorGroup group;
+    /**
+     * Is the rule evaluated at the start of the selected element.
+     */
+    private volatile boolean elementStart;
+    /**
+     * Batch of attribute rules on the selected element.  Null if the rule is not batched with other attribute rules.
+     */
+    private volatile AttributeRuleBatch attributeBatch;
+    /**
+     * Allocation-free matcher for simple regex rules.  Null if the rule is not a simple regex rule.
+     */
+    private SimplePatternMatcher simpleMatcher;
+    /**
+     * The simple regex rule {@link Pattern}, for failure results.
+     */
+    private Pattern simplePattern;
+    /**
+     * Shared result of passed simple regex rule evaluations.
+     */
+    private RuleEvalResult simplePassResult;
+    /**
+     * Rule evaluation result cache.  Null if the cache is not enabled, or the rule is not pure.
+     */
+    private RuleEvalCache evalCache;
+    /**
+     * Compiled failure message templates, keyed by {@link Locale}.
+     */
+    private final ConcurrentMap<Locale, MessageTemplate> messageTemplates = new ConcurrentHashMap<>();
+    /**
+     * Message bundle {@link ClassLoader}.  Reused so as the {@link ResourceBundle} cache is hit.
+     */
+    private ResourceBundleClassLoader resourceBundleClassLoader;
 
     /**
      * No-args constructor required by Smooks.
@@ -179,6 +285,7 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
      */
     @PostConstruct
     public void postConstruct() {
+        sequence = SEQUENCE.incrementAndGet();
         if (resourceConfig.getSelectorPath() instanceof IndexedSelectorPath &&
                 ((IndexedSelectorPath) resourceConfig.getSelectorPath()).getTargetSelectorStep() instanceof AttributeSelectorStep) {
             targetAttribute = ((AttributeSelectorStep) ((IndexedSelectorPath) resourceConfig.getSelectorPath()).
@@ -186,6 +293,9 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
         } else {
             targetAttribute = null;
         }
+        if (ValidationEvents.AVAILABLE) {
+            ValidationEvents.register(appContext);
+        }
     }
 
     /**
@@ -199,32 +309,135 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
         this.onFail = onFail;
     }
 
+    @Override
+    public void visitBefore(final Element element, final ExecutionContext executionContext) throws SmooksException {
+        if (targetAttribute == null) {
+            return;
+        }
+        if (ruleProvider == null) {
+            setRuleProvider(executionContext);
+        }
+        if (elementStart) {
+            // The attribute value is known at the element start, so as there's no need to wait for the content...
+            visit(element, executionContext);
+        }
+    }
+
     @Override
     public void visitAfter(final Element element, final ExecutionContext executionContext) throws SmooksException {
-        if (targetAttribute != null) {
-            OnFailResultImpl result = _validate(element.getAttribute(targetAttribute), executionContext);
-            if (result != null) {
-                result.setFailFragmentPath(DomUtils.getXPath(element) + "/@" + targetAttribute);
-                assertValidationException(result, executionContext);
+        if (ruleProvider == null) {
+            setRuleProvider(executionContext);
+        }
+        if (!elementStart) {
+            visit(element, executionContext);
+        }
+    }
+
+    private void visit(final Element element, final ExecutionContext executionContext) throws SmooksException {
+        final AttributeRuleBatch batch = attributeBatch;
+        if (batch != null) {
+            batch.validate(this, element, executionContext);
+            return;
+        }
+
+        final ValidatorGroup validatorGroup = group;
+        if (validatorGroup != null) {
+            // The group leader validates on behalf of the whole group...
+            if (validatorGroup.isLeader(this)) {
+                validatorGroup.validate(element, executionContext);
             }
+        } else {
+            validate(element, executionContext);
+        }
+    }
+
+    /**
+     * Validate the selected element, or element attribute.
+     *
+     * @param element          The selected element.
+     * @param executionContext The Smooks {@link org.smooks.api.ExecutionContext}.
+     * @return True if the rule failed, otherwise false.
+     * @throws ValidationException A FATAL Validation failure has occured, or the maximum number of
+     *                             allowed failures has been exceeded.
+     */
+    boolean validate(final Element element, final ExecutionContext executionContext) throws ValidationException {
+        final ValidationProfile profile = ValidationProfile.get(executionContext);
+        final long start = (profile != null ? profile.start(ValidationProfile.Phase.TEXT_ACCUMULATION) : -1);
+        final String text;
+        if (targetAttribute != null) {
+            text = element.getAttribute(targetAttribute);
         } else {
             TextAccumulatorMemento textAccumulatorMemento = new TextAccumulatorVisitorMemento(new NodeFragment(element), this);
             executionContext.getMementoCaretaker().restore(textAccumulatorMemento);
+            text = textAccumulatorMemento.getText();
+        }
+        if (profile != null) {
+            profile.end(ValidationProfile.Phase.TEXT_ACCUMULATION, start);
+        }
 
-            OnFailResultImpl result = _validate(textAccumulatorMemento.getText(), executionContext);
-            if (result != null) {
-                result.setFailFragmentPath(DomUtils.getXPath(element));
-                assertValidationException(result, executionContext);
+        if (guard != null && !guard.test(element, text, executionContext)) {
+            return false;
+        }
+        if (ruleProvider == null) {
+            setRuleProvider(executionContext);
+        }
+        if (deterministic) {
+            RecordValidationCache.Record record = executionContext.get(RecordValidationCache.RECORD_TYPED_KEY);
+            if (record != null) {
+                record.defer(this, text, getFailFragmentPath(element));
+                return false;
             }
         }
+        if (asyncRuleExecutor != null) {
+            asyncRuleExecutor.submit(this, text, getFailFragmentPath(element), executionContext);
+            return false;
+        }
+
+        OnFailResultImpl result = _validate(text, executionContext, profile);
+        if (result != null) {
+            result.setFailFragmentPath(getFailFragmentPath(element));
+            reportFailure(result, executionContext);
+            return true;
+        }
+
+        return false;
+    }
+
+    private String getFailFragmentPath(final Element element) {
+        if (targetAttribute != null) {
+            return DomUtils.getXPath(element) + "/@" + targetAttribute;
+        } else {
+            return DomUtils.getXPath(element);
+        }
     }
 
-    private void assertValidationException(OnFailResultImpl result, ExecutionContext executionContext) {
+    private void reportFailure(OnFailResultImpl result, ExecutionContext executionContext) {
+        // Report the failure once its path is known, so as the failure can be aggregated by path...
+        reportFailure(result, onFail, maxFails, executionContext);
+    }
+
+    /**
+     * Add a failure to the {@link ValidationResult} associated with the supplied {@link ExecutionContext}.
+     *
+     * @param result           The failure.
+     * @param onFail           The failure level.
+     * @param maxFails         The maximum number of failures permitted per {@link ValidationResult} instance.
+     * @param executionContext The Smooks {@link org.smooks.api.ExecutionContext}.
+     * @throws ValidationException A FATAL Validation failure has occured, or the maximum number of
+     *                             allowed failures has been exceeded.
+     */
+    static void reportFailure(final OnFailResult result, final OnFail onFail, final int maxFails, final ExecutionContext executionContext) throws ValidationException {
+        if (ValidationEvents.AVAILABLE) {
+            ValidationEvents.failure(result, onFail);
+        }
+        FailureLog.log(result, onFail, executionContext);
+        ValidationResult validationResult = getValidationResult(executionContext);
+        validationResult.addResult(result, onFail);
+
         if (onFail == OnFail.FATAL) {
             throw new ValidationException("A FATAL validation failure has occured " + result, result);
         }
 
-        ValidationResult validationResult = getValidationResult(executionContext);
         if (validationResult.getNumFailures() > maxFails) {
             throw new ValidationException("The maximum number of allowed validation failures (" + maxFails + ") has been exceeded.", result);
         }
@@ -242,10 +455,32 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
     void validate(final String text, final ExecutionContext executionContext) throws ValidationException {
         OnFailResultImpl result = _validate(text, executionContext);
         if (result != null) {
-            assertValidationException(result, executionContext);
+            reportFailure(result, executionContext);
         }
     }
 
+    /**
+     * Validate text whose evaluation was deferred to the end of a record.
+     *
+     * @param text             The selected data to perform the evaluation on.
+     * @param failFragmentPath The path of the selected data.
+     * @param executionContext The Smooks {@link org.smooks.api.ExecutionContext}.
+     * @return True if the rule passed, otherwise false.
+     * @throws ValidationException A FATAL Validation failure has occured, or the maximum number of
+     *                             allowed failures has been exceeded.
+     * @see RecordValidationCache
+     */
+    boolean validateDeferred(final String text, final String failFragmentPath, final ExecutionContext executionContext) throws ValidationException {
+        OnFailResultImpl result = _validate(text, executionContext);
+        if (result != null) {
+            result.setFailFragmentPath(failFragmentPath);
+            reportFailure(result, executionContext);
+            return false;
+        }
+
+        return true;
+    }
+
     /**
      * Validate will lookup the configured RuleProvider and validate the text against the
      * rule specfied by the composite rule name.
@@ -256,22 +491,38 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
      *                             allowed failures has been exceeded.
      */
     private OnFailResultImpl _validate(final String text, final ExecutionContext executionContext) throws ValidationException {
+        return _validate(text, executionContext, ValidationProfile.get(executionContext));
+    }
+
+    private OnFailResultImpl _validate(final String text, final ExecutionContext executionContext, final ValidationProfile profile) throws ValidationException {
         if (ruleProvider == null) {
             setRuleProvider(executionContext);
         }
 
-        final RuleEvalResult result = ruleProvider.evaluate(ruleName, text, executionContext);
+        final RuleEvalResult result;
+        if (profile != null) {
+            final long start = profile.startRule(compositRuleName);
+            result = evaluate(text, executionContext);
+            profile.endRule(compositRuleName, start);
+        } else {
+            result = evaluate(text, executionContext);
+        }
 
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug(result.toString());
         }
 
         if (!result.matched()) {
-            ValidationResult validationResult = getValidationResult(executionContext);
             OnFailResultImpl onFailResult = new OnFailResultImpl();
             onFailResult.setRuleResult(result);
-            onFailResult.setBeanContext(executionContext.getBeanContext().getBeanMap());
-            validationResult.addResult(onFailResult, onFail);
+            if (profile != null) {
+                final long start = profile.start(ValidationProfile.Phase.BEAN_SNAPSHOT);
+                onFailResult.setBeanContext(executionContext.getBeanContext().getBeanMap());
+                profile.end(ValidationProfile.Phase.BEAN_SNAPSHOT, start);
+                onFailResult.profile = profile;
+            } else {
+                onFailResult.setBeanContext(executionContext.getBeanContext().getBeanMap());
+            }
 
             return onFailResult;
         }
@@ -279,7 +530,95 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
         return null;
     }
 
-    private ValidationResult getValidationResult(ExecutionContext executionContext) {
+    /**
+     * Report the result of an asynchronous rule evaluation.
+     *
+     * @param result           The rule evaluation result.
+     * @param failFragmentPath The path of the evaluated text.
+     * @param beanSnapshot     The bean context snapshot taken when the evaluation was submitted.
+     * @param executionContext The Smooks {@link org.smooks.api.ExecutionContext}.
+     * @throws ValidationException A FATAL Validation failure has occured, or the maximum number of
+     *                             allowed failures has been exceeded.
+     * @see AsyncRuleExecutor
+     */
+    void report(final RuleEvalResult result, final String failFragmentPath, final Map<String, Object> beanSnapshot, final ExecutionContext executionContext) throws ValidationException {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(result.toString());
+        }
+
+        if (!result.matched()) {
+            OnFailResultImpl onFailResult = new OnFailResultImpl();
+            onFailResult.setRuleResult(result);
+            onFailResult.setBeanContext(beanSnapshot);
+            onFailResult.setFailFragmentPath(failFragmentPath);
+            reportFailure(onFailResult, executionContext);
+        }
+    }
+
+    RuleEvalResult evaluate(final String text, final ExecutionContext executionContext) {
+        if (ValidationEvents.AVAILABLE) {
+            return ValidationEvents.evaluate(this, text, executionContext);
+        }
+        return evaluateRule(text, executionContext);
+    }
+
+    /**
+     * Evaluate the rule, without recording a {@link ValidationEvents rule evaluation event}.
+     */
+    RuleEvalResult evaluateRule(final String text, final ExecutionContext executionContext) {
+        if (simpleMatcher != null) {
+            return (simpleMatcher.matches(text) ? simplePassResult : new RegexRuleEvalResult(false, ruleName, ruleProviderName, simplePattern, text));
+        }
+        if (evalCache == null) {
+            return ruleProvider.evaluate(ruleName, text, executionContext);
+        }
+
+        RuleEvalResult result = evalCache.get(compositRuleName, text);
+        if (result == null) {
+            result = ruleProvider.evaluate(ruleName, text, executionContext);
+            if (result.getEvalException() == null) {
+                evalCache.put(compositRuleName, text, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Warm up this validator.
+     * <p/>
+     * Resolves the rule provider and compiles the failure message templates for the supplied
+     * {@link Locale Locales}, optionally followed by a number of synthetic rule evaluations.
+     *
+     * @param executionContext     The Smooks {@link org.smooks.api.ExecutionContext}.
+     * @param locales              The message {@link Locale Locales}.
+     * @param syntheticEvaluations The number of synthetic rule evaluations to run.
+     * @see ValidationWarmUp
+     */
+    void warmUp(final ExecutionContext executionContext, final Collection<Locale> locales, final int syntheticEvaluations) {
+        if (ruleProvider == null) {
+            setRuleProvider(executionContext);
+        }
+
+        for (Locale locale : locales) {
+            try {
+                getMessageTemplate(locale);
+            } catch (MissingResourceException e) {
+                LOGGER.debug("No message defined for rule '" + compositRuleName + "' in bundle '" + messageBundleBaseName + "'.", e);
+            }
+        }
+
+        for (int i = 0; i < syntheticEvaluations; i++) {
+            try {
+                ruleProvider.evaluate(ruleName, "", executionContext);
+            } catch (RuntimeException e) {
+                LOGGER.debug("Synthetic evaluation of rule '" + compositRuleName + "' failed.  Skipping remaining synthetic evaluations.", e);
+                break;
+            }
+        }
+    }
+
+    private static ValidationResult getValidationResult(ExecutionContext executionContext) {
         ValidationResult validationResult = (ValidationResult) FilterResult.getResult(executionContext, ValidationResult.class);
         // Create a new ValidationResult if one was not available in the execution context.
         // This would be the case for example if one as not specified to Smooks filter method.
@@ -295,29 +634,81 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
             return;
         }
 
-        ruleProvider = RuleProviderAccessor.get(appContext, ruleProviderName);
-        if (ruleProvider == null) {
+        final RuleProvider provider = RuleProviderAccessor.get(appContext, ruleProviderName);
+        if (provider == null) {
             throw new SmooksException("Unknown rule provider '" + ruleProviderName + "'.");
         }
 
         // Configure the base bundle name for validation failure messages...
-        setMessageBundleBaseName();
+        setMessageBundleBaseName(provider);
 
         // Configure the maxFails per ValidationResult instance...
+        maxFails = getMaxFails(executionContext);
+
+        ValidatorGroup.assign(appContext, executionContext);
+
+        deterministic = isDeterministic(provider);
+        // Other rules read the bean context, which is not safe off the filtering thread...
+        if (async && deterministic) {
+            asyncRuleExecutor = AsyncRuleExecutor.getOrCreate(appContext, executionContext);
+        } else if (async) {
+            LOGGER.warn("Rule '{}' is evaluated on the filtering thread.  Only regex, code list, primitive and pure rules are evaluated asynchronously.", compositRuleName);
+        }
+        // Not for RegexProvider subclasses, which may override the evaluation...
+        if (provider.getClass() == RegexProvider.class || provider instanceof CompiledRegexProvider) {
+            compileSimpleMatcher(provider);
+        }
+        // Primitive and simple regex rules are cheaper to evaluate than to look up...
+        if (deterministic && !(provider instanceof PrimitiveRuleProvider) && simpleMatcher == null) {
+            evalCache = RuleEvalCache.getOrCreate(appContext, executionContext);
+        }
+
+        // Set last, so as the above is visible to other threads once the provider is set...
+        ruleProvider = provider;
+    }
+
+    private void compileSimpleMatcher(RuleProvider provider) {
+        final String regex;
+        if (provider instanceof CompiledRegexProvider) {
+            final Pattern pattern = ((CompiledRegexProvider) provider).getRules().get(ruleName);
+            regex = (pattern != null ? pattern.pattern() : null);
+        } else {
+            // The RegexProvider doesn't expose its patterns...
+            regex = SharedRuleBases.<Map<String, String>>acquire(this, "regex", provider.getSrc(), content -> Collections.unmodifiableMap(CompiledRegexProvider.loadRules(content))).get(ruleName);
+        }
+        if (regex == null) {
+            return;
+        }
+
+        simpleMatcher = SimplePatternMatcher.compile(regex);
+        if (simpleMatcher != null) {
+            simplePattern = Pattern.compile(regex);
+            simplePassResult = new RegexRuleEvalResult(true, ruleName, ruleProviderName, simplePattern, null);
+            LOGGER.debug("Regex rule '{}' pattern '{}' compiled to a simple matcher.", compositRuleName, regex);
+        }
+    }
+
+    /**
+     * Get the maximum number of failures permitted per {@link ValidationResult} instance.
+     *
+     * @param executionContext The Smooks {@link org.smooks.api.ExecutionContext}.
+     * @return The {@link OnFailResult#MAX_FAILS} global parameter value, or {@link Integer#MAX_VALUE} if not configured.
+     */
+    static int getMaxFails(ExecutionContext executionContext) {
         String maxFailsConfig = executionContext.getConfigParameter(OnFailResult.MAX_FAILS);
         if (maxFailsConfig != null) {
             try {
-                maxFails = Integer.parseInt(maxFailsConfig.trim());
+                return Integer.parseInt(maxFailsConfig.trim());
             } catch (NumberFormatException e) {
                 throw new SmooksConfigException("Invalid config value '" + maxFailsConfig.trim() + "' for global parameter '" + OnFailResult.MAX_FAILS + "'.  Must be a valid Integer value.");
             }
-        } else {
-            maxFails = Integer.MAX_VALUE;
         }
+
+        return Integer.MAX_VALUE;
     }
 
-    private void setMessageBundleBaseName() {
-        String ruleSource = ruleProvider.getSrc();
+    private void setMessageBundleBaseName(RuleProvider provider) {
+        String ruleSource = provider.getSrc();
         File srcFile = new File(ruleSource);
         String srcFileName = srcFile.getName();
         int indexOfExt = srcFileName.lastIndexOf('.');
@@ -338,6 +729,79 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
         messageBundleBaseName = messageBundleBaseName.replace('\\', '/');
     }
 
+    /**
+     * Get the compiled failure message template for the supplied {@link Locale}.
+     * <p/>
+     * The message bundle is resolved and the message compiled once per {@link Locale}, and then
+     * shared by all failures reported by this validator.
+     *
+     * @param locale The {@link Locale}.
+     * @return The compiled message template.
+     */
+    private MessageTemplate getMessageTemplate(final Locale locale) {
+        return messageTemplates.computeIfAbsent(locale, this::compileMessageTemplate);
+    }
+
+    private MessageTemplate compileMessageTemplate(final Locale locale) {
+        final ValidationSnapshot snapshot = appContext.getRegistry().lookup(ValidationSnapshot.class);
+        if (snapshot != null) {
+            final String message = snapshot.getMessage(messageBundleBaseName, locale, ruleName);
+            if (message != null) {
+                return MessageTemplate.compile(message);
+            }
+        }
+
+        final ResourceBundle bundle = getMessageBundle(locale);
+        // If no ResouceBundle was configured then use the failure toString
+        if (ruleName == null || bundle == null) {
+            return MessageTemplate.NONE;
+        }
+
+        return MessageTemplate.compile(bundle.getString(ruleName));
+    }
+
+    /**
+     * @param locale The Locale to look up.
+     * @return {@link ResourceBundle} for the Locale and message bundle base name. Or null if no bundle exists.
+     */
+    ResourceBundle getMessageBundle(final Locale locale) {
+        if (resourceBundleClassLoader == null) {
+            resourceBundleClassLoader = new ResourceBundleClassLoader(appContext.getClassLoader());
+        }
+
+        try {
+            return getMessageBundle(messageBundleBaseName, locale, resourceBundleClassLoader);
+        } catch (final MissingResourceException e) {
+            LOGGER.warn("Failed to load Validation rule message bundle '" + messageBundleBaseName + "'.  This resource must be on the classpath!", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Get a message bundle, loaded and shared as rule message bundles are.
+     *
+     * @param baseName                  The bundle base name e.g. "/org/acme/i18n/order-rules".
+     * @param locale                    The Locale to look up.
+     * @param resourceBundleClassLoader The loader, from {@link #createResourceBundleClassLoader(ClassLoader)}.
+     * @return The {@link ResourceBundle}.
+     * @throws MissingResourceException No bundle exists for the base name.
+     */
+    static ResourceBundle getMessageBundle(final String baseName, final Locale locale, final ClassLoader resourceBundleClassLoader) {
+        return ResourceBundle.getBundle(baseName, locale, resourceBundleClassLoader, SharedBundleControl.INSTANCE);
+    }
+
+    /**
+     * Create the loader message bundles are resolved through.  Bundle base names are resolved as resource
+     * locator URIs, so as they may be classpath or file paths.
+     *
+     * @param classLoader The {@link ApplicationContext} class loader.
+     * @return The loader.
+     */
+    static ClassLoader createResourceBundleClassLoader(final ClassLoader classLoader) {
+        return new ResourceBundleClassLoader(classLoader);
+    }
+
     @Override
     public String toString() {
         return String.format("%s [rule=%s, onFail=%s]", getClass().getSimpleName(), compositRuleName, onFail);
@@ -354,6 +818,79 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
         return compositRuleName;
     }
 
+    String getRuleProviderName() {
+        return ruleProviderName;
+    }
+
+    /**
+     * Get the rule provider class name.
+     *
+     * @return The rule provider class name, or null if the rule provider is not yet resolved.
+     */
+    String getRuleProviderType() {
+        final RuleProvider provider = ruleProvider;
+        return (provider != null ? provider.getClass().getName() : null);
+    }
+
+    String getSelector() {
+        return (resourceConfig != null ? resourceConfig.getSelectorPath().toString() : null);
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void setGroup(ValidatorGroup group) {
+        this.group = group;
+    }
+
+    ValidatorGroup getGroup() {
+        return group;
+    }
+
+    String getTargetAttribute() {
+        return targetAttribute;
+    }
+
+    void setElementStart(boolean elementStart) {
+        this.elementStart = elementStart;
+    }
+
+    boolean isElementStart() {
+        return elementStart;
+    }
+
+    void setAttributeBatch(AttributeRuleBatch attributeBatch) {
+        this.attributeBatch = attributeBatch;
+    }
+
+    AttributeRuleBatch getAttributeBatch() {
+        return attributeBatch;
+    }
+
+    /**
+     * Is the rule result dependent only on the evaluated text.  Unlike {@link #isDeterministic(RuleProvider)}, may be
+     * called before the rule provider is set.
+     */
+    boolean isDeterministic() {
+        final RuleProvider provider = RuleProviderAccessor.get(appContext, ruleProviderName);
+        return provider != null && isDeterministic(provider);
+    }
+
+    private boolean isDeterministic(final RuleProvider provider) {
+        // Regex, code list and primitive rules are pure by nature...
+        return pure || provider instanceof RegexProvider || provider instanceof CompiledRegexProvider || provider instanceof CodeListProvider ||
+                provider instanceof PrimitiveRuleProvider;
+    }
+
+    boolean isBeanGuarded() {
+        return guard != null && RuleGuard.isBeanGuard(when);
+    }
+
+    String getMessageBundleBaseName() {
+        return messageBundleBaseName;
+    }
+
     @Inject
     public void setOnFail(final Optional<OnFail> onFail) {
         this.onFail = onFail.orElse(OnFail.ERROR);
@@ -363,6 +900,34 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
         return onFail;
     }
 
+    @Inject
+    public void setPure(final Optional<Boolean> pure) {
+        this.pure = pure.orElse(false);
+    }
+
+    public boolean isPure() {
+        return pure;
+    }
+
+    @Inject
+    public void setAsync(final Optional<Boolean> async) {
+        this.async = async.orElse(false);
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    @Inject
+    public void setWhen(final Optional<String> when) {
+        this.when = when.orElse(null);
+        this.guard = (this.when != null ? RuleGuard.compile(this.when) : null);
+    }
+
+    public String getWhen() {
+        return when;
+    }
+
     public Validator setAppContext(ApplicationContext appContext) {
         this.appContext = appContext;
         return this;
@@ -390,6 +955,7 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
         private String failFragmentPath;
         private RuleEvalResult ruleResult;
         public Map<String, Object> beanContext;
+        private ValidationProfile profile;
 
         public void setFailFragmentPath(String failFragmentPath) {
             this.failFragmentPath = failFragmentPath;
@@ -424,46 +990,37 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
                 return ruleResult.getEvalException().getMessage();
             }
 
-            String message = getMessage(locale, ruleName);
-            // If no ResouceBundle was configured then use this instances toString
-            if (message == null) {
-                return toString();
-            }
-
-            if (message.startsWith("ftl:")) {
-                // TODO: Is there a way to optimize this e.g. attach the compiled template
-                // to the bundle as an object and then get back using ResourceBundle.getObject??
-                // I timed it and it was able to create and apply 10000 templates in about 2500 ms
-                // on an "average" spec machine, so it's not toooooo bad, and it's only done on demand :)
-                FreeMarkerTemplate template = new FreeMarkerTemplate(message.substring("ftl:".length()));
-                beanContext.put("ruleResult", ruleResult);
-                beanContext.put("path", failFragmentPath);
-                message = template.apply(beanContext);
+            StringBuilder message = new StringBuilder();
+            try {
+                render(locale, message);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unexpected IOException appending to a StringBuilder.", e);
             }
 
-            return message;
+            return message.toString();
         }
 
-        private String getMessage(final Locale locale, final String messageName) {
-            final ResourceBundle bundle = getMessageBundle(locale);
-            if (messageName == null || bundle == null)
-                return null;
-
-            return bundle.getString(messageName);
+        @Override
+        public void appendMessage(Locale locale, Appendable appendable) throws IOException {
+            if (ruleResult.getEvalException() != null) {
+                appendable.append(ruleResult.getEvalException().getMessage());
+            } else {
+                render(locale, appendable);
+            }
         }
 
-        /**
-         * @param locale The Locale to look up.
-         * @return {@link ResourceBundle} for the Locale and message bundle base name. Or null if no bundle exists.
-         */
-        private ResourceBundle getMessageBundle(final Locale locale) {
-            try {
-                return ResourceBundle.getBundle(messageBundleBaseName, locale, new ResourceBundleClassLoader(appContext.getClassLoader()));
-            } catch (final MissingResourceException e) {
-                LOGGER.warn("Failed to load Validation rule message bundle '" + messageBundleBaseName + "'.  This resource must be on the classpath!", e);
+        private void render(Locale locale, Appendable appendable) throws IOException {
+            if (profile == null) {
+                getMessageTemplate(locale).apply(this, beanContext, appendable);
+                return;
             }
 
-            return null;
+            final long start = profile.start(ValidationProfile.Phase.MESSAGE_RENDERING);
+            try {
+                getMessageTemplate(locale).apply(this, beanContext, appendable);
+            } finally {
+                profile.end(ValidationProfile.Phase.MESSAGE_RENDERING, start);
+            }
         }
 
         @Override
@@ -472,6 +1029,68 @@ public final class Validator implements ChildrenVisitor, AfterVisitor {
         }
     }
 
+    /**
+     * Loads properties message bundles from the {@link SharedRuleBases}, so as identical bundles are held once per JVM.
+     * <p/>
+     * Each bundle is a light wrapper, chained to its parent by {@link ResourceBundle}, around shared messages.  The
+     * messages are referenced by the bundle {@link ClassLoader}, and so released along with the validator.
+     */
+    private static final class SharedBundleControl extends ResourceBundle.Control {
+        private static final SharedBundleControl INSTANCE = new SharedBundleControl();
+
+        @Override
+        public ResourceBundle newBundle(String baseName, Locale locale, String format, ClassLoader loader, boolean reload) throws IllegalAccessException, InstantiationException, IOException {
+            if (!format.equals("java.properties")) {
+                return super.newBundle(baseName, locale, format, loader, reload);
+            }
+
+            final String resourceName = toResourceName(toBundleName(baseName, locale), "properties");
+            final byte[] content;
+            try (InputStream inputStream = loader.getResourceAsStream(resourceName)) {
+                if (inputStream == null) {
+                    return null;
+                }
+                content = SharedRuleBases.read(inputStream);
+            }
+
+            final PropertyResourceBundle messages = SharedRuleBases.acquire(loader, "bundle", resourceName, content, bundleContent -> {
+                try {
+                    return new PropertyResourceBundle(new ByteArrayInputStream(bundleContent));
+                } catch (IOException e) {
+                    throw new SmooksException("Failed to read message bundle '" + resourceName + "'.", e);
+                }
+            });
+            return new SharedMessageBundle(messages);
+        }
+    }
+
+    private static final class SharedMessageBundle extends ResourceBundle {
+        private final PropertyResourceBundle messages;
+
+        private SharedMessageBundle(PropertyResourceBundle messages) {
+            this.messages = messages;
+        }
+
+        @Override
+        protected Object handleGetObject(String key) {
+            return messages.handleGetObject(key);
+        }
+
+        @Override
+        protected Set<String> handleKeySet() {
+            return messages.keySet();
+        }
+
+        @Override
+        public Enumeration<String> getKeys() {
+            final Set<String> keys = new LinkedHashSet<>(messages.keySet());
+            if (parent != null) {
+                keys.addAll(parent.keySet());
+            }
+            return Collections.enumeration(keys);
+        }
+    }
+
     private static class ResourceBundleClassLoader extends ClassLoader {
         private final ClassLoader classLoader;
 
@@ -0,0 +1,269 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.w3c.dom.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group of co-located {@link Validator Validators} i.e. validators configured on the same fragment ("executeOn").
+ * <p/>
+ * The group leader (the first validator in configuration order) evaluates all the rules in the group, while the
+ * other members do nothing.  Under adaptive ordering with short-circuiting ({@link Validator#SHORT_CIRCUIT}), the
+ * group records the mean evaluation cost and failure probability of each rule, and periodically reorders the rules
+ * so as the cheap, likely to fail rules are evaluated first (ascending cost / failure probability).  This minimises
+ * the expected cost of finding the first failure, which is what matters when the remaining rules are skipped on
+ * failure.  Without short-circuiting, the rules are evaluated in configuration order, so as failures are reported
+ * in a stable order.
+ * <p/>
+ * Groups are only formed where the evaluation order can make a difference to the work done i.e. when short-circuiting
+ * is enabled.
+ * <p/>
+ * Group formation also decides which attribute rules are evaluated at the element start (regex, code list, primitive
+ * and pure rules that are neither asynchronous nor bean guarded), and batches the attribute rules on the same element
+ * (see {@link AttributeRuleBatch}).
+ */
+final class ValidatorGroup {
+
+    /**
+     * Number of group evaluations between reorderings.
+     */
+    static final int REORDER_INTERVAL = 1024;
+
+    private final Member[] members;
+    private final boolean adaptive;
+    private final boolean shortCircuit;
+    private final AtomicLong evaluationCount = new AtomicLong();
+    private volatile Member[] order;
+
+    ValidatorGroup(List<Validator> validators, boolean adaptive, boolean shortCircuit) {
+        this.members = new Member[validators.size()];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = new Member(validators.get(i));
+        }
+        this.adaptive = adaptive;
+        this.shortCircuit = shortCircuit;
+        this.order = members;
+    }
+
+    /**
+     * Form the validator groups for the validators on an {@link ApplicationContext}, if not already formed.
+     *
+     * @param applicationContext The {@link ApplicationContext}.
+     * @param executionContext   The {@link ExecutionContext}, for access to the content delivery config and global
+     *                           parameters.
+     */
+    static void assign(ApplicationContext applicationContext, ExecutionContext executionContext) {
+        synchronized (ValidatorGroup.class) {
+            if (applicationContext.getRegistry().lookup(GroupsFormed.class) != null) {
+                return;
+            }
+
+            final String ruleOrder = executionContext.getConfigParameter(Validator.RULE_ORDER, Validator.RULE_ORDER_ADAPTIVE).trim();
+            if (!ruleOrder.equals(Validator.RULE_ORDER_ADAPTIVE) && !ruleOrder.equals(Validator.RULE_ORDER_DECLARED)) {
+                throw new SmooksConfigException("Invalid config value '" + ruleOrder + "' for global parameter '" + Validator.RULE_ORDER + "'.  Must be '" + Validator.RULE_ORDER_ADAPTIVE + "' or '" + Validator.RULE_ORDER_DECLARED + "'.");
+            }
+            final boolean adaptive = ruleOrder.equals(Validator.RULE_ORDER_ADAPTIVE);
+            final boolean shortCircuit = Boolean.parseBoolean(executionContext.getConfigParameter(Validator.SHORT_CIRCUIT, "false").trim());
+            final boolean attributeRulesAtStart = Boolean.parseBoolean(executionContext.getConfigParameter(Validator.ATTRIBUTE_RULES_AT_START, "true").trim());
+
+            final Map<String, List<Validator>> colocated = new LinkedHashMap<>();
+            final Map<String, List<Validator>> attributeRules = new LinkedHashMap<>();
+            for (Validator validator : ValidationWarmUp.getValidators(executionContext.getContentDeliveryRuntime().getContentDeliveryConfig())) {
+                if (validator.getSelector() != null) {
+                    colocated.computeIfAbsent(validator.getSelector(), selector -> new ArrayList<>()).add(validator);
+                }
+            }
+            for (List<Validator> validators : colocated.values()) {
+                // Restore the configuration order...
+                validators.sort(Comparator.comparingLong(Validator::getSequence));
+                if (validators.size() > 1 && shortCircuit) {
+                    ValidatorGroup validatorGroup = new ValidatorGroup(validators, adaptive, shortCircuit);
+                    for (Validator validator : validators) {
+                        validator.setGroup(validatorGroup);
+                    }
+                }
+                // Only rules that depend on the attribute text alone are evaluated at the element start.  Other rules and
+                // bean guards may read beans populated from the element content, so as the whole group waits for the
+                // element end...
+                if (attributeRulesAtStart && validators.get(0).getTargetAttribute() != null &&
+                        validators.stream().allMatch(validator -> validator.isDeterministic() && !validator.isAsync() && !validator.isBeanGuarded())) {
+                    for (Validator validator : validators) {
+                        validator.setElementStart(true);
+                    }
+                    attributeRules.computeIfAbsent(AttributeRuleBatch.getElementSelector(validators.get(0).getSelector()), selector -> new ArrayList<>()).addAll(validators);
+                }
+            }
+            for (List<Validator> validators : attributeRules.values()) {
+                if (validators.stream().map(Validator::getSelector).distinct().count() > 1) {
+                    validators.sort(Comparator.comparingLong(Validator::getSequence));
+                    AttributeRuleBatch attributeRuleBatch = new AttributeRuleBatch(validators);
+                    for (Validator validator : validators) {
+                        validator.setAttributeBatch(attributeRuleBatch);
+                    }
+                }
+            }
+
+            applicationContext.getRegistry().registerObject(GroupsFormed.class, new GroupsFormed());
+        }
+    }
+
+    /**
+     * Is the supplied validator the group leader.
+     *
+     * @param validator The validator.
+     * @return True if the validator is the group leader, otherwise false.
+     */
+    boolean isLeader(Validator validator) {
+        return members[0].validator == validator;
+    }
+
+    /**
+     * Validate an element against all the rules in the group.
+     *
+     * @param element          The element.
+     * @param executionContext The {@link ExecutionContext}.
+     */
+    void validate(final Element element, final ExecutionContext executionContext) {
+        for (Member member : order) {
+            final boolean failed;
+            if (adaptive) {
+                final long start = System.nanoTime();
+                boolean memberFailed = true;
+                try {
+                    memberFailed = member.validator.validate(element, executionContext);
+                } finally {
+                    member.record(System.nanoTime() - start, memberFailed);
+                }
+                failed = memberFailed;
+            } else {
+                failed = member.validator.validate(element, executionContext);
+            }
+            if (failed && shortCircuit) {
+                break;
+            }
+        }
+
+        if (adaptive && evaluationCount.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+    }
+
+    /**
+     * Reorder the rules by ascending mean cost / failure probability.
+     */
+    void reorder() {
+        final double[] scores = new double[members.length];
+        final Integer[] indexes = new Integer[members.length];
+        for (int i = 0; i < members.length; i++) {
+            scores[i] = members[i].score();
+            indexes[i] = i;
+        }
+        // Stable sort, so as equally scored rules stay in configuration order...
+        Arrays.sort(indexes, Comparator.comparingDouble(index -> scores[index]));
+
+        final Member[] reordered = new Member[members.length];
+        for (int i = 0; i < indexes.length; i++) {
+            reordered[i] = members[indexes[i]];
+        }
+        order = reordered;
+    }
+
+    /**
+     * Get the current evaluation order.
+     *
+     * @return The validators, in evaluation order.
+     */
+    List<Validator> getOrder() {
+        final List<Validator> validators = new ArrayList<>();
+        for (Member member : order) {
+            validators.add(member.validator);
+        }
+        return validators;
+    }
+
+    /**
+     * Registry marker, registered once the groups on an {@link ApplicationContext} are formed.
+     */
+    private static final class GroupsFormed {
+    }
+
+    private static final class Member {
+        private final Validator validator;
+        private final LongAdder evalNanos = new LongAdder();
+        private final LongAdder evalCount = new LongAdder();
+        private final LongAdder failCount = new LongAdder();
+
+        private Member(Validator validator) {
+            this.validator = validator;
+        }
+
+        private void record(long nanos, boolean failed) {
+            evalNanos.add(nanos);
+            evalCount.increment();
+            if (failed) {
+                failCount.increment();
+            }
+        }
+
+        private double score() {
+            final long count = evalCount.sum();
+            final double meanNanos = (count == 0 ? 0 : (double) evalNanos.sum() / count);
+            // Laplace smoothed, so as a rule that has not failed yet still gets a (small) failure probability...
+            final double failureProbability = (failCount.sum() + 1.0) / (count + 2.0);
+
+            return meanNanos / failureProbability;
+        }
+    }
+}
@@ -0,0 +1,1010 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.assertion.AssertArgument;
+import org.smooks.cartridges.rules.regex.RegexProvider;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates validation rules from the simple type facets of an XML Schema.
+ * <p/>
+ * The generated rules check the facets in the same single streaming pass as any other validation rule, so
+ * documents whose schema validation is only needed for facet checking don't need a separate schema validation
+ * pass.  Three files are written to the output directory:
+ * <ul>
+ *     <li><b>&lt;name&gt;-regex.properties</b>: {@link RegexProvider} rules for the pattern and enumeration facets,
+ *     and for boolean values.</li>
+ *     <li><b>&lt;name&gt;-primitive.properties</b>: {@link PrimitiveRuleProvider} rules for the length, minLength,
+ *     maxLength, minInclusive, maxInclusive, totalDigits and fractionDigits facets, and for the built-in integer
+ *     and decimal types.  The digits facets are checked on the value, so trailing fraction zeros are not
+ *     counted.</li>
+ *     <li><b>&lt;name&gt;-validation.xml</b>: A Smooks configuration declaring the two rule bases and a
+ *     <code>validation:rule</code> per generated rule, to be imported into the main configuration.</li>
+ * </ul>
+ * Rules are generated for every element and attribute with a simple type, or with simple content, reachable from
+ * the global elements that are not referenced by other elements.  Rule selectors are absolute paths from the root
+ * element, and rules on optional attributes are only evaluated when the attribute is present, even if empty.
+ * <p/>
+ * Values of types with "collapse" whiteSpace (all built-in types other than string and normalizedString, unless
+ * restricted otherwise) may be surrounded by whitespace, and their length is the length of the collapsed value.
+ * Whitespace within the value is not collapsed before pattern and enumeration matching, and "replace" whiteSpace
+ * is not applied.
+ * <p/>
+ * Only the facets are checked.  Occurrence, ordering and identity constraints are not, and nor are the value
+ * spaces of built-in types other than the integer, decimal and boolean types.  List and union types are skipped,
+ * minExclusive and maxExclusive are only supported on integer types, and on decimal types with a fractionDigits
+ * facet (otherwise they are skipped with a warning), and enumeration values are compared as written in the
+ * schema, so "1.0" does not equal "1".  Includes and imports are not followed.
+ * <p/>
+ * The rules can be generated at build time by running this class's {@link #main(String[]) main} method,
+ * e.g. through the exec-maven-plugin.
+ */
+public class XsdRuleGenerator {
+
+    /**
+     * XML Schema namespace.
+     */
+    public static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(XsdRuleGenerator.class);
+
+    private static final String TARGET_NAMESPACE_PREFIX = "tns";
+    private static final Set<String> STRING_TYPES = new HashSet<>(Arrays.asList("string", "normalizedString", "token", "language", "Name", "NCName", "NMTOKEN", "ID", "IDREF", "ENTITY", "anyURI"));
+    private static final Set<String> DECIMAL_TYPES = new HashSet<>(Arrays.asList("decimal"));
+    private static final Map<String, BigInteger[]> INTEGER_TYPES = new HashMap<>();
+
+    static {
+        INTEGER_TYPES.put("integer", new BigInteger[]{null, null});
+        INTEGER_TYPES.put("nonNegativeInteger", new BigInteger[]{BigInteger.ZERO, null});
+        INTEGER_TYPES.put("positiveInteger", new BigInteger[]{BigInteger.ONE, null});
+        INTEGER_TYPES.put("nonPositiveInteger", new BigInteger[]{null, BigInteger.ZERO});
+        INTEGER_TYPES.put("negativeInteger", new BigInteger[]{null, BigInteger.ONE.negate()});
+        INTEGER_TYPES.put("long", new BigInteger[]{BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE)});
+        INTEGER_TYPES.put("int", new BigInteger[]{BigInteger.valueOf(Integer.MIN_VALUE), BigInteger.valueOf(Integer.MAX_VALUE)});
+        INTEGER_TYPES.put("short", new BigInteger[]{BigInteger.valueOf(Short.MIN_VALUE), BigInteger.valueOf(Short.MAX_VALUE)});
+        INTEGER_TYPES.put("byte", new BigInteger[]{BigInteger.valueOf(Byte.MIN_VALUE), BigInteger.valueOf(Byte.MAX_VALUE)});
+        INTEGER_TYPES.put("unsignedLong", new BigInteger[]{BigInteger.ZERO, new BigInteger("18446744073709551615")});
+        INTEGER_TYPES.put("unsignedInt", new BigInteger[]{BigInteger.ZERO, BigInteger.valueOf(4294967295L)});
+        INTEGER_TYPES.put("unsignedShort", new BigInteger[]{BigInteger.ZERO, BigInteger.valueOf(65535)});
+        INTEGER_TYPES.put("unsignedByte", new BigInteger[]{BigInteger.ZERO, BigInteger.valueOf(255)});
+    }
+
+    private final String name;
+    private OnFail onFail = OnFail.ERROR;
+
+    private String targetNamespace;
+    private boolean elementsQualified;
+    private boolean attributesQualified;
+    private final Map<String, Element> globalElements = new HashMap<>();
+    private final Map<String, Element> globalAttributes = new HashMap<>();
+    private final Map<String, Element> complexTypes = new HashMap<>();
+    private final Map<String, Element> simpleTypes = new HashMap<>();
+    private final Map<String, Element> groups = new HashMap<>();
+    private final Map<String, Element> attributeGroups = new HashMap<>();
+    private final Set<Element> active = new HashSet<>();
+
+    private final Map<String, String> regexRules = new LinkedHashMap<>();
+    private final Map<String, String> primitiveRules = new LinkedHashMap<>();
+    private final List<GeneratedRule> rules = new ArrayList<>();
+    private final Set<String> ruleNames = new HashSet<>();
+
+    /**
+     * Public constructor.
+     *
+     * @param name The name of the generated rules.  Used as the rule base name prefix and the generated file name
+     *             prefix.
+     */
+    public XsdRuleGenerator(String name) {
+        AssertArgument.isNotNullAndNotEmpty(name, "name");
+        this.name = name;
+    }
+
+    /**
+     * Set the onFail type of the generated rules.
+     *
+     * @param onFail The onFail type.  Default {@link OnFail#ERROR}.
+     * @return This generator.
+     */
+    public XsdRuleGenerator setOnFail(OnFail onFail) {
+        AssertArgument.isNotNull(onFail, "onFail");
+        this.onFail = onFail;
+        return this;
+    }
+
+    /**
+     * Generate the rules for a schema.
+     *
+     * @param xsd          The schema file.
+     * @param outputDir    The directory to which the generated files are written.
+     * @param ruleBasePath The path through which the generated Smooks configuration refers to the generated rule
+     *                     files, e.g. a classpath folder.  Null to refer to them in the output directory.
+     * @throws IOException  Error reading the schema or writing the generated files.
+     * @throws SAXException Error parsing the schema.
+     */
+    public void generate(Path xsd, Path outputDir, String ruleBasePath) throws IOException, SAXException {
+        AssertArgument.isNotNull(xsd, "xsd");
+        AssertArgument.isNotNull(outputDir, "outputDir");
+
+        try (InputStream xsdStream = Files.newInputStream(xsd)) {
+            generate(xsdStream);
+        }
+
+        String rulePath = (ruleBasePath != null ? ruleBasePath : outputDir.toAbsolutePath().toUri().toString());
+        if (!rulePath.endsWith("/")) {
+            rulePath += "/";
+        }
+
+        Files.createDirectories(outputDir);
+        writeRules(regexRules, outputDir.resolve(name + "-regex.properties"));
+        writeRules(primitiveRules, outputDir.resolve(name + "-primitive.properties"));
+        try (Writer writer = Files.newBufferedWriter(outputDir.resolve(name + "-validation.xml"), StandardCharsets.UTF_8)) {
+            writer.write(toSmooksConfig(rulePath));
+        }
+    }
+
+    /**
+     * Generate the rules for a schema.
+     *
+     * @param xsdStream The schema stream.
+     * @return The number of generated rules.
+     * @throws IOException  Error reading the schema.
+     * @throws SAXException Error parsing the schema.
+     */
+    int generate(InputStream xsdStream) throws IOException, SAXException {
+        final Document xsd;
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            xsd = factory.newDocumentBuilder().parse(xsdStream);
+        } catch (ParserConfigurationException e) {
+            throw new SmooksConfigException("Unable to create schema parser.", e);
+        }
+
+        final Element schema = xsd.getDocumentElement();
+        if (!XSD_NAMESPACE.equals(schema.getNamespaceURI()) || !"schema".equals(schema.getLocalName())) {
+            throw new SmooksConfigException("Not an XML Schema.  Expected a '{" + XSD_NAMESPACE + "}schema' root element.");
+        }
+        targetNamespace = emptyToNull(schema.getAttribute("targetNamespace"));
+        elementsQualified = "qualified".equals(schema.getAttribute("elementFormDefault"));
+        attributesQualified = "qualified".equals(schema.getAttribute("attributeFormDefault"));
+
+        for (Element definition : children(schema)) {
+            switch (definition.getLocalName()) {
+                case "element":
+                    globalElements.put(definition.getAttribute("name"), definition);
+                    break;
+                case "attribute":
+                    globalAttributes.put(definition.getAttribute("name"), definition);
+                    break;
+                case "complexType":
+                    complexTypes.put(definition.getAttribute("name"), definition);
+                    break;
+                case "simpleType":
+                    simpleTypes.put(definition.getAttribute("name"), definition);
+                    break;
+                case "group":
+                    groups.put(definition.getAttribute("name"), definition);
+                    break;
+                case "attributeGroup":
+                    attributeGroups.put(definition.getAttribute("name"), definition);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Roots are the global elements not referenced by another element...
+        final Set<String> referenced = new HashSet<>();
+        collectElementRefs(schema, referenced);
+        final List<Element> roots = new ArrayList<>();
+        for (Element element : children(schema)) {
+            if ("element".equals(element.getLocalName()) && !referenced.contains(element.getAttribute("name"))) {
+                roots.add(element);
+            }
+        }
+        if (roots.isEmpty()) {
+            roots.addAll(globalElements.values());
+        }
+
+        for (Element root : roots) {
+            walkElement(root, "", true);
+        }
+
+        return rules.size();
+    }
+
+    Map<String, String> getRegexRules() {
+        return regexRules;
+    }
+
+    Map<String, String> getPrimitiveRules() {
+        return primitiveRules;
+    }
+
+    List<GeneratedRule> getRules() {
+        return rules;
+    }
+
+    private void walkElement(Element declaration, String parentPath, boolean global) {
+        Element element = declaration;
+        if (element.hasAttribute("ref")) {
+            element = globalElements.get(localName(element.getAttribute("ref")));
+            if (element == null) {
+                return;
+            }
+            global = true;
+        }
+        if (!active.add(element)) {
+            // Recursive element...
+            return;
+        }
+
+        try {
+            final boolean qualified = global || (element.hasAttribute("form") ? "qualified".equals(element.getAttribute("form")) : elementsQualified);
+            final String path = parentPath + "/" + qualify(element.getAttribute("name"), qualified);
+
+            if (element.hasAttribute("type")) {
+                final String type = element.getAttribute("type");
+                final Element complexType = (isXsdType(element, type) ? null : complexTypes.get(localName(type)));
+                if (complexType != null) {
+                    walkComplexType(complexType, path);
+                } else {
+                    addRules(path, resolveType(element, type), false);
+                }
+            } else {
+                final Element simpleType = child(element, "simpleType");
+                final Element complexType = child(element, "complexType");
+                if (simpleType != null) {
+                    addRules(path, resolveSimpleType(simpleType), false);
+                } else if (complexType != null) {
+                    walkComplexType(complexType, path);
+                }
+            }
+        } finally {
+            active.remove(element);
+        }
+    }
+
+    private void walkComplexType(Element complexType, String path) {
+        if (!active.add(complexType)) {
+            return;
+        }
+
+        try {
+            for (Element content : children(complexType)) {
+                switch (content.getLocalName()) {
+                    case "complexContent":
+                        final Element derivation = firstChild(content);
+                        if (derivation != null) {
+                            if ("extension".equals(derivation.getLocalName())) {
+                                final Element base = complexTypes.get(localName(derivation.getAttribute("base")));
+                                if (base != null && !isXsdType(derivation, derivation.getAttribute("base"))) {
+                                    walkComplexType(base, path);
+                                }
+                            }
+                            walkComplexType(derivation, path);
+                        }
+                        break;
+                    case "simpleContent":
+                        walkSimpleContent(content, path);
+                        break;
+                    default:
+                        walkParticle(content, path);
+                        break;
+                }
+            }
+        } finally {
+            active.remove(complexType);
+        }
+    }
+
+    private void walkSimpleContent(Element simpleContent, String path) {
+        final Element derivation = firstChild(simpleContent);
+        if (derivation == null) {
+            return;
+        }
+
+        final String base = derivation.getAttribute("base");
+        final Element baseComplexType = (isXsdType(derivation, base) ? null : complexTypes.get(localName(base)));
+        if ("extension".equals(derivation.getLocalName())) {
+            if (baseComplexType != null) {
+                walkComplexType(baseComplexType, path);
+            } else {
+                addRules(path, resolveType(derivation, base), false);
+            }
+        } else {
+            final FacetSet facets = (baseComplexType != null ? resolveContentType(baseComplexType) : resolveType(derivation, base));
+            addRules(path, restrict(facets, derivation), false);
+            if (baseComplexType != null) {
+                walkAttributes(baseComplexType, path);
+            }
+        }
+        walkAttributes(derivation, path);
+    }
+
+    private void walkParticle(Element particle, String path) {
+        switch (particle.getLocalName()) {
+            case "sequence":
+            case "choice":
+            case "all":
+                for (Element child : children(particle)) {
+                    walkParticle(child, path);
+                }
+                break;
+            case "element":
+                walkElement(particle, path, false);
+                break;
+            case "group":
+                final Element group = (particle.hasAttribute("ref") ? groups.get(localName(particle.getAttribute("ref"))) : particle);
+                if (group != null && active.add(group)) {
+                    try {
+                        for (Element child : children(group)) {
+                            walkParticle(child, path);
+                        }
+                    } finally {
+                        active.remove(group);
+                    }
+                }
+                break;
+            case "attribute":
+                walkAttribute(particle, path);
+                break;
+            case "attributeGroup":
+                final Element attributeGroup = (particle.hasAttribute("ref") ? attributeGroups.get(localName(particle.getAttribute("ref"))) : particle);
+                if (attributeGroup != null && active.add(attributeGroup)) {
+                    try {
+                        walkAttributes(attributeGroup, path);
+                    } finally {
+                        active.remove(attributeGroup);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void walkAttributes(Element parent, String path) {
+        for (Element child : children(parent)) {
+            if ("attribute".equals(child.getLocalName()) || "attributeGroup".equals(child.getLocalName())) {
+                walkParticle(child, path);
+            }
+        }
+    }
+
+    private void walkAttribute(Element declaration, String path) {
+        if ("prohibited".equals(declaration.getAttribute("use"))) {
+            return;
+        }
+
+        Element attribute = declaration;
+        boolean qualified;
+        if (attribute.hasAttribute("ref")) {
+            attribute = globalAttributes.get(localName(attribute.getAttribute("ref")));
+            if (attribute == null) {
+                return;
+            }
+            qualified = true;
+        } else {
+            qualified = (attribute.hasAttribute("form") ? "qualified".equals(attribute.getAttribute("form")) : attributesQualified);
+        }
+
+        final FacetSet facets;
+        if (attribute.hasAttribute("type")) {
+            facets = resolveType(attribute, attribute.getAttribute("type"));
+        } else {
+            final Element simpleType = child(attribute, "simpleType");
+            facets = (simpleType != null ? resolveSimpleType(simpleType) : null);
+        }
+
+        addRules(path + "/@" + qualify(attribute.getAttribute("name"), qualified), facets, !"required".equals(declaration.getAttribute("use")));
+    }
+
+    /**
+     * Resolve the text content type of a complex type with simple content.
+     */
+    private FacetSet resolveContentType(Element complexType) {
+        final Element simpleContent = child(complexType, "simpleContent");
+        final Element derivation = (simpleContent != null ? firstChild(simpleContent) : null);
+        if (derivation == null || !active.add(complexType)) {
+            return null;
+        }
+
+        try {
+            final String base = derivation.getAttribute("base");
+            final Element baseComplexType = (isXsdType(derivation, base) ? null : complexTypes.get(localName(base)));
+            final FacetSet facets = (baseComplexType != null ? resolveContentType(baseComplexType) : resolveType(derivation, base));
+
+            return ("restriction".equals(derivation.getLocalName()) ? restrict(facets, derivation) : facets);
+        } finally {
+            active.remove(complexType);
+        }
+    }
+
+    private FacetSet resolveType(Element context, String type) {
+        if (isXsdType(context, type)) {
+            return new FacetSet(localName(type));
+        }
+
+        final Element simpleType = simpleTypes.get(localName(type));
+        return (simpleType != null ? resolveSimpleType(simpleType) : null);
+    }
+
+    private FacetSet resolveSimpleType(Element simpleType) {
+        final Element restriction = child(simpleType, "restriction");
+        if (restriction == null || !active.add(simpleType)) {
+            // List or union...
+            return null;
+        }
+
+        try {
+            final FacetSet base;
+            if (restriction.hasAttribute("base")) {
+                base = resolveType(restriction, restriction.getAttribute("base"));
+            } else {
+                final Element baseSimpleType = child(restriction, "simpleType");
+                base = (baseSimpleType != null ? resolveSimpleType(baseSimpleType) : null);
+            }
+
+            return restrict(base, restriction);
+        } finally {
+            active.remove(simpleType);
+        }
+    }
+
+    private static FacetSet restrict(FacetSet base, Element restriction) {
+        if (base == null) {
+            return null;
+        }
+
+        final FacetSet facets = new FacetSet(base);
+        final List<String> patterns = new ArrayList<>();
+        final List<String> enumeration = new ArrayList<>();
+        for (Element facet : children(restriction)) {
+            final String value = facet.getAttribute("value");
+            switch (facet.getLocalName()) {
+                case "pattern":
+                    patterns.add(value);
+                    break;
+                case "enumeration":
+                    enumeration.add(value);
+                    break;
+                case "length":
+                    facets.minLength = facets.maxLength = Integer.valueOf(value.trim());
+                    break;
+                case "minLength":
+                    facets.minLength = Integer.valueOf(value.trim());
+                    break;
+                case "maxLength":
+                    facets.maxLength = Integer.valueOf(value.trim());
+                    break;
+                case "minInclusive":
+                    facets.minInclusive = new BigDecimal(value.trim());
+                    facets.minExclusive = null;
+                    break;
+                case "maxInclusive":
+                    facets.maxInclusive = new BigDecimal(value.trim());
+                    facets.maxExclusive = null;
+                    break;
+                case "minExclusive":
+                    facets.minExclusive = new BigDecimal(value.trim());
+                    facets.minInclusive = null;
+                    break;
+                case "maxExclusive":
+                    facets.maxExclusive = new BigDecimal(value.trim());
+                    facets.maxInclusive = null;
+                    break;
+                case "totalDigits":
+                    facets.totalDigits = Integer.valueOf(value.trim());
+                    break;
+                case "fractionDigits":
+                    facets.fractionDigits = Integer.valueOf(value.trim());
+                    break;
+                case "whiteSpace":
+                    facets.whiteSpace = value.trim();
+                    break;
+                default:
+                    break;
+            }
+        }
+        // Patterns in one derivation step are alternatives, patterns in different steps must all match...
+        if (!patterns.isEmpty()) {
+            facets.patterns.add(patterns);
+        }
+        // A derived enumeration is always a subset of the base enumeration...
+        if (!enumeration.isEmpty()) {
+            facets.enumeration = enumeration;
+        }
+
+        return facets;
+    }
+
+    private void addRules(String path, FacetSet facets, boolean optional) {
+        if (facets == null) {
+            return;
+        }
+
+        final String ruleName = uniqueRuleName(path);
+        final boolean collapse = "collapse".equals(facets.whiteSpace);
+        if (facets.enumeration != null) {
+            final StringBuilder regex = new StringBuilder();
+            for (String value : facets.enumeration) {
+                if (regex.length() > 0) {
+                    regex.append('|');
+                }
+                regex.append(quote(value));
+            }
+            addRule(path, regexRules, ruleName, trim(regex.toString(), collapse), optional);
+        }
+        for (int i = 0; i < facets.patterns.size(); i++) {
+            final StringBuilder regex = new StringBuilder();
+            final List<String> alternatives = facets.patterns.get(i);
+            for (String pattern : alternatives) {
+                if (regex.length() > 0) {
+                    regex.append('|');
+                }
+                regex.append(alternatives.size() > 1 ? "(?:" + toJavaRegex(pattern) + ")" : toJavaRegex(pattern));
+            }
+            addRule(path, regexRules, ruleName + "_pattern" + (i > 0 ? String.valueOf(i + 1) : ""), trim(regex.toString(), collapse), optional);
+        }
+        if ("boolean".equals(facets.type) && facets.enumeration == null) {
+            addRule(path, regexRules, ruleName, trim("true|false|1|0", collapse), optional);
+        }
+
+        final String primitiveRule = toPrimitiveRule(path, facets);
+        if (primitiveRule != null) {
+            addRule(path, primitiveRules, ruleName, primitiveRule, optional);
+        }
+    }
+
+    private void addRule(String path, Map<String, String> ruleBase, String ruleName, String definition, boolean optional) {
+        ruleBase.put(ruleName, definition);
+        rules.add(new GeneratedRule(path, (ruleBase == regexRules ? name + "-regex" : name + "-primitive") + "." + ruleName, optional));
+    }
+
+    /**
+     * Allow whitespace around a regex rule's match, for "collapse" whiteSpace types.
+     */
+    private static String trim(String regex, boolean collapse) {
+        return (collapse ? "\\s*(?:" + regex + ")\\s*" : regex);
+    }
+
+    private static String toPrimitiveRule(String path, FacetSet facets) {
+        if (INTEGER_TYPES.containsKey(facets.type)) {
+            final BigInteger[] typeBounds = INTEGER_TYPES.get(facets.type);
+            BigInteger min = typeBounds[0];
+            BigInteger max = typeBounds[1];
+            min = maxOf(min, facets.minInclusive != null ? facets.minInclusive.setScale(0, RoundingMode.CEILING).toBigInteger() : null);
+            min = maxOf(min, facets.minExclusive != null ? facets.minExclusive.setScale(0, RoundingMode.FLOOR).toBigInteger().add(BigInteger.ONE) : null);
+            max = minOf(max, facets.maxInclusive != null ? facets.maxInclusive.setScale(0, RoundingMode.FLOOR).toBigInteger() : null);
+            max = minOf(max, facets.maxExclusive != null ? facets.maxExclusive.setScale(0, RoundingMode.CEILING).toBigInteger().subtract(BigInteger.ONE) : null);
+            if (facets.totalDigits != null) {
+                final BigInteger digitsMax = BigInteger.TEN.pow(facets.totalDigits).subtract(BigInteger.ONE);
+                min = maxOf(min, digitsMax.negate());
+                max = minOf(max, digitsMax);
+            }
+            if (fitsLong(min) && fitsLong(max)) {
+                return "integer" + bounds(min, max);
+            }
+            return "decimal(0)" + bounds(min, max);
+        } else if (DECIMAL_TYPES.contains(facets.type)) {
+            // fractionDigits constrains the value, so trailing fraction zeros are not counted...
+            final StringBuilder rule = new StringBuilder(facets.fractionDigits != null ? "valueDecimal" : "decimal");
+            if (facets.totalDigits != null) {
+                rule.append('(').append(facets.totalDigits).append(',').append(facets.fractionDigits != null ? String.valueOf(facets.fractionDigits) : "").append(')');
+            } else if (facets.fractionDigits != null) {
+                rule.append('(').append(facets.fractionDigits).append(')');
+            }
+            BigDecimal min = facets.minInclusive;
+            BigDecimal max = facets.maxInclusive;
+            if (facets.minExclusive != null || facets.maxExclusive != null) {
+                if (facets.fractionDigits != null) {
+                    // The nearest inclusive bounds at the declared scale...
+                    final BigDecimal step = BigDecimal.ONE.movePointLeft(facets.fractionDigits);
+                    if (facets.minExclusive != null) {
+                        min = facets.minExclusive.setScale(facets.fractionDigits, RoundingMode.FLOOR).add(step);
+                    }
+                    if (facets.maxExclusive != null) {
+                        max = facets.maxExclusive.setScale(facets.fractionDigits, RoundingMode.CEILING).subtract(step);
+                    }
+                } else {
+                    LOGGER.warn("Not checking the minExclusive/maxExclusive facets of '{}'.  Exclusive bounds are only supported on integer types, and on decimal types with a fractionDigits facet.", path);
+                }
+            }
+            rule.append(bounds(min, max));
+            return rule.toString();
+        } else if (STRING_TYPES.contains(facets.type) && (facets.minLength != null || facets.maxLength != null)) {
+            return ("collapse".equals(facets.whiteSpace) ? "collapsedLength" : "length") + bounds(facets.minLength, facets.maxLength);
+        }
+
+        return null;
+    }
+
+    private static String bounds(Object min, Object max) {
+        if (min == null && max == null) {
+            return "";
+        }
+        return "[" + (min instanceof BigDecimal ? ((BigDecimal) min).toPlainString() : min != null ? min : "") + "," + (max instanceof BigDecimal ? ((BigDecimal) max).toPlainString() : max != null ? max : "") + "]";
+    }
+
+    private static BigInteger maxOf(BigInteger a, BigInteger b) {
+        return (a == null ? b : b == null ? a : a.max(b));
+    }
+
+    private static BigInteger minOf(BigInteger a, BigInteger b) {
+        return (a == null ? b : b == null ? a : a.min(b));
+    }
+
+    private static boolean fitsLong(BigInteger value) {
+        return value == null || value.bitLength() < 64;
+    }
+
+    private String uniqueRuleName(String path) {
+        final StringBuilder ruleName = new StringBuilder();
+        for (String step : path.substring(1).split("/")) {
+            if (ruleName.length() > 0) {
+                ruleName.append('_');
+            }
+            ruleName.append(localName(step));
+        }
+        for (int i = 0; i < ruleName.length(); i++) {
+            final char c = ruleName.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '@') {
+                ruleName.setCharAt(i, '_');
+            }
+        }
+
+        String uniqueName = ruleName.toString();
+        for (int i = 2; !ruleNames.add(uniqueName); i++) {
+            uniqueName = ruleName.toString() + i;
+        }
+        return uniqueName;
+    }
+
+    private String qualify(String localName, boolean qualified) {
+        return (qualified && targetNamespace != null ? TARGET_NAMESPACE_PREFIX + ":" + localName : localName);
+    }
+
+    /**
+     * Translate an XML Schema regular expression to a Java regular expression.
+     * <p/>
+     * XML Schema patterns are implicitly anchored, so "^" and "$" are literals, character class subtraction is
+     * written "[a-z-[aeiou]]", and "\i" and "\c" are the XML name character classes (approximated to ASCII).
+     *
+     * @param pattern The XML Schema pattern.
+     * @return The Java pattern.
+     */
+    static String toJavaRegex(String pattern) {
+        final StringBuilder regex = new StringBuilder();
+        int classDepth = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                final char escaped = pattern.charAt(++i);
+                switch (escaped) {
+                    case 'i':
+                        regex.append(classDepth > 0 ? "_:A-Za-z" : "[_:A-Za-z]");
+                        break;
+                    case 'I':
+                        regex.append("[^_:A-Za-z]");
+                        break;
+                    case 'c':
+                        regex.append(classDepth > 0 ? "\\-._:A-Za-z0-9" : "[\\-._:A-Za-z0-9]");
+                        break;
+                    case 'C':
+                        regex.append("[^\\-._:A-Za-z0-9]");
+                        break;
+                    case 'p':
+                    case 'P':
+                        // Unicode blocks are "IsX" in XML Schema, but "InX" in Java...
+                        regex.append('\\').append(escaped);
+                        if (pattern.startsWith("{Is", i + 1)) {
+                            regex.append("{In");
+                            i += 3;
+                        }
+                        break;
+                    default:
+                        regex.append('\\').append(escaped);
+                        break;
+                }
+            } else if (c == '[') {
+                if (classDepth > 0 && regex.length() > 0 && regex.charAt(regex.length() - 1) == '-') {
+                    // Class subtraction...
+                    regex.setLength(regex.length() - 1);
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '^') {
+                        regex.append("&&[");
+                        i++;
+                    } else {
+                        regex.append("&&[^");
+                    }
+                } else {
+                    regex.append('[');
+                }
+                classDepth++;
+            } else if (c == ']' && classDepth > 0) {
+                regex.append(']');
+                classDepth--;
+            } else if (classDepth == 0 && (c == '^' || c == '$')) {
+                regex.append('\\').append(c);
+            } else if (classDepth > 0 && c == '&') {
+                regex.append("\\&");
+            } else {
+                regex.append(c);
+            }
+        }
+
+        return regex.toString();
+    }
+
+    private static String quote(String literal) {
+        final StringBuilder quoted = new StringBuilder();
+        for (int i = 0; i < literal.length(); i++) {
+            final char c = literal.charAt(i);
+            if ("\\^$.|?*+()[]{}".indexOf(c) != -1) {
+                quoted.append('\\');
+            }
+            quoted.append(c);
+        }
+        return quoted.toString();
+    }
+
+    String toSmooksConfig(String rulePath) {
+        final StringBuilder config = new StringBuilder();
+        config.append("<?xml version=\"1.0\"?>\n");
+        config.append("<!-- Generated by ").append(XsdRuleGenerator.class.getName()).append(". -->\n");
+        config.append("<smooks-resource-list xmlns=\"https://www.smooks.org/xsd/smooks-2.0.xsd\"\n");
+        config.append("    xmlns:rules=\"https://www.smooks.org/xsd/smooks/rules-1.1.xsd\"\n");
+        config.append("    xmlns:validation=\"https://www.smooks.org/xsd/smooks/validation-2.0.xsd\"");
+        if (targetNamespace != null) {
+            config.append("\n    xmlns:").append(TARGET_NAMESPACE_PREFIX).append("=\"").append(escapeXml(targetNamespace)).append('"');
+        }
+        config.append(">\n\n");
+        config.append("    <rules:ruleBases>\n");
+        config.append("        <rules:ruleBase name=\"").append(escapeXml(name)).append("-regex\" src=\"").append(escapeXml(rulePath + name)).append("-regex.properties\" provider=\"").append(RegexProvider.class.getName()).append("\"/>\n");
+        config.append("        <rules:ruleBase name=\"").append(escapeXml(name)).append("-primitive\" src=\"").append(escapeXml(rulePath + name)).append("-primitive.properties\" provider=\"").append(PrimitiveRuleProvider.class.getName()).append("\"/>\n");
+        config.append("    </rules:ruleBases>\n\n");
+        for (GeneratedRule rule : rules) {
+            config.append("    <validation:rule executeOn=\"").append(escapeXml(rule.getSelector())).append("\" name=\"").append(escapeXml(rule.getName())).append('"');
+            if (rule.isOptional()) {
+                // Present, even if empty...
+                config.append(" when=\"").append(escapeXml(rule.getSelector().substring(rule.getSelector().lastIndexOf('/') + 1))).append("?\"");
+            }
+            config.append(" onFail=\"").append(onFail).append("\"/>\n");
+        }
+        config.append("\n</smooks-resource-list>\n");
+
+        return config.toString();
+    }
+
+    private static void writeRules(Map<String, String> rules, Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+            writer.write("# Generated by " + XsdRuleGenerator.class.getName() + ".\n");
+            for (Map.Entry<String, String> rule : rules.entrySet()) {
+                writer.write(escapeProperty(rule.getKey(), true));
+                writer.write('=');
+                writer.write(escapeProperty(rule.getValue(), false));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static String escapeProperty(String string, boolean key) {
+        final StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            if (c == '\\' || ((key || i == 0) && " :=#!".indexOf(c) != -1)) {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String escapeXml(String string) {
+        return string.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static void collectElementRefs(Element parent, Set<String> referenced) {
+        for (Element child : children(parent)) {
+            if ("element".equals(child.getLocalName()) && child.hasAttribute("ref")) {
+                referenced.add(localName(child.getAttribute("ref")));
+            }
+            collectElementRefs(child, referenced);
+        }
+    }
+
+    private static boolean isXsdType(Element context, String type) {
+        final int colon = type.indexOf(':');
+        return XSD_NAMESPACE.equals(context.lookupNamespaceURI(colon != -1 ? type.substring(0, colon) : null));
+    }
+
+    private static String localName(String qName) {
+        return qName.substring(qName.indexOf(':') + 1);
+    }
+
+    private static String emptyToNull(String string) {
+        return (string == null || string.isEmpty() ? null : string);
+    }
+
+    private static List<Element> children(Element parent) {
+        final List<Element> children = new ArrayList<>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && XSD_NAMESPACE.equals(child.getNamespaceURI())) {
+                children.add((Element) child);
+            }
+        }
+        return children;
+    }
+
+    private static Element child(Element parent, String localName) {
+        for (Element child : children(parent)) {
+            if (localName.equals(child.getLocalName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static Element firstChild(Element parent) {
+        for (Element child : children(parent)) {
+            if (!"annotation".equals(child.getLocalName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generate validation rules from a schema.
+     * <p/>
+     * Arguments: &lt;xsd&gt; &lt;output-dir&gt; [name] [rule-base-path]
+     *
+     * @param args The arguments.
+     * @throws IOException  Error reading the schema or writing the generated files.
+     * @throws SAXException Error parsing the schema.
+     */
+    public static void main(String[] args) throws IOException, SAXException {
+        if (args.length < 2) {
+            throw new SmooksConfigException("Usage: " + XsdRuleGenerator.class.getName() + " <xsd> <output-dir> [name] [rule-base-path]");
+        }
+
+        new XsdRuleGenerator(args.length > 2 ? args[2] : "xsd").generate(Paths.get(args[0]), Paths.get(args[1]), args.length > 3 ? args[3] : null);
+    }
+
+    /**
+     * Resolved simple type facets.
+     */
+    private static final class FacetSet {
+        private final String type;
+        private final List<List<String>> patterns;
+        private List<String> enumeration;
+        private Integer minLength;
+        private Integer maxLength;
+        private BigDecimal minInclusive;
+        private BigDecimal maxInclusive;
+        private BigDecimal minExclusive;
+        private BigDecimal maxExclusive;
+        private Integer totalDigits;
+        private Integer fractionDigits;
+        private String whiteSpace;
+
+        private FacetSet(String type) {
+            this.type = type;
+            this.patterns = new ArrayList<>();
+            this.whiteSpace = ("string".equals(type) ? "preserve" : "normalizedString".equals(type) ? "replace" : "collapse");
+        }
+
+        private FacetSet(FacetSet base) {
+            this.type = base.type;
+            this.patterns = new ArrayList<>(base.patterns);
+            this.enumeration = base.enumeration;
+            this.minLength = base.minLength;
+            this.maxLength = base.maxLength;
+            this.minInclusive = base.minInclusive;
+            this.maxInclusive = base.maxInclusive;
+            this.minExclusive = base.minExclusive;
+            this.maxExclusive = base.maxExclusive;
+            this.totalDigits = base.totalDigits;
+            this.fractionDigits = base.fractionDigits;
+            this.whiteSpace = base.whiteSpace;
+        }
+    }
+
+    /**
+     * Generated validation rule.
+     */
+    static final class GeneratedRule {
+        private final String selector;
+        private final String name;
+        private final boolean optional;
+
+        private GeneratedRule(String selector, String name, boolean optional) {
+            this.selector = selector;
+            this.name = name;
+            this.optional = optional;
+        }
+
+        String getSelector() {
+            return selector;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        boolean isOptional() {
+            return optional;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import java.io.Reader;
+import java.util.Random;
+
+/**
+ * Generates an order document of a given size on the fly, so as documents of any size can be streamed without
+ * being stored.
+ * <p/>
+ * The document is an "orders" element of "order" elements.  The content is generated from a seeded {@link Random},
+ * so a seed always produces the same document.  A fraction of the customer numbers, product IDs, quantities and
+ * prices are invalid, each causing exactly one failure of the soak validation rules.
+ */
+public class OrderDocumentReader extends Reader {
+
+    private final Random random;
+    private final long size;
+    private final double invalidRate;
+    private final StringBuilder buffer = new StringBuilder(4096);
+    private int bufferIndex;
+    private long position;
+    private long orderCount;
+    private long itemCount;
+    private long invalidCount;
+    private boolean closed;
+    private long checkpointInterval = Long.MAX_VALUE;
+    private long nextCheckpoint = Long.MAX_VALUE;
+    private Runnable checkpoint;
+
+    /**
+     * Public constructor.
+     *
+     * @param seed        The random seed.
+     * @param size        The approximate document size in characters.  The last order is always completed.
+     * @param invalidRate The fraction of invalid values.
+     */
+    public OrderDocumentReader(long seed, long size, double invalidRate) {
+        this.random = new Random(seed);
+        this.size = size;
+        this.invalidRate = invalidRate;
+        buffer.append("<orders>\n");
+    }
+
+    /**
+     * Run a checkpoint each time another "interval" characters have been read.
+     *
+     * @param interval   The checkpoint interval in characters.
+     * @param checkpoint The checkpoint.
+     */
+    public void setCheckpoint(long interval, Runnable checkpoint) {
+        this.checkpointInterval = interval;
+        this.nextCheckpoint = interval;
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) {
+        if (bufferIndex == buffer.length()) {
+            if (closed) {
+                return -1;
+            }
+            fill();
+        }
+
+        final int count = Math.min(length, buffer.length() - bufferIndex);
+        buffer.getChars(bufferIndex, bufferIndex + count, chars, offset);
+        bufferIndex += count;
+        position += count;
+        if (position >= nextCheckpoint) {
+            nextCheckpoint += checkpointInterval;
+            checkpoint.run();
+        }
+
+        return count;
+    }
+
+    private void fill() {
+        buffer.setLength(0);
+        bufferIndex = 0;
+        if (position >= size) {
+            buffer.append("</orders>\n");
+            closed = true;
+            return;
+        }
+
+        orderCount++;
+        buffer.append("<order>\n<header>\n<orderId>").append(orderCount).append("</orderId>\n");
+        buffer.append("<customer number=\"").append(invalid() ? "X" + random.nextInt(1000) : Character.toString((char) ('A' + random.nextInt(26))) + "-" + (10000 + random.nextInt(90000)))
+                .append("\">Customer ").append(random.nextInt(100000)).append("</customer>\n</header>\n<order-items>\n");
+
+        final int items = 1 + random.nextInt(20);
+        for (int i = 0; i < items; i++) {
+            itemCount++;
+            buffer.append("<order-item>\n<product>").append(invalid() ? String.valueOf(random.nextInt(1000)) : String.valueOf(100000 + random.nextInt(900000))).append("</product>\n");
+            buffer.append("<quantity>").append(invalid() ? 0 : 1 + random.nextInt(999)).append("</quantity>\n");
+            buffer.append("<price>").append(random.nextInt(10000)).append('.').append(invalid() ? String.valueOf(100 + random.nextInt(900)) : String.valueOf(10 + random.nextInt(90))).append("</price>\n");
+            buffer.append("</order-item>\n");
+        }
+        buffer.append("</order-items>\n</order>\n");
+    }
+
+    private boolean invalid() {
+        if (random.nextDouble() < invalidRate) {
+            invalidCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of characters read.
+     *
+     * @return The number of characters read.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Get the number of generated orders.
+     *
+     * @return The number of orders.
+     */
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Get the number of generated order items.
+     *
+     * @return The number of order items.
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Get the number of generated invalid values.
+     *
+     * @return The number of invalid values.
+     */
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        bufferIndex = buffer.length();
+    }
+}
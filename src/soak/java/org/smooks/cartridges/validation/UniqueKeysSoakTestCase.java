@@ -0,0 +1,109 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uniqueness rule scale soak test.  Adds tens of millions of distinct keys, plus a few duplicates, to a single
+ * {@link UniqueKeys} scope and checks that every duplicate is found, that the false positive rate of the spilled
+ * key Bloom filters stays below 1% and that heap use stays bounded.
+ * <p/>
+ * Run with "mvn -Psoak test".  The limits are set through system properties:
+ * <ul>
+ *     <li><b>soak.uniqueKeys</b>: The number of distinct keys.  Default 50000000.</li>
+ *     <li><b>soak.uniqueKeys.maxHeapMb</b>: The maximum heap used after GC once all the keys are added.
+ *     Default 192 MB.</li>
+ * </ul>
+ */
+public class UniqueKeysSoakTestCase {
+
+    private static final int KEYS = Integer.getInteger("soak.uniqueKeys", 50000000);
+    private static final long MAX_HEAP = Long.getLong("soak.uniqueKeys.maxHeapMb", 192) * 1024 * 1024;
+    private static final int MAX_KEYS = UniqueScope.DEFAULT_MAX_KEYS;
+    private static final int DUPLICATE_INTERVAL = 1000000;
+
+    @Test
+    public void distinctKeys() {
+        try (Smooks smooks = new Smooks()) {
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            UniqueKeys uniqueKeys = UniqueKeys.open("id", MAX_KEYS, UniqueScope.DEFAULT_EXPECTED_KEYS, executionContext);
+
+            for (int i = 0; i < KEYS; i++) {
+                assertTrue(uniqueKeys.add("ID-" + i, () -> "/orders/order/@id"));
+            }
+            // Duplicates of spilled keys...
+            int numDuplicates = 0;
+            for (int i = 0; i < KEYS - MAX_KEYS; i += DUPLICATE_INTERVAL) {
+                assertTrue(uniqueKeys.add("ID-" + i, () -> "/orders/order/@id"));
+                numDuplicates++;
+            }
+            long usedHeap = usedHeapAfterGc();
+
+            long maxCandidates = KEYS / 100 + numDuplicates;
+            assertTrue(uniqueKeys.getCandidateCount() <= maxCandidates, "Expected at most " + maxCandidates + " candidates, got " + uniqueKeys.getCandidateCount() + ".");
+            assertTrue(usedHeap <= MAX_HEAP, "Used heap of " + usedHeap / (1024 * 1024) + " MB is more than the maximum of " + MAX_HEAP / (1024 * 1024) + " MB.");
+
+            UniqueKeys.close("id", executionContext);
+            List<String> duplicates = new ArrayList<>();
+            uniqueKeys.checkSpilled((key, path) -> duplicates.add(key));
+            assertEquals(numDuplicates, duplicates.size());
+            assertEquals("ID-0", duplicates.get(0));
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
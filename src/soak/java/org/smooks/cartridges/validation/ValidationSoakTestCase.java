@@ -0,0 +1,194 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.smooks.Smooks;
+import org.smooks.api.SmooksException;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Large-document soak tests.  Streams generated order documents through a validation configuration and checks
+ * that heap use stays flat, retained failures stay bounded and throughput stays within a ratio of the throughput
+ * of the same bean binding without validation, measured on the same machine.  The measurements are published
+ * through the JUnit {@link TestReporter} and, as surefire does not record report entries, are also written to
+ * "ValidationSoakTestCase-soak.properties" next to the surefire reports.
+ * <p/>
+ * Run with "mvn -Psoak test".  The limits are set through system properties:
+ * <ul>
+ *     <li><b>soak.size</b>: The document size in characters.  Default 2 GB.</li>
+ *     <li><b>soak.seed</b>: The document generator seed.  Default 42.</li>
+ *     <li><b>soak.maxHeapGrowthMb</b>: The maximum growth of the heap used after GC, between the first and the
+ *     later checkpoints.  Default 32 MB.</li>
+ *     <li><b>soak.minThroughputRatio</b>: The minimum throughput, as a ratio of the baseline throughput without
+ *     validation.  Default 0.25.</li>
+ *     <li><b>soak.baselineSize</b>: The size of the baseline document in characters.  Default the smaller of
+ *     soak.size and 512 MB.</li>
+ *     <li><b>soak.minMbPerSecond</b>: An absolute minimum throughput, for runs on known hardware.  Not checked by
+ *     default.</li>
+ *     <li><b>soak.reportDir</b>: The directory the measurements are written to.  Default "target/surefire-reports".</li>
+ * </ul>
+ */
+public class ValidationSoakTestCase {
+
+    private static final long SIZE = Long.getLong("soak.size", 2L * 1024 * 1024 * 1024);
+    private static final long SEED = Long.getLong("soak.seed", 42);
+    private static final long MAX_HEAP_GROWTH = Long.getLong("soak.maxHeapGrowthMb", 32) * 1024 * 1024;
+    private static final double MIN_THROUGHPUT_RATIO = Double.parseDouble(System.getProperty("soak.minThroughputRatio", "0.25"));
+    private static final long BASELINE_SIZE = Long.getLong("soak.baselineSize", Math.min(SIZE, 512L * 1024 * 1024));
+    private static final String MIN_MB_PER_SECOND = System.getProperty("soak.minMbPerSecond");
+    private static final File REPORT_DIR = new File(System.getProperty("soak.reportDir", "target/surefire-reports"));
+    private static final int CHECKPOINTS = 10;
+
+    @Test
+    public void aggregatedFailures(TestReporter testReporter) throws IOException, SAXException {
+        try (Smooks smooks = new Smooks("/org/smooks/cartridges/validation/soak-config.xml")) {
+            OrderDocumentReader reader = new OrderDocumentReader(SEED, SIZE, 0.001);
+            List<Long> heap = new ArrayList<>();
+            reader.setCheckpoint(SIZE / CHECKPOINTS, () -> heap.add(usedHeapAfterGc()));
+            ValidationResult result = new ValidationResult(ValidationResult.Aggregation.RULE_AND_PATH);
+
+            long start = System.nanoTime();
+            smooks.filterSource(new StreamSource(reader), result);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double mbPerSecond = reader.getPosition() / (1024.0 * 1024.0) / seconds;
+            // Measured after the validated run, so as the parser and bean binding are just as warm...
+            double baselineMbPerSecond = baselineMbPerSecond();
+
+            Map<String, String> report = new LinkedHashMap<>();
+            report.put("soak.mb", String.valueOf(reader.getPosition() / (1024 * 1024)));
+            report.put("soak.orders", String.valueOf(reader.getOrderCount()));
+            report.put("soak.items", String.valueOf(reader.getItemCount()));
+            report.put("soak.failures", String.valueOf(result.getNumFailures()));
+            report.put("soak.seconds", String.format("%.1f", seconds));
+            report.put("soak.mbPerSecond", String.format("%.1f", mbPerSecond));
+            report.put("soak.baselineMbPerSecond", String.format("%.1f", baselineMbPerSecond));
+            report.put("soak.heapAfterGcMb", toMb(heap).toString());
+            testReporter.publishEntry(report);
+            writeReport(report);
+
+            // Every invalid value is reported, but only one failure per rule and path is retained...
+            assertEquals(reader.getInvalidCount(), result.getNumFailures());
+            assertTrue(result.getErrors().size() <= 3, result.getErrors().toString());
+            assertTrue(result.getWarnings().size() <= 1, result.getWarnings().toString());
+            assertNull(result.getFatal());
+
+            assertHeapFlat(heap);
+            assertTrue(mbPerSecond >= baselineMbPerSecond * MIN_THROUGHPUT_RATIO, "Throughput " + mbPerSecond + " MB/s is below " + MIN_THROUGHPUT_RATIO + " of the baseline " + baselineMbPerSecond + " MB/s.");
+            if (MIN_MB_PER_SECOND != null) {
+                assertTrue(mbPerSecond >= Double.parseDouble(MIN_MB_PER_SECOND), "Throughput " + mbPerSecond + " MB/s is below the floor of " + MIN_MB_PER_SECOND + " MB/s.");
+            }
+        }
+    }
+
+    @Test
+    public void maxFails() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks("/org/smooks/cartridges/validation/soak-max-fails-config.xml")) {
+            OrderDocumentReader reader = new OrderDocumentReader(SEED, SIZE, 0.01);
+            ValidationResult result = new ValidationResult();
+
+            SmooksException exception = assertThrows(SmooksException.class, () -> smooks.filterSource(new StreamSource(reader), result));
+            assertInstanceOf(ValidationException.class, exception.getCause());
+
+            // Filtering stops at the first failure beyond the max, so the retained failures are bounded...
+            assertEquals(1001, result.getNumFailures());
+            assertEquals(1001, result.getErrors().size() + result.getWarnings().size());
+            assertTrue(reader.getPosition() < SIZE);
+        }
+    }
+
+    private static double baselineMbPerSecond() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks("/org/smooks/cartridges/validation/soak-baseline-config.xml")) {
+            OrderDocumentReader reader = new OrderDocumentReader(SEED, BASELINE_SIZE, 0.001);
+            long start = System.nanoTime();
+            smooks.filterSource(new StreamSource(reader));
+            return reader.getPosition() / (1024.0 * 1024.0) / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static void writeReport(Map<String, String> report) throws IOException {
+        List<String> lines = report.entrySet().stream().map(entry -> entry.getKey() + "=" + entry.getValue()).collect(Collectors.toList());
+        Files.createDirectories(REPORT_DIR.toPath());
+        Files.write(new File(REPORT_DIR, ValidationSoakTestCase.class.getSimpleName() + "-soak.properties").toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    private static void assertHeapFlat(List<Long> heap) {
+        // The first checkpoint includes the warm up allocations (compiled rules, parser buffers etc)...
+        assertTrue(heap.size() >= 2, "Expected at least 2 heap checkpoints, got " + heap.size() + ".");
+        long baseline = heap.get(0);
+        long max = Collections.max(heap.subList(1, heap.size()));
+        assertTrue(max - baseline <= MAX_HEAP_GROWTH, "Heap grew by " + (max - baseline) / (1024 * 1024) + " MB, more than the maximum of " + MAX_HEAP_GROWTH / (1024 * 1024) + " MB.  Checkpoints (MB): " + toMb(heap));
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static List<Long> toMb(List<Long> bytes) {
+        List<Long> mb = new ArrayList<>();
+        for (Long value : bytes) {
+            mb.add(value / (1024 * 1024));
+        }
+        return mb;
+    }
+}
@@ -0,0 +1,164 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link AggregateRule}.
+ */
+public class AggregateRuleTestCase {
+
+    @Test
+    public void valid() throws IOException, SAXException {
+        ValidationResult result = filter("<orders>" +
+                order(6, "<order-item price='1.50'><quantity>1</quantity></order-item>" +
+                        "<order-item price='2.00'><quantity>2</quantity></order-item>" +
+                        "<order-item price='99.99'><quantity>3</quantity></order-item>") +
+                order(4, "<order-item price='5'><quantity>4</quantity></order-item>") +
+                "</orders>");
+
+        assertEquals(0, result.getNumFailures());
+    }
+
+    @Test
+    public void invalid() throws IOException, SAXException {
+        ValidationResult result = filter("<orders>" +
+                order(5, "<order-item price='1.50'><quantity>1</quantity></order-item>" +
+                        "<order-item price='200'><quantity>2</quantity></order-item>" +
+                        "<order-item price='0'><quantity>3</quantity></order-item>" +
+                        "<order-item price='4'><quantity>4</quantity></order-item>") +
+                order(0, "") +
+                "</orders>");
+
+        // Checked per order...
+        assertEquals(2, result.getErrors().size());
+        assertEquals("quantityTotal", result.getErrors().get(0).getFailRuleResult().getRuleName());
+        assertEquals(AggregateRule.RULE_PROVIDER_NAME, result.getErrors().get(0).getFailRuleResult().getRuleProviderName());
+        assertEquals("/orders/order", result.getErrors().get(0).getFailFragmentPath());
+        assertEquals("Aggregate rule 'quantityTotal' failed on '/orders/order': sum 10, expected equals 5.", result.getErrors().get(0).getMessage());
+        assertEquals("10", RuleEvalResults.getText(result.getErrors().get(0).getFailRuleResult()));
+        assertEquals("Aggregate rule 'maxPrice' failed on '/orders/order': max 200, expected max 100.00.", result.getErrors().get(1).getMessage());
+
+        assertEquals(3, result.getWarnings().size());
+        assertEquals("Aggregate rule 'itemCount' failed on '/orders/order': count 4, expected max 3.", result.getWarnings().get(0).getMessage());
+        assertEquals("Aggregate rule 'minPrice' failed on '/orders/order': min 0, expected min 0.01.", result.getWarnings().get(1).getMessage());
+        // No prices in the empty order, so only the count is checked...
+        assertEquals("Aggregate rule 'itemCount' failed on '/orders/order': count 0, expected min 1.", result.getWarnings().get(2).getMessage());
+    }
+
+    @Test
+    public void nonNumeric() throws IOException, SAXException {
+        ValidationResult result = filter(order(3, "<order-item price='1'><quantity>x</quantity></order-item>" +
+                "<order-item price='1'><quantity>3</quantity></order-item>"));
+
+        assertEquals(1, result.getErrors().size());
+        assertEquals("Aggregate rule 'quantityTotal' failed on '/order': 1 non-numeric value(s).", result.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void messageBundle() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("aggregate-messages-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource(order(5, "<order-item price='200'><quantity>1</quantity></order-item>" +
+                    "<order-item price='1'><quantity>2</quantity></order-item>")), result);
+
+            assertEquals(3, result.getErrors().size());
+            assertEquals("Order /order: 3 items, the header says 5.", result.getErrors().get(0).getMessage(Locale.ENGLISH));
+            assertEquals("Bestellung /order: 3 Artikel, laut Kopf 5.", result.getErrors().get(0).getMessage(Locale.GERMAN));
+            // Keys missing from the configured bundle fall back to its generic key, and then to the built-in messages...
+            assertEquals("Aggregate 'maxPrice' is 200, above 100.00.", result.getErrors().get(1).getMessage(Locale.GERMAN));
+            assertEquals("Aggregate rule 'itemCount' failed on '/order': count 2, expected min 3.", result.getErrors().get(2).getMessage(Locale.ENGLISH));
+        }
+    }
+
+    @Test
+    public void accumulate() throws IOException {
+        try (Smooks smooks = new Smooks()) {
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            Aggregate outer = Aggregate.open("a", executionContext);
+            Aggregate inner = Aggregate.open("a", executionContext);
+
+            assertSame(inner, Aggregate.get("a", executionContext));
+            inner.add(" 7 ");
+            inner.add("");
+            assertEquals(new BigDecimal("7"), inner.getSum());
+            assertEquals(2, inner.getCount());
+            assertSame(inner, Aggregate.close("a", executionContext));
+
+            assertSame(outer, Aggregate.get("a", executionContext));
+            assertNull(outer.getMin());
+            outer.add(Long.toString(Long.MAX_VALUE));
+            outer.add("1");
+            outer.add("-2.5");
+            assertEquals(new BigDecimal(Long.MAX_VALUE).subtract(new BigDecimal("1.5")), outer.getSum());
+            assertEquals(new BigDecimal("-2.5"), outer.getMin());
+            assertEquals(new BigDecimal(Long.MAX_VALUE), outer.getMax());
+            assertEquals(0, outer.getInvalidCount());
+            assertSame(outer, Aggregate.close("a", executionContext));
+            assertNull(Aggregate.get("a", executionContext));
+        }
+    }
+
+    private ValidationResult filter(String message) throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("aggregate-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource(message), result);
+            return result;
+        }
+    }
+
+    private String order(int totalQuantity, String items) {
+        return "<order><header><totalQuantity>" + totalQuantity + "</totalQuantity></header><order-items>" + items + "</order-items></order>";
+    }
+}
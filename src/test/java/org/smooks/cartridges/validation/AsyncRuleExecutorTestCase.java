@@ -0,0 +1,179 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksException;
+import org.smooks.api.TypedKey;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test for {@link AsyncRuleExecutor}.
+ */
+public class AsyncRuleExecutorTestCase {
+
+    @BeforeEach
+    public void beforeEach() {
+        CountingRegexProvider.EVALUATIONS.set(0);
+        CountingRegexProvider.THREADS.clear();
+    }
+
+    @Test
+    public void async() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("async-config.xml"))) {
+            StringBuilder message = new StringBuilder("<a>");
+            for (int i = 0; i < 100; i++) {
+                message.append("<b x='Xx'>").append(i % 2 == 0 ? "Aaa" : "11").append("</b>");
+            }
+            message.append("</a>");
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StringSource(message.toString()), result);
+
+            assertEquals(200, CountingRegexProvider.EVALUATIONS.get());
+            assertEquals(50, result.getWarnings().size());
+            assertEquals("/a/b", result.getWarnings().get(49).getFailFragmentPath());
+            assertTrue(CountingRegexProvider.THREADS.stream().anyMatch(thread -> thread.startsWith("smooks-validation-async-")));
+        }
+    }
+
+    @Test
+    public void fatal() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("async-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+
+            SmooksException exception = assertThrows(SmooksException.class, () -> smooks.filterSource(new StringSource("<a><b x='Xx'>Aaa</b><b x='11'>Aaa</b></a>"), result));
+
+            assertNotNull(result.getFatal());
+            assertEquals("/a/b/@x", result.getFatal().getFailFragmentPath());
+            assertTrue(exception instanceof ValidationException || exception.getCause() instanceof ValidationException, exception.toString());
+        }
+    }
+
+    @Test
+    public void filteringThreadWork() throws IOException, SAXException {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isCurrentThreadCpuTimeSupported());
+
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("async-slow-config.xml"))) {
+            // Warm up...
+            filteringThreadCpuTime(smooks, "sync", threadMXBean);
+            filteringThreadCpuTime(smooks, "async", threadMXBean);
+
+            long syncCpuTime = filteringThreadCpuTime(smooks, "sync", threadMXBean);
+            long asyncCpuTime = filteringThreadCpuTime(smooks, "async", threadMXBean);
+
+            // The filtering thread only submits the async evaluations, and waits for them at the end...
+            assertTrue(asyncCpuTime * 2 < syncCpuTime, "Filtering thread CPU time with async rules " + asyncCpuTime / 1000000 + " ms, without " + syncCpuTime / 1000000 + " ms.");
+        }
+    }
+
+    private static long filteringThreadCpuTime(Smooks smooks, String element, ThreadMXBean threadMXBean) {
+        StringBuilder message = new StringBuilder("<a>");
+        for (int i = 0; i < 40; i++) {
+            message.append('<').append(element).append('>').append("aaaaaaaaaaaaaaaaaaaaaaaa").append("</").append(element).append('>');
+        }
+        message.append("</a>");
+        ValidationResult result = new ValidationResult();
+
+        long start = threadMXBean.getCurrentThreadCpuTime();
+        smooks.filterSource(new StringSource(message.toString()), result);
+        long cpuTime = threadMXBean.getCurrentThreadCpuTime() - start;
+
+        assertEquals(40, result.getWarnings().size());
+        return cpuTime;
+    }
+
+    @Test
+    public void nonDeterministicRuleEvaluatedOnFilteringThread() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("async-mvel-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result);
+
+            // The MVEL rule reads the orderItem bean as it is at the end of the order-item...
+            assertEquals(3, result.getErrors().size());
+            assertEquals("Order 12129 (Customer 123123) contains an order item for product 222 which contains an invalid quantity of 7. This quantity exceeds the maximum permited quantity for this product (5).", result.getErrors().get(2).getMessage(Locale.ENGLISH));
+            assertNull(smooks.getApplicationContext().getRegistry().lookup(AsyncRuleExecutor.class));
+        }
+    }
+
+    @Test
+    public void detachedExecutionContext() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("async-config.xml"))) {
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            executionContext.getBeanContext().addBean("order", new HashMap<>());
+            TypedKey<String> key = TypedKey.of();
+            executionContext.put(key, "live");
+
+            DetachedExecutionContext detachedExecutionContext = new DetachedExecutionContext(executionContext);
+
+            assertSame(smooks.getApplicationContext(), detachedExecutionContext.getApplicationContext());
+            assertEquals("2", detachedExecutionContext.getConfigParameter(AsyncRuleExecutor.THREADS));
+            assertEquals("x", detachedExecutionContext.getConfigParameter("undefined", "x"));
+            assertNull(detachedExecutionContext.get(key));
+            assertTrue(detachedExecutionContext.getBeanContext().getBeanMap().isEmpty());
+
+            detachedExecutionContext.put(key, "detached");
+            detachedExecutionContext.getBeanContext().addBean("order", "detached");
+            assertEquals("detached", detachedExecutionContext.get(key));
+            assertEquals("detached", detachedExecutionContext.getBeanContext().getBean("order"));
+            assertEquals("live", executionContext.get(key));
+            assertInstanceOf(HashMap.class, executionContext.getBeanContext().getBean("order"));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksException;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test for {@link AttributeRuleBatch} and attribute rule evaluation at the element start.
+ */
+public class AttributeRuleBatchTestCase {
+
+    @Test
+    public void batch() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("attribute-rules-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource("<order><order-item quantity='0'><name>Pen</name></order-item>" +
+                    "<order-item price='2' quantity='1000'><name></name></order-item><order-item price='3' /></order>"), result);
+
+            // Each attribute rule is evaluated once, whichever attributes are present...
+            assertEquals(2, result.getErrors().size());
+            assertEquals("0", RuleEvalResults.getText(result.getErrors().get(0).getFailRuleResult()));
+            assertEquals("1000", RuleEvalResults.getText(result.getErrors().get(1).getFailRuleResult()));
+            assertEquals("/order/order-item/@quantity", result.getErrors().get(1).getFailFragmentPath());
+            assertEquals(1, result.getWarnings().size());
+            assertNull(result.getFatal());
+
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            AttributeRuleBatch batch = null;
+            for (Validator validator : ValidationWarmUp.getValidators(executionContext.getContentDeliveryRuntime().getContentDeliveryConfig())) {
+                assertEquals(validator.getTargetAttribute() != null, validator.isElementStart());
+                if (validator.getTargetAttribute() != null) {
+                    assertNotNull(validator.getAttributeBatch());
+                    batch = validator.getAttributeBatch();
+                } else {
+                    assertNull(validator.getAttributeBatch());
+                }
+            }
+            assertEquals(2, batch.getValidators().length);
+        }
+    }
+
+    @Test
+    public void fatalBeforeContent() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("attribute-rules-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            assertThrows(SmooksException.class, () -> smooks.filterSource(new StringSource("<order><order-item price='1x' quantity='0'><name></name></order-item></order>"), result));
+
+            // Processing stopped at the order-item start tag...
+            assertNotNull(result.getFatal());
+            assertEquals("/order/order-item/@price", result.getFatal().getFailFragmentPath());
+            assertTrue(result.getErrors().isEmpty());
+            assertTrue(result.getWarnings().isEmpty());
+        }
+    }
+
+    @Test
+    public void attributeRulesAtEnd() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("attribute-rules-at-end-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            assertThrows(SmooksException.class, () -> smooks.filterSource(new StringSource("<order><order-item price='1x' quantity='0'><name></name></order-item></order>"), result));
+
+            // The content was validated before the attributes...
+            assertNotNull(result.getFatal());
+            assertEquals(1, result.getWarnings().size());
+        }
+    }
+
+    @Test
+    public void beanReadingRulesAtEnd() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("attribute-rules-mvel-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource("<order><order-item id='1' price='1x'><product>222</product><quantity>7</quantity></order-item></order>"), result);
+
+            // The MVEL rule sees the orderItem bean populated from the order-item content...
+            assertEquals(1, result.getErrors().size());
+            assertEquals("/order/order-item/@id", result.getErrors().get(0).getFailFragmentPath());
+            assertEquals(1, result.getWarnings().size());
+
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            for (Validator validator : ValidationWarmUp.getValidators(executionContext.getContentDeliveryRuntime().getContentDeliveryConfig())) {
+                assertEquals(validator.getTargetAttribute().equals("price"), validator.isElementStart(), validator.toString());
+                assertNull(validator.getAttributeBatch());
+            }
+        }
+    }
+}
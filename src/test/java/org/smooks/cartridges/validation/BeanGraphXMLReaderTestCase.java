@@ -0,0 +1,171 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.engine.resource.config.GenericReaderConfigurator;
+import org.smooks.io.payload.JavaSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test for {@link BeanGraphXMLReader}.
+ */
+public class BeanGraphXMLReaderTestCase {
+
+    @Test
+    public void validateBeanGraph() throws IOException, SAXException {
+        Order order = new Order();
+        order.getHeader().setCustomer("joe");
+        order.addItem(5);
+        order.addItem(1000);
+        order.addItem(0);
+
+        ValidationResult result = new ValidationResult();
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("bean-graph-config.xml"));
+        try {
+            smooks.filterSource(new JavaSource("order", order), result);
+        } finally {
+            smooks.close();
+        }
+
+        assertEquals(1, result.getWarnings().size());
+        assertEquals("/order/header/customer", result.getWarnings().get(0).getFailFragmentPath());
+        assertEquals(2, result.getErrors().size());
+        assertEquals("/order/items/quantity", result.getErrors().get(0).getFailFragmentPath());
+        assertEquals("1000", RuleEvalResults.getText(result.getErrors().get(0).getFailRuleResult()));
+        assertEquals("0", RuleEvalResults.getText(result.getErrors().get(1).getFailRuleResult()));
+    }
+
+    @Test
+    public void validateMapTree() throws IOException, SAXException {
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("order-item", Arrays.asList(orderItem("1", "10.00", "Pen"), orderItem("x", "10.001", "A very long product name exceeding the limit")));
+
+        ValidationResult result = new ValidationResult();
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("primitive-config.xml"));
+        try {
+            smooks.setReaderConfig(new GenericReaderConfigurator(BeanGraphXMLReader.class));
+            smooks.filterSource(new JavaSource("order", order), result);
+        } finally {
+            smooks.close();
+        }
+
+        assertEquals(2, result.getErrors().size());
+        assertEquals("/order/order-item/@price", result.getErrors().get(0).getFailFragmentPath());
+        assertEquals("10.001", RuleEvalResults.getText(result.getErrors().get(0).getFailRuleResult()));
+        assertEquals("/order/order-item/quantity", result.getErrors().get(1).getFailFragmentPath());
+        assertEquals(1, result.getWarnings().size());
+        assertEquals("/order/order-item/name", result.getWarnings().get(0).getFailFragmentPath());
+    }
+
+    private static Map<String, Object> orderItem(String quantity, String price, String name) {
+        Map<String, Object> orderItem = new LinkedHashMap<>();
+        orderItem.put("@price", price);
+        orderItem.put("quantity", quantity);
+        orderItem.put("name", name);
+        return orderItem;
+    }
+
+    public static class Order {
+        private final Header header = new Header();
+        private final List<Item> items = new ArrayList<>();
+
+        public Header getHeader() {
+            return header;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        private void addItem(int quantity) {
+            Item item = new Item();
+            item.setQuantity(quantity);
+            item.setOrder(this);
+            items.add(item);
+        }
+    }
+
+    public static class Header {
+        private String customer;
+
+        public String getCustomer() {
+            return customer;
+        }
+
+        public void setCustomer(String customer) {
+            this.customer = customer;
+        }
+    }
+
+    public static class Item {
+        private int quantity;
+        private Order order;
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+
+        public void setOrder(Order order) {
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.smooks.Smooks;
+import org.smooks.api.SmooksException;
+import org.smooks.cartridges.rules.RuleProviderAccessor;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test for {@link CodeListProvider}.
+ */
+public class CodeListProviderTestCase {
+
+    @TempDir
+    static Path indexDir;
+
+    @BeforeAll
+    public static void beforeAll() {
+        System.setProperty(CodeListProvider.INDEX_DIR, indexDir.toString());
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        System.clearProperty(CodeListProvider.INDEX_DIR);
+    }
+
+    @Test
+    public void lookup() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("code-list-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StringSource("<order><customer number='789'/><order-item><product>222</product></order-item>" +
+                    "<order-item><product> 333 </product></order-item><order-item><product>2222</product></order-item>" +
+                    "<order-item><product>22</product></order-item></order>"), result);
+
+            assertEquals(2, result.getErrors().size());
+            assertEquals("2222", RuleEvalResults.getText(result.getErrors().get(0).getFailRuleResult()));
+            assertEquals("22", RuleEvalResults.getText(result.getErrors().get(1).getFailRuleResult()));
+
+            result = new ValidationResult();
+            smooks.filterSource(new StringSource("<order><customer number='Joe'/></order>"), result);
+            assertEquals(1, result.getErrors().size());
+            assertEquals("customerId", result.getErrors().get(0).getFailRuleResult().getRuleName());
+        }
+    }
+
+    @Test
+    public void index() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("code-list-config.xml"))) {
+            smooks.createExecutionContext();
+            CodeListProvider provider = (CodeListProvider) RuleProviderAccessor.get(smooks.getApplicationContext(), "codes");
+
+            // Duplicates, empty lines and comments are dropped...
+            CodeList products = provider.getCodeList("productId");
+            assertEquals(4, products.size());
+            assertTrue(Files.exists(products.getIndexFile()));
+            assertEquals(indexDir, products.getIndexFile().getParent());
+            assertTrue(products.contains("111222"));
+            assertTrue(products.contains("989764"));
+            assertFalse(products.contains(""));
+            assertFalse(products.contains("9897640"));
+
+            CodeList customers = provider.getCodeList("customerId");
+            assertEquals(3, customers.size());
+            assertTrue(customers.contains("123123"));
+            assertTrue(customers.contains("456456"));
+            assertTrue(customers.contains("789"));
+            assertFalse(customers.contains("Ann"));
+
+            // The index is shared...
+            try (Smooks otherSmooks = new Smooks(getClass().getResourceAsStream("code-list-config.xml"))) {
+                otherSmooks.createExecutionContext();
+                assertSame(products, ((CodeListProvider) RuleProviderAccessor.get(otherSmooks.getApplicationContext(), "codes")).getCodeList("productId"));
+            }
+        }
+    }
+
+    @Test
+    public void released() {
+        CodeListProvider provider = new CodeListProvider();
+        provider.setName("codes");
+        provider.setSrc("/org/smooks/cartridges/validation/codes/code-lists.properties");
+        String indexFile = provider.getCodeList("productId").getIndexFile().toString();
+
+        int referenceCount = SharedRuleBases.getReferenceCount("codeListIndex", indexFile);
+        SharedRuleBases.release(provider);
+        assertEquals(referenceCount - 1, SharedRuleBases.getReferenceCount("codeListIndex", indexFile));
+    }
+
+    @Test
+    public void invalidIndexRebuilt() throws IOException {
+        Path otherIndexDir = Files.createDirectory(indexDir.resolve("invalid"));
+        Object owner = new Object();
+        Path indexFile = CodeList.get(owner, "/org/smooks/cartridges/validation/codes/products.txt", -1, otherIndexDir).getIndexFile();
+        SharedRuleBases.release(owner);
+
+        // Value offsets pointing past the end of the index...
+        try (FileChannel fileChannel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+            fileChannel.truncate(fileChannel.size() - 1);
+        }
+
+        CodeList products = CodeList.get(owner, "/org/smooks/cartridges/validation/codes/products.txt", -1, otherIndexDir);
+        assertEquals(4, products.size());
+        assertTrue(products.contains("989764"));
+        SharedRuleBases.release(owner);
+    }
+
+    @Test
+    public void privateDefaultIndexDir() throws IOException {
+        assumeTrue(Files.getFileAttributeView(indexDir, PosixFileAttributeView.class) != null);
+        String tmpDir = System.getProperty("java.io.tmpdir");
+        Path sharedTmpDir = Files.createDirectory(indexDir.resolve("tmp"));
+        System.setProperty("java.io.tmpdir", sharedTmpDir.toString());
+        try {
+            Path defaultIndexDir = CodeList.getDefaultIndexDir();
+            assertEquals(sharedTmpDir, defaultIndexDir.getParent());
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(defaultIndexDir)));
+
+            // Planted by another user...
+            Files.setPosixFilePermissions(defaultIndexDir, PosixFilePermissions.fromString("rwxrwxrwx"));
+            assertThrows(SmooksException.class, CodeList::getDefaultIndexDir);
+        } finally {
+            System.setProperty("java.io.tmpdir", tmpDir);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.cartridges.rules.regex.RegexRuleEvalResult;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test for {@link FailureLog}.
+ */
+public class FailureLogTestCase {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void formatKeyValue() {
+        FailureLog failureLog = new FailureLog(true, false, true, 1, 10);
+
+        assertEquals("rule=regex.customer onFail=ERROR path=/order/header/customer value=\"Joe \\\"J\\\" Bloggs\"",
+                failureLog.format(new TestOnFailResult("/order/header/customer", "Joe \"J\" Bloggs"), OnFail.ERROR, 0));
+        assertEquals("rule=regex.customer onFail=WARN path=/order/header/customer value=\"\" suppressed=4",
+                failureLog.format(new TestOnFailResult("/order/header/customer", ""), OnFail.WARN, 4));
+    }
+
+    @Test
+    public void formatJson() {
+        FailureLog failureLog = new FailureLog(true, true, true, 1, 10);
+
+        assertEquals("{\"rule\":\"regex.customer\",\"onFail\":\"FATAL\",\"path\":\"/order/header/customer\",\"value\":\"a\\\"b\\\\c\\n\"}",
+                failureLog.format(new TestOnFailResult("/order/header/customer", "a\"b\\c\n"), OnFail.FATAL, 0));
+        assertEquals("{\"rule\":\"regex.customer\",\"onFail\":\"OK\",\"path\":\"/order/header/customer\",\"value\":\"Joe\",\"suppressed\":2}",
+                failureLog.format(new TestOnFailResult("/order/header/customer", "Joe"), OnFail.OK, 2));
+    }
+
+    @Test
+    public void formatWithoutValues() {
+        FailureLog failureLog = new FailureLog(true, false, false, 1, 10);
+        assertEquals("rule=regex.customer onFail=ERROR path=/order/header/customer",
+                failureLog.format(new TestOnFailResult("/order/header/customer", "Joe Bloggs"), OnFail.ERROR, 0));
+
+        failureLog = new FailureLog(true, true, false, 1, 10);
+        assertEquals("{\"rule\":\"regex.customer\",\"onFail\":\"ERROR\",\"path\":\"/order/header/customer\"}",
+                failureLog.format(new TestOnFailResult("/order/header/customer", "Joe Bloggs"), OnFail.ERROR, 0));
+    }
+
+    @Test
+    public void rateLimit() {
+        FailureLog failureLog = new FailureLog(true, false, true, 1, 2);
+
+        assertEquals(0, failureLog.acquire("regex.a", 0));
+        assertEquals(0, failureLog.acquire("regex.a", 1));
+        assertEquals(-1, failureLog.acquire("regex.a", 2));
+        assertEquals(-1, failureLog.acquire("regex.a", 3));
+        // Other rules have their own limit...
+        assertEquals(0, failureLog.acquire("regex.b", 4));
+        // A new window reports the suppressed failures...
+        assertEquals(2, failureLog.acquire("regex.a", SECOND));
+        assertEquals(0, failureLog.acquire("regex.a", SECOND + 1));
+        assertEquals(-1, failureLog.acquire("regex.a", SECOND + 2));
+        assertEquals(1, failureLog.acquire("regex.a", 3 * SECOND));
+    }
+
+    @Test
+    public void sample() {
+        FailureLog failureLog = new FailureLog(true, false, true, 3, 100);
+
+        assertEquals(0, failureLog.acquire("regex.a", 0));
+        assertEquals(-1, failureLog.acquire("regex.a", 1));
+        assertEquals(-1, failureLog.acquire("regex.a", 2));
+        assertEquals(0, failureLog.acquire("regex.a", 3));
+    }
+
+    @Test
+    public void config() throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("failure-log-config.xml"));
+        try {
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            FailureLog failureLog = FailureLog.getOrCreate(smooks.getApplicationContext(), executionContext);
+
+            assertSame(failureLog, FailureLog.getOrCreate(smooks.getApplicationContext(), smooks.createExecutionContext()));
+            assertTrue(failureLog.isEnabled());
+            assertEquals("{\"rule\":\"regex.customer\",\"onFail\":\"ERROR\",\"path\":\"/a\",\"value\":\"x\"}",
+                    failureLog.format(new TestOnFailResult("/a", "x"), OnFail.ERROR, 0));
+            // 1 in 2 sampled, 3 per second...
+            assertEquals(0, failureLog.acquire("regex.a", 0));
+            assertEquals(-1, failureLog.acquire("regex.a", 1));
+            assertEquals(0, failureLog.acquire("regex.a", 2));
+            assertEquals(-1, failureLog.acquire("regex.a", 3));
+            assertEquals(0, failureLog.acquire("regex.a", 4));
+            assertEquals(-1, failureLog.acquire("regex.a", 5));
+            assertEquals(-1, failureLog.acquire("regex.a", 6));
+        } finally {
+            smooks.close();
+        }
+    }
+
+    @Test
+    public void disabledByDefault() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks()) {
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            FailureLog failureLog = FailureLog.getOrCreate(smooks.getApplicationContext(), executionContext);
+
+            assertFalse(failureLog.isEnabled());
+            assertEquals("rule=regex.customer onFail=ERROR path=/a", failureLog.format(new TestOnFailResult("/a", "x"), OnFail.ERROR, 0));
+        }
+    }
+
+    private static class TestOnFailResult implements OnFailResult {
+        private final String path;
+        private final RuleEvalResult ruleResult;
+
+        private TestOnFailResult(String path, String text) {
+            this.path = path;
+            this.ruleResult = new RegexRuleEvalResult(false, "customer", "regex", Pattern.compile("[A-Z]+"), text);
+        }
+
+        public String getFailFragmentPath() {
+            return path;
+        }
+
+        public RuleEvalResult getFailRuleResult() {
+            return ruleResult;
+        }
+
+        public String getMessage() {
+            return path;
+        }
+
+        public String getMessage(Locale locale) {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.api.SmooksConfigException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for {@link FormatMessageTemplate}.
+ */
+public class FormatMessageTemplateTestCase {
+
+    private final OnFailResult onFailResult = new DecodedOnFailResult("/order/header/customer/@number", new DecodedOnFailResult.DecodedRuleEvalResult("customerId", "customer", "123123"), null);
+
+    @Test
+    public void ruleResultPlaceholders() throws IOException {
+        assertEquals("Invalid customer number '123123' at '/order/header/customer/@number' (customer.customerId).",
+                apply("Invalid customer number '{text}' at '{path}' ({ruleProviderName}.{ruleName}).", new HashMap<>()));
+    }
+
+    @Test
+    public void beanPlaceholders() throws IOException {
+        Map<String, Object> order = new HashMap<>();
+        order.put("orderId", 12129);
+        order.put("customer", new Customer("Joe"));
+        Map<String, Object> beanContext = new HashMap<>();
+        beanContext.put("order", order);
+
+        assertEquals("Order 12129, customer Joe, missing null.", apply("Order {order.orderId}, customer {order.customer.name}, missing {order.missing.x}.", beanContext));
+    }
+
+    @Test
+    public void escapedBrace() throws IOException {
+        assertEquals("{text} 123123", apply("{{text} {text}", new HashMap<>()));
+    }
+
+    @Test
+    public void unterminatedPlaceholder() {
+        assertThrows(SmooksConfigException.class, () -> new FormatMessageTemplate("Invalid {text"));
+    }
+
+    @Test
+    public void compile() {
+        assertEquals(FormatMessageTemplate.class, MessageTemplate.compile("fmt:{text}").getClass());
+        assertEquals(MessageTemplate.FreeMarkerMessageTemplate.class, MessageTemplate.compile("ftl:${path}").getClass());
+    }
+
+    private String apply(String message, Map<String, Object> beanContext) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        new FormatMessageTemplate(message).apply(onFailResult, beanContext, stringBuilder);
+        return stringBuilder.toString();
+    }
+
+    public static class Customer {
+        private final String name;
+
+        public Customer(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link PrimitiveRuleProvider}.
+ */
+public class PrimitiveRuleProviderTestCase {
+
+    private PrimitiveRuleProvider provider;
+
+    @BeforeEach
+    public void beforeEach() {
+        provider = new PrimitiveRuleProvider();
+        provider.setName("primitive");
+        provider.setSrc("/org/smooks/cartridges/validation/primitive-rules.properties");
+    }
+
+    @Test
+    public void integer() {
+        assertPasses("quantity", "1", " 999 ", "+5", "0001");
+        assertFails("quantity", "0", "1000", "-1", "", " ", "+", "1.0", "1e2", "12a", "99999999999999999999");
+
+        assertPasses("anyInteger", "-9223372036854775808", "9223372036854775807", "99999999999999999999", "-99999999999999999999");
+        assertFails("anyInteger", "-", "1-", "0x10");
+    }
+
+    @Test
+    public void decimal() {
+        assertPasses("price", "0", "0.00", "100000", "99999.99", " 12.5 ", ".5", "1.");
+        assertFails("price", "-0.01", "100000.01", "1.234", "", ".", "-", "1.2.3", "1,5", "1e2");
+
+        assertPasses("amount", "-1.5", "1000", "3.14159265358979323846", "0.0000001");
+        assertFails("amount", "-1.50000001", "1000.0000000001", "123456789012345678901234");
+
+        assertPasses("scaled", "123456789012345678901234.12", "-0.1");
+        assertFails("scaled", "0.001");
+
+        assertPasses("precise", "123.45", "-999.99", "00123.40", "0.01", "1000.00");
+        assertFails("precise", "1234.56", "123.456", "123456");
+
+        assertPasses("digits", "999", "0.00123", "12.30000", "0", "1.00");
+        assertFails("digits", "1000", "0.1234", "12.31");
+
+        assertFails("scaled", "1.500");
+        assertPasses("valueScaled", "1.50", "1.5000", "-2.0", "3", "1.");
+        assertFails("valueScaled", "1.55", "1.505", "");
+
+        assertPasses("valuePrecise", "123.450", "999.990", "0.10");
+        assertFails("valuePrecise", "123.451", "1000.00", "-0.01");
+    }
+
+    @Test
+    public void length() {
+        assertPasses("name", "a", "12345678901234567890123456789012345");
+        assertFails("name", "", "123456789012345678901234567890123456");
+
+        assertPasses("short", "", "abc");
+        assertFails("short", "abcd");
+
+        assertPasses("token", "ab", " ab\n", "a b", "a \t b", "\tabc ");
+        assertFails("token", "a", " a ", "abcd", "ab  cd", "");
+    }
+
+    @Test
+    public void sharedPassResult() {
+        RuleEvalResult result = provider.evaluate("quantity", "5", null);
+        assertTrue(result.matched());
+        assertSame(result, provider.evaluate("quantity", "6", null));
+        assertEquals("primitive", result.getRuleProviderName());
+
+        RuleEvalResult failure = provider.evaluate("quantity", "0", null);
+        assertFalse(failure.matched());
+        assertEquals("0", RuleEvalResults.getText(failure));
+        assertEquals("integer[1,999]", ((PrimitiveRuleProvider.PrimitiveRuleEvalResult) failure).getDefinition());
+    }
+
+    @Test
+    public void invalidDefinition() {
+        PrimitiveRuleProvider invalidProvider = new PrimitiveRuleProvider();
+        assertThrows(SmooksConfigException.class, () -> invalidProvider.setSrc("/org/smooks/cartridges/validation/group-rules.properties"));
+    }
+
+    @Test
+    public void validate() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("primitive-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StringSource("<order><order-item price='10.50'><quantity>2</quantity><name>Pen</name></order-item>" +
+                    "<order-item price='10.505'><quantity>0</quantity><name></name></order-item></order>"), result);
+
+            assertEquals(2, result.getErrors().size());
+            // The price attribute is validated when the order-item opens...
+            assertEquals("10.505", RuleEvalResults.getText(result.getErrors().get(0).getFailRuleResult()));
+            assertEquals("0", RuleEvalResults.getText(result.getErrors().get(1).getFailRuleResult()));
+            assertEquals(1, result.getWarnings().size());
+            assertEquals("name", result.getWarnings().get(0).getFailRuleResult().getRuleName());
+        }
+    }
+
+    private void assertPasses(String ruleName, String... texts) {
+        for (String text : texts) {
+            assertTrue(provider.evaluate(ruleName, text, null).matched(), "Expected rule '" + ruleName + "' to pass on '" + text + "'.");
+        }
+    }
+
+    private void assertFails(String ruleName, String... texts) {
+        for (String text : texts) {
+            assertFalse(provider.evaluate(ruleName, text, null).matched(), "Expected rule '" + ruleName + "' to fail on '" + text + "'.");
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.smooks.Smooks;
+import org.smooks.io.payload.StringSource;
+import org.smooks.support.StreamUtils;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link RecordValidationCache}.
+ */
+public class RecordValidationCacheTestCase {
+
+    private static final String MESSAGE = "<a>" +
+            "<item><b x='Xx'>Aaa</b></item>" +
+            "<item><b x='Xx'>Aaa</b></item>" +
+            "<item><b x='Xx'>11</b></item>" +
+            "<item><b x='Xx'>11</b></item>" +
+            "</a>";
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void beforeEach() {
+        CountingRegexProvider.EVALUATIONS.set(0);
+    }
+
+    @Test
+    public void skipCleanRecords() throws IOException, SAXException {
+        try (Smooks smooks = createSmooks("1")) {
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StringSource(MESSAGE), result);
+
+            // The second record is skipped.  Records with failures are never cached...
+            assertEquals(6, CountingRegexProvider.EVALUATIONS.get());
+            assertEquals(2, result.getWarnings().size());
+            assertEquals("/a/item/b", result.getWarnings().get(1).getFailFragmentPath());
+        }
+    }
+
+    @Test
+    public void file() throws IOException, SAXException {
+        try (Smooks smooks = createSmooks("1")) {
+            smooks.filterSource(new StringSource(MESSAGE), new ValidationResult());
+        }
+        assertTrue(Files.exists(tempDir.resolve("records.cache")));
+
+        CountingRegexProvider.EVALUATIONS.set(0);
+        try (Smooks smooks = createSmooks("1")) {
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource(MESSAGE), result);
+
+            assertEquals(4, CountingRegexProvider.EVALUATIONS.get());
+            assertEquals(2, result.getWarnings().size());
+        }
+    }
+
+    @Test
+    public void versionChange() throws IOException, SAXException {
+        try (Smooks smooks = createSmooks("1")) {
+            smooks.filterSource(new StringSource(MESSAGE), new ValidationResult());
+        }
+
+        CountingRegexProvider.EVALUATIONS.set(0);
+        try (Smooks smooks = createSmooks("2")) {
+            smooks.filterSource(new StringSource(MESSAGE), new ValidationResult());
+
+            assertEquals(6, CountingRegexProvider.EVALUATIONS.get());
+        }
+    }
+
+    private Smooks createSmooks(String version) throws IOException, SAXException {
+        String config = StreamUtils.readStreamAsString(getClass().getResourceAsStream("record-cache-config.xml"), "UTF-8")
+                .replace("@file@", new File(tempDir.toFile(), "records.cache").getPath())
+                .replace("@version@", version);
+
+        return new Smooks(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+    }
+}
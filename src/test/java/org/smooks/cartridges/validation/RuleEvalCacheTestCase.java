@@ -0,0 +1,132 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.cartridges.rules.BasicRuleEvalResult;
+import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link RuleEvalCache}.
+ */
+public class RuleEvalCacheTestCase {
+
+    @Test
+    public void getPut() {
+        RuleEvalCache cache = new RuleEvalCache(10);
+        RuleEvalResult result = new BasicRuleEvalResult(true, "custom", "regex");
+
+        assertNull(cache.get("regex.custom", "Aaa"));
+        cache.put("regex.custom", "Aaa", result);
+        assertSame(result, cache.get("regex.custom", new StringBuilder("Aaa")));
+        assertNull(cache.get("regex.other", "Aaa"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1.0 / 3, cache.getHitRatio(), 0.0001);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void bounded() {
+        RuleEvalCache cache = new RuleEvalCache(32);
+        RuleEvalResult result = new BasicRuleEvalResult(true, "custom", "regex");
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("regex.custom", Integer.toString(i), result);
+        }
+
+        assertTrue(cache.size() <= 32);
+        assertNotNull(cache.get("regex.custom", "999"));
+    }
+
+    @Test
+    public void clear() {
+        RuleEvalCache cache = new RuleEvalCache(10);
+        cache.put("regex.custom", "Aaa", new BasicRuleEvalResult(true, "custom", "regex"));
+        cache.get("regex.custom", "Aaa");
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void invalidMaxSize() {
+        assertThrows(IllegalArgumentException.class, () -> new RuleEvalCache(0));
+    }
+
+    @Test
+    public void filter() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("eval-cache-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StringSource("<a><b x='Xx'>11</b><b x='Xx'>11</b><b x='Xx'>Aaa</b></a>"), result);
+
+            assertEquals(2, result.getWarnings().size());
+            assertEquals("RegexRuleEvalResult, matched=false, providerName=regex, ruleName=custom, text=11, pattern=[A-Z]([a-z])+", result.getWarnings().get(1).getFailRuleResult().toString());
+
+            RuleEvalCache cache = RuleEvalCache.get(smooks.getApplicationContext());
+            assertEquals(3, cache.getHitCount());
+            assertEquals(3, cache.getMissCount());
+            assertEquals(3, cache.size());
+        }
+    }
+
+    @Test
+    public void disabledByDefault() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("config-01.xml"))) {
+            smooks.filterSource(new StringSource("<a><b x='Xx'>11</b></a>"), new ValidationResult());
+
+            assertNull(RuleEvalCache.get(smooks.getApplicationContext()));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.io.payload.StringSource;
+import org.smooks.testkit.MockExecutionContext;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link RuleGuard}.
+ */
+public class RuleGuardTestCase {
+
+    private Element element;
+    private MockExecutionContext executionContext;
+
+    @BeforeEach
+    public void beforeEach() throws ParserConfigurationException {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        element = document.createElement("item");
+        element.setAttribute("productId", "222");
+        executionContext = new MockExecutionContext();
+    }
+
+    @Test
+    public void attribute() {
+        assertTrue(RuleGuard.compile("@productId=222").test(element, "", executionContext));
+        assertFalse(RuleGuard.compile("@productId=111").test(element, "", executionContext));
+        assertTrue(RuleGuard.compile("@productId != 111").test(element, "", executionContext));
+        assertTrue(RuleGuard.compile("@productId").test(element, "", executionContext));
+        assertFalse(RuleGuard.compile("@quantity").test(element, "", executionContext));
+
+        element.setAttribute("note", "");
+        assertFalse(RuleGuard.compile("@note").test(element, "", executionContext));
+        assertTrue(RuleGuard.compile("@note?").test(element, "", executionContext));
+        assertFalse(RuleGuard.compile("@quantity?").test(element, "", executionContext));
+    }
+
+    @Test
+    public void bean() {
+        executionContext.getBeanContext().addBean("order", Collections.singletonMap("country", "IE"));
+
+        assertTrue(RuleGuard.compile("order.country=IE").test(element, "", executionContext));
+        assertFalse(RuleGuard.compile("order.country!=IE").test(element, "", executionContext));
+        assertTrue(RuleGuard.compile("order").test(element, "", executionContext));
+        assertFalse(RuleGuard.compile("order.currency").test(element, "", executionContext));
+        assertFalse(RuleGuard.compile("customer.country=IE").test(element, "", executionContext));
+    }
+
+    @Test
+    public void regex() {
+        assertTrue(RuleGuard.compile("regex:^2").test(element, "222", executionContext));
+        assertFalse(RuleGuard.compile("regex:^1").test(element, "222", executionContext));
+    }
+
+    @Test
+    public void invalid() {
+        assertThrows(SmooksConfigException.class, () -> RuleGuard.compile("=222"));
+        assertThrows(SmooksConfigException.class, () -> RuleGuard.compile("@?"));
+        assertThrows(SmooksConfigException.class, () -> RuleGuard.compile("regex:(2"));
+    }
+
+    @Test
+    public void filter() throws IOException, SAXException {
+        CountingRegexProvider.EVALUATIONS.set(0);
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("guard-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StringSource("<a><b x='Xx'>11</b><b x='11'>22</b><b x='12'>Aaa</b></a>"), result);
+
+            assertEquals(3, CountingRegexProvider.EVALUATIONS.get());
+            assertEquals(3, result.getWarnings().size());
+            assertEquals("/a/b", result.getWarnings().get(0).getFailFragmentPath());
+            assertEquals("/a/b/@x", result.getWarnings().get(1).getFailFragmentPath());
+            assertEquals("/a/b/@x", result.getWarnings().get(2).getFailFragmentPath());
+        }
+    }
+
+    @Test
+    public void filterBeanGuard() throws IOException, SAXException {
+        CountingRegexProvider.EVALUATIONS.set(0);
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("guard-bean-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result);
+
+            // Only the product 222 order-item is evaluated...
+            assertEquals(1, CountingRegexProvider.EVALUATIONS.get());
+            assertEquals(1, result.getWarnings().size());
+            assertEquals(1, result.getErrors().size());
+            assertEquals("Order 12129 (Customer 123123) contains an order item for product 222 which contains an invalid quantity of 7. This quantity exceeds the maximum permited quantity for this product (5).", result.getErrors().get(0).getMessage(Locale.ENGLISH));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.smooks.Smooks;
+import org.smooks.cartridges.rules.RuleProviderAccessor;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test for {@link SharedRuleBases}.
+ */
+public class SharedRuleBasesTestCase {
+
+    private static final String PRIMITIVE_RULES = "/org/smooks/cartridges/validation/primitive-rules.properties";
+    private static final String CUSTOMER_BUNDLE = "/org/smooks/cartridges/validation/order/rules/i18n/customer.properties";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRuleBaseSharedAcrossSmooksInstances() throws IOException, SAXException {
+        try (Smooks smooks1 = new Smooks(getClass().getResourceAsStream("primitive-config.xml"));
+             Smooks smooks2 = new Smooks(getClass().getResourceAsStream("primitive-config.xml"))) {
+            smooks1.filterSource(new StringSource("<order-item price=\"1\"><quantity>1</quantity></order-item>"));
+            smooks2.filterSource(new StringSource("<order-item price=\"1\"><quantity>1</quantity></order-item>"));
+
+            PrimitiveRuleProvider provider1 = (PrimitiveRuleProvider) RuleProviderAccessor.get(smooks1.getApplicationContext(), "primitive");
+            PrimitiveRuleProvider provider2 = (PrimitiveRuleProvider) RuleProviderAccessor.get(smooks2.getApplicationContext(), "primitive");
+            assertNotSame(provider1, provider2);
+            assertSame(provider1.getCompiledRules(), provider2.getCompiledRules());
+
+            int referenceCount = SharedRuleBases.getReferenceCount("primitive", PRIMITIVE_RULES);
+            assertTrue(referenceCount >= 2);
+            SharedRuleBases.release(provider1);
+            assertEquals(referenceCount - 1, SharedRuleBases.getReferenceCount("primitive", PRIMITIVE_RULES));
+            SharedRuleBases.release(provider2);
+        }
+    }
+
+    @Test
+    public void testMessageBundleSharedAcrossSmooksInstances() throws IOException, SAXException {
+        try (Smooks smooks1 = new Smooks(getClass().getResourceAsStream("order/smooks-config.xml"));
+             Smooks smooks2 = new Smooks(getClass().getResourceAsStream("order/smooks-config.xml"))) {
+            ValidationResult result1 = new ValidationResult();
+            ValidationResult result2 = new ValidationResult();
+            smooks1.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result1);
+            smooks2.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result2);
+
+            String message = "Invalid customer number '123123' at '/order/header/customer/@number'.  Customer number must match pattern '[A-Z]-[0-9]{5}'.";
+            assertEquals(message, result1.getErrors().get(0).getMessage(Locale.ENGLISH));
+            assertEquals(message, result2.getErrors().get(0).getMessage(Locale.ENGLISH));
+            assertTrue(SharedRuleBases.getReferenceCount("bundle", CUSTOMER_BUNDLE) >= 2);
+        }
+    }
+
+    @Test
+    public void testChangedContentCompiledAfresh() throws IOException {
+        Path rules = tempDir.resolve("rules.properties");
+        String src = rules.toUri().toString();
+        Object owner = new Object();
+
+        Files.write(rules, "quantity=integer[1..5]".getBytes(StandardCharsets.UTF_8));
+        String before = SharedRuleBases.acquire(owner, "test", src, content -> new String(content, StandardCharsets.UTF_8));
+        assertSame(before, SharedRuleBases.acquire(owner, "test", src, content -> new String(content, StandardCharsets.UTF_8)));
+
+        Files.write(rules, "quantity=integer[1..10]".getBytes(StandardCharsets.UTF_8));
+        String after = SharedRuleBases.acquire(owner, "test", src, content -> new String(content, StandardCharsets.UTF_8));
+        assertEquals("quantity=integer[1..5]", before);
+        assertEquals("quantity=integer[1..10]", after);
+        assertEquals(3, SharedRuleBases.getReferenceCount("test", src));
+
+        SharedRuleBases.release(owner);
+        assertEquals(0, SharedRuleBases.getReferenceCount("test", src));
+    }
+
+    @Test
+    public void testCompiledOutsideLock() throws Exception {
+        Object owner = new Object();
+        CountDownLatch compiling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> slow = executorService.submit(() -> SharedRuleBases.acquire(owner, "test", "slow", 1, 1, () -> {
+                compiling.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "slow";
+            }));
+            assertTrue(compiling.await(10, TimeUnit.SECONDS));
+            Future<String> waiting = executorService.submit(() -> SharedRuleBases.acquire(owner, "test", "slow", 1, 1, () -> "compiled twice"));
+
+            // Other sources are not blocked by the slow compilation...
+            assertEquals("fast", SharedRuleBases.acquire(owner, "test", "fast", 1, 1, () -> "fast"));
+            assertFalse(waiting.isDone());
+
+            release.countDown();
+            assertEquals("slow", slow.get(10, TimeUnit.SECONDS));
+            assertEquals("slow", waiting.get(10, TimeUnit.SECONDS));
+            assertEquals(2, SharedRuleBases.getReferenceCount("test", "slow"));
+        } finally {
+            release.countDown();
+            executorService.shutdownNow();
+            SharedRuleBases.release(owner);
+        }
+    }
+
+    @Test
+    public void testFailedCompilationNotShared() {
+        Object owner = new Object();
+        assertThrows(IllegalStateException.class, () -> SharedRuleBases.acquire(owner, "test", "failing", 1, 1, () -> {
+            throw new IllegalStateException("Invalid");
+        }));
+        assertEquals("compiled", SharedRuleBases.acquire(owner, "test", "failing", 1, 1, () -> "compiled"));
+        SharedRuleBases.release(owner);
+    }
+
+    @Test
+    public void testCollectedOwnerReleased() throws IOException, InterruptedException {
+        Path rules = tempDir.resolve("rules.properties");
+        Files.write(rules, "name=length[1..10]".getBytes(StandardCharsets.UTF_8));
+        String src = rules.toUri().toString();
+
+        SharedRuleBases.acquire(new Object(), "test", src, content -> new String(content, StandardCharsets.UTF_8));
+        assertEquals(1, SharedRuleBases.getReferenceCount("test", src));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (SharedRuleBases.getReferenceCount("test", src) != 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, SharedRuleBases.getReferenceCount("test", src));
+    }
+}
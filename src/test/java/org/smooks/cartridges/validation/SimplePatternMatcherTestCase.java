@@ -0,0 +1,119 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link SimplePatternMatcher}.
+ */
+public class SimplePatternMatcherTestCase {
+
+    private static final String[] SIMPLE_PATTERNS = {
+            "[0-9]{6}", "[A-Z]-[0-9]{5}", "[A-Z][a-z]*, [A-Z][a-z]*", "^\\d{3,5}$", "\\w+@\\w+\\.com", "[a-c]?[0-9]+",
+            "USD|EUR|GBP", "a{2,}b*", "[_\\-.]x\\s?", "[0-9]{1,3}\\.[0-9]{2}",
+            "\\s*(?:a|b c|z-9)\\s*", "\\s*(?:aA)\\s*"
+    };
+
+    private static final String[] COMPLEX_PATTERNS = {
+            "[a-z]*a", "(ab)+", "a.b", "[^0-9]+", "[a-z]+?", "\\d++", "a|b.c", "\\p{Alpha}", "[0-9]*[0-9]{2}", "é+", "[a-z&&[def]]", "\\1",
+            "\\s*(?:a| b)\\s*", "\\s*(?:a.b)\\s*"
+    };
+
+    @Test
+    public void compile() {
+        for (String pattern : SIMPLE_PATTERNS) {
+            assertNotNull(SimplePatternMatcher.compile(pattern), pattern);
+        }
+        for (String pattern : COMPLEX_PATTERNS) {
+            assertNull(SimplePatternMatcher.compile(pattern), pattern);
+        }
+    }
+
+    @Test
+    public void matchesAsPattern() {
+        final Random random = new Random(4711);
+        final String alphabet = "aAbBcCzZ019-_.,@ \txé";
+
+        for (String regex : SIMPLE_PATTERNS) {
+            final SimplePatternMatcher matcher = SimplePatternMatcher.compile(regex);
+            final Pattern pattern = Pattern.compile(regex);
+            for (int i = 0; i < 20000; i++) {
+                final StringBuilder text = new StringBuilder();
+                final int length = random.nextInt(10);
+                for (int j = 0; j < length; j++) {
+                    text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                assertEquals(pattern.matcher(text).matches(), matcher.matches(text), regex + " on '" + text + "'");
+            }
+        }
+    }
+
+    @Test
+    public void matches() {
+        SimplePatternMatcher matcher = SimplePatternMatcher.compile("[A-Z]-[0-9]{5}");
+        assertTrue(matcher.matches("A-12345"));
+        assertFalse(matcher.matches("A-1234"));
+        assertFalse(matcher.matches("A-123456"));
+        assertFalse(matcher.matches("a-12345"));
+
+        matcher = SimplePatternMatcher.compile("[A-Z][a-z]*, [A-Z][a-z]*");
+        assertTrue(matcher.matches("Joe, Bloggs"));
+        assertTrue(matcher.matches("J, B"));
+        assertFalse(matcher.matches("Joe,Bloggs"));
+
+        matcher = SimplePatternMatcher.compile("USD|EUR|GBP");
+        assertTrue(matcher.matches("EUR"));
+        assertFalse(matcher.matches("EURO"));
+
+        matcher = SimplePatternMatcher.compile("\\s*(?:USD|EUR|GBP)\\s*");
+        assertTrue(matcher.matches(" EUR\n"));
+        assertTrue(matcher.matches("EUR"));
+        assertFalse(matcher.matches("E UR"));
+    }
+}
@@ -0,0 +1,216 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link UniqueRule}.
+ */
+public class UniqueRuleTestCase {
+
+    @Test
+    public void unique() throws IOException, SAXException {
+        ValidationResult result = filter("<orders>" +
+                order("1", "a", "b", "c") +
+                order("2", "a", "b", "c") +
+                "</orders>");
+
+        assertEquals(0, result.getNumFailures());
+    }
+
+    @Test
+    public void duplicates() throws IOException, SAXException {
+        ValidationResult result = filter("<orders>" +
+                order("1", "a", "b", "a") +
+                order(" 1 ", "", "") +
+                "</orders>");
+
+        assertEquals(1, result.getErrors().size());
+        assertEquals("orderId", result.getErrors().get(0).getFailRuleResult().getRuleName());
+        assertEquals(UniqueRule.RULE_PROVIDER_NAME, result.getErrors().get(0).getFailRuleResult().getRuleProviderName());
+        assertEquals("Uniqueness rule 'orderId' failed on '/orders/order/orderId': duplicate key '1'.", result.getErrors().get(0).getMessage());
+
+        // Empty keys are not checked...
+        assertEquals(1, result.getWarnings().size());
+        assertEquals("Uniqueness rule 'itemId' failed on '/orders/order/order-item/@id': duplicate key 'a'.", result.getWarnings().get(0).getMessage());
+        assertEquals("a", RuleEvalResults.getText(result.getWarnings().get(0).getFailRuleResult()));
+    }
+
+    @Test
+    public void trimmedAttributeKeys() throws IOException, SAXException {
+        ValidationResult result = filter(order("1", "a", " a ", "b"));
+
+        // Attribute keys are trimmed, like element keys...
+        assertEquals(1, result.getWarnings().size());
+        assertEquals("Uniqueness rule 'itemId' failed on '/order/order-item/@id': duplicate key 'a'.", result.getWarnings().get(0).getMessage());
+    }
+
+    @Test
+    public void spilledDuplicates() throws IOException, SAXException {
+        // maxKeys is 4, so the keys spill twice...
+        ValidationResult result = filter(order("1", "a", "b", "c", "d", "e", "f", "g", "h", "i", "b", "i", "h", "a"));
+
+        assertEquals(4, result.getWarnings().size());
+        // "i" is still in memory, so it's reported first.  The spilled duplicates are reported when the order closes...
+        assertEquals("i", RuleEvalResults.getText(result.getWarnings().get(0).getFailRuleResult()));
+        assertEquals("b", RuleEvalResults.getText(result.getWarnings().get(1).getFailRuleResult()));
+        assertEquals("h", RuleEvalResults.getText(result.getWarnings().get(2).getFailRuleResult()));
+        assertEquals("a", RuleEvalResults.getText(result.getWarnings().get(3).getFailRuleResult()));
+    }
+
+    @Test
+    public void spill() throws IOException {
+        try (Smooks smooks = new Smooks()) {
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            UniqueKeys uniqueKeys = UniqueKeys.open("k", 1000, 100000, executionContext);
+
+            for (int i = 0; i < 10000; i++) {
+                assertTrue(uniqueKeys.add(Integer.toString(i), () -> "/k"));
+            }
+            assertEquals(10, uniqueKeys.getSpillCount());
+            for (int i = 0; i < 10000; i += 1000) {
+                String key = Integer.toString(i);
+                assertTrue(uniqueKeys.add(key, () -> "/k/" + key));
+            }
+
+            assertSame(uniqueKeys, UniqueKeys.close("k", executionContext));
+            List<String> duplicates = new ArrayList<>();
+            uniqueKeys.checkSpilled((key, path) -> duplicates.add(key + "@" + path));
+            assertEquals(10, duplicates.size());
+            assertEquals("0@/k/0", duplicates.get(0));
+            assertEquals("9000@/k/9000", duplicates.get(9));
+            assertEquals(0, uniqueKeys.getSpillCount());
+            assertEquals(0, uniqueKeys.getCandidateCount());
+        }
+    }
+
+    @Test
+    public void spillChunks() throws IOException {
+        try (Smooks smooks = new Smooks()) {
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            // Far more keys than expected, so as Bloom filters are added.  Candidates are checked in chunks of 100...
+            UniqueKeys uniqueKeys = UniqueKeys.open("k", 100, 100, executionContext);
+
+            for (int i = 0; i < 20000; i++) {
+                assertTrue(uniqueKeys.add(Integer.toString(i), () -> "/k"));
+            }
+            for (int i = 0; i < 20000; i += 50) {
+                assertTrue(uniqueKeys.add(Integer.toString(i), () -> "/k"));
+            }
+            // The false positive rate stays below 1%, however many more keys than expected are spilled...
+            assertTrue(uniqueKeys.getCandidateCount() < 400 + 200, Long.toString(uniqueKeys.getCandidateCount()));
+
+            UniqueKeys.close("k", executionContext);
+            List<String> duplicates = new ArrayList<>();
+            uniqueKeys.checkSpilled((key, path) -> duplicates.add(key));
+            assertEquals(400, duplicates.size());
+            assertEquals("0", duplicates.get(0));
+            assertEquals("19950", duplicates.get(399));
+        }
+    }
+
+    @Test
+    public void spillFilesDeletedOnAbort() throws IOException, SAXException {
+        File tempDir = new File(System.getProperty("java.io.tmpdir"));
+        FilenameFilter uniqueKeyFiles = (dir, name) -> name.startsWith("smooks-unique-");
+        int numTempFiles = tempDir.list(uniqueKeyFiles).length;
+
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("unique-fatal-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            // The duplicate <fail/> aborts the filter while the order scope holds spilled keys...
+            SmooksException e = assertThrows(SmooksException.class, () -> smooks.filterSource(new StringSource("<order>" +
+                    "<order-item id='a'/><order-item id='b'/><order-item id='c'/><order-item id='d'/><order-item id='e'/><order-item id='a'/>" +
+                    "<fail id='x'/><fail id='x'/></order>"), result));
+            assertInstanceOf(ValidationException.class, e.getCause());
+            assertNotNull(result.getFatal());
+        }
+
+        assertEquals(numTempFiles, tempDir.list(uniqueKeyFiles).length);
+    }
+
+    @Test
+    public void invalidMaxKeys() {
+        SmooksException e = assertThrows(SmooksException.class, () -> {
+            try (Smooks smooks = new Smooks(getClass().getResourceAsStream("unique-invalid-config.xml"))) {
+                smooks.filterSource(new StringSource(order("1", "a")), new ValidationResult());
+            }
+        });
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        assertInstanceOf(SmooksConfigException.class, cause);
+        assertEquals("Invalid config value '0' for parameter 'maxKeys' of uniqueness rule 'itemId'.  Must be a positive Integer value.", cause.getMessage());
+    }
+
+    private ValidationResult filter(String message) throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("unique-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource(message), result);
+            return result;
+        }
+    }
+
+    private String order(String orderId, String... itemIds) {
+        StringBuilder order = new StringBuilder("<order><orderId>").append(orderId).append("</orderId>");
+        for (String itemId : itemIds) {
+            order.append("<order-item id='").append(itemId).append("'/>");
+        }
+        return order.append("</order>").toString();
+    }
+}
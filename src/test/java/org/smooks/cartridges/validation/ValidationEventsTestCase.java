@@ -0,0 +1,149 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.smooks.Smooks;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test for {@link ValidationEvents}.
+ */
+public class ValidationEventsTestCase {
+
+    private static final String ORDER = "<order><order-item price='10.50'><quantity>0</quantity><name>Pen</name></order-item>" +
+            "<order-item price='1'><quantity>2</quantity><name></name></order-item></order>";
+
+    @TempDir
+    Path recordingDir;
+
+    @Test
+    public void events() throws IOException, SAXException {
+        assumeTrue(ValidationEvents.AVAILABLE);
+
+        List<RecordedEvent> events;
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("primitive-config.xml"))) {
+            try (Recording recording = new Recording()) {
+                recording.enable("org.smooks.validation.RuleEvaluation").withThreshold(Duration.ZERO);
+                recording.enable("org.smooks.validation.Failure");
+                recording.enable("org.smooks.validation.Summary");
+                recording.start();
+                smooks.filterSource(new StringSource(ORDER), new ValidationResult());
+                recording.stop();
+                events = dump(recording);
+            }
+        }
+
+        List<RecordedEvent> evaluations = events("org.smooks.validation.RuleEvaluation", events);
+        assertEquals(6, evaluations.size());
+        // The price attribute is evaluated when the order-item opens...
+        assertEquals("primitive.price", evaluations.get(0).getString("rule"));
+        assertEquals("primitive.quantity", evaluations.get(1).getString("rule"));
+        assertEquals(PrimitiveRuleProvider.class.getName(), evaluations.get(1).getString("ruleProvider"));
+        assertEquals(1, evaluations.get(1).getInt("textLength"));
+        assertFalse(evaluations.get(1).getBoolean("matched"));
+
+        List<RecordedEvent> failures = events("org.smooks.validation.Failure", events);
+        assertEquals(2, failures.size());
+        assertEquals("primitive.quantity", failures.get(0).getString("rule"));
+        assertEquals("ERROR", failures.get(0).getString("onFail"));
+        assertEquals("/order/order-item/quantity", failures.get(0).getString("path"));
+        assertEquals("primitive.name", failures.get(1).getString("rule"));
+        assertEquals("WARN", failures.get(1).getString("onFail"));
+
+        List<RecordedEvent> summaries = events("org.smooks.validation.Summary", events);
+        assertEquals(1, summaries.size());
+        assertEquals(1, summaries.get(0).getInt("errors"));
+        assertEquals(1, summaries.get(0).getInt("warnings"));
+        assertFalse(summaries.get(0).getBoolean("terminated"));
+    }
+
+    @Test
+    public void disabledByDefault() throws IOException, SAXException {
+        assumeTrue(ValidationEvents.AVAILABLE);
+
+        List<RecordedEvent> events;
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("primitive-config.xml"))) {
+            try (Recording recording = new Recording()) {
+                recording.start();
+                smooks.filterSource(new StringSource(ORDER), new ValidationResult());
+                recording.stop();
+                events = dump(recording);
+            }
+        }
+
+        for (RecordedEvent event : events) {
+            assertFalse(event.getEventType().getName().startsWith("org.smooks.validation."), event.getEventType().getName());
+        }
+    }
+
+    private List<RecordedEvent> dump(Recording recording) throws IOException {
+        Path file = recordingDir.resolve("validation.jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> events(String name, List<RecordedEvent> events) {
+        List<RecordedEvent> namedEvents = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                namedEvents.add(event);
+            }
+        }
+        return namedEvents;
+    }
+}
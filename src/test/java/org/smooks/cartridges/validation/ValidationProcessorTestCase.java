@@ -0,0 +1,299 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test for {@link ValidationProcessor}.
+ */
+public class ValidationProcessorTestCase {
+
+    private Smooks smooks;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void beforeEach() throws IOException, SAXException {
+        smooks = new Smooks(getClass().getResourceAsStream("processor-config.xml"));
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        executor.shutdownNow();
+        smooks.close();
+    }
+
+    @Test
+    public void publishesResultsOnDemand() throws InterruptedException {
+        SourcePublisher sources = new SourcePublisher(new StringSource("<a><b>Aaa</b></a>"), new StringSource("<a><b>11</b><b>22</b></a>"), new StringSource("<a><b x='11'>Aaa</b></a>"));
+        ValidationProcessor processor = new ValidationProcessor(smooks, executor);
+        ResultSubscriber results = new ResultSubscriber();
+
+        sources.subscribe(processor);
+        processor.subscribe(results);
+        assertEquals(0, sources.requested.get());
+
+        results.request(1);
+        results.await(1);
+        assertEquals(1, sources.requested.get());
+        assertEquals(0, results.results.get(0).getNumFailures());
+
+        results.request(5);
+        assertTrue(results.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(3, results.results.size());
+        assertEquals(3, sources.requested.get());
+        assertEquals(2, results.results.get(1).getWarnings().size());
+        // FATAL failures are published on the document's result...
+        assertNotNull(results.results.get(2).getFatal());
+        assertNull(results.error);
+    }
+
+    @Test
+    public void filterError() throws InterruptedException {
+        SourcePublisher sources = new SourcePublisher(new StringSource("<a><b>Aaa</b>"), new StringSource("<a/>"));
+        ValidationProcessor processor = new ValidationProcessor(smooks, executor);
+        ResultSubscriber results = new ResultSubscriber();
+
+        sources.subscribe(processor);
+        processor.subscribe(results);
+        results.request(2);
+
+        assertTrue(results.completed.await(10, TimeUnit.SECONDS));
+        assertNotNull(results.error);
+        assertTrue(results.results.isEmpty());
+        assertTrue(sources.cancelled);
+    }
+
+    @Test
+    public void cancelAbortsFilter() throws InterruptedException {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        Reader reader = new Reader() {
+            private final Iterator<String> chunks = Arrays.asList("<a><b>Aaa</b>", "<b>Bbb</b>", "<b>Ccc</b></a>").iterator();
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (reads.incrementAndGet() == 2) {
+                    reading.countDown();
+                    try {
+                        resume.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                if (!chunks.hasNext()) {
+                    return -1;
+                }
+                String chunk = chunks.next();
+                chunk.getChars(0, chunk.length(), buffer, offset);
+                return chunk.length();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SourcePublisher sources = new SourcePublisher(new StreamSource(reader));
+        ValidationProcessor processor = new ValidationProcessor(smooks, executor);
+        ResultSubscriber results = new ResultSubscriber();
+
+        sources.subscribe(processor);
+        processor.subscribe(results);
+        results.request(1);
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        results.subscription.cancel();
+        resume.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(sources.cancelled);
+        // Aborted at the next read, with no further signals...
+        assertEquals(2, reads.get());
+        assertTrue(results.results.isEmpty());
+        assertNull(results.error);
+        assertEquals(1, results.completed.getCount());
+    }
+
+    @Test
+    public void directExecutor() throws InterruptedException {
+        Source[] documents = new Source[5000];
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = new StringSource("<a><b>Aaa</b></a>");
+        }
+        SourcePublisher sources = new SourcePublisher(documents);
+        ValidationProcessor processor = new ValidationProcessor(smooks, Runnable::run);
+        ResultSubscriber results = new ResultSubscriber();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+
+        // A synchronous upstream and executor must not grow the stack per document...
+        Thread thread = new Thread(null, () -> {
+            try {
+                sources.subscribe(processor);
+                processor.subscribe(results);
+                results.request(Long.MAX_VALUE);
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+        }, "small-stack", 256 * 1024);
+        thread.start();
+        thread.join(60000);
+
+        assertNull(thrown.get());
+        assertEquals(0, results.completed.getCount());
+        assertNull(results.error);
+        assertEquals(documents.length, results.results.size());
+    }
+
+    @Test
+    public void singleSubscriber() {
+        ValidationProcessor processor = new ValidationProcessor(smooks, executor);
+        processor.subscribe(new ResultSubscriber());
+
+        ResultSubscriber second = new ResultSubscriber();
+        processor.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+        assertTrue(second.results.isEmpty());
+    }
+
+    private static class SourcePublisher implements ValidationFlow.Publisher<Source> {
+        private final Iterator<Source> sources;
+        private final AtomicInteger requested = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        private SourcePublisher(Source... sources) {
+            this.sources = Arrays.asList(sources).iterator();
+        }
+
+        @Override
+        public void subscribe(ValidationFlow.Subscriber<? super Source> subscriber) {
+            subscriber.onSubscribe(new ValidationFlow.Subscription() {
+                @Override
+                public void request(long n) {
+                    for (long i = 0; i < n && !cancelled; i++) {
+                        if (sources.hasNext()) {
+                            requested.incrementAndGet();
+                            subscriber.onNext(sources.next());
+                        }
+                        if (!sources.hasNext()) {
+                            subscriber.onComplete();
+                            return;
+                        }
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static class ResultSubscriber implements ValidationFlow.Subscriber<ValidationResult> {
+        private final List<ValidationResult> results = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile ValidationFlow.Subscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(ValidationFlow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ValidationResult result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        private void request(long n) {
+            subscription.request(n);
+        }
+
+        private void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (results.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
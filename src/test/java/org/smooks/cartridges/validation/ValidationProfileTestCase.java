@@ -0,0 +1,153 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link ValidationProfile}.
+ */
+public class ValidationProfileTestCase {
+
+    private static final String ORDER = "<order><order-item price='10.50'><quantity>0</quantity><name>Pen</name></order-item>" +
+            "<order-item price='1'><quantity>2</quantity><name></name></order-item></order>";
+
+    @Test
+    public void profile() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("primitive-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            ValidationProfile profile = new ValidationProfile();
+            result.setProfile(profile);
+            smooks.filterSource(new StringSource(ORDER), result);
+
+            assertSame(profile, result.getProfile());
+            assertEquals(6, profile.getCount(ValidationProfile.Phase.TEXT_ACCUMULATION));
+            assertEquals(6, profile.getCount(ValidationProfile.Phase.RULE_EVALUATION));
+            assertEquals(2, profile.getCount(ValidationProfile.Phase.BEAN_SNAPSHOT));
+            assertEquals(0, profile.getCount(ValidationProfile.Phase.MESSAGE_RENDERING));
+            assertTrue(profile.getTime(ValidationProfile.Phase.RULE_EVALUATION) > 0);
+
+            assertEquals(3, profile.getRules().size());
+            assertEquals(2, profile.getRuleCount("primitive.quantity"));
+            assertEquals(2, profile.getRuleCount("primitive.price"));
+            assertEquals(2, profile.getRuleCount("primitive.name"));
+            assertEquals(0, profile.getRuleCount("primitive.unknown"));
+            long ruleTimes = 0;
+            for (String rule : profile.getRules()) {
+                ruleTimes += profile.getRuleTime(rule);
+            }
+            assertEquals(profile.getTime(ValidationProfile.Phase.RULE_EVALUATION), ruleTimes);
+
+            // Messages are rendered after filtering...
+            result.getErrors().get(0).getMessage();
+            assertEquals(1, profile.getCount(ValidationProfile.Phase.MESSAGE_RENDERING));
+
+            String printed = profile.toString();
+            assertTrue(printed.contains("text accumulation"), printed);
+            assertTrue(printed.contains("primitive.quantity"), printed);
+
+            profile.reset();
+            assertEquals(0, profile.getCount(ValidationProfile.Phase.RULE_EVALUATION));
+            assertTrue(profile.getRules().isEmpty());
+        }
+    }
+
+    @Test
+    public void sampled() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("primitive-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            ValidationProfile profile = new ValidationProfile(4);
+            result.setProfile(profile);
+            for (int i = 0; i < 10; i++) {
+                smooks.filterSource(new StringSource(ORDER), result);
+            }
+
+            // Counts are exact, times are estimated from the sampled executions...
+            assertEquals(60, profile.getCount(ValidationProfile.Phase.RULE_EVALUATION));
+            assertEquals(20, profile.getRuleCount("primitive.name"));
+            assertTrue(profile.getTime(ValidationProfile.Phase.RULE_EVALUATION) > 0);
+            assertTrue(profile.toString().startsWith("Validation profile (1 in 4 sampled):"));
+        }
+    }
+
+    @Test
+    public void sampledPerRule() {
+        ValidationProfile profile = new ValidationProfile(2);
+        // A fixed cycle of two rules, as on a repeated record.  A shared 1 in 2 counter would only ever time one
+        // of them...
+        for (int i = 0; i < 10; i++) {
+            for (String rule : new String[]{"regex.a", "regex.b"}) {
+                long start = profile.startRule(rule);
+                long now = System.nanoTime();
+                while (System.nanoTime() == now) {
+                    // Make sure the evaluation takes time...
+                }
+                profile.endRule(rule, start);
+            }
+        }
+
+        assertEquals(20, profile.getCount(ValidationProfile.Phase.RULE_EVALUATION));
+        assertEquals(10, profile.getRuleCount("regex.a"));
+        assertTrue(profile.getRuleTime("regex.a") > 0);
+        assertTrue(profile.getRuleTime("regex.b") > 0);
+        assertEquals(profile.getRuleTime("regex.a") + profile.getRuleTime("regex.b"), profile.getTime(ValidationProfile.Phase.RULE_EVALUATION));
+    }
+
+    @Test
+    public void notProfiled() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("primitive-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource(ORDER), result);
+            assertNull(result.getProfile());
+            assertEquals(2, result.getNumFailures());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ValidationProfile(0));
+    }
+}
@@ -0,0 +1,211 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.api.SmooksException;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link ValidationResultCodec}.
+ */
+public class ValidationResultCodecTestCase {
+
+    @Test
+    public void encodeDecodeWithMessages() throws IOException, SAXException {
+        ValidationResult validationResult = validate("order-message-01.xml");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ValidationResultCodec.encode(validationResult, outputStream, Locale.ENGLISH);
+        ValidationResult decoded = ValidationResultCodec.decode(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(4, decoded.getNumFailures());
+        assertEquals(3, decoded.getErrors().size());
+        assertEquals(1, decoded.getWarnings().size());
+
+        List<OnFailResult> errors = decoded.getErrors();
+        assertEquals("Invalid customer number '123123' at '/order/header/customer/@number'.  Customer number must match pattern '[A-Z]-[0-9]{5}'.", errors.get(0).getMessage());
+        assertEquals("/order/header/customer/@number", errors.get(0).getFailFragmentPath());
+        assertEquals("customer", errors.get(0).getFailRuleResult().getRuleProviderName());
+        assertEquals("customerId", errors.get(0).getFailRuleResult().getRuleName());
+        assertEquals("123123", RuleEvalResults.getText(errors.get(0).getFailRuleResult()));
+        assertEquals("Invalid customer name 'Joe' at '/order/header/customer'.  Customer name must match pattern '[A-Z][a-z]*, [A-Z][a-z]*'.", decoded.getWarnings().get(0).getMessage());
+    }
+
+    @Test
+    public void encodeDecodeWithoutMessages() throws IOException, SAXException {
+        ValidationResult validationResult = validate("order-message-01.xml");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ValidationResultCodec.encode(validationResult, outputStream);
+        ValidationResult decoded = ValidationResultCodec.decode(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(4, decoded.getNumFailures());
+        assertEquals("[/order/order-items/order-item/product] DecodedRuleEvalResult, matched=false, providerName=product, ruleName=productId, text=222", decoded.getErrors().get(1).getMessage());
+    }
+
+    @Test
+    public void decodeMerge() throws IOException, SAXException {
+        ByteArrayOutputStream partition1 = new ByteArrayOutputStream();
+        ByteArrayOutputStream partition2 = new ByteArrayOutputStream();
+        ValidationResultCodec.encode(validate("order-message-01.xml"), partition1, Locale.ENGLISH);
+        ValidationResultCodec.encode(validate("order-message-03.xml"), partition2, Locale.ENGLISH);
+
+        ValidationResult merged = new ValidationResult();
+        ValidationResultCodec.decode(new ByteArrayInputStream(partition1.toByteArray()), merged);
+        ValidationResultCodec.decode(new ByteArrayInputStream(partition2.toByteArray()), merged);
+
+        assertEquals(9, merged.getNumFailures());
+        assertNotNull(merged.getFatal());
+        assertEquals("A <fail> product was encountered in the message.", merged.getFatal().getMessage());
+    }
+
+    @Test
+    public void decodeMergeFromOneStream() throws IOException, SAXException {
+        ByteArrayOutputStream partitions = new ByteArrayOutputStream();
+        ValidationResultCodec.encode(validate("order-message-03.xml"), partitions, Locale.ENGLISH);
+        ValidationResultCodec.encode(validate("order-message-03.xml"), partitions, Locale.ENGLISH);
+        ValidationResultCodec.encode(validate("order-message-01.xml"), partitions, Locale.ENGLISH);
+
+        ValidationResult merged = new ValidationResult();
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(partitions.toByteArray());
+        for (int i = 0; i < 3; i++) {
+            ValidationResultCodec.decode(inputStream, merged);
+        }
+
+        assertEquals(0, inputStream.available());
+        assertEquals(13, merged.getNumFailures());
+        assertEquals("A <fail> product was encountered in the message.", merged.getFatal().getMessage());
+    }
+
+    @Test
+    public void decodeCorrupt() {
+        byte[] negativeLength = {'S', 'V', (byte) ValidationResultCodec.FORMAT_VERSION, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        IOException e = assertThrows(IOException.class, () -> ValidationResultCodec.decode(new ByteArrayInputStream(negativeLength)));
+        assertEquals("Invalid ValidationResult encoding.  Negative string length '-1'.", e.getMessage());
+
+        byte[] hugeLength = {'S', 'V', (byte) ValidationResultCodec.FORMAT_VERSION, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'x'};
+        assertThrows(EOFException.class, () -> ValidationResultCodec.decode(new ByteArrayInputStream(hugeLength)));
+
+        byte[] hugeStringTable = {'S', 'V', (byte) ValidationResultCodec.FORMAT_VERSION, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(EOFException.class, () -> ValidationResultCodec.decode(new ByteArrayInputStream(hugeStringTable)));
+    }
+
+    @Test
+    public void encodeDecodeAggregated() throws IOException, SAXException {
+        ValidationResult validationResult = new ValidationResult(ValidationResult.Aggregation.RULE_AND_PATH);
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("config-01.xml"))) {
+            smooks.filterSource(new StringSource("<a><b x='11'>11</b><b x='11'>22</b><b x='Xx'>11</b></a>"), validationResult);
+        }
+        assertEquals(5, validationResult.getNumFailures());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ValidationResultCodec.encode(validationResult, outputStream, Locale.ENGLISH);
+        ValidationResult decoded = ValidationResultCodec.decode(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(5, decoded.getNumFailures());
+        assertEquals(2, decoded.getWarnings().size());
+        AggregatedOnFailResult textWarning = (AggregatedOnFailResult) decoded.getWarnings().get(1);
+        assertEquals(3, textWarning.getCount());
+        assertEquals("/a/b", textWarning.getNormalisedPath());
+        assertEquals("/a/b", textWarning.getLastPath());
+        assertEquals(Arrays.asList("/a/b", "/a/b", "/a/b"), textWarning.getSamplePaths());
+        assertEquals("regex", textWarning.getFailRuleResult().getRuleProviderName());
+        assertEquals("11", RuleEvalResults.getText(textWarning.getFailRuleResult()));
+        assertEquals(2, ((AggregatedOnFailResult) decoded.getWarnings().get(0)).getCount());
+
+        ValidationResult merged = new ValidationResult(ValidationResult.Aggregation.RULE_AND_PATH);
+        ValidationResultCodec.decode(new ByteArrayInputStream(outputStream.toByteArray()), merged);
+        ValidationResultCodec.decode(new ByteArrayInputStream(outputStream.toByteArray()), merged);
+        assertEquals(10, merged.getNumFailures());
+        assertEquals(6, ((AggregatedOnFailResult) merged.getWarnings().get(1)).getCount());
+    }
+
+    @Test
+    public void decodeUnsupportedVersion() {
+        byte[] encoding = {'S', 'V', (byte) (ValidationResultCodec.FORMAT_VERSION + 1)};
+
+        IOException e = assertThrows(IOException.class, () -> ValidationResultCodec.decode(new ByteArrayInputStream(encoding)));
+        assertEquals("Unsupported ValidationResult encoding version '2'.  Supported version is '1'.", e.getMessage());
+    }
+
+    @Test
+    public void merge() throws IOException, SAXException {
+        ValidationResult validationResult = validate("order-message-01.xml");
+
+        validationResult.merge(validate("order-message-03.xml"));
+
+        assertEquals(9, validationResult.getNumFailures());
+        assertEquals(6, validationResult.getErrors().size());
+        assertEquals(2, validationResult.getWarnings().size());
+        assertNotNull(validationResult.getFatal());
+    }
+
+    private ValidationResult validate(String message) throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("order/smooks-config.xml"));
+        ValidationResult validationResult = new ValidationResult();
+
+        try {
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/" + message)), validationResult);
+        } catch (SmooksException e) {
+            assertInstanceOf(ValidationException.class, e.getCause());
+        } finally {
+            smooks.close();
+        }
+
+        return validationResult;
+    }
+}
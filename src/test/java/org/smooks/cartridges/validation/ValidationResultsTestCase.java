@@ -44,13 +44,19 @@ package org.smooks.cartridges.validation;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
 import org.smooks.cartridges.rules.RuleEvalResult;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test for {@link ValidationResult}.
@@ -79,6 +85,68 @@ public class ValidationResultsTestCase {
         assertEquals(2, warnings.size());
     }
 
+    @Test
+    public void aggregateByRuleAndPath() throws IOException, SAXException {
+        ValidationResult validationResult = filter(new ValidationResult(ValidationResult.Aggregation.RULE_AND_PATH));
+
+        List<OnFailResult> warnings = validationResult.getWarnings();
+        assertEquals(2, warnings.size());
+        assertEquals(5, validationResult.getNumFailures());
+
+        // Attributes are validated at the element start, so as the attribute warning is first...
+        AggregatedOnFailResult textWarning = (AggregatedOnFailResult) warnings.get(1);
+        assertEquals(3, textWarning.getCount());
+        assertEquals("/a/b", textWarning.getNormalisedPath());
+        assertEquals(Arrays.asList("/a/b", "/a/b", "/a/b"), textWarning.getSamplePaths());
+        assertEquals("RegexRuleEvalResult, matched=false, providerName=regex, ruleName=custom, text=11, pattern=[A-Z]([a-z])+", textWarning.getFailRuleResult().toString());
+
+        AggregatedOnFailResult attributeWarning = (AggregatedOnFailResult) warnings.get(0);
+        assertEquals(2, attributeWarning.getCount());
+        assertEquals("/a/b/@x", attributeWarning.getLastPath());
+
+        assertTrue(validationResult.renderMessages(Locale.ENGLISH).contains(" (3 occurrences)"));
+    }
+
+    @Test
+    public void aggregateByRulePathAndValue() throws IOException, SAXException {
+        ValidationResult validationResult = filter(new ValidationResult(ValidationResult.Aggregation.RULE_PATH_AND_VALUE));
+
+        List<OnFailResult> warnings = validationResult.getWarnings();
+        assertEquals(3, warnings.size());
+        assertEquals(5, validationResult.getNumFailures());
+        assertEquals(2, ((AggregatedOnFailResult) warnings.get(0)).getCount());
+        assertEquals(2, ((AggregatedOnFailResult) warnings.get(1)).getCount());
+        assertEquals(1, ((AggregatedOnFailResult) warnings.get(2)).getCount());
+    }
+
+    @Test
+    public void mergeAggregated() throws IOException, SAXException {
+        ValidationResult validationResult = filter(new ValidationResult(ValidationResult.Aggregation.RULE_AND_PATH));
+
+        validationResult.merge(filter(new ValidationResult()));
+        validationResult.merge(filter(new ValidationResult(ValidationResult.Aggregation.RULE_AND_PATH)));
+
+        assertEquals(2, validationResult.getWarnings().size());
+        assertEquals(15, validationResult.getNumFailures());
+        assertEquals(9, ((AggregatedOnFailResult) validationResult.getWarnings().get(1)).getCount());
+        assertEquals(5, ((AggregatedOnFailResult) validationResult.getWarnings().get(1)).getSamplePaths().size());
+    }
+
+    @Test
+    public void normalisePath() {
+        assertEquals("/a/b/c/@x", ValidationResult.normalisePath("/a/b[3]/c[1]/@x"));
+        assertEquals("/a/b", ValidationResult.normalisePath("/a/b"));
+        assertEquals(null, ValidationResult.normalisePath(null));
+    }
+
+    private ValidationResult filter(ValidationResult validationResult) throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("config-01.xml"))) {
+            smooks.filterSource(new StringSource("<a><b x='11'>11</b><b x='11'>22</b><b x='Xx'>11</b></a>"), validationResult);
+        }
+
+        return validationResult;
+    }
+
     private class MockResult implements RuleEvalResult {
         private String ruleName;
         private String name;
@@ -0,0 +1,108 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.smooks.Smooks;
+import org.smooks.cartridges.rules.RuleProviderAccessor;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link ValidationSnapshot}.
+ */
+public class ValidationSnapshotTestCase {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void createWriteReadInstall() throws IOException, SAXException {
+        Path snapshotFile = tempDir.resolve("validation.snapshot");
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("order/smooks-config.xml"))) {
+            ValidationSnapshot.create(smooks, Locale.ENGLISH).write(snapshotFile);
+        }
+
+        ValidationSnapshot snapshot = ValidationSnapshot.read(snapshotFile);
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("snapshot-config.xml"))) {
+            snapshot.install(smooks.getApplicationContext());
+            assertInstanceOf(CompiledRegexProvider.class, RuleProviderAccessor.get(smooks.getApplicationContext(), "customer"));
+
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result);
+
+            List<OnFailResult> errors = result.getErrors();
+            assertEquals(4, result.getNumFailures());
+            assertEquals("Invalid customer number '123123' at '/order/header/customer/@number'.  Customer number must match pattern '[A-Z]-[0-9]{5}'.", errors.get(0).getMessage(Locale.ENGLISH));
+            assertEquals("Order 12129 (Customer 123123) contains an order item for product 222 which contains an invalid quantity of 7. This quantity exceeds the maximum permited quantity for this product (5).", errors.get(2).getMessage(Locale.ENGLISH));
+        }
+    }
+
+    @Test
+    public void main() throws IOException, SAXException {
+        Path snapshotFile = tempDir.resolve("target/validation.snapshot");
+
+        ValidationSnapshot.main(new String[]{"/org/smooks/cartridges/validation/order/smooks-config.xml", snapshotFile.toString(), "en"});
+
+        ValidationSnapshot snapshot = ValidationSnapshot.read(snapshotFile);
+        assertEquals("ftl:Invalid product ID '${ruleResult.text}' at '${path}'.  Product ID must match pattern '${ruleResult.pattern}'.", snapshot.getMessage("/org/smooks/cartridges/validation/order/rules/i18n/product", Locale.ENGLISH, "productId"));
+        assertNull(snapshot.getMessage("/org/smooks/cartridges/validation/order/rules/i18n/product", Locale.GERMAN, "productId"));
+    }
+
+    @Test
+    public void readUnsupportedVersion() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{'S', 'V', 'S', (byte) (ValidationSnapshot.FORMAT_VERSION + 1)});
+
+        IOException e = assertThrows(IOException.class, () -> ValidationSnapshot.read(buffer));
+        assertEquals("Unsupported validation snapshot version '2'.  Supported version is '1'.", e.getMessage());
+    }
+}
@@ -0,0 +1,87 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test for {@link ValidationWarmUp}.
+ */
+public class ValidationWarmUpTestCase {
+
+    @Test
+    public void warmUp() throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("order/smooks-config.xml"));
+
+        try {
+            assertEquals(5, ValidationWarmUp.warmUp(smooks, 100, Locale.ENGLISH, Locale.GERMAN));
+
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result);
+
+            assertEquals(4, result.getNumFailures());
+            assertEquals("Invalid product ID '222' at '/order/order-items/order-item/product'.  Product ID must match pattern '[0-9]{6}'.", result.getErrors().get(1).getMessage(Locale.ENGLISH));
+        } finally {
+            smooks.close();
+        }
+    }
+
+    @Test
+    public void warmUpNoValidators() throws IOException, SAXException {
+        Smooks smooks = new Smooks();
+
+        try {
+            assertEquals(0, ValidationWarmUp.warmUp(smooks));
+        } finally {
+            smooks.close();
+        }
+    }
+}
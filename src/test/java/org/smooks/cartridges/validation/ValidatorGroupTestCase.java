@@ -0,0 +1,149 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smooks.Smooks;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link ValidatorGroup}.
+ */
+public class ValidatorGroupTestCase {
+
+    @BeforeEach
+    public void beforeEach() {
+        CountingRegexProvider.EVALUATIONS.set(0);
+    }
+
+    @Test
+    public void shortCircuit() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("group-declared-config.xml"))) {
+            ValidationResult result = new ValidationResult();
+
+            smooks.filterSource(new StringSource("<a><b>11</b><b>AB</b></a>"), result);
+
+            // "upper" fails on "11", so "digits" is skipped...
+            assertEquals(3, CountingRegexProvider.EVALUATIONS.get());
+            assertEquals(2, result.getWarnings().size());
+            assertEquals("upper", result.getWarnings().get(0).getFailRuleResult().getRuleName());
+            assertEquals("digits", result.getWarnings().get(1).getFailRuleResult().getRuleName());
+        }
+    }
+
+    @Test
+    public void adaptiveOrder() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("group-adaptive-config.xml"))) {
+            StringBuilder message = new StringBuilder("<a>");
+            for (int i = 0; i < ValidatorGroup.REORDER_INTERVAL; i++) {
+                message.append("<b x='1'>x</b>");
+            }
+            message.append("</a>");
+
+            smooks.filterSource(new StringSource(message.toString()), new ValidationResult());
+
+            List<Validator> validators = ValidationWarmUp.getValidators(smooks.createExecutionContext().getContentDeliveryRuntime().getContentDeliveryConfig());
+            Validator any = find(validators, "b", "group.any");
+            Validator digits = find(validators, "b", "group.digits");
+            assertSame(any.getGroup(), digits.getGroup());
+            assertSame(digits, any.getGroup().getOrder().get(0));
+
+            // Not co-located with other rules...
+            assertNull(find(validators, "b/@x", "group.digits").getGroup());
+
+            // "digits" now fails first, so "any" is skipped...
+            CountingRegexProvider.EVALUATIONS.set(0);
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource("<a><b>x</b></a>"), result);
+            assertEquals(1, CountingRegexProvider.EVALUATIONS.get());
+            assertEquals(1, result.getWarnings().size());
+        }
+    }
+
+    @Test
+    public void declaredOrderWithoutShortCircuit() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("group-fatal-config.xml"))) {
+            StringBuilder message = new StringBuilder("<a>");
+            for (int i = 0; i < ValidatorGroup.REORDER_INTERVAL; i++) {
+                message.append("<b>x</b>");
+            }
+            message.append("</a>");
+
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource(message.toString()), result);
+            assertEquals(ValidatorGroup.REORDER_INTERVAL, result.getWarnings().size());
+
+            // A FATAL rule alone doesn't group, and so reorder, the rules...
+            for (Validator validator : ValidationWarmUp.getValidators(smooks.createExecutionContext().getContentDeliveryRuntime().getContentDeliveryConfig())) {
+                assertNull(validator.getGroup());
+            }
+        }
+    }
+
+    @Test
+    public void noGroups() throws IOException, SAXException {
+        try (Smooks smooks = new Smooks(getClass().getResourceAsStream("config-01.xml"))) {
+            smooks.filterSource(new StringSource("<a><b x='Xx'>11</b></a>"), new ValidationResult());
+
+            for (Validator validator : ValidationWarmUp.getValidators(smooks.createExecutionContext().getContentDeliveryRuntime().getContentDeliveryConfig())) {
+                assertNull(validator.getGroup());
+            }
+        }
+    }
+
+    private Validator find(List<Validator> validators, String selector, String compositeRuleName) {
+        for (Validator validator : validators) {
+            if (validator.getSelector().equals(selector) && validator.getCompositRuleName().equals(compositeRuleName)) {
+                return validator;
+            }
+        }
+        throw new AssertionError("No validator '" + compositeRuleName + "' on '" + selector + "'.");
+    }
+}
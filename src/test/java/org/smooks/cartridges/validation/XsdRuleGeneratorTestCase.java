@@ -0,0 +1,228 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-validation-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.validation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.smooks.Smooks;
+import org.smooks.io.payload.StringSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for {@link XsdRuleGenerator}.
+ */
+public class XsdRuleGeneratorTestCase {
+
+    @TempDir
+    Path outputDir;
+
+    @Test
+    public void rules() throws IOException, SAXException {
+        XsdRuleGenerator generator = new XsdRuleGenerator("order");
+        try (InputStream xsd = getClass().getResourceAsStream("xsd-rules.xsd")) {
+            assertEquals(12, generator.generate(xsd));
+        }
+
+        Map<String, String> regexRules = generator.getRegexRules();
+        assertEquals(6, regexRules.size());
+        assertEquals("[0-9]+", regexRules.get("order_order-item_product_pattern"));
+        assertEquals("(?:[1-9].*)|(?:0{6})", regexRules.get("order_order-item_product_pattern2"));
+        assertEquals("\\s*(?:true|false|1|0)\\s*", regexRules.get("order_order-item_gift"));
+        assertEquals("\\s*(?:en|fr)\\s*", regexRules.get("order_order-item_note_@lang"));
+        assertEquals("[A-Z]{2}-\\d{4}", regexRules.get("order_@id_pattern"));
+        assertEquals("open|closed|on-hold", regexRules.get("order_@status"));
+
+        Map<String, String> primitiveRules = generator.getPrimitiveRules();
+        assertEquals(6, primitiveRules.size());
+        assertEquals("length[1,35]", primitiveRules.get("order_header_customer"));
+        assertEquals("length[6,6]", primitiveRules.get("order_order-item_product"));
+        assertEquals("integer[1,999]", primitiveRules.get("order_order-item_quantity"));
+        assertEquals("valueDecimal(7,2)[0,]", primitiveRules.get("order_order-item_price"));
+        assertEquals("length[1,35]", primitiveRules.get("order_order-item_note"));
+        assertEquals("integer[-2147483648,2147483647]", primitiveRules.get("order_category_@code"));
+
+        List<String> selectors = new ArrayList<>();
+        for (XsdRuleGenerator.GeneratedRule rule : generator.getRules()) {
+            selectors.add(rule.getSelector());
+        }
+        assertTrue(selectors.contains("/order/order-item/note/@lang"));
+        assertFalse(selectors.contains("/order/header/date"));
+        assertTrue(generator.getRules().get(selectors.indexOf("/order/@status")).isOptional());
+        assertFalse(generator.getRules().get(selectors.indexOf("/order/@id")).isOptional());
+    }
+
+    @Test
+    public void validate() throws IOException, SAXException {
+        new XsdRuleGenerator("order").generate(Paths.get("src/test/java/org/smooks/cartridges/validation/xsd-rules.xsd"), outputDir, null);
+        assertTrue(Files.exists(outputDir.resolve("order-regex.properties")));
+        assertTrue(Files.exists(outputDir.resolve("order-primitive.properties")));
+
+        try (Smooks smooks = new Smooks(outputDir.resolve("order-validation.xml").toString())) {
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource("<order id='AB-1234'><header><date>today</date><customer>Joe</customer></header>" +
+                    "<order-item><product>123456</product><quantity>5</quantity><price>10.50</price><gift> true\n</gift><note lang=' en '>Wrap it</note></order-item>" +
+                    "<order-item><product>000000</product><quantity>999</quantity><price>99999.99</price></order-item>" +
+                    "<order-item><product>100000</product><quantity>1</quantity><price>12345.670</price></order-item>" +
+                    "<category code='7'><category code='x'/></category></order>"), result);
+            assertEquals(0, result.getNumFailures());
+
+            // Present but empty optional attributes are checked...
+            result = new ValidationResult();
+            smooks.filterSource(new StringSource("<order id='AB-1234' status=''><header><date/><customer>Joe</customer></header>" +
+                    "<order-item><product>123456</product><quantity>5</quantity><price>10.50</price></order-item></order>"), result);
+            assertEquals(1, result.getNumFailures());
+            assertEquals("order_@status", result.getErrors().get(0).getFailRuleResult().getRuleName());
+
+            result = new ValidationResult();
+            smooks.filterSource(new StringSource("<order id='AB-123' status='lost'><header><date/><customer/></header>" +
+                    "<order-item><product>012345</product><quantity>1000</quantity><price>100000.001</price><gift>yes</gift><note lang='de'>Wrap it</note></order-item>" +
+                    "</order>"), result);
+
+            List<String> failedRules = new ArrayList<>();
+            for (OnFailResult failure : result.getErrors()) {
+                failedRules.add(failure.getFailRuleResult().getRuleName());
+            }
+            assertEquals(8, failedRules.size(), failedRules.toString());
+            assertTrue(failedRules.contains("order_@id_pattern"));
+            assertTrue(failedRules.contains("order_@status"));
+            assertTrue(failedRules.contains("order_header_customer"));
+            assertTrue(failedRules.contains("order_order-item_product_pattern2"));
+            assertTrue(failedRules.contains("order_order-item_quantity"));
+            assertTrue(failedRules.contains("order_order-item_price"));
+            assertTrue(failedRules.contains("order_order-item_gift"));
+            assertTrue(failedRules.contains("order_order-item_note_@lang"));
+        }
+    }
+
+    @Test
+    public void namespaces() throws IOException, SAXException {
+        XsdRuleGenerator generator = new XsdRuleGenerator("ns");
+        generator.generate(new ByteArrayInputStream(("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:o='urn:order' targetNamespace='urn:order' elementFormDefault='qualified'>" +
+                "<xs:element name='order'><xs:complexType><xs:sequence><xs:element name='total' type='o:Total'/></xs:sequence><xs:attribute name='id' type='xs:long'/></xs:complexType></xs:element>" +
+                "<xs:simpleType name='Total'><xs:restriction base='xs:decimal'><xs:fractionDigits value='2'/></xs:restriction></xs:simpleType>" +
+                "</xs:schema>").getBytes("UTF-8")));
+
+        assertEquals(2, generator.getRules().size());
+        assertEquals("/tns:order/tns:total", generator.getRules().get(0).getSelector());
+        assertEquals("/tns:order/@id", generator.getRules().get(1).getSelector());
+        assertEquals("valueDecimal(2)", generator.getPrimitiveRules().get("order_total"));
+        assertTrue(generator.toSmooksConfig("/").contains("xmlns:tns=\"urn:order\""));
+    }
+
+    @Test
+    public void whiteSpace() throws IOException, SAXException {
+        XsdRuleGenerator generator = new XsdRuleGenerator("ws");
+        generator.generate(new ByteArrayInputStream(("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+                "<xs:element name='item'><xs:complexType><xs:sequence>" +
+                "<xs:element name='code'><xs:simpleType><xs:restriction base='xs:token'><xs:maxLength value='3'/><xs:pattern value='[A-Z]+'/></xs:restriction></xs:simpleType></xs:element>" +
+                "<xs:element name='name'><xs:simpleType><xs:restriction base='xs:string'><xs:whiteSpace value='collapse'/><xs:enumeration value='a b'/></xs:restriction></xs:simpleType></xs:element>" +
+                "<xs:element name='text'><xs:simpleType><xs:restriction base='xs:string'><xs:maxLength value='3'/><xs:pattern value='[a-z]+'/></xs:restriction></xs:simpleType></xs:element>" +
+                "</xs:sequence></xs:complexType></xs:element>" +
+                "</xs:schema>").getBytes("UTF-8")));
+
+        assertEquals("\\s*(?:[A-Z]+)\\s*", generator.getRegexRules().get("item_code_pattern"));
+        assertEquals("collapsedLength[,3]", generator.getPrimitiveRules().get("item_code"));
+        assertEquals("\\s*(?:a b)\\s*", generator.getRegexRules().get("item_name"));
+        assertEquals("[a-z]+", generator.getRegexRules().get("item_text_pattern"));
+        assertEquals("length[,3]", generator.getPrimitiveRules().get("item_text"));
+    }
+
+    @Test
+    public void exclusiveDecimalBounds() throws IOException, SAXException {
+        XsdRuleGenerator generator = new XsdRuleGenerator("ex");
+        generator.generate(new ByteArrayInputStream(("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+                "<xs:element name='item'><xs:complexType><xs:sequence>" +
+                "<xs:element name='price'><xs:simpleType><xs:restriction base='xs:decimal'><xs:fractionDigits value='2'/><xs:minExclusive value='0'/><xs:maxExclusive value='100.005'/></xs:restriction></xs:simpleType></xs:element>" +
+                "<xs:element name='rate'><xs:simpleType><xs:restriction base='xs:decimal'><xs:minExclusive value='0'/><xs:maxInclusive value='1'/></xs:restriction></xs:simpleType></xs:element>" +
+                "</xs:sequence></xs:complexType></xs:element>" +
+                "</xs:schema>").getBytes("UTF-8")));
+
+        assertEquals("valueDecimal(2)[0.01,100.00]", generator.getPrimitiveRules().get("item_price"));
+        // Not expressible without a scale, so only the inclusive bound is checked...
+        assertEquals("decimal[,1]", generator.getPrimitiveRules().get("item_rate"));
+    }
+
+    @Test
+    public void trailingFractionZeros() throws IOException, SAXException {
+        Path xsd = outputDir.resolve("digits.xsd");
+        Files.write(xsd, ("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+                "<xs:element name='item'><xs:complexType><xs:sequence>" +
+                "<xs:element name='rate'><xs:simpleType><xs:restriction base='xs:decimal'><xs:fractionDigits value='1'/></xs:restriction></xs:simpleType></xs:element>" +
+                "<xs:element name='price'><xs:simpleType><xs:restriction base='xs:decimal'><xs:totalDigits value='5'/><xs:fractionDigits value='2'/></xs:restriction></xs:simpleType></xs:element>" +
+                "</xs:sequence></xs:complexType></xs:element>" +
+                "</xs:schema>").getBytes("UTF-8"));
+        new XsdRuleGenerator("digits").generate(xsd, outputDir, null);
+
+        try (Smooks smooks = new Smooks(outputDir.resolve("digits-validation.xml").toString())) {
+            // Schema valid, as the fraction digits are counted on the values 1.5 and 123.45...
+            ValidationResult result = new ValidationResult();
+            smooks.filterSource(new StringSource("<item><rate>1.50</rate><price>123.450</price></item>"), result);
+            assertEquals(0, result.getNumFailures());
+
+            result = new ValidationResult();
+            smooks.filterSource(new StringSource("<item><rate>1.55</rate><price>123.451</price></item>"), result);
+            assertEquals(2, result.getNumFailures());
+        }
+    }
+
+    @Test
+    public void toJavaRegex() {
+        assertEquals("[A-Z]{2}\\^\\$", XsdRuleGenerator.toJavaRegex("[A-Z]{2}^$"));
+        assertEquals("[a-z&&[^aeiou]]+", XsdRuleGenerator.toJavaRegex("[a-z-[aeiou]]+"));
+        assertEquals("[_:A-Za-z][\\-._:A-Za-z0-9]*", XsdRuleGenerator.toJavaRegex("\\i\\c*"));
+        assertEquals("\\p{InBasicLatin}+\\d", XsdRuleGenerator.toJavaRegex("\\p{IsBasicLatin}+\\d"));
+        assertEquals("[a\\&b]", XsdRuleGenerator.toJavaRegex("[a&b]"));
+    }
+}
@@ -51,7 +51,9 @@ import org.xml.sax.SAXException;
 
 import javax.xml.transform.stream.StreamSource;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.List;
+import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -86,6 +88,33 @@ public class OrderTest {
         }
     }
 
+    @Test
+    public void test_renderMessages() throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("smooks-config.xml"));
+        ValidationResult result = new ValidationResult();
+
+        try {
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order-message-01.xml")), result);
+
+            StringWriter report = new StringWriter();
+            result.renderMessages(Locale.ENGLISH, report);
+
+            assertEquals("OK Failures:\n" +
+                    "\t(none)\n" +
+                    "WARN Failures:\n" +
+                    "\t- Invalid customer name 'Joe' at '/order/header/customer'.  Customer name must match pattern '[A-Z][a-z]*, [A-Z][a-z]*'.\n" +
+                    "ERROR Failures:\n" +
+                    "\t- Invalid customer number '123123' at '/order/header/customer/@number'.  Customer number must match pattern '[A-Z]-[0-9]{5}'.\n" +
+                    "\t- Invalid product ID '222' at '/order/order-items/order-item/product'.  Product ID must match pattern '[0-9]{6}'.\n" +
+                    "\t- Order 12129 (Customer 123123) contains an order item for product 222 which contains an invalid quantity of 7. This quantity exceeds the maximum permited quantity for this product (5).\n" +
+                    "FATAL Failure:\n" +
+                    "\t(none)\n", report.toString());
+            assertEquals(report.toString(), result.renderMessages(Locale.ENGLISH));
+        } finally {
+            smooks.close();
+        }
+    }
+
     @Test
     public void test_02() throws IOException, SAXException {
         Smooks smooks = new Smooks(getClass().getResourceAsStream("smooks-config.xml"));